@@ -19,11 +19,9 @@ package br.com.bioscada.apps.biotracks;
 import android.os.Bundle;
 
 import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
-import com.google.android.lib.mytracks.content.Track;
+import com.google.android.lib.mytracks.content.TrackStatsColumns;
 import com.google.android.lib.mytracks.stats.TripStatistics;
 
-import java.util.List;
-
 import br.com.bioscada.apps.biotracks.util.CalorieUtils.ActivityType;
 import br.com.bioscada.apps.biotracks.util.StatsUtils;
 
@@ -52,14 +50,7 @@ public class AggregatedStatsActivity extends AbstractMyTracksActivity {
    * there is no track.
    */
   private TripStatistics getTripStatistics() {
-    List<Track> tracks = MyTracksProviderUtils.Factory.get(this).getAllTracks();
-    TripStatistics tripStatistics = null;
-    if (!tracks.isEmpty()) {
-      tripStatistics = new TripStatistics(tracks.iterator().next().getTripStatistics());
-      for (int i = 1; i < tracks.size(); i++) {
-        tripStatistics.merge(tracks.get(i).getTripStatistics());
-      }
-    }
-    return tripStatistics;
+    return MyTracksProviderUtils.Factory.get(this).getAggregatedTripStatistics(
+        null, TrackStatsColumns.PERIOD_ALL, 0L);
   }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks;
+
+import java.util.ArrayList;
+
+/**
+ * Columnar store of chart data points. Column 0 is the x axis, time or
+ * distance, and column i + 1 is the value of the chart value series i, NaN if
+ * none.
+ * <p>
+ * Each column is a list of fixed size primitive chunks, so appending never
+ * copies the points and doesn't allocate except for a new chunk. Cleared
+ * chunks are reused.
+ */
+public class ChartData {
+
+  private static final int CHUNK_SHIFT = 10;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final int numColumns;
+
+  // Each chunk holds CHUNK_SIZE points of each column
+  private final ArrayList<double[][]> chunks = new ArrayList<double[][]>();
+  private int size;
+
+  /**
+   * Creates a store for the x axis and {@link ChartView#NUM_SERIES} series.
+   */
+  public ChartData() {
+    this(ChartView.NUM_SERIES + 1);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param numColumns the number of columns, including the x axis
+   */
+  public ChartData(int numColumns) {
+    this.numColumns = numColumns;
+  }
+
+  /**
+   * Gets the number of columns, including the x axis.
+   */
+  public int getNumColumns() {
+    return numColumns;
+  }
+
+  /**
+   * Gets the number of points.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns true if there is no point.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Removes all the points. The chunks are kept.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Adds a point.
+   *
+   * @param dataPoint the values of the point, one per column. Copied, so it can
+   *          be reused
+   */
+  public void add(double[] dataPoint) {
+    int chunkIndex = size >> CHUNK_SHIFT;
+    if (chunkIndex == chunks.size()) {
+      chunks.add(new double[numColumns][CHUNK_SIZE]);
+    }
+    double[][] chunk = chunks.get(chunkIndex);
+    int offset = size & CHUNK_MASK;
+    for (int i = 0; i < numColumns; i++) {
+      chunk[i][offset] = dataPoint[i];
+    }
+    size++;
+  }
+
+  /**
+   * Adds all the points of another store.
+   *
+   * @param chartData the other store
+   */
+  public void addAll(ChartData chartData) {
+    double[] dataPoint = new double[numColumns];
+    for (int i = 0; i < chartData.size(); i++) {
+      for (int j = 0; j < numColumns; j++) {
+        dataPoint[j] = chartData.get(i, j);
+      }
+      add(dataPoint);
+    }
+  }
+
+  /**
+   * Gets a value.
+   *
+   * @param index the point index
+   * @param column the column, 0 for the x axis
+   */
+  public double get(int index, int column) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+    }
+    return chunks.get(index >> CHUNK_SHIFT)[column][index & CHUNK_MASK];
+  }
+
+  /**
+   * Gets the x value of a point.
+   *
+   * @param index the point index
+   */
+  public double getX(int index) {
+    return get(index, 0);
+  }
+}
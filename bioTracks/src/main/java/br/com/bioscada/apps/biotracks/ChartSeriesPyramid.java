@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks;
+
+/**
+ * Level of detail pyramid of the points of a chart value series.
+ * <p>
+ * Level 0 holds the points. Level k holds, for each bucket of 4^k consecutive
+ * points, the first, the min, the max and the last points, enough to draw the
+ * bucket within a pixel as the points themselves. The pyramid is updated in
+ * constant time as points are added, so that a path only needs the buckets of
+ * the visible points at the level matching the number of pixels.
+ * <p>
+ * The x values are expected in ascending order.
+ */
+class ChartSeriesPyramid {
+
+  // Each level has 4 times fewer buckets than the level below
+  private static final int LEVEL_SHIFT = 2;
+
+  // Up to buckets of 4^8 = 65536 points
+  private static final int NUM_LEVELS = 9;
+
+  // Level 0 holds x, y per point. Upper levels hold first x, first y, min x,
+  // min y, max x, max y, last x, last y per bucket.
+  private static final int POINT_SIZE = 2;
+  private static final int BUCKET_SIZE = 8;
+  private static final int FIRST = 0;
+  private static final int MIN = 2;
+  private static final int MAX = 4;
+  private static final int LAST = 6;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final double[][] levels = new double[NUM_LEVELS][];
+  private final int[] levelSizes = new int[NUM_LEVELS];
+
+  ChartSeriesPyramid() {
+    for (int i = 0; i < NUM_LEVELS; i++) {
+      levels[i] = new double[INITIAL_CAPACITY * (i == 0 ? POINT_SIZE : BUCKET_SIZE)];
+    }
+  }
+
+  /**
+   * Removes all the points.
+   */
+  void clear() {
+    for (int i = 0; i < NUM_LEVELS; i++) {
+      levelSizes[i] = 0;
+    }
+  }
+
+  /**
+   * Gets the number of points.
+   */
+  int size() {
+    return levelSizes[0];
+  }
+
+  /**
+   * Adds a point.
+   *
+   * @param x the x value, not less than the previous one
+   * @param y the y value
+   */
+  void add(double x, double y) {
+    int index = levelSizes[0];
+    double[] points = ensureCapacity(0, POINT_SIZE);
+    points[index * POINT_SIZE] = x;
+    points[index * POINT_SIZE + 1] = y;
+    levelSizes[0]++;
+
+    for (int i = 1; i < NUM_LEVELS; i++) {
+      int bucket = index >> (LEVEL_SHIFT * i);
+      int offset = bucket * BUCKET_SIZE;
+      if (bucket == levelSizes[i]) {
+        double[] buckets = ensureCapacity(i, BUCKET_SIZE);
+        for (int j = 0; j < BUCKET_SIZE; j += POINT_SIZE) {
+          buckets[offset + j] = x;
+          buckets[offset + j + 1] = y;
+        }
+        levelSizes[i]++;
+        continue;
+      }
+      double[] buckets = levels[i];
+      if (y < buckets[offset + MIN + 1]) {
+        buckets[offset + MIN] = x;
+        buckets[offset + MIN + 1] = y;
+      }
+      if (y > buckets[offset + MAX + 1]) {
+        buckets[offset + MAX] = x;
+        buckets[offset + MAX + 1] = y;
+      }
+      buckets[offset + LAST] = x;
+      buckets[offset + LAST + 1] = y;
+    }
+  }
+
+  /**
+   * Gets the index of the last point with an x value less than a value, or 0.
+   *
+   * @param x the x value
+   */
+  int getIndexBefore(double x) {
+    double[] points = levels[0];
+    int low = 0;
+    int high = levelSizes[0];
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (points[middle * POINT_SIZE] < x) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return Math.max(0, low - 1);
+  }
+
+  /**
+   * Gets the index of the first point with an x value greater than a value, or
+   * the last point.
+   *
+   * @param x the x value
+   */
+  int getIndexAfter(double x) {
+    double[] points = levels[0];
+    int low = 0;
+    int high = levelSizes[0];
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (points[middle * POINT_SIZE] <= x) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return Math.min(levelSizes[0] - 1, low);
+  }
+
+  /**
+   * Gets the lowest level with at most a number of buckets between two points.
+   *
+   * @param first the first point index
+   * @param last the last point index
+   * @param maxNumBuckets the max number of buckets
+   */
+  int getLevel(int first, int last, int maxNumBuckets) {
+    for (int i = 0; i < NUM_LEVELS - 1; i++) {
+      if ((last >> (LEVEL_SHIFT * i)) - (first >> (LEVEL_SHIFT * i)) < maxNumBuckets) {
+        return i;
+      }
+    }
+    return NUM_LEVELS - 1;
+  }
+
+  /**
+   * Gets the bucket of a point in a level.
+   *
+   * @param level the level
+   * @param index the point index
+   */
+  int getBucket(int level, int index) {
+    return index >> (LEVEL_SHIFT * level);
+  }
+
+  /**
+   * Gets the number of points of a bucket in a level, 1 for level 0 and 4 for
+   * the upper levels.
+   *
+   * @param level the level
+   */
+  int getNumBucketPoints(int level) {
+    return level == 0 ? 1 : BUCKET_SIZE / POINT_SIZE;
+  }
+
+  /**
+   * Gets the x value of a point of a bucket. The points are in ascending x
+   * order.
+   *
+   * @param level the level
+   * @param bucket the bucket
+   * @param point the point of the bucket
+   */
+  double getX(int level, int bucket, int point) {
+    return levels[level][getOffset(level, bucket, point)];
+  }
+
+  /**
+   * Gets the y value of a point of a bucket.
+   *
+   * @param level the level
+   * @param bucket the bucket
+   * @param point the point of the bucket
+   */
+  double getY(int level, int bucket, int point) {
+    return levels[level][getOffset(level, bucket, point) + 1];
+  }
+
+  private int getOffset(int level, int bucket, int point) {
+    if (level == 0) {
+      return bucket * POINT_SIZE;
+    }
+    int offset = bucket * BUCKET_SIZE;
+    if (point == 0) {
+      return offset + FIRST;
+    }
+    if (point == 3) {
+      return offset + LAST;
+    }
+    // The min and the max points, ordered by x
+    double[] buckets = levels[level];
+    boolean minFirst = buckets[offset + MIN] <= buckets[offset + MAX];
+    return offset + ((point == 1) == minFirst ? MIN : MAX);
+  }
+
+  /**
+   * Ensures a level can hold one more element.
+   *
+   * @param level the level
+   * @param elementSize the element size
+   * @return the level array.
+   */
+  private double[] ensureCapacity(int level, int elementSize) {
+    double[] values = levels[level];
+    if ((levelSizes[level] + 1) * elementSize > values.length) {
+      double[] newValues = new double[values.length * 2];
+      System.arraycopy(values, 0, newValues, 0, values.length);
+      levels[level] = newValues;
+      values = newValues;
+    }
+    return values;
+  }
+}
@@ -50,6 +50,7 @@ public class ChartValueSeries {
   private final ExtremityMonitor extremityMonitor;
   private final NumberFormat numberFormat;
   private final Path path;
+  private final ChartSeriesPyramid pyramid;
   
   private int interval = 1;
   private int minMarkerValue = 0;
@@ -103,6 +104,7 @@ public class ChartValueSeries {
     extremityMonitor = new ExtremityMonitor();
     numberFormat = NumberFormat.getIntegerInstance();
     path = new Path();
+    pyramid = new ChartSeriesPyramid();
   }
 
   /**
@@ -144,6 +146,13 @@ public class ChartValueSeries {
     return path;
   }
 
+  /**
+   * Gets the level of detail pyramid of the series points.
+   */
+  ChartSeriesPyramid getPyramid() {
+    return pyramid;
+  }
+
   /**
    * Draws the path on canvas.
    * 
@@ -57,7 +57,7 @@ public class ChartView extends View {
 
   public static final int Y_AXIS_INTERVALS = 5;
 
-  public static final int NUM_SERIES = 10;
+  public static final int NUM_SERIES = 11;
   public static final int ELEVATION_SERIES = 0;
   public static final int SPEED_SERIES = 1;
   public static final int PACE_SERIES = 2;
@@ -68,6 +68,7 @@ public class ChartView extends View {
   public static final int MEDITATION_SERIES = 7;
     public static final int BPM_SERIES = 8;
     public static final int RMSSD_SERIES = 9;
+    public static final int LF_HF_SERIES = 10;
   private static final int TARGET_X_AXIS_INTERVALS = 4;
 
   private static final int MIN_ZOOM_LEVEL = 1;
@@ -85,7 +86,7 @@ public class ChartView extends View {
   private static final int Y_AXIS_OFFSET = 16;
 
   private final ChartValueSeries[] series = new ChartValueSeries[NUM_SERIES];
-  private final ArrayList<double[]> chartData = new ArrayList<double[]>();
+  private final ChartData chartData = new ChartData();
   private final ArrayList<Waypoint> waypoints = new ArrayList<Waypoint>();
   private final ExtremityMonitor xExtremityMonitor = new ExtremityMonitor();
   private double maxX = 1.0;
@@ -106,6 +107,10 @@ public class ChartView extends View {
   private float lastMotionEventX = -1;
   private int zoomLevel = 1;
 
+  // The range of scroll x positions covered by the paths
+  private int pathsStartX = 0;
+  private int pathsEndX = 0;
+
   private int leftBorder = BORDER;
   private int topBorder = BORDER;
   private int bottomBorder = BORDER;
@@ -179,6 +184,14 @@ public class ChartView extends View {
               R.string.description_sensor_heart_rate_rmssd,
               R.color.chart_heart_rate_rmssd_fill,
               R.color.chart_heart_rate_rmssd_border);
+      series[LF_HF_SERIES] = new ChartValueSeries(context,
+              0,
+              Integer.MAX_VALUE,
+              new int[] {1, 2, 5, 10},
+              R.string.description_sensor_heart_rate_lf_hf,
+              R.string.description_sensor_heart_rate_lf_hf,
+              R.color.chart_heart_rate_lf_hf_fill,
+              R.color.chart_heart_rate_lf_hf_border);
     series[ATTENTION_SERIES] = new ChartValueSeries(context,
         0,
         Integer.MAX_VALUE,
@@ -305,17 +318,19 @@ public class ChartView extends View {
   /**
    * Adds data points.
    * 
-   * @param dataPoints an array of data points to be added
+   * @param dataPoints the data points to be added
    */
-  public void addDataPoints(ArrayList<double[]> dataPoints) {
+  public void addDataPoints(ChartData dataPoints) {
     synchronized (chartData) {
       chartData.addAll(dataPoints);
       for (int i = 0; i < dataPoints.size(); i++) {
-        double[] dataPoint = dataPoints.get(i);
-        xExtremityMonitor.update(dataPoint[0]);
+        double x = dataPoints.getX(i);
+        xExtremityMonitor.update(x);
         for (int j = 0; j < series.length; j++) {
-          if (!Double.isNaN(dataPoint[j + 1])) {
-            series[j].update(dataPoint[j + 1]);
+          double value = dataPoints.get(i, j + 1);
+          if (!Double.isNaN(value)) {
+            series[j].update(value);
+            series[j].getPyramid().add(x, value);
           }
         }
       }
@@ -330,6 +345,9 @@ public class ChartView extends View {
   public void reset() {
     synchronized (chartData) {
       chartData.clear();
+      for (ChartValueSeries chartValueSeries : series) {
+        chartValueSeries.getPyramid().clear();
+      }
       xExtremityMonitor.reset();
       zoomLevel = 1;
       updateDimensions();
@@ -451,6 +469,14 @@ public class ChartView extends View {
     }
   }
 
+  @Override
+  protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+    super.onScrollChanged(l, t, oldl, oldt);
+    if (l < pathsStartX || l + effectiveWidth > pathsEndX) {
+      updatePaths();
+    }
+  }
+
   @Override
   public boolean onTouchEvent(MotionEvent event) {
     if (velocityTracker == null) {
@@ -839,7 +865,7 @@ public class ChartView extends View {
     }
     if (index != -1 && chartData.size() > 0) {
       int dx = getX(maxX) - pointer.getIntrinsicWidth() / 2;
-      int dy = getY(series[index], chartData.get(chartData.size() - 1)[index + 1])
+      int dy = getY(series[index], chartData.get(chartData.size() - 1, index + 1))
           - pointer.getIntrinsicHeight();
       canvas.translate(dx, dy);
       pointer.draw(canvas);
@@ -848,80 +874,69 @@ public class ChartView extends View {
 
   /**
    * Updates paths. The path needs to be updated any time after the data or the
-   * dimensions change.
+   * dimensions change, or when scrolling out of the range covered by the paths.
+   * <p>
+   * The paths cover the visible graph area and one graph width on each side.
+   * For each series, the points in that range are read from the level of detail
+   * pyramid at the lowest level with at most one bucket per pixel, so the cost
+   * doesn't depend on the track length.
    */
   private void updatePaths() {
     synchronized (chartData) {
-      for (ChartValueSeries chartValueSeries : series) {
-        chartValueSeries.getPath().reset();
-      }
-      drawPaths();
-      closePaths();
-    }
-  }
+      int totalWidth = effectiveWidth * zoomLevel;
+      pathsStartX = Math.max(0, getScrollX() - effectiveWidth);
+      pathsEndX = Math.min(totalWidth, getScrollX() + 2 * effectiveWidth);
+      double startValue = totalWidth == 0 ? 0.0 : maxX * pathsStartX / totalWidth;
+      double endValue = totalWidth == 0 ? maxX : maxX * pathsEndX / totalWidth;
+      int maxNumBuckets = Math.max(1, pathsEndX - pathsStartX);
 
-  /**
-   * Draws all paths.
-   */
-  private void drawPaths() {
-    boolean[] hasMoved = new boolean[series.length];
-    
-    for (int i = 0; i < chartData.size(); i++) {
-      double[] dataPoint = chartData.get(i);
-      for (int j = 0; j < series.length; j++) {
-        double value = dataPoint[j + 1];
-        if (Double.isNaN(value)) {
-          continue;
-        }
-        ChartValueSeries chartValueSeries = series[j];
+      for (ChartValueSeries chartValueSeries : series) {
         Path path = chartValueSeries.getPath();
-        int x = getX(dataPoint[0]);
-        int y = getY(chartValueSeries, value);
-        if (!hasMoved[j]) {
-          hasMoved[j] = true;
-          path.moveTo(x, y);
-        } else {
-          path.lineTo(x, y);
+        path.reset();
+        ChartSeriesPyramid pyramid = chartValueSeries.getPyramid();
+        if (pyramid.size() == 0) {
+          continue;
         }
+        int first = pyramid.getIndexBefore(startValue);
+        int last = pyramid.getIndexAfter(endValue);
+        int level = pyramid.getLevel(first, last, maxNumBuckets);
+        drawPath(chartValueSeries, level, pyramid.getBucket(level, first),
+            pyramid.getBucket(level, last));
       }
     }
   }
 
   /**
-   * Closes all paths.
-   */
-  private void closePaths() {
-    for (int i = 0; i < series.length; i++) {
-      int first = getFirstPopulatedChartDataIndex(i);
-
-      if (first != -1) {
-        int xCorner = getX(chartData.get(first)[0]);
-        int yCorner = topBorder + effectiveHeight;
-        ChartValueSeries chartValueSeries = series[i];
-        Path path = chartValueSeries.getPath();
-        // Bottom right corner
-        path.lineTo(getX(chartData.get(chartData.size() - 1)[0]), yCorner);
-        // Bottom left corner
-        path.lineTo(xCorner, yCorner);
-        // Top right corner
-        path.lineTo(xCorner, getY(chartValueSeries, chartData.get(first)[i + 1]));
-      }
-    }
-  }
-
-  /**
-   * Finds the index of the first data point containing data for a series.
-   * Returns -1 if no data point contains data for the series.
+   * Draws and closes the path of a series from the buckets of a level of its
+   * pyramid.
    * 
-   * @param seriesIndex the series's index
+   * @param chartValueSeries the chart value series
+   * @param level the pyramid level
+   * @param firstBucket the first bucket
+   * @param lastBucket the last bucket
    */
-  private int getFirstPopulatedChartDataIndex(int seriesIndex) {
-    for (int i = 0; i < chartData.size(); i++) {
-      if (!Double.isNaN(chartData.get(i)[seriesIndex + 1])) {
-        return i;
+  private void drawPath(
+      ChartValueSeries chartValueSeries, int level, int firstBucket, int lastBucket) {
+    ChartSeriesPyramid pyramid = chartValueSeries.getPyramid();
+    Path path = chartValueSeries.getPath();
+    int numBucketPoints = pyramid.getNumBucketPoints(level);
+    int xCorner = getX(pyramid.getX(level, firstBucket, 0));
+    int yFirst = getY(chartValueSeries, pyramid.getY(level, firstBucket, 0));
+    path.moveTo(xCorner, yFirst);
+    for (int i = firstBucket; i <= lastBucket; i++) {
+      for (int j = 0; j < numBucketPoints; j++) {
+        path.lineTo(getX(pyramid.getX(level, i, j)),
+            getY(chartValueSeries, pyramid.getY(level, i, j)));
       }
     }
-    return -1;
+
+    int yCorner = topBorder + effectiveHeight;
+    // Bottom right corner
+    path.lineTo(getX(pyramid.getX(level, lastBucket, numBucketPoints - 1)), yCorner);
+    // Bottom left corner
+    path.lineTo(xCorner, yCorner);
+    // Top left corner
+    path.lineTo(xCorner, yFirst);
   }
 
   /**
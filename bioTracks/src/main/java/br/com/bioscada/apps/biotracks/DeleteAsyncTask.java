@@ -22,6 +22,8 @@ import android.os.AsyncTask;
 import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
 import com.google.android.lib.mytracks.content.Track;
 
+import java.util.ArrayList;
+
 import br.com.bioscada.apps.biotracks.io.sync.SyncUtils;
 import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
 import br.com.bioscada.apps.biotracks.util.UnitConversions;
@@ -95,24 +97,32 @@ public class DeleteAsyncTask extends AsyncTask<Void, Integer, Boolean> {
       myTracksProviderUtils.deleteAllTracks(context);
       return true;
     } else {
+      ArrayList<String> driveIds = new ArrayList<String>();
       for (long id : trackIds) {
         if (isCancelled()) {
           return false;
         }
         Track track = myTracksProviderUtils.getTrack(id);
-        myTracksProviderUtils.deleteTrack(context, id);
         if (track != null) {
           String driveId = track.getDriveId();
           if (driveId != null && !driveId.equals("")) {
-            boolean driveSync = PreferencesUtils.getBoolean(
-                context, R.string.drive_sync_key, PreferencesUtils.DRIVE_SYNC_DEFAULT);
-            if (driveSync) {
-              PreferencesUtils.addToList(context, R.string.drive_deleted_list_key,
-                  PreferencesUtils.DRIVE_DELETED_LIST_DEFAULT, driveId);
-            }
+            driveIds.add(driveId);
           }
         }
       }
+      if (isCancelled()) {
+        return false;
+      }
+      // Delete all the tracks in one transaction
+      myTracksProviderUtils.deleteTracks(context, trackIds);
+      boolean driveSync = PreferencesUtils.getBoolean(
+          context, R.string.drive_sync_key, PreferencesUtils.DRIVE_SYNC_DEFAULT);
+      if (driveSync) {
+        for (String driveId : driveIds) {
+          PreferencesUtils.addToList(context, R.string.drive_deleted_list_key,
+              PreferencesUtils.DRIVE_DELETED_LIST_DEFAULT, driveId);
+        }
+      }
       return true;
     }
   }
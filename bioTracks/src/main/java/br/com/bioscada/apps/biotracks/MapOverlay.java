@@ -24,9 +24,10 @@ import android.util.Log;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.MarkerOptions;
-import com.google.android.gms.maps.model.Polyline;
 import com.google.android.lib.mytracks.content.Waypoint;
 import com.google.android.lib.mytracks.stats.TripStatistics;
 
@@ -37,6 +38,7 @@ import java.util.concurrent.BlockingQueue;
 
 import br.com.bioscada.apps.biotracks.maps.TrackPath;
 import br.com.bioscada.apps.biotracks.maps.TrackPathFactory;
+import br.com.bioscada.apps.biotracks.maps.TrackPolylines;
 import br.com.bioscada.apps.biotracks.util.LocationUtils;
 import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
 import br.com.bioscada.apps.biotracks.util.UnitConversions;
@@ -59,6 +61,9 @@ public class MapOverlay {
   private static final float MARKER_Y_ANCHOR = 90f / 96f;
   private static final int INITIAL_LOCATIONS_SIZE = 1024;
 
+  // Size of a map tile in pixels at zoom level 0
+  private static final int TILE_SIZE = 256;
+
   private final OnSharedPreferenceChangeListener
       sharedPreferenceChangeListener = new OnSharedPreferenceChangeListener() {
           @Override
@@ -82,6 +87,10 @@ public class MapOverlay {
   private boolean showEndMarker = true;
   private TrackPath trackPath;
 
+  // The viewport the paths are drawn for, null for the whole track
+  private LatLngBounds viewportBounds;
+  private float viewportZoom = -1f;
+
   /**
    * A pre-processed {@link Location} to speed up drawing.
    * 
@@ -217,7 +226,7 @@ public class MapOverlay {
    * @param reload true to reload all points
    * @return true if has the start marker
    */
-  public boolean update(GoogleMap googleMap, ArrayList<Polyline> paths,
+  public boolean update(GoogleMap googleMap, TrackPolylines paths,
       TripStatistics tripStatistics, boolean reload) {
     synchronized (locations) {
       boolean hasStartMarker = false;
@@ -228,6 +237,7 @@ public class MapOverlay {
       if (trackPath.updateState(tripStatistics) || reload) {
         googleMap.clear();
         paths.clear();
+        updateViewport(googleMap, paths);
         trackPath.updatePath(googleMap, paths, 0, locations);
         hasStartMarker = updateStartAndEndMarkers(googleMap);
         updateWaypoints(googleMap);
@@ -241,6 +251,56 @@ public class MapOverlay {
     }
   }
 
+  /**
+   * Returns true if the paths need to be reloaded for a new camera position,
+   * i.e., the zoom changed or the visible region is out of the viewport the
+   * paths are drawn for.
+   * 
+   * @param googleMap the google map
+   * @param cameraPosition the camera position
+   */
+  public boolean isViewportOutdated(GoogleMap googleMap, CameraPosition cameraPosition) {
+    if (Math.round(cameraPosition.zoom) != Math.round(viewportZoom)) {
+      return true;
+    }
+    if (viewportBounds == null) {
+      return false;
+    }
+    LatLngBounds visibleBounds = googleMap.getProjection().getVisibleRegion().latLngBounds;
+    return !viewportBounds.contains(visibleBounds.northeast)
+        || !viewportBounds.contains(visibleBounds.southwest);
+  }
+
+  /**
+   * Updates the viewport of the paths to the visible region extended by its
+   * size on each side, and the pixel size to the camera zoom.
+   * 
+   * @param googleMap the google map
+   * @param paths the paths
+   */
+  private void updateViewport(GoogleMap googleMap, TrackPolylines paths) {
+    viewportZoom = googleMap.getCameraPosition().zoom;
+    LatLngBounds visibleBounds = googleMap.getProjection().getVisibleRegion().latLngBounds;
+    double latitudeSpan = visibleBounds.northeast.latitude - visibleBounds.southwest.latitude;
+    double longitudeSpan = visibleBounds.northeast.longitude - visibleBounds.southwest.longitude;
+    if (longitudeSpan < 0) {
+      // Crossing the antimeridian
+      longitudeSpan += 360.0;
+    }
+    if (latitudeSpan <= 0 || longitudeSpan == 0 || 3 * longitudeSpan >= 360.0) {
+      // Not laid out yet or the whole world is visible
+      viewportBounds = null;
+    } else {
+      viewportBounds = new LatLngBounds(
+          new LatLng(visibleBounds.southwest.latitude - latitudeSpan,
+              visibleBounds.southwest.longitude - longitudeSpan),
+          new LatLng(visibleBounds.northeast.latitude + latitudeSpan,
+              visibleBounds.northeast.longitude + longitudeSpan));
+    }
+    double pixelSize = 360.0 / (TILE_SIZE * Math.pow(2, viewportZoom));
+    paths.setViewport(viewportBounds, pixelSize);
+  }
+
   /**
    * Updates the start and end markers.
    * 
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import br.com.bioscada.apps.biotracks.services.StorageMaintenanceService;
+
+/**
+ * Starts the {@link StorageMaintenanceService} when the device starts
+ * charging.
+ */
+public class StorageMaintenanceReceiver extends BroadcastReceiver {
+
+  private static final String TAG = StorageMaintenanceReceiver.class.getSimpleName();
+
+  @Override
+  public void onReceive(Context context, Intent intent) {
+    if (Intent.ACTION_POWER_CONNECTED.equals(intent.getAction())) {
+      context.startService(new Intent(context, StorageMaintenanceService.class));
+    } else {
+      Log.w(TAG, "StorageMaintenanceReceiver: unsupported action");
+    }
+  }
+}
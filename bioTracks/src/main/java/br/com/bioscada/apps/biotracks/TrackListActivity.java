@@ -98,7 +98,7 @@ public class TrackListActivity extends AbstractSendToGoogleActivity
   private static final String[] PROJECTION = new String[] { TracksColumns._ID, TracksColumns.NAME,
       TracksColumns.DESCRIPTION, TracksColumns.CATEGORY, TracksColumns.STARTTIME,
       TracksColumns.TOTALDISTANCE, TracksColumns.TOTALTIME, TracksColumns.ICON,
-      TracksColumns.SHAREDWITHME, TracksColumns.SHAREDOWNER };
+      TracksColumns.SHAREDWITHME, TracksColumns.SHAREDOWNER, TracksColumns.NUMWAYPOINTS };
 
   // Callback when the trackRecordingServiceConnection binding changes.
   private final Runnable bindChangedCallback = new Runnable() {
@@ -366,6 +366,7 @@ public class TrackListActivity extends AbstractSendToGoogleActivity
         int startTimeIndex = cursor.getColumnIndexOrThrow(TracksColumns.STARTTIME);
         int categoryIndex = cursor.getColumnIndex(TracksColumns.CATEGORY);
         int descriptionIndex = cursor.getColumnIndex(TracksColumns.DESCRIPTION);
+        int numWaypointsIndex = cursor.getColumnIndexOrThrow(TracksColumns.NUMWAYPOINTS);
 
         long trackId = cursor.getLong(idIndex);
         boolean isRecording = trackId == recordingTrackId;
@@ -376,12 +377,8 @@ public class TrackListActivity extends AbstractSendToGoogleActivity
         String totalTime = StringUtils.formatElapsedTime(cursor.getLong(totalTimeIndex));
         String totalDistance = StringUtils.formatDistance(
                 TrackListActivity.this, cursor.getDouble(totalDistanceIndex), metricUnits);
-          int markerCount = 0 ;
-          try{
-             markerCount = myTracksProviderUtils.getWaypointCount(trackId);
-          }catch (Exception e){
-            Log.d("BIOTRACKS", e.getMessage());
-          }
+        // Not count the statistics waypoint
+        int markerCount = Math.max(0, cursor.getInt(numWaypointsIndex) - 1);
 
         long startTime = cursor.getLong(startTimeIndex);
         String category = icon != null && !icon.equals("") ? null : cursor.getString(categoryIndex);
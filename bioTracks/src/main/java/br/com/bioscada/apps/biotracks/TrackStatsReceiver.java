@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import br.com.bioscada.apps.biotracks.services.TrackStatsService;
+
+/**
+ * Starts the {@link TrackStatsService} when the time zone or the locale
+ * changes, since the track stats periods depend on them.
+ */
+public class TrackStatsReceiver extends BroadcastReceiver {
+
+  private static final String TAG = TrackStatsReceiver.class.getSimpleName();
+
+  @Override
+  public void onReceive(Context context, Intent intent) {
+    String action = intent.getAction();
+    if (Intent.ACTION_TIMEZONE_CHANGED.equals(action)
+        || Intent.ACTION_LOCALE_CHANGED.equals(action)) {
+      context.startService(new Intent(context, TrackStatsService.class));
+    } else {
+      Log.w(TAG, "TrackStatsReceiver: unsupported action");
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Notifies the observers of a uri at most once per interval. The first change
+ * of a burst is notified right away, the following ones are collapsed into a
+ * single notification at the end of the interval.
+ */
+class ChangeNotifier {
+
+  private final ContentResolver contentResolver;
+  private final Handler handler;
+  private final long interval;
+
+  // The uris with a pending notification
+  private final Set<Uri> pendingUris = new HashSet<Uri>();
+
+  // The last notification time of the uris notified within the interval, in
+  // elapsed realtime
+  private final Map<Uri, Long> notifyTimes = new HashMap<Uri, Long>();
+
+  /**
+   * Constructor.
+   *
+   * @param contentResolver the content resolver
+   * @param handler the handler to send the collapsed notifications
+   * @param interval the minimum interval between two notifications of a uri,
+   *          in milliseconds
+   */
+  ChangeNotifier(ContentResolver contentResolver, Handler handler, long interval) {
+    this.contentResolver = contentResolver;
+    this.handler = handler;
+    this.interval = interval;
+  }
+
+  /**
+   * Notifies the observers of a uri, now or at the end of the interval.
+   *
+   * @param uri the uri
+   */
+  void notifyChange(final Uri uri) {
+    long delay;
+    synchronized (this) {
+      if (pendingUris.contains(uri)) {
+        return;
+      }
+      long now = SystemClock.elapsedRealtime();
+
+      // Forget the uris notified before the interval, such as the per id uris
+      Iterator<Long> iterator = notifyTimes.values().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next() + interval <= now) {
+          iterator.remove();
+        }
+      }
+      Long notifyTime = notifyTimes.get(uri);
+      delay = notifyTime == null ? 0L : notifyTime + interval - now;
+      if (delay <= 0L) {
+        notifyTimes.put(uri, now);
+      } else {
+        pendingUris.add(uri);
+      }
+    }
+    if (delay <= 0L) {
+      contentResolver.notifyChange(uri, null, false);
+      return;
+    }
+    handler.postDelayed(new Runnable() {
+        @Override
+      public void run() {
+        synchronized (ChangeNotifier.this) {
+          pendingUris.remove(uri);
+          notifyTimes.put(uri, SystemClock.elapsedRealtime());
+        }
+        contentResolver.notifyChange(uri, null, false);
+      }
+    }, delay);
+  }
+}
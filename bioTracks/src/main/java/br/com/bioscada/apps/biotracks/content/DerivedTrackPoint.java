@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import android.location.Location;
+
+import com.google.android.lib.mytracks.content.MyTracksLocation;
+import com.google.android.lib.mytracks.content.Sensor;
+
+/**
+ * A track point with the metrics derived from the track up to it, computed
+ * once by the {@link TrackDataHub} for all the {@link TrackDataListener}.
+ * <p>
+ * Immutable. The location is shared by all the listeners and must not be
+ * modified. The metrics are in SI units, NaN if unknown. The sensor values are
+ * NaN if the sensor is not sending.
+ */
+public class DerivedTrackPoint {
+
+  private final Location location;
+  private final boolean hasStatistics;
+  private final double totalDistance;
+  private final long totalTime;
+  private final double elevation;
+  private final double speed;
+  private final double heartRate;
+  private final double cadence;
+  private final double power;
+  private final double attention;
+  private final double meditation;
+  private final double bpm;
+  private final double rmssd;
+  private final double lfHf;
+
+  /**
+   * Constructor.
+   *
+   * @param location the location
+   * @param hasStatistics true if the statistics are known
+   * @param totalDistance the total distance in meters
+   * @param totalTime the total time in milliseconds
+   * @param elevation the smoothed elevation in meters
+   * @param speed the smoothed speed in meters per second
+   */
+  DerivedTrackPoint(Location location, boolean hasStatistics, double totalDistance,
+      long totalTime, double elevation, double speed) {
+    this.location = location;
+    this.hasStatistics = hasStatistics;
+    this.totalDistance = totalDistance;
+    this.totalTime = totalTime;
+    this.elevation = elevation;
+    this.speed = speed;
+
+    Sensor.SensorDataSet sensorDataSet = location instanceof MyTracksLocation
+        ? ((MyTracksLocation) location).getSensorDataSet() : null;
+    if (sensorDataSet == null) {
+      heartRate = Double.NaN;
+      cadence = Double.NaN;
+      power = Double.NaN;
+      attention = Double.NaN;
+      meditation = Double.NaN;
+      bpm = Double.NaN;
+      rmssd = Double.NaN;
+      lfHf = Double.NaN;
+    } else {
+      heartRate = sensorDataSet.hasHeartRate()
+          ? getValue(sensorDataSet.getHeartRate()) : Double.NaN;
+      cadence = sensorDataSet.hasCadence() ? getValue(sensorDataSet.getCadence()) : Double.NaN;
+      power = sensorDataSet.hasPower() ? getValue(sensorDataSet.getPower()) : Double.NaN;
+      attention = sensorDataSet.hasAttention()
+          ? getValue(sensorDataSet.getAttention()) : Double.NaN;
+      meditation = sensorDataSet.hasMeditation()
+          ? getValue(sensorDataSet.getMeditation()) : Double.NaN;
+      bpm = sensorDataSet.hasBpm() ? getValue(sensorDataSet.getBpm()) : Double.NaN;
+      rmssd = sensorDataSet.hasRmssd() ? getValue(sensorDataSet.getRmssd()) : Double.NaN;
+      // Stored in hundredths
+      lfHf = sensorDataSet.hasLfHf() ? getValue(sensorDataSet.getLfHf()) / 100.0 : Double.NaN;
+    }
+  }
+
+  /**
+   * Gets the location.
+   */
+  public Location getLocation() {
+    return location;
+  }
+
+  /**
+   * Returns true if the distance, time, elevation and speed are known, that is
+   * if the track has a start time.
+   */
+  public boolean hasStatistics() {
+    return hasStatistics;
+  }
+
+  /**
+   * Gets the total distance of the track up to this point in meters.
+   */
+  public double getTotalDistance() {
+    return totalDistance;
+  }
+
+  /**
+   * Gets the total time of the track up to this point in milliseconds.
+   */
+  public long getTotalTime() {
+    return totalTime;
+  }
+
+  /**
+   * Gets the smoothed elevation in meters.
+   */
+  public double getElevation() {
+    return elevation;
+  }
+
+  /**
+   * Gets the smoothed speed in meters per second.
+   */
+  public double getSpeed() {
+    return speed;
+  }
+
+  /**
+   * Gets the pace in seconds per meter, 0 when not moving.
+   */
+  public double getPace() {
+    return speed == 0 ? 0.0 : 1.0 / speed;
+  }
+
+  /**
+   * Gets the heart rate.
+   */
+  public double getHeartRate() {
+    return heartRate;
+  }
+
+  /**
+   * Gets the cadence.
+   */
+  public double getCadence() {
+    return cadence;
+  }
+
+  /**
+   * Gets the power.
+   */
+  public double getPower() {
+    return power;
+  }
+
+  /**
+   * Gets the attention.
+   */
+  public double getAttention() {
+    return attention;
+  }
+
+  /**
+   * Gets the meditation.
+   */
+  public double getMeditation() {
+    return meditation;
+  }
+
+  /**
+   * Gets the beats per minute.
+   */
+  public double getBpm() {
+    return bpm;
+  }
+
+  /**
+   * Gets the rmssd.
+   */
+  public double getRmssd() {
+    return rmssd;
+  }
+
+  /**
+   * Gets the lf/hf ratio.
+   */
+  public double getLfHf() {
+    return lfHf;
+  }
+
+  /**
+   * Gets the value of a sensor, NaN if not sending.
+   *
+   * @param sensorData the sensor data
+   */
+  private static double getValue(Sensor.SensorData sensorData) {
+    return sensorData.getState() == Sensor.SensorState.SENDING && sensorData.hasValue()
+        ? sensorData.getValue() : Double.NaN;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import android.location.Location;
+
+import br.com.bioscada.apps.biotracks.stats.TripStatisticsUpdater;
+import br.com.bioscada.apps.biotracks.util.CalorieUtils.ActivityType;
+
+/**
+ * Derives the metrics of the track points of a track, read in order. All the
+ * points must be added, including the sampled out points and the segment
+ * splits, for the distance and the smoothed values to be right.
+ */
+class DerivedTrackPointUpdater {
+
+  private final TripStatisticsUpdater tripStatisticsUpdater;
+  private final int recordingDistanceInterval;
+
+  /**
+   * Constructor.
+   *
+   * @param startTime the track start time, -1L if unknown
+   * @param recordingDistanceInterval the recording distance interval
+   */
+  DerivedTrackPointUpdater(long startTime, int recordingDistanceInterval) {
+    this.tripStatisticsUpdater = startTime != -1L ? new TripStatisticsUpdater(startTime) : null;
+    this.recordingDistanceInterval = recordingDistanceInterval;
+  }
+
+  /**
+   * Adds the next track point and gets its derived track point.
+   *
+   * @param location the location
+   */
+  DerivedTrackPoint addLocation(Location location) {
+    if (tripStatisticsUpdater == null) {
+      return new DerivedTrackPoint(location, false, Double.NaN, -1L, Double.NaN, Double.NaN);
+    }
+    tripStatisticsUpdater.addLocation(
+        location, recordingDistanceInterval, false, ActivityType.INVALID, 0.0);
+    return new DerivedTrackPoint(location, true, tripStatisticsUpdater.getTotalDistance(),
+        tripStatisticsUpdater.getTotalTime(), tripStatisticsUpdater.getSmoothedElevation(),
+        tripStatisticsUpdater.getSmoothedSpeed());
+  }
+}
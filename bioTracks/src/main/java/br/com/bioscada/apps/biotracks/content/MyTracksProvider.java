@@ -18,26 +18,37 @@ package br.com.bioscada.apps.biotracks.content;
 
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.os.Binder;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.ParcelFileDescriptor;
 import android.os.Process;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
+import com.google.android.lib.mytracks.content.SearchIndexColumns;
+import com.google.android.lib.mytracks.content.SensorSamplesColumns;
+import com.google.android.lib.mytracks.content.StorageStatsColumns;
 import com.google.android.lib.mytracks.content.TrackPointsColumns;
+import com.google.android.lib.mytracks.content.TrackStatsColumns;
 import com.google.android.lib.mytracks.content.TracksColumns;
 import com.google.android.lib.mytracks.content.WaypointsColumns;
 import com.google.android.lib.mytracks.util.FileUtils;
@@ -45,6 +56,8 @@ import com.google.common.annotations.VisibleForTesting;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
@@ -59,11 +72,15 @@ public class MyTracksProvider extends ContentProvider {
 
   private static final String TAG = MyTracksProvider.class.getSimpleName();
   @VisibleForTesting
-  static final int DATABASE_VERSION = 22;
+  static final int DATABASE_VERSION = 28;
 
   @VisibleForTesting
   static final String DATABASE_NAME = "mytracks.db";
 
+  // Minimum interval between two change notifications of a url, in milliseconds
+  @VisibleForTesting
+  static final long NOTIFY_INTERVAL = 2000L;
+
   /**
    * Database helper for creating and upgrading the database.
    */
@@ -82,8 +99,16 @@ public class MyTracksProvider extends ContentProvider {
     @Override
     public void onCreate(SQLiteDatabase db) {
       db.execSQL(TrackPointsColumns.CREATE_TABLE);
+      db.execSQL(TrackPointsColumns.CREATE_TRACKID_INDEX);
+      db.execSQL(TrackPointsColumns.CREATE_TRACKID_TIME_INDEX);
       db.execSQL(TracksColumns.CREATE_TABLE);
       db.execSQL(WaypointsColumns.CREATE_TABLE);
+      db.execSQL(SensorSamplesColumns.CREATE_TABLE);
+      db.execSQL(SensorSamplesColumns.CREATE_TRACKID_TYPE_TIME_INDEX);
+      db.execSQL(TrackStatsColumns.CREATE_TABLE);
+      db.execSQL(TrackStatsColumns.CREATE_PERIOD_INDEX);
+      db.execSQL(SearchIndexColumns.CREATE_TRACKS_TABLE);
+      db.execSQL(SearchIndexColumns.CREATE_WAYPOINTS_TABLE);
     }
 
     @Override
@@ -94,6 +119,7 @@ public class MyTracksProvider extends ContentProvider {
         db.execSQL("DROP TABLE IF EXISTS " + TrackPointsColumns.TABLE_NAME);
         db.execSQL("DROP TABLE IF EXISTS " + TracksColumns.TABLE_NAME);
         db.execSQL("DROP TABLE IF EXISTS " + WaypointsColumns.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + SensorSamplesColumns.TABLE_NAME);
         onCreate(db);
       } else {
         // Incremental upgrades. One if statement per DB version.
@@ -151,6 +177,53 @@ public class MyTracksProvider extends ContentProvider {
           db.execSQL("ALTER TABLE " + TracksColumns.TABLE_NAME + " ADD " + TracksColumns.CALORIE
               + " FLOAT");
         }
+
+        // Add track point TRACKID and TRACKID/TIME indexes
+        if (oldVersion <= 22) {
+          Log.w(TAG, "Upgrade DB: Adding track point trackid index.");
+          db.execSQL(TrackPointsColumns.CREATE_TRACKID_INDEX);
+
+          Log.w(TAG, "Upgrade DB: Adding track point trackid time index.");
+          db.execSQL(TrackPointsColumns.CREATE_TRACKID_TIME_INDEX);
+        }
+
+        // Add SENSORSAMPLES table
+        if (oldVersion <= 23) {
+          Log.w(TAG, "Upgrade DB: Adding sensor samples table.");
+          db.execSQL(SensorSamplesColumns.CREATE_TABLE);
+          db.execSQL(SensorSamplesColumns.CREATE_TRACKID_TYPE_TIME_INDEX);
+        }
+
+        // Add TRACKSTATS table
+        if (oldVersion <= 24) {
+          Log.w(TAG, "Upgrade DB: Adding track stats table.");
+          db.execSQL(TrackStatsColumns.CREATE_TABLE);
+          db.execSQL(TrackStatsColumns.CREATE_PERIOD_INDEX);
+          new TrackStatsRollup(db).rebuild();
+        }
+
+        // Add TRACKSEARCH and WAYPOINTSEARCH tables
+        if (oldVersion <= 25) {
+          Log.w(TAG, "Upgrade DB: Adding search index tables.");
+          db.execSQL(SearchIndexColumns.CREATE_TRACKS_TABLE);
+          db.execSQL(SearchIndexColumns.CREATE_WAYPOINTS_TABLE);
+          new SearchIndex(db).rebuild();
+        }
+
+        // Add track NUMWAYPOINTS column
+        if (oldVersion <= 26) {
+          Log.w(TAG, "Upgrade DB: Adding track numwaypoints column.");
+          db.execSQL("ALTER TABLE " + TracksColumns.TABLE_NAME + " ADD "
+              + TracksColumns.NUMWAYPOINTS + " INTEGER DEFAULT 0");
+          db.execSQL(UPDATE_ALL_NUM_WAYPOINTS_SQL);
+        }
+
+        // Add track DRIVEMD5 column
+        if (oldVersion <= 27) {
+          Log.w(TAG, "Upgrade DB: Adding track drivemd5 column.");
+          db.execSQL("ALTER TABLE " + TracksColumns.TABLE_NAME + " ADD " + TracksColumns.DRIVEMD5
+              + " STRING");
+        }
       }
     }
   }
@@ -162,11 +235,42 @@ public class MyTracksProvider extends ContentProvider {
    */
   @VisibleForTesting
   enum UrlType {
-    TRACKPOINTS, TRACKPOINTS_ID, TRACKS, TRACKS_ID, WAYPOINTS, WAYPOINTS_ID
+    TRACKPOINTS, TRACKPOINTS_ID, TRACKS, TRACKS_ID, WAYPOINTS, WAYPOINTS_ID, SENSORSAMPLES,
+    SENSORSAMPLES_ID, TRACKSTATS, STORAGESTATS
   }
 
+  // The columns set when inserting track points, all but the id
+  private static final String[] TRACK_POINT_INSERT_COLUMNS = { TrackPointsColumns.TRACKID,
+      TrackPointsColumns.LONGITUDE, TrackPointsColumns.LATITUDE, TrackPointsColumns.TIME,
+      TrackPointsColumns.ALTITUDE, TrackPointsColumns.ACCURACY, TrackPointsColumns.SPEED,
+      TrackPointsColumns.BEARING, TrackPointsColumns.SENSOR };
+  private static final String INSERT_TRACK_POINT_SQL = "INSERT INTO "
+      + TrackPointsColumns.TABLE_NAME + " (" + TextUtils.join(", ", TRACK_POINT_INSERT_COLUMNS)
+      + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  // Counts the waypoints of all the tracks
+  private static final String UPDATE_ALL_NUM_WAYPOINTS_SQL = "UPDATE " + TracksColumns.TABLE_NAME
+      + " SET " + TracksColumns.NUMWAYPOINTS + " = (SELECT count(*) FROM "
+      + WaypointsColumns.TABLE_NAME + " WHERE " + WaypointsColumns.TRACKID + " = "
+      + TracksColumns.TABLE_NAME + "." + TracksColumns._ID + ")";
+
+  // Counts the waypoints of a track, binding the track id twice
+  private static final String UPDATE_NUM_WAYPOINTS_SQL = "UPDATE " + TracksColumns.TABLE_NAME
+      + " SET " + TracksColumns.NUMWAYPOINTS + " = (SELECT count(*) FROM "
+      + WaypointsColumns.TABLE_NAME + " WHERE " + WaypointsColumns.TRACKID + " = ?) WHERE "
+      + TracksColumns._ID + " = ?";
+
+  // Adds a waypoint to a track, binding the track id
+  private static final String INCREMENT_NUM_WAYPOINTS_SQL = "UPDATE " + TracksColumns.TABLE_NAME
+      + " SET " + TracksColumns.NUMWAYPOINTS + " = " + TracksColumns.NUMWAYPOINTS + " + 1 WHERE "
+      + TracksColumns._ID + " = ?";
+
   private final UriMatcher uriMatcher;
   private SQLiteDatabase db;
+  private TrackStatsRollup trackStatsRollup;
+  private SearchIndex searchIndex;
+  private StorageMaintenance storageMaintenance;
+  private ChangeNotifier changeNotifier;
 
   public MyTracksProvider() {
     uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -182,6 +286,14 @@ public class MyTracksProvider extends ContentProvider {
         MyTracksProviderUtils.AUTHORITY, WaypointsColumns.TABLE_NAME, UrlType.WAYPOINTS.ordinal());
     uriMatcher.addURI(MyTracksProviderUtils.AUTHORITY, WaypointsColumns.TABLE_NAME + "/#",
         UrlType.WAYPOINTS_ID.ordinal());
+    uriMatcher.addURI(MyTracksProviderUtils.AUTHORITY, SensorSamplesColumns.TABLE_NAME,
+        UrlType.SENSORSAMPLES.ordinal());
+    uriMatcher.addURI(MyTracksProviderUtils.AUTHORITY, SensorSamplesColumns.TABLE_NAME + "/#",
+        UrlType.SENSORSAMPLES_ID.ordinal());
+    uriMatcher.addURI(MyTracksProviderUtils.AUTHORITY, TrackStatsColumns.TABLE_NAME,
+        UrlType.TRACKSTATS.ordinal());
+    uriMatcher.addURI(MyTracksProviderUtils.AUTHORITY, "storagestats",
+        UrlType.STORAGESTATS.ordinal());
   }
 
   @Override
@@ -206,6 +318,13 @@ public class MyTracksProvider extends ContentProvider {
     } catch (SQLiteException e) {
       Log.e(TAG, "Unable to open database for writing.", e);
     }
+    if (db != null) {
+      trackStatsRollup = new TrackStatsRollup(db);
+      searchIndex = new SearchIndex(db);
+      storageMaintenance = new StorageMaintenance(db);
+      changeNotifier = new ChangeNotifier(
+          context.getContentResolver(), new Handler(Looper.getMainLooper()), NOTIFY_INTERVAL);
+    }
     return db != null;
   }
 
@@ -215,38 +334,68 @@ public class MyTracksProvider extends ContentProvider {
       return 0;
     }
     String table;
-    boolean shouldVacuum = false;
     switch (getUrlType(url)) {
       case TRACKPOINTS:
         table = TrackPointsColumns.TABLE_NAME;
         break;
       case TRACKS:
         table = TracksColumns.TABLE_NAME;
-        shouldVacuum = true;
         break;
       case WAYPOINTS:
         table = WaypointsColumns.TABLE_NAME;
         break;
+      case SENSORSAMPLES:
+        table = SensorSamplesColumns.TABLE_NAME;
+        break;
       default:
         throw new IllegalArgumentException("Unknown URL " + url);
     }
 
     Log.w(MyTracksProvider.TAG, "Deleting table " + table);
+    boolean isTracks = TracksColumns.TABLE_NAME.equals(table);
+    boolean isWaypoints = WaypointsColumns.TABLE_NAME.equals(table);
+    List<Long> trackIds;
     int count;
     try {
       db.beginTransaction();
+      List<TrackStatsRollup.TrackStats> trackStats = isTracks && where != null
+          ? trackStatsRollup.getTrackStats(where, selectionArgs) : null;
+      List<Long> waypointTrackIds = isWaypoints && where != null
+          ? getWaypointTrackIds(where, selectionArgs) : null;
+      trackIds = isTracks && where != null ? searchIndex.getIds(table, where, selectionArgs) : null;
+      if (SearchIndex.isIndexed(table)) {
+        searchIndex.onDelete(table, where, selectionArgs);
+      }
       count = db.delete(table, where, selectionArgs);
+      if (trackStats != null) {
+        trackStatsRollup.onDelete(trackStats);
+      } else if (isTracks) {
+        trackStatsRollup.clear();
+      }
+      if (waypointTrackIds != null) {
+        updateNumWaypoints(waypointTrackIds);
+      } else if (isWaypoints) {
+        db.execSQL(UPDATE_ALL_NUM_WAYPOINTS_SQL);
+      }
       db.setTransactionSuccessful();
     } finally {
       db.endTransaction();
     }
-    getContext().getContentResolver().notifyChange(url, null, false);
-
-    if (shouldVacuum) {
-      // If a potentially large amount of data was deleted, reclaim its space.
-      Log.i(TAG, "Vacuuming the database.");
-      db.execSQL("VACUUM");
+    notifyChange(url);
+    if (isTracks) {
+      notifyChange(url, TrackStatsColumns.CONTENT_URI);
     }
+    if (isWaypoints) {
+      notifyChange(url, TracksColumns.CONTENT_URI);
+    }
+    if (trackIds != null) {
+      for (long trackId : trackIds) {
+        TrackProfileCache.invalidate(getContext(), trackId);
+      }
+    } else if (isTracks) {
+      TrackProfileCache.clear(getContext());
+    }
+    // The free pages are reclaimed later, see StorageMaintenanceService
     return count;
   }
 
@@ -268,6 +417,14 @@ public class MyTracksProvider extends ContentProvider {
         return WaypointsColumns.CONTENT_TYPE;
       case WAYPOINTS_ID:
         return WaypointsColumns.CONTENT_ITEMTYPE;
+      case SENSORSAMPLES:
+        return SensorSamplesColumns.CONTENT_TYPE;
+      case SENSORSAMPLES_ID:
+        return SensorSamplesColumns.CONTENT_ITEMTYPE;
+      case TRACKSTATS:
+        return TrackStatsColumns.CONTENT_TYPE;
+      case STORAGESTATS:
+        return StorageStatsColumns.CONTENT_ITEMTYPE;
       default:
         throw new IllegalArgumentException("Unknown URL " + url);
     }
@@ -289,7 +446,13 @@ public class MyTracksProvider extends ContentProvider {
     } finally {
       db.endTransaction();
     }
-    getContext().getContentResolver().notifyChange(url, null, false);
+    notifyChange(url);
+    if (getUrlType(url) == UrlType.TRACKS) {
+      notifyChange(url, TrackStatsColumns.CONTENT_URI);
+    }
+    if (getUrlType(url) == UrlType.WAYPOINTS) {
+      notifyChange(url, TracksColumns.CONTENT_URI);
+    }
     return result;
   }
 
@@ -304,21 +467,49 @@ public class MyTracksProvider extends ContentProvider {
       db.beginTransaction();
 
       UrlType urlType = getUrlType(url);
-      for (numInserted = 0; numInserted < valuesBulk.length; numInserted++) {
-        ContentValues contentValues = valuesBulk[numInserted];
-        if (contentValues == null) {
-          contentValues = new ContentValues();
+      if (urlType == UrlType.TRACKPOINTS) {
+        numInserted = bulkInsertTrackPoints(url, valuesBulk);
+      } else {
+        for (numInserted = 0; numInserted < valuesBulk.length; numInserted++) {
+          ContentValues contentValues = valuesBulk[numInserted];
+          if (contentValues == null) {
+            contentValues = new ContentValues();
+          }
+          insertContentValues(url, urlType, contentValues);
         }
-        insertContentValues(url, urlType, contentValues);
       }
       db.setTransactionSuccessful();
     } finally {
       db.endTransaction();
     }
-    getContext().getContentResolver().notifyChange(url, null, false);
+    notifyChange(url);
+    if (getUrlType(url) == UrlType.TRACKS) {
+      notifyChange(url, TrackStatsColumns.CONTENT_URI);
+    }
+    if (getUrlType(url) == UrlType.WAYPOINTS) {
+      notifyChange(url, TracksColumns.CONTENT_URI);
+    }
     return numInserted;
   }
 
+  @Override
+  public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+      throws OperationApplicationException {
+    if (!canAccess()) {
+      return new ContentProviderResult[0];
+    }
+    ContentProviderResult[] results;
+    try {
+      // Use a transaction in order to make the operations run as a single batch
+      db.beginTransaction();
+      results = super.applyBatch(operations);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    return results;
+  }
+
   @Override
   public Cursor query(
       Uri url, String[] projection, String selection, String[] selectionArgs, String sort) {
@@ -352,6 +543,20 @@ public class MyTracksProvider extends ContentProvider {
         queryBuilder.setTables(WaypointsColumns.TABLE_NAME);
         queryBuilder.appendWhere("_id=" + url.getPathSegments().get(1));
         break;
+      case SENSORSAMPLES:
+        queryBuilder.setTables(SensorSamplesColumns.TABLE_NAME);
+        sortOrder = sort != null ? sort : SensorSamplesColumns.DEFAULT_SORT_ORDER;
+        break;
+      case SENSORSAMPLES_ID:
+        queryBuilder.setTables(SensorSamplesColumns.TABLE_NAME);
+        queryBuilder.appendWhere("_id=" + url.getPathSegments().get(1));
+        break;
+      case TRACKSTATS:
+        queryBuilder.setTables(TrackStatsColumns.TABLE_NAME);
+        sortOrder = sort != null ? sort : TrackStatsColumns.DEFAULT_SORT_ORDER;
+        break;
+      case STORAGESTATS:
+        return storageMaintenance.getStats();
       default:
         throw new IllegalArgumentException("Unknown url " + url);
     }
@@ -375,6 +580,14 @@ public class MyTracksProvider extends ContentProvider {
     String table;
     String whereClause;
     switch (getUrlType(url)) {
+      case STORAGESTATS:
+        Integer maxPages = values.getAsInteger(StorageStatsColumns.RECLAIMPAGES);
+        return storageMaintenance.reclaim(maxPages != null ? maxPages : 0);
+      case TRACKSTATS:
+        if (values == null || !values.containsKey(TrackStatsColumns.REBUILD)) {
+          throw new IllegalArgumentException("Read only url " + url);
+        }
+        return rebuildTrackStats(url);
       case TRACKPOINTS:
         table = TrackPointsColumns.TABLE_NAME;
         whereClause = where;
@@ -411,15 +624,63 @@ public class MyTracksProvider extends ContentProvider {
       default:
         throw new IllegalArgumentException("Unknown url " + url);
     }
+    boolean isAggregated = TracksColumns.TABLE_NAME.equals(table)
+        && TrackStatsRollup.isAggregated(values);
+    boolean isIndexed = SearchIndex.isIndexed(table) && SearchIndex.isIndexed(values);
+    boolean isWaypointsMoved = WaypointsColumns.TABLE_NAME.equals(table)
+        && values.containsKey(WaypointsColumns.TRACKID);
     int count;
     try {
       db.beginTransaction();
+      List<TrackStatsRollup.TrackStats> trackStats = isAggregated
+          ? trackStatsRollup.getTrackStats(whereClause, selectionArgs) : null;
+      List<Long> ids = isIndexed ? searchIndex.getIds(table, whereClause, selectionArgs) : null;
+      List<Long> waypointTrackIds = isWaypointsMoved
+          ? getWaypointTrackIds(whereClause, selectionArgs) : null;
       count = db.update(table, values, whereClause, selectionArgs);
+      if (trackStats != null) {
+        trackStatsRollup.onUpdate(trackStats);
+      }
+      if (ids != null) {
+        searchIndex.onUpdate(table, ids);
+      }
+      if (waypointTrackIds != null) {
+        Long trackId = values.getAsLong(WaypointsColumns.TRACKID);
+        if (trackId != null && !waypointTrackIds.contains(trackId)) {
+          waypointTrackIds.add(trackId);
+        }
+        updateNumWaypoints(waypointTrackIds);
+      }
       db.setTransactionSuccessful();
     } finally {
       db.endTransaction();
     }
-    getContext().getContentResolver().notifyChange(url, null, false);
+    notifyChange(url);
+    if (isAggregated) {
+      notifyChange(url, TrackStatsColumns.CONTENT_URI);
+    }
+    if (isWaypointsMoved) {
+      notifyChange(url, TracksColumns.CONTENT_URI);
+    }
+    return count;
+  }
+
+  /**
+   * Rebuilds the track stats rows, after a time zone or locale change. Returns
+   * the number of rows.
+   * 
+   * @param url the url
+   */
+  private int rebuildTrackStats(Uri url) {
+    int count;
+    try {
+      db.beginTransaction();
+      count = trackStatsRollup.rebuild();
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    notifyChange(url);
     return count;
   }
 
@@ -452,6 +713,31 @@ public class MyTracksProvider extends ContentProvider {
     }
   }
 
+  /**
+   * Notifies the observers of a change to a url, unless the url
+   * {@link MyTracksProviderUtils#NOTIFY_PARAMETER} is false. Bursts of changes,
+   * such as during a recording, are collapsed to one notification per
+   * {@link #NOTIFY_INTERVAL}.
+   * 
+   * @param url the url
+   */
+  private void notifyChange(Uri url) {
+    notifyChange(url, url);
+  }
+
+  /**
+   * Notifies the observers of a url changed along with a url, unless the url
+   * {@link MyTracksProviderUtils#NOTIFY_PARAMETER} is false.
+   * 
+   * @param url the url
+   * @param notifyUrl the url to notify
+   */
+  private void notifyChange(Uri url, Uri notifyUrl) {
+    if (!"false".equals(url.getQueryParameter(MyTracksProviderUtils.NOTIFY_PARAMETER))) {
+      changeNotifier.notifyChange(notifyUrl);
+    }
+  }
+
   /**
    * Gets the {@link UrlType} for a url.
    * 
@@ -476,6 +762,8 @@ public class MyTracksProvider extends ContentProvider {
         return insertTrack(url, contentValues);
       case WAYPOINTS:
         return insertWaypoint(url, contentValues);
+      case SENSORSAMPLES:
+        return insertSensorSample(url, contentValues);
       default:
         throw new IllegalArgumentException("Unknown url " + url);
     }
@@ -501,6 +789,39 @@ public class MyTracksProvider extends ContentProvider {
     throw new SQLiteException("Failed to insert a track point " + url);
   }
 
+  /**
+   * Inserts track points with one compiled statement. Must be called in a
+   * transaction.
+   * 
+   * @param url the content url
+   * @param valuesBulk the content values
+   * @return the number of track points inserted.
+   */
+  private int bulkInsertTrackPoints(Uri url, ContentValues[] valuesBulk) {
+    SQLiteStatement statement = db.compileStatement(INSERT_TRACK_POINT_SQL);
+    try {
+      for (ContentValues values : valuesBulk) {
+        if (values == null || !values.containsKey(TrackPointsColumns.LATITUDE)
+            || !values.containsKey(TrackPointsColumns.LONGITUDE)
+            || !values.containsKey(TrackPointsColumns.TIME)) {
+          throw new IllegalArgumentException(
+              "Latitude, longitude, and time values are required.");
+        }
+        // The columns have no default value, a missing value is bound as null
+        for (int i = 0; i < TRACK_POINT_INSERT_COLUMNS.length; i++) {
+          DatabaseUtils.bindObjectToProgram(
+              statement, i + 1, values.get(TRACK_POINT_INSERT_COLUMNS[i]));
+        }
+        if (statement.executeInsert() < 0) {
+          throw new SQLiteException("Failed to insert a track point " + url);
+        }
+      }
+    } finally {
+      statement.close();
+    }
+    return valuesBulk.length;
+  }
+
   /**
    * Inserts a track.
    * 
@@ -515,6 +836,8 @@ public class MyTracksProvider extends ContentProvider {
     }
     long rowId = db.insert(TracksColumns.TABLE_NAME, TracksColumns._ID, contentValues);
     if (rowId >= 0) {
+      trackStatsRollup.onInsert(rowId);
+      searchIndex.onInsert(TracksColumns.TABLE_NAME, rowId, contentValues);
       return ContentUris.appendId(TracksColumns.CONTENT_URI.buildUpon(), rowId).build();
     }
     throw new SQLException("Failed to insert a track " + url);
@@ -529,8 +852,70 @@ public class MyTracksProvider extends ContentProvider {
   private Uri insertWaypoint(Uri url, ContentValues contentValues) {
     long rowId = db.insert(WaypointsColumns.TABLE_NAME, WaypointsColumns._ID, contentValues);
     if (rowId >= 0) {
+      searchIndex.onInsert(WaypointsColumns.TABLE_NAME, rowId, contentValues);
+      Long trackId = contentValues.getAsLong(WaypointsColumns.TRACKID);
+      if (trackId != null) {
+        db.execSQL(INCREMENT_NUM_WAYPOINTS_SQL, new Object[] { trackId });
+      }
       return ContentUris.appendId(WaypointsColumns.CONTENT_URI.buildUpon(), rowId).build();
     }
     throw new SQLException("Failed to insert a waypoint " + url);
   }
+
+  /**
+   * Gets the ids of the tracks of the waypoints matching a where clause.
+   * 
+   * @param where the where clause
+   * @param selectionArgs the where clause arguments
+   */
+  private List<Long> getWaypointTrackIds(String where, String[] selectionArgs) {
+    ArrayList<Long> trackIds = new ArrayList<Long>();
+    Cursor cursor = null;
+    try {
+      cursor = db.query(true, WaypointsColumns.TABLE_NAME,
+          new String[] { WaypointsColumns.TRACKID }, where, selectionArgs, null, null, null, null);
+      while (cursor.moveToNext()) {
+        if (!cursor.isNull(0)) {
+          trackIds.add(cursor.getLong(0));
+        }
+      }
+    } finally {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
+    return trackIds;
+  }
+
+  /**
+   * Counts the waypoints of tracks, after they are changed.
+   * 
+   * @param trackIds the track ids
+   */
+  private void updateNumWaypoints(List<Long> trackIds) {
+    for (long trackId : trackIds) {
+      db.execSQL(UPDATE_NUM_WAYPOINTS_SQL, new Object[] { trackId, trackId });
+    }
+  }
+
+  /**
+   * Inserts a sensor sample.
+   * 
+   * @param url the content url
+   * @param contentValues the content values
+   */
+  private Uri insertSensorSample(Uri url, ContentValues contentValues) {
+    boolean hasTrackId = contentValues.containsKey(SensorSamplesColumns.TRACKID);
+    boolean hasTime = contentValues.containsKey(SensorSamplesColumns.TIME);
+    boolean hasType = contentValues.containsKey(SensorSamplesColumns.TYPE);
+    if (!hasTrackId || !hasTime || !hasType) {
+      throw new IllegalArgumentException("Track id, time, and type values are required.");
+    }
+    long rowId = db.insert(
+        SensorSamplesColumns.TABLE_NAME, SensorSamplesColumns._ID, contentValues);
+    if (rowId >= 0) {
+      return ContentUris.appendId(SensorSamplesColumns.CONTENT_URI.buildUpon(), rowId).build();
+    }
+    throw new SQLException("Failed to insert a sensor sample " + url);
+  }
 }
\ No newline at end of file
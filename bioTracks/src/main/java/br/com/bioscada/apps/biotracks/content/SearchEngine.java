@@ -16,9 +16,11 @@
 package br.com.bioscada.apps.biotracks.content;
 
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.location.Location;
 
 import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
+import com.google.android.lib.mytracks.content.SearchIndexColumns;
 import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.content.TracksColumns;
 import com.google.android.lib.mytracks.content.Waypoint;
@@ -37,30 +39,41 @@ import br.com.bioscada.apps.biotracks.util.UnitConversions;
 
 
 /**
- * Engine for searching for tracks and waypoints by text.
+ * Engine for searching for tracks and waypoints by text. The candidates are
+ * retrieved from the full-text search index, the ones matching in the name,
+ * then description, then category first, then the ones closest to the current
+ * location, and only the top ones are scored.
  *
  * @author Rodrigo Damazio
  */
 public class SearchEngine {
 
-  /** WHERE query to get tracks by name. */
+  /** WHERE query to get tracks by name, description or category words. */
   private static final String TRACK_SELECTION_QUERY =
-      TracksColumns.NAME + " LIKE ? OR " +
-      TracksColumns.DESCRIPTION + " LIKE ? OR " +
-      TracksColumns.CATEGORY + " LIKE ?";
+      TracksColumns._ID + " IN (SELECT " + SearchIndexColumns.DOCID + " FROM " +
+      SearchIndexColumns.TRACKS_TABLE_NAME + " WHERE " +
+      SearchIndexColumns.TRACKS_TABLE_NAME + " MATCH ?)";
 
-  /** WHERE query to get waypoints by name. */
+  /** WHERE query to get waypoints by name, description or category words. */
   private static final String WAYPOINT_SELECTION_QUERY =
-      WaypointsColumns.NAME + " LIKE ? OR " +
-      WaypointsColumns.DESCRIPTION + " LIKE ? OR " +
-      WaypointsColumns.CATEGORY + " LIKE ?";
+      WaypointsColumns._ID + " IN (SELECT " + SearchIndexColumns.DOCID + " FROM " +
+      SearchIndexColumns.WAYPOINTS_TABLE_NAME + " WHERE " +
+      SearchIndexColumns.WAYPOINTS_TABLE_NAME + " MATCH ?)";
 
-  /** Order of track results. */
-  private static final String TRACK_SELECTION_ORDER = TracksColumns._ID + " DESC LIMIT 1000";
+  /** Order of track results without a current location. */
+  private static final String TRACK_SELECTION_ORDER = TracksColumns._ID + " DESC";
 
-  /** Order of waypoint results. */
+  /** Order of waypoint results without a current location. */
   private static final String WAYPOINT_SELECTION_ORDER = WaypointsColumns._ID + " DESC";
 
+  /** Mean latitude of a track, in millionths of degree. */
+  private static final String TRACK_MEAN_LATITUDE =
+      "(" + TracksColumns.MINLAT + " + " + TracksColumns.MAXLAT + ") / 2.0";
+
+  /** Mean longitude of a track, in millionths of degree. */
+  private static final String TRACK_MEAN_LONGITUDE =
+      "(" + TracksColumns.MINLON + " + " + TracksColumns.MAXLON + ") / 2.0";
+
   /** How much we promote a match in the track category. */
   private static final double TRACK_CATEGORY_PROMOTION = 2.0;
 
@@ -76,6 +89,9 @@ public class SearchEngine {
   /** How much we promote a track result if it's the currently-selected track. */
   private static final double CURRENT_TRACK_DEMOTION = 0.5;
 
+  /** Maximum number of tracks which will be retrieved and scored. */
+  private static final int MAX_SCORED_TRACKS = 100;
+
   /** Maximum number of waypoints which will be retrieved and scored. */
   private static final int MAX_SCORED_WAYPOINTS = 100;
 
@@ -188,16 +204,20 @@ public class SearchEngine {
    * @param tracks list to fill with the resulting tracks
    */
   private void retrieveTracks(SearchQuery query, ArrayList<Track> tracks) {
-    String queryLikeSelection = "%" + query.textQuery + "%";
-    String[] trackSelectionArgs = new String[] {
-        queryLikeSelection,
-        queryLikeSelection,
-        queryLikeSelection };
+    String matchQuery = getMatchQuery(query);
+    if (matchQuery == null) {
+      return;
+    }
+    String[] trackSelectionArgs = new String[] { matchQuery };
+    String trackSelectionOrder = getRelevanceOrder(
+        query, TracksColumns._ID, SearchIndexColumns.TRACKS_TABLE_NAME) + ", "
+        + (query.currentLocation == null ? TRACK_SELECTION_ORDER
+            : getProximityOrder(query.currentLocation, TRACK_MEAN_LATITUDE, TRACK_MEAN_LONGITUDE));
 
     Cursor cursor = null;
     try {
-      cursor = providerUtils.getTrackCursor(
-          TRACK_SELECTION_QUERY, trackSelectionArgs, TRACK_SELECTION_ORDER);
+      cursor = providerUtils.getTrackCursor(TRACK_SELECTION_QUERY, trackSelectionArgs,
+          trackSelectionOrder + " LIMIT " + MAX_SCORED_TRACKS);
       if (cursor != null) {
         tracks.ensureCapacity(cursor.getCount());
         while (cursor.moveToNext()) {
@@ -218,15 +238,20 @@ public class SearchEngine {
    * @param waypoints list to fill with the resulting waypoints
    */
   private void retrieveWaypoints(SearchQuery query, ArrayList<Waypoint> waypoints) {
-    String queryLikeSelection2 = "%" + query.textQuery + "%";
-    String[] waypointSelectionArgs = new String[] {
-        queryLikeSelection2,
-        queryLikeSelection2,
-        queryLikeSelection2 };
+    String matchQuery = getMatchQuery(query);
+    if (matchQuery == null) {
+      return;
+    }
+    String[] waypointSelectionArgs = new String[] { matchQuery };
+    String waypointSelectionOrder = getRelevanceOrder(
+        query, WaypointsColumns._ID, SearchIndexColumns.WAYPOINTS_TABLE_NAME) + ", "
+        + (query.currentLocation == null ? WAYPOINT_SELECTION_ORDER
+            : getProximityOrder(
+                query.currentLocation, WaypointsColumns.LATITUDE, WaypointsColumns.LONGITUDE));
     Cursor cursor = null;
     try {
       cursor = providerUtils.getWaypointCursor(WAYPOINT_SELECTION_QUERY, waypointSelectionArgs,
-          WAYPOINT_SELECTION_ORDER, MAX_SCORED_WAYPOINTS);
+          waypointSelectionOrder, MAX_SCORED_WAYPOINTS);
       if (cursor != null) {
         waypoints.ensureCapacity(cursor.getCount());
         while (cursor.moveToNext()) {
@@ -243,6 +268,94 @@ public class SearchEngine {
     }
   }
 
+  /**
+   * Gets the full-text search query matching the words of a query as
+   * prefixes, or null if the query has no word.
+   *
+   * @param query the query
+   */
+  private static String getMatchQuery(SearchQuery query) {
+    return getMatchQuery(query, null);
+  }
+
+  /**
+   * Gets the full-text search query matching the words of a query as
+   * prefixes in a column, or null if the query has no word.
+   *
+   * @param query the query
+   * @param column the index column, null for any column
+   */
+  private static String getMatchQuery(SearchQuery query, String column) {
+    String normalized = SearchIndex.normalize(query.textQuery);
+    if (normalized.length() == 0) {
+      return null;
+    }
+    StringBuilder matchQuery = new StringBuilder();
+    for (String word : normalized.split(" +")) {
+      if (matchQuery.length() > 0) {
+        matchQuery.append(' ');
+      }
+      if (column != null) {
+        matchQuery.append(column).append(':');
+      }
+      matchQuery.append(word).append('*');
+    }
+    return matchQuery.toString();
+  }
+
+  /**
+   * Gets the sort order by decreasing relevance, with the same field weights
+   * as {@link #getTitleBoost}, so that the candidates matching in the name
+   * are retrieved before the ones only matching in the description or the
+   * category.
+   *
+   * @param query the query
+   * @param idColumn the id column of the tracks or waypoints table
+   * @param indexTable the index table
+   */
+  private static String getRelevanceOrder(SearchQuery query, String idColumn, String indexTable) {
+    return getColumnBoost(query, idColumn, indexTable, SearchIndexColumns.NAME,
+        TRACK_NAME_PROMOTION) + " * "
+        + getColumnBoost(query, idColumn, indexTable, SearchIndexColumns.DESCRIPTION,
+            TRACK_DESCRIPTION_PROMOTION) + " * "
+        + getColumnBoost(query, idColumn, indexTable, SearchIndexColumns.CATEGORY,
+            TRACK_CATEGORY_PROMOTION) + " DESC";
+  }
+
+  /**
+   * Gets the SQL expression of the boost of a match in an index column.
+   *
+   * @param query the query
+   * @param idColumn the id column of the tracks or waypoints table
+   * @param indexTable the index table
+   * @param column the index column
+   * @param promotion the boost of a match
+   */
+  private static String getColumnBoost(
+      SearchQuery query, String idColumn, String indexTable, String column, double promotion) {
+    return "(CASE WHEN " + idColumn + " IN (SELECT " + SearchIndexColumns.DOCID + " FROM "
+        + indexTable + " WHERE " + indexTable + " MATCH "
+        + DatabaseUtils.sqlEscapeString(getMatchQuery(query, column)) + ") THEN " + promotion
+        + " ELSE 1.0 END)";
+  }
+
+  /**
+   * Gets the sort order by increasing distance to a location, approximated on
+   * an equirectangular projection.
+   *
+   * @param location the location
+   * @param latitude the latitude column or expression, in millionths of degree
+   * @param longitude the longitude column or expression, in millionths of
+   *          degree
+   */
+  private static String getProximityOrder(Location location, String latitude, String longitude) {
+    String latitudeDelta = "(" + latitude + " - " + location.getLatitude() * 1E6 + ")";
+    String longitudeDelta = "(" + longitude + " - " + location.getLongitude() * 1E6 + ") * "
+        + Math.cos(Math.toRadians(location.getLatitude()));
+    return latitudeDelta + " * " + latitudeDelta + " + " + longitudeDelta + " * "
+        + longitudeDelta;
+  }
+
   /**
    * Scores a collection of track results.
    *
@@ -340,14 +453,15 @@ public class SearchEngine {
   private double getTitleBoost(SearchQuery query,
       String name, String description, String category) {
     // Title boost: track name > description > category.
+    String textQuery = SearchIndex.normalize(query.textQuery);
     double boost = 1.0;
-    if (name.toLowerCase(Locale.getDefault()).contains(query.textQuery)) {
+    if (SearchIndex.normalize(name).contains(textQuery)) {
       boost *= TRACK_NAME_PROMOTION;
     }
-    if (description.toLowerCase(Locale.getDefault()).contains(query.textQuery)) {
+    if (SearchIndex.normalize(description).contains(textQuery)) {
       boost *= TRACK_DESCRIPTION_PROMOTION;
     }
-    if (category.toLowerCase(Locale.getDefault()).contains(query.textQuery)) {
+    if (SearchIndex.normalize(category).contains(textQuery)) {
       boost *= TRACK_CATEGORY_PROMOTION;
     }
     return boost;
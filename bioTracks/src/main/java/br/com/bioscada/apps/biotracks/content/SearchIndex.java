@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.google.android.lib.mytracks.content.SearchIndexColumns;
+import com.google.android.lib.mytracks.content.TracksColumns;
+import com.google.android.lib.mytracks.content.WaypointsColumns;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the {@link SearchIndexColumns} full-text search index of the
+ * tracks and waypoints tables. Must be called in the transaction of the change.
+ * <p>
+ * The text is normalized in Java rather than by SQL triggers, since the FTS3
+ * simple tokenizer and the SQL lower function only fold ASCII.
+ */
+class SearchIndex {
+
+  // The name, description and category columns of the tracks and waypoints
+  private static final String[] PROJECTION = { TracksColumns._ID, TracksColumns.NAME,
+      TracksColumns.DESCRIPTION, TracksColumns.CATEGORY };
+
+  private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private final SQLiteDatabase db;
+
+  /**
+   * Constructor.
+   *
+   * @param db the database
+   */
+  SearchIndex(SQLiteDatabase db) {
+    this.db = db;
+  }
+
+  /**
+   * Normalizes a text, for indexing or querying. Lowercases, removes the
+   * accents and replaces the punctuation by spaces.
+   *
+   * @param text the text, can be null
+   */
+  static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+    normalized = DIACRITICS.matcher(normalized).replaceAll("");
+    normalized = SEPARATORS.matcher(normalized).replaceAll(" ");
+    return normalized.toLowerCase(Locale.US).trim();
+  }
+
+  /**
+   * Returns true if a table is indexed.
+   *
+   * @param table the table
+   */
+  static boolean isIndexed(String table) {
+    return getIndexTable(table) != null;
+  }
+
+  /**
+   * Returns true if values change an indexed column.
+   *
+   * @param values the values
+   */
+  static boolean isIndexed(ContentValues values) {
+    return values.containsKey(TracksColumns.NAME) || values.containsKey(TracksColumns.DESCRIPTION)
+        || values.containsKey(TracksColumns.CATEGORY);
+  }
+
+  /**
+   * Gets the ids of the rows of a table, before they are updated.
+   *
+   * @param table the table
+   * @param where the where clause
+   * @param whereArgs the where clause arguments
+   */
+  List<Long> getIds(String table, String where, String[] whereArgs) {
+    ArrayList<Long> ids = new ArrayList<Long>();
+    Cursor cursor = null;
+    try {
+      cursor = db.query(table, new String[] { TracksColumns._ID }, where, whereArgs, null, null,
+          null);
+      while (cursor.moveToNext()) {
+        ids.add(cursor.getLong(0));
+      }
+    } finally {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Indexes an inserted row.
+   *
+   * @param table the table
+   * @param id the row id
+   * @param values the row values
+   */
+  void onInsert(String table, long id, ContentValues values) {
+    insert(getIndexTable(table), id, values.getAsString(TracksColumns.NAME),
+        values.getAsString(TracksColumns.DESCRIPTION), values.getAsString(TracksColumns.CATEGORY));
+  }
+
+  /**
+   * Reindexes updated rows.
+   *
+   * @param table the table
+   * @param ids the row ids, read before the update
+   */
+  void onUpdate(String table, List<Long> ids) {
+    String indexTable = getIndexTable(table);
+    for (long id : ids) {
+      String[] idArgs = new String[] { Long.toString(id) };
+      db.delete(indexTable, SearchIndexColumns.DOCID + "=?", idArgs);
+      Cursor cursor = null;
+      try {
+        cursor = db.query(table, PROJECTION, TracksColumns._ID + "=?", idArgs, null, null, null);
+        if (cursor.moveToFirst()) {
+          insert(indexTable, id, cursor.getString(1), cursor.getString(2), cursor.getString(3));
+        }
+      } finally {
+        if (cursor != null) {
+          cursor.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Unindexes rows, before they are deleted.
+   *
+   * @param table the table
+   * @param where the where clause, null for all the rows
+   * @param whereArgs the where clause arguments
+   */
+  void onDelete(String table, String where, String[] whereArgs) {
+    String indexTable = getIndexTable(table);
+    if (where == null) {
+      db.delete(indexTable, null, null);
+      return;
+    }
+    String sql = "DELETE FROM " + indexTable + " WHERE " + SearchIndexColumns.DOCID + " IN (SELECT "
+        + TracksColumns._ID + " FROM " + table + " WHERE " + where + ")";
+    if (whereArgs == null) {
+      db.execSQL(sql);
+    } else {
+      db.execSQL(sql, whereArgs);
+    }
+  }
+
+  /**
+   * Rebuilds the index from the tracks and waypoints tables.
+   */
+  void rebuild() {
+    for (String table : new String[] { TracksColumns.TABLE_NAME, WaypointsColumns.TABLE_NAME }) {
+      String indexTable = getIndexTable(table);
+      db.delete(indexTable, null, null);
+      Cursor cursor = null;
+      try {
+        cursor = db.query(table, PROJECTION, null, null, null, null, null);
+        while (cursor.moveToNext()) {
+          insert(indexTable, cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+              cursor.getString(3));
+        }
+      } finally {
+        if (cursor != null) {
+          cursor.close();
+        }
+      }
+    }
+  }
+
+  private void insert(
+      String indexTable, long id, String name, String description, String category) {
+    ContentValues values = new ContentValues();
+    values.put(SearchIndexColumns.DOCID, id);
+    values.put(SearchIndexColumns.NAME, normalize(name));
+    values.put(SearchIndexColumns.DESCRIPTION, normalize(description));
+    values.put(SearchIndexColumns.CATEGORY, normalize(category));
+    db.insert(indexTable, null, values);
+  }
+
+  /**
+   * Gets the index table of a table, null if not indexed.
+   *
+   * @param table the table
+   */
+  private static String getIndexTable(String table) {
+    if (TracksColumns.TABLE_NAME.equals(table)) {
+      return SearchIndexColumns.TRACKS_TABLE_NAME;
+    }
+    if (WaypointsColumns.TABLE_NAME.equals(table)) {
+      return SearchIndexColumns.WAYPOINTS_TABLE_NAME;
+    }
+    return null;
+  }
+}
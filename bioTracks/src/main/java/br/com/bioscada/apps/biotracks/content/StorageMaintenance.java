@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.google.android.lib.mytracks.content.StorageStatsColumns;
+
+/**
+ * Reclaims the space left by deleted data in small steps, instead of
+ * rewriting the whole database file with a VACUUM on every delete. Must not be
+ * called in a transaction.
+ */
+class StorageMaintenance {
+
+  private static final String TAG = StorageMaintenance.class.getSimpleName();
+
+  private final SQLiteDatabase db;
+
+  /**
+   * Constructor.
+   *
+   * @param db the database
+   */
+  StorageMaintenance(SQLiteDatabase db) {
+    this.db = db;
+  }
+
+  /**
+   * Gets the storage stats, a single row with the {@link StorageStatsColumns}.
+   */
+  Cursor getStats() {
+    MatrixCursor cursor = new MatrixCursor(StorageStatsColumns.COLUMNS, 1);
+    cursor.addRow(new Object[] { getPragma("page_size"), getPragma("page_count"),
+        getPragma("freelist_count"), getPragma("auto_vacuum") });
+    return cursor;
+  }
+
+  /**
+   * Reclaims free pages. The first call switches the database to incremental
+   * auto vacuum, which takes a full vacuum.
+   *
+   * @param maxPages the maximum number of free pages to reclaim
+   * @return the number of pages reclaimed
+   */
+  int reclaim(int maxPages) {
+    long freePages = getPragma("freelist_count");
+    if (getPragma("auto_vacuum") != StorageStatsColumns.AUTOVACUUM_INCREMENTAL) {
+      // The auto vacuum mode of an existing database only changes with a vacuum
+      Log.i(TAG, "Switching the database to incremental auto vacuum.");
+      db.execSQL("PRAGMA auto_vacuum = " + StorageStatsColumns.AUTOVACUUM_INCREMENTAL);
+      db.execSQL("VACUUM");
+    } else if (freePages > 0 && maxPages > 0) {
+      /*
+       * Each step of the statement frees one page, so read the whole cursor
+       * rather than calling execSQL, which only takes the first step.
+       */
+      Cursor cursor = null;
+      try {
+        cursor = db.rawQuery("PRAGMA incremental_vacuum(" + maxPages + ")", null);
+        cursor.getCount();
+      } finally {
+        if (cursor != null) {
+          cursor.close();
+        }
+      }
+    }
+    return (int) (freePages - getPragma("freelist_count"));
+  }
+
+  private long getPragma(String pragma) {
+    return DatabaseUtils.longForQuery(db, "PRAGMA " + pragma, null);
+  }
+}
@@ -30,6 +30,7 @@ import com.google.common.annotations.VisibleForTesting;
 
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import br.com.bioscada.apps.biotracks.R;
@@ -53,8 +54,8 @@ public class TrackDataHub implements DataSourceListener {
   static final int MAX_DISPLAYED_WAYPOINTS = 128;
   
   /**
-   * Target number of track points displayed by the map overlay. We may display
-   * more than this number of points.
+   * Default target number of track points displayed by a listener. We may
+   * display more than this number of points, see {@link TrackPointDecimator}.
    */
   public static final int TARGET_DISPLAYED_TRACK_POINTS = 5000;
   
@@ -79,11 +80,13 @@ public class TrackDataHub implements DataSourceListener {
   private int recordingDistanceInterval;
   private int mapType;
 
-  // Track points sampling state
-  private int numLoadedPoints;
+  // Track points sampling state, the per listener state is in the decimators
   private long firstSeenLocationId;
   private long lastSeenLocationId;
 
+  // Derives the metrics of the track points once for all the listeners
+  private DerivedTrackPointUpdater derivedTrackPointUpdater;
+
   /**
    * Creates a new instance.
    */
@@ -177,17 +180,34 @@ public class TrackDataHub implements DataSourceListener {
   }
 
   /**
-   * Registers a {@link TrackDataListener}.
+   * Registers a {@link TrackDataListener} with the default target number of
+   * points, keeping the track path.
    * 
    * @param trackDataListener the track data listener
    * @param trackDataTypes the track data types
    */
   public void registerTrackDataListener(
-      final TrackDataListener trackDataListener, final EnumSet<TrackDataType> trackDataTypes) {
+      TrackDataListener trackDataListener, EnumSet<TrackDataType> trackDataTypes) {
+    registerTrackDataListener(
+        trackDataListener, trackDataTypes, targetNumPoints, TrackPointDecimator.Shape.PATH);
+  }
+
+  /**
+   * Registers a {@link TrackDataListener}.
+   * 
+   * @param trackDataListener the track data listener
+   * @param trackDataTypes the track data types
+   * @param listenerTargetNumPoints the target number of sampled in track points
+   * @param shape the track shape to keep when sampling
+   */
+  public void registerTrackDataListener(final TrackDataListener trackDataListener,
+      final EnumSet<TrackDataType> trackDataTypes, final int listenerTargetNumPoints,
+      final TrackPointDecimator.Shape shape) {
     runInHanderThread(new Runnable() {
         @Override
       public void run() {
-        trackDataManager.registerListener(trackDataListener, trackDataTypes);
+        trackDataManager.registerListener(
+            trackDataListener, trackDataTypes, listenerTargetNumPoints, shape);
         if (dataSourceManager != null) {
           dataSourceManager.updateListeners(trackDataManager.getRegisteredTrackDataTypes());
           loadDataForListener(trackDataListener);
@@ -265,9 +285,7 @@ public class TrackDataHub implements DataSourceListener {
     runInHanderThread(new Runnable() {
         @Override
       public void run() {
-        notifyTrackPointsTableUpdate(
-            true, trackDataManager.getListeners(TrackDataType.SAMPLED_IN_TRACK_POINTS_TABLE),
-            trackDataManager.getListeners(TrackDataType.SAMPLED_OUT_TRACK_POINTS_TABLE));
+        notifyTrackPointsTableUpdate(true, getTrackPointsListeners());
       }
     });
   }
@@ -326,9 +344,11 @@ public class TrackDataHub implements DataSourceListener {
         }
         if (key == null || key.equals(
             PreferencesUtils.getKey(context, R.string.recording_distance_interval_key))) {
-          recordingDistanceInterval = PreferencesUtils.getInt(
+          int value = PreferencesUtils.getInt(
               context, R.string.recording_distance_interval_key,
               PreferencesUtils.RECORDING_DISTANCE_INTERVAL_DEFAULT);
+          boolean changed = value != recordingDistanceInterval;
+          recordingDistanceInterval = value;
           if (key != null) {
             for (TrackDataListener trackDataListener :
                 trackDataManager.getListeners(TrackDataType.PREFERENCE)) {
@@ -336,6 +356,10 @@ public class TrackDataHub implements DataSourceListener {
                 loadDataForListener(trackDataListener);
               }
             }
+            if (changed) {
+              // The derived track points depend on the recording distance interval
+              reloadTrackPoints();
+            }
           }
         }
         if (key == null || key.equals(PreferencesUtils.getKey(context, R.string.map_type_key))) {
@@ -374,16 +398,26 @@ public class TrackDataHub implements DataSourceListener {
 
     notifyTracksTableUpdate(trackDataManager.getListeners(TrackDataType.TRACKS_TABLE));
 
-    for (TrackDataListener listener :
-        trackDataManager.getListeners(TrackDataType.SAMPLED_IN_TRACK_POINTS_TABLE)) {
+    for (TrackDataListener listener : getTrackPointsListeners()) {
       listener.clearTrackPoints();
     }
-    notifyTrackPointsTableUpdate(true,
-        trackDataManager.getListeners(TrackDataType.SAMPLED_IN_TRACK_POINTS_TABLE),
-        trackDataManager.getListeners(TrackDataType.SAMPLED_OUT_TRACK_POINTS_TABLE));
+    notifyTrackPointsTableUpdate(true, getTrackPointsListeners());
     notifyWaypointsTableUpdate(trackDataManager.getListeners(TrackDataType.WAYPOINTS_TABLE));
   }
 
+  /**
+   * Reloads the track points for all listeners. To be run in the
+   * {@link #handler} thread.
+   */
+  private void reloadTrackPoints() {
+    resetSamplingState();
+    Set<TrackDataListener> trackDataListeners = getTrackPointsListeners();
+    for (TrackDataListener trackDataListener : trackDataListeners) {
+      trackDataListener.clearTrackPoints();
+    }
+    notifyTrackPointsTableUpdate(true, trackDataListeners);
+  }
+
   /**
    * Loads data for a listener. To be run in the {@link #handler} thread.
    * 
@@ -409,14 +443,12 @@ public class TrackDataHub implements DataSourceListener {
     boolean hasSampledOut = trackDataTypes.contains(TrackDataType.SAMPLED_OUT_TRACK_POINTS_TABLE);
     if (hasSampledIn || hasSampledOut) {
       trackDataListener.clearTrackPoints();
+      trackDataManager.getTrackPointDecimator(trackDataListener).reset();
       boolean isOnlyListener = trackDataManager.getNumberOfListeners() == 1;
       if (isOnlyListener) {
         resetSamplingState();
       }
-      Set<TrackDataListener> sampledInListeners = trackDataListeners;
-      Set<TrackDataListener> sampledOutListeners = hasSampledOut ? trackDataListeners
-          : Collections.<TrackDataListener> emptySet();
-      notifyTrackPointsTableUpdate(isOnlyListener, sampledInListeners, sampledOutListeners);
+      notifyTrackPointsTableUpdate(isOnlyListener, trackDataListeners);
     }
 
     if (trackDataTypes.contains(TrackDataType.WAYPOINTS_TABLE)) {
@@ -482,35 +514,34 @@ public class TrackDataHub implements DataSourceListener {
   }
 
   /**
-   * Notifies track points table update. To be run in the {@link #handler}
-   * thread.
+   * Notifies track points table update. Each listener gets the new track points
+   * through its {@link TrackPointDecimator}, so a growing track is never
+   * reloaded. The metrics of each track point are derived once, before the
+   * decimators, and shared by all the listeners. To be run in the
+   * {@link #handler} thread.
    * 
    * @param updateSamplingState true to update the sampling state
-   * @param sampledInListeners the sampled-in listeners
-   * @param sampledOutListeners the sampled-out listeners
+   * @param trackDataListeners the sampled-in and sampled-out listeners
    */
-  private void notifyTrackPointsTableUpdate(boolean updateSamplingState,
-      Set<TrackDataListener> sampledInListeners, Set<TrackDataListener> sampledOutListeners) {
-    if (sampledInListeners.isEmpty() && sampledOutListeners.isEmpty()) {
+  private void notifyTrackPointsTableUpdate(
+      boolean updateSamplingState, Set<TrackDataListener> trackDataListeners) {
+    if (trackDataListeners.isEmpty()) {
       return;
     }
-    if (updateSamplingState && numLoadedPoints >= targetNumPoints) {
-      // Reload and resample the track at a lower frequency.
-      Log.i(TAG, "Resampling track after " + numLoadedPoints + " points.");
-      resetSamplingState();
-      for (TrackDataListener listener : sampledInListeners) {
-        listener.clearTrackPoints();
-      }
-    }
 
-    int localNumLoadedPoints = updateSamplingState ? numLoadedPoints : 0;
     long localFirstSeenLocationId = updateSamplingState ? firstSeenLocationId : -1L;
     long localLastSeenLocationId = updateSamplingState ? lastSeenLocationId : -1L;
     long maxPointId = updateSamplingState ? -1L : lastSeenLocationId;
 
+    // Reloading for a single listener starts from the first point again
+    DerivedTrackPointUpdater localDerivedTrackPointUpdater = updateSamplingState
+        ? derivedTrackPointUpdater : null;
+    if (localDerivedTrackPointUpdater == null) {
+      localDerivedTrackPointUpdater = newDerivedTrackPointUpdater();
+    }
+
     long lastTrackPointId = myTracksProviderUtils.getLastTrackPointId(selectedTrackId);
-    int samplingFrequency = -1;
-    boolean includeNextPoint = false;
+    boolean isRecording = isSelectedTrackRecording();
     MyTracksProviderUtils.LocationIterator locationIterator = null;
 
     try {
@@ -530,33 +561,24 @@ public class TrackDataHub implements DataSourceListener {
           localFirstSeenLocationId = locationId;
         }
 
-        if (samplingFrequency == -1) {
-          long numTotalPoints = Math.max(0L, lastTrackPointId - localFirstSeenLocationId);
-          samplingFrequency = 1 + (int) (numTotalPoints / targetNumPoints);
-        }
+        boolean isValid = LocationUtils.isValidLocation(location);
+        DerivedTrackPoint trackPoint = localDerivedTrackPointUpdater.addLocation(location);
 
-        if (!LocationUtils.isValidLocation(location)) {
-          // TODO: also include the last valid point before a split
-          for (TrackDataListener trackDataListener : sampledInListeners) {
-            trackDataListener.onSegmentSplit(location);
-            includeNextPoint = true;
+        // Also include the last point if the selected track is not recording.
+        boolean isLast = locationId == lastTrackPointId && !isRecording;
+        for (TrackDataListener trackDataListener : trackDataListeners) {
+          TrackPointDecimator trackPointDecimator = trackDataManager.getTrackPointDecimator(
+              trackDataListener);
+          if (!trackPointDecimator.isStarted()) {
+            trackPointDecimator.start(Math.max(0L, lastTrackPointId - localFirstSeenLocationId));
           }
-        } else {
-          // Also include the last point if the selected track is not recording.
-          if (includeNextPoint || (localNumLoadedPoints % samplingFrequency == 0)
-              || (locationId == lastTrackPointId && !isSelectedTrackRecording())) {
-            includeNextPoint = false;
-            for (TrackDataListener trackDataListener : sampledInListeners) {
-              trackDataListener.onSampledInTrackPoint(location);
-            }
+          if (isValid) {
+            trackPointDecimator.addTrackPoint(trackPoint, isLast);
           } else {
-            for (TrackDataListener trackDataListener : sampledOutListeners) {
-              trackDataListener.onSampledOutTrackPoint(location);
-            }
+            // TODO: also include the last valid point before a split
+            trackPointDecimator.addSegmentSplit(trackPoint);
           }
         }
-
-        localNumLoadedPoints++;
         localLastSeenLocationId = locationId;
       }
     } finally {
@@ -566,23 +588,50 @@ public class TrackDataHub implements DataSourceListener {
     }
 
     if (updateSamplingState) {
-      numLoadedPoints = localNumLoadedPoints;
       firstSeenLocationId = localFirstSeenLocationId;
       lastSeenLocationId = localLastSeenLocationId;
+      derivedTrackPointUpdater = localDerivedTrackPointUpdater;
     }
 
-    for (TrackDataListener listener : sampledInListeners) {
-      listener.onNewTrackPointsDone();
+    for (TrackDataListener trackDataListener : trackDataListeners) {
+      if (!isRecording) {
+        // No more points are coming, send the pending ones
+        trackDataManager.getTrackPointDecimator(trackDataListener).flush();
+      }
+      trackDataListener.onNewTrackPointsDone();
     }
   }
 
+  /**
+   * Gets the listeners of the sampled-in or the sampled-out track points.
+   */
+  private Set<TrackDataListener> getTrackPointsListeners() {
+    Set<TrackDataListener> trackDataListeners = new LinkedHashSet<TrackDataListener>(
+        trackDataManager.getListeners(TrackDataType.SAMPLED_IN_TRACK_POINTS_TABLE));
+    trackDataListeners.addAll(
+        trackDataManager.getListeners(TrackDataType.SAMPLED_OUT_TRACK_POINTS_TABLE));
+    return trackDataListeners;
+  }
+
+  /**
+   * Creates a {@link DerivedTrackPointUpdater} for the selected track, starting
+   * from its first track point.
+   */
+  private DerivedTrackPointUpdater newDerivedTrackPointUpdater() {
+    Track track = myTracksProviderUtils.getTrack(selectedTrackId);
+    long startTime = track != null && track.getTripStatistics() != null
+        ? track.getTripStatistics().getStartTime() : -1L;
+    return new DerivedTrackPointUpdater(startTime, recordingDistanceInterval);
+  }
+
   /**
    * Resets the track points sampling states.
    */
   private void resetSamplingState() {
-    numLoadedPoints = 0;
     firstSeenLocationId = -1L;
     lastSeenLocationId = -1L;
+    derivedTrackPointUpdater = null;
+    trackDataManager.resetTrackPointDecimators();
   }
 
   /**
@@ -16,8 +16,6 @@
 
 package br.com.bioscada.apps.biotracks.content;
 
-import android.location.Location;
-
 import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.content.Waypoint;
 
@@ -50,29 +48,30 @@ public interface TrackDataListener {
   public void clearTrackPoints();
 
   /**
-   * Called when a sampled in track point is read.
+   * Called when a sampled in track point is read. The metrics of the track
+   * point are computed once for all the listeners.
    * 
-   * @param location the location
+   * @param trackPoint the track point
    */
-  public void onSampledInTrackPoint(Location location);
+  public void onSampledInTrackPoint(DerivedTrackPoint trackPoint);
 
   /**
    * Called when a sampled out track point is read.
    * 
-   * @param location the location
+   * @param trackPoint the track point
    */
-  public void onSampledOutTrackPoint(Location location);
+  public void onSampledOutTrackPoint(DerivedTrackPoint trackPoint);
 
   /**
    * Called when an invalid track point representing a segment split is read.
    */
-  public void onSegmentSplit(Location location);
+  public void onSegmentSplit(DerivedTrackPoint trackPoint);
 
   /**
    * Called when finish sending new track points. This gets called after every
-   * batch of calls to {@link #onSampledInTrackPoint(Location)},
-   * {@link #onSampledOutTrackPoint(Location)} and
-   * {@link #onSegmentSplit(Location)}.
+   * batch of calls to {@link #onSampledInTrackPoint(DerivedTrackPoint)},
+   * {@link #onSampledOutTrackPoint(DerivedTrackPoint)} and
+   * {@link #onSegmentSplit(DerivedTrackPoint)}.
    */
   public void onNewTrackPointsDone();
 
@@ -39,6 +39,10 @@ public class TrackDataManager {
   private final Map<TrackDataListener, EnumSet<TrackDataType>>
       listenerToTypesMap = new HashMap<TrackDataListener, EnumSet<TrackDataType>>();
 
+  // Map of listener to its track point decimator
+  private final Map<TrackDataListener, TrackPointDecimator>
+      listenerToDecimatorMap = new HashMap<TrackDataListener, TrackPointDecimator>();
+
   // Map of track data type to listeners
   private final Map<TrackDataType, Set<TrackDataListener>>
       typeToListenersMap = new EnumMap<TrackDataType, Set<TrackDataListener>>(TrackDataType.class);
@@ -54,14 +58,18 @@ public class TrackDataManager {
    * 
    * @param listener the listener
    * @param trackDataTypes the track data types the listener is interested
+   * @param targetNumPoints the target number of sampled in track points
+   * @param shape the track shape to keep when sampling
    */
-  public void registerListener(
-      TrackDataListener listener, EnumSet<TrackDataType> trackDataTypes) {
+  public void registerListener(TrackDataListener listener, EnumSet<TrackDataType> trackDataTypes,
+      int targetNumPoints, TrackPointDecimator.Shape shape) {
     if (listenerToTypesMap.containsKey(listener)) {
       Log.w(TAG, "Tried to register a listener that is already registered. Ignore.");
       return;
     }
     listenerToTypesMap.put(listener, trackDataTypes);
+    listenerToDecimatorMap.put(listener, new TrackPointDecimator(listener, targetNumPoints, shape,
+        trackDataTypes.contains(TrackDataType.SAMPLED_OUT_TRACK_POINTS_TABLE)));
     for (TrackDataType trackDataType : trackDataTypes) {
       typeToListenersMap.get(trackDataType).add(listener);
     }
@@ -78,6 +86,7 @@ public class TrackDataManager {
       Log.w(TAG, "Tried to unregister a listener that is not registered. Ignore.");
       return;
     }
+    listenerToDecimatorMap.remove(listener);
 
     // Remove the listener from the typeToListenersMap
     for (TrackDataType trackDataType : removedTypes) {
@@ -101,6 +110,24 @@ public class TrackDataManager {
     return listenerToTypesMap.get(listener);
   }
 
+  /**
+   * Gets the track point decimator for a listener.
+   * 
+   * @param listener the listener
+   */
+  public TrackPointDecimator getTrackPointDecimator(TrackDataListener listener) {
+    return listenerToDecimatorMap.get(listener);
+  }
+
+  /**
+   * Resets the track point decimators of all the listeners.
+   */
+  public void resetTrackPointDecimators() {
+    for (TrackPointDecimator trackPointDecimator : listenerToDecimatorMap.values()) {
+      trackPointDecimator.reset();
+    }
+  }
+
   /**
    * Gets the listeners for a {@link TrackDataType}.
    * 
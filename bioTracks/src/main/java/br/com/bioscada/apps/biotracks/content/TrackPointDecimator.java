@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import android.location.Location;
+
+import java.util.ArrayList;
+
+/**
+ * Decimates the track points sent to a {@link TrackDataListener}, keeping the
+ * shape of the track.
+ * <p>
+ * The track points are grouped in buckets of stride points. From each bucket,
+ * the point forming the largest triangle with the previous sampled in point
+ * and the last point of the bucket is sampled in, as in
+ * Largest-Triangle-Three-Buckets, so that corners and peaks are kept. The
+ * points of a bucket are sent in order once the bucket is complete.
+ * <p>
+ * The stride is set from the number of points of the track when loading, and
+ * doubles each time a quarter of the target number of points is sampled in past
+ * the target, so that a growing track never needs to be reloaded.
+ */
+public class TrackPointDecimator {
+
+  /**
+   * The shape to keep.
+   */
+  public enum Shape {
+    PATH, // the latitude and longitude, for maps
+    PROFILE // the elevation over time, for charts
+  }
+
+  private final TrackDataListener trackDataListener;
+  private final int targetNumPoints;
+  private final Shape shape;
+  private final boolean sendSampledOut;
+
+  private final ArrayList<DerivedTrackPoint> bucket = new ArrayList<DerivedTrackPoint>();
+  private int stride;
+  private boolean started;
+  private boolean includeNextPoint;
+  private Location lastSampledIn;
+  private int numSampledIn;
+  private int numSampledInAtStride;
+
+  /**
+   * Constructor.
+   *
+   * @param trackDataListener the track data listener
+   * @param targetNumPoints the target number of sampled in points
+   * @param shape the shape to keep
+   * @param sendSampledOut true to send the sampled out points
+   */
+  public TrackPointDecimator(TrackDataListener trackDataListener, int targetNumPoints,
+      Shape shape, boolean sendSampledOut) {
+    this.trackDataListener = trackDataListener;
+    this.targetNumPoints = Math.max(2, targetNumPoints);
+    this.shape = shape;
+    this.sendSampledOut = sendSampledOut;
+    reset();
+  }
+
+  /**
+   * Resets. Pending points are dropped.
+   */
+  public void reset() {
+    bucket.clear();
+    stride = 1;
+    started = false;
+    includeNextPoint = true;
+    lastSampledIn = null;
+    numSampledIn = 0;
+    numSampledInAtStride = 0;
+  }
+
+  /**
+   * Returns true if started.
+   */
+  public boolean isStarted() {
+    return started;
+  }
+
+  /**
+   * Starts sampling.
+   *
+   * @param numTotalPoints the expected number of points to sample
+   */
+  public void start(long numTotalPoints) {
+    started = true;
+    stride = 1 + (int) (numTotalPoints / targetNumPoints);
+  }
+
+  /**
+   * Adds a valid track point.
+   *
+   * @param trackPoint the track point
+   * @param isLast true if the last point of the track, always sampled in
+   */
+  public void addTrackPoint(DerivedTrackPoint trackPoint, boolean isLast) {
+    if (includeNextPoint) {
+      flush();
+      includeNextPoint = false;
+      sampleIn(trackPoint);
+      return;
+    }
+    bucket.add(trackPoint);
+    if (isLast || bucket.size() >= stride) {
+      send(getLargestTriangleIndex(), isLast);
+    }
+  }
+
+  /**
+   * Adds an invalid track point representing a segment split. The next point
+   * is sampled in.
+   *
+   * @param trackPoint the track point
+   */
+  public void addSegmentSplit(DerivedTrackPoint trackPoint) {
+    flush();
+    trackDataListener.onSegmentSplit(trackPoint);
+    includeNextPoint = true;
+  }
+
+  /**
+   * Sends the pending points.
+   */
+  public void flush() {
+    if (!bucket.isEmpty()) {
+      send(getLargestTriangleIndex(), false);
+    }
+  }
+
+  /**
+   * Gets the index of the bucket point forming the largest triangle with the
+   * last sampled in point and the last bucket point. Returns the last bucket
+   * point for a straight line.
+   */
+  private int getLargestTriangleIndex() {
+    int last = bucket.size() - 1;
+    if (lastSampledIn == null || last == 0) {
+      return last;
+    }
+    double cosLatitude = Math.cos(Math.toRadians(lastSampledIn.getLatitude()));
+    double endX = getX(bucket.get(last).getLocation(), cosLatitude);
+    double endY = getY(bucket.get(last).getLocation());
+    int index = last;
+    double maxArea = 0;
+    for (int i = 0; i < last; i++) {
+      Location location = bucket.get(i).getLocation();
+      double area = Math.abs(getX(location, cosLatitude) * endY - endX * getY(location));
+      if (area > maxArea) {
+        maxArea = area;
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Gets the x coordinate relative to the last sampled in point.
+   */
+  private double getX(Location location, double cosLatitude) {
+    if (shape == Shape.PATH) {
+      return (location.getLongitude() - lastSampledIn.getLongitude()) * cosLatitude;
+    }
+    return location.getTime() - lastSampledIn.getTime();
+  }
+
+  /**
+   * Gets the y coordinate relative to the last sampled in point.
+   */
+  private double getY(Location location) {
+    if (shape == Shape.PATH) {
+      return location.getLatitude() - lastSampledIn.getLatitude();
+    }
+    return location.getAltitude() - lastSampledIn.getAltitude();
+  }
+
+  /**
+   * Sends the bucket points in order and clears the bucket.
+   *
+   * @param sampledInIndex the index of the sampled in point
+   * @param includeLast true to also sample in the last point
+   */
+  private void send(int sampledInIndex, boolean includeLast) {
+    int last = bucket.size() - 1;
+    for (int i = 0; i <= last; i++) {
+      DerivedTrackPoint trackPoint = bucket.get(i);
+      if (i == sampledInIndex || (includeLast && i == last)) {
+        sampleIn(trackPoint);
+      } else if (sendSampledOut) {
+        trackDataListener.onSampledOutTrackPoint(trackPoint);
+      }
+    }
+    bucket.clear();
+  }
+
+  private void sampleIn(DerivedTrackPoint trackPoint) {
+    trackDataListener.onSampledInTrackPoint(trackPoint);
+    lastSampledIn = trackPoint.getLocation();
+    numSampledIn++;
+    numSampledInAtStride++;
+    if (numSampledIn >= targetNumPoints && numSampledInAtStride >= targetNumPoints / 4) {
+      stride *= 2;
+      numSampledInAtStride = 0;
+    }
+  }
+}
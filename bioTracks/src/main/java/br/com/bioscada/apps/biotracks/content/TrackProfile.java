@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
+import com.google.android.lib.mytracks.content.Track;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The profile of a track: the cumulative distance, the smoothed elevation, the
+ * smoothed speed and the sensor series, sampled at a few fixed resolutions.
+ * Built once from the track points, see {@link TrackProfileCache}.
+ */
+public class TrackProfile {
+
+  // The approximate number of samples of the series
+  public static final int[] RESOLUTIONS = { 100, 250, 1000 };
+
+  private static final int MAGIC = 0x54505246;
+  private static final int VERSION = 1;
+
+  /**
+   * A series of samples, taken every n track points and at the last one.
+   */
+  public static class Series {
+    public final float[] distances; // cumulative distance in meters
+    public final float[] elevations; // smoothed elevation in meters
+    public final float[] speeds; // smoothed speed in meters per second
+    public final float[] heartRates; // heart rate in bpm, NaN if none
+    public final float[] cadences; // cadence in rpm, NaN if none
+    public final float[] powers; // power in watts, NaN if none
+
+    private Series(float[] distances, float[] elevations, float[] speeds, float[] heartRates,
+        float[] cadences, float[] powers) {
+      this.distances = distances;
+      this.elevations = elevations;
+      this.speeds = speeds;
+      this.heartRates = heartRates;
+      this.cadences = cadences;
+      this.powers = powers;
+    }
+
+    /**
+     * Gets the number of samples.
+     */
+    public int size() {
+      return distances.length;
+    }
+  }
+
+  /**
+   * Builder of a {@link Series}.
+   */
+  private static class SeriesBuilder {
+    private final int frequency;
+    private float[][] values;
+    private int size;
+
+    SeriesBuilder(int frequency, int capacity) {
+      this.frequency = frequency;
+      this.values = new float[6][Math.max(capacity, 1)];
+    }
+
+    void add(int index, DerivedTrackPoint trackPoint) {
+      if (index % frequency == 0) {
+        append(trackPoint);
+      }
+    }
+
+    void append(DerivedTrackPoint trackPoint) {
+      if (size == values[0].length) {
+        for (int i = 0; i < values.length; i++) {
+          values[i] = Arrays.copyOf(values[i], size * 2);
+        }
+      }
+      values[0][size] = (float) trackPoint.getTotalDistance();
+      values[1][size] = (float) trackPoint.getElevation();
+      values[2][size] = (float) trackPoint.getSpeed();
+      values[3][size] = (float) trackPoint.getHeartRate();
+      values[4][size] = (float) trackPoint.getCadence();
+      values[5][size] = (float) trackPoint.getPower();
+      size++;
+    }
+
+    Series build() {
+      return new Series(Arrays.copyOf(values[0], size), Arrays.copyOf(values[1], size),
+          Arrays.copyOf(values[2], size), Arrays.copyOf(values[3], size),
+          Arrays.copyOf(values[4], size), Arrays.copyOf(values[5], size));
+    }
+  }
+
+  private final long stopId;
+  private final int numberOfPoints;
+  private final int recordingDistanceInterval;
+  private final Series[] series;
+
+  private TrackProfile(
+      long stopId, int numberOfPoints, int recordingDistanceInterval, Series[] series) {
+    this.stopId = stopId;
+    this.numberOfPoints = numberOfPoints;
+    this.recordingDistanceInterval = recordingDistanceInterval;
+    this.series = series;
+  }
+
+  /**
+   * Gets the series of the smallest resolution at least as fine as a
+   * resolution, or of the finest resolution.
+   *
+   * @param resolution the resolution
+   */
+  public Series getSeries(int resolution) {
+    for (int i = 0; i < RESOLUTIONS.length; i++) {
+      if (RESOLUTIONS[i] >= resolution) {
+        return series[i];
+      }
+    }
+    return series[RESOLUTIONS.length - 1];
+  }
+
+  /**
+   * Returns true if the profile was built from the current points of a track.
+   *
+   * @param track the track
+   * @param interval the recording distance interval
+   */
+  boolean isValid(Track track, int interval) {
+    return stopId == track.getStopId() && numberOfPoints == track.getNumberOfPoints()
+        && recordingDistanceInterval == interval;
+  }
+
+  /**
+   * Builds the profile of a track, reading all its points.
+   *
+   * @param myTracksProviderUtils the my tracks provider utils
+   * @param track the track
+   * @param interval the recording distance interval
+   */
+  static TrackProfile build(
+      MyTracksProviderUtils myTracksProviderUtils, Track track, int interval) {
+    int numberOfPoints = track.getNumberOfPoints();
+    SeriesBuilder[] builders = new SeriesBuilder[RESOLUTIONS.length];
+    for (int i = 0; i < RESOLUTIONS.length; i++) {
+      int frequency = Math.max(1, (int) (numberOfPoints / (double) RESOLUTIONS[i]));
+      builders[i] = new SeriesBuilder(frequency, numberOfPoints / frequency + 2);
+    }
+    DerivedTrackPointUpdater derivedTrackPointUpdater = new DerivedTrackPointUpdater(
+        track.getTripStatistics().getStartTime(), interval);
+    DerivedTrackPoint lastTrackPoint = null;
+    int index = 0;
+    MyTracksProviderUtils.LocationIterator locationIterator = null;
+    try {
+      locationIterator = myTracksProviderUtils.getTrackPointLocationIterator(
+          track.getId(), -1L, false, MyTracksProviderUtils.DEFAULT_LOCATION_FACTORY);
+      while (locationIterator.hasNext()) {
+        lastTrackPoint = derivedTrackPointUpdater.addLocation(locationIterator.next());
+        for (SeriesBuilder builder : builders) {
+          builder.add(index, lastTrackPoint);
+        }
+        index++;
+      }
+    } finally {
+      if (locationIterator != null) {
+        locationIterator.close();
+      }
+    }
+
+    Series[] series = new Series[RESOLUTIONS.length];
+    for (int i = 0; i < RESOLUTIONS.length; i++) {
+      if (lastTrackPoint != null) {
+        builders[i].append(lastTrackPoint);
+      }
+      series[i] = builders[i].build();
+    }
+    return new TrackProfile(track.getStopId(), numberOfPoints, interval, series);
+  }
+
+  /**
+   * Writes the profile.
+   *
+   * @param outputStream the output stream
+   */
+  void write(DataOutputStream outputStream) throws IOException {
+    outputStream.writeInt(MAGIC);
+    outputStream.writeInt(VERSION);
+    outputStream.writeLong(stopId);
+    outputStream.writeInt(numberOfPoints);
+    outputStream.writeInt(recordingDistanceInterval);
+    outputStream.writeInt(series.length);
+    for (Series s : series) {
+      outputStream.writeInt(s.size());
+      for (float[] values : new float[][] {
+          s.distances, s.elevations, s.speeds, s.heartRates, s.cadences, s.powers }) {
+        for (float value : values) {
+          outputStream.writeFloat(value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads a profile, null if not of this version.
+   *
+   * @param inputStream the input stream
+   */
+  static TrackProfile read(DataInputStream inputStream) throws IOException {
+    if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+      return null;
+    }
+    long stopId = inputStream.readLong();
+    int numberOfPoints = inputStream.readInt();
+    int interval = inputStream.readInt();
+    if (inputStream.readInt() != RESOLUTIONS.length) {
+      return null;
+    }
+    Series[] series = new Series[RESOLUTIONS.length];
+    for (int i = 0; i < series.length; i++) {
+      int size = inputStream.readInt();
+      float[][] values = new float[6][size];
+      for (float[] array : values) {
+        for (int j = 0; j < size; j++) {
+          array[j] = inputStream.readFloat();
+        }
+      }
+      series[i] = new Series(values[0], values[1], values[2], values[3], values[4], values[5]);
+    }
+    return new TrackProfile(stopId, numberOfPoints, interval, series);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
+import com.google.android.lib.mytracks.content.Track;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import br.com.bioscada.apps.biotracks.R;
+import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
+
+/**
+ * Cache of the {@link TrackProfile} of the finished tracks, one file per track
+ * next to the database. A profile is built when a recording ends or a track is
+ * imported, rebuilt when the track points or the recording distance interval
+ * change, and deleted with the track.
+ */
+public class TrackProfileCache {
+
+  private static final String TAG = TrackProfileCache.class.getSimpleName();
+
+  private static final String DIRECTORY_NAME = "profiles";
+  private static final String FILE_EXTENSION = ".profile";
+
+  private TrackProfileCache() {}
+
+  /**
+   * Gets the profile of a track, building it if missing or stale. Do not call
+   * from the UI thread.
+   *
+   * @param context the context
+   * @param myTracksProviderUtils the my tracks provider utils
+   * @param track the track
+   */
+  public static TrackProfile get(
+      Context context, MyTracksProviderUtils myTracksProviderUtils, Track track) {
+    int interval = getRecordingDistanceInterval(context);
+    TrackProfile trackProfile = read(context, track.getId());
+    if (trackProfile != null && trackProfile.isValid(track, interval)) {
+      return trackProfile;
+    }
+    trackProfile = TrackProfile.build(myTracksProviderUtils, track, interval);
+
+    // Only store the profiles of the finished tracks
+    long recordingTrackId = PreferencesUtils.getLong(context, R.string.recording_track_id_key);
+    if (track.getId() != recordingTrackId) {
+      write(context, track.getId(), trackProfile);
+    }
+    return trackProfile;
+  }
+
+  /**
+   * Builds and stores the profile of a finished track. Do not call from the UI
+   * thread.
+   *
+   * @param context the context
+   * @param myTracksProviderUtils the my tracks provider utils
+   * @param track the track
+   */
+  public static void build(
+      Context context, MyTracksProviderUtils myTracksProviderUtils, Track track) {
+    write(context, track.getId(), TrackProfile.build(
+        myTracksProviderUtils, track, getRecordingDistanceInterval(context)));
+  }
+
+  /**
+   * Deletes the profile of a track.
+   *
+   * @param context the context
+   * @param trackId the track id
+   */
+  static void invalidate(Context context, long trackId) {
+    File file = getFile(context, trackId);
+    if (file.exists() && !file.delete()) {
+      Log.w(TAG, "Unable to delete " + file);
+    }
+  }
+
+  /**
+   * Deletes the profiles of all the tracks.
+   *
+   * @param context the context
+   */
+  static void clear(Context context) {
+    File[] files = getDirectory(context).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (!file.delete()) {
+        Log.w(TAG, "Unable to delete " + file);
+      }
+    }
+  }
+
+  private static TrackProfile read(Context context, long trackId) {
+    File file = getFile(context, trackId);
+    if (!file.exists()) {
+      return null;
+    }
+    DataInputStream inputStream = null;
+    try {
+      inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      return TrackProfile.read(inputStream);
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to read " + file, e);
+      return null;
+    } finally {
+      close(inputStream);
+    }
+  }
+
+  private static void write(Context context, long trackId, TrackProfile trackProfile) {
+    File directory = getDirectory(context);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Log.w(TAG, "Unable to create " + directory);
+      return;
+    }
+
+    // Write to a temporary file, then rename, so readers never see a partial file
+    File file = getFile(context, trackId);
+    File tempFile = new File(directory, file.getName() + ".tmp");
+    DataOutputStream outputStream = null;
+    try {
+      outputStream = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tempFile)));
+      trackProfile.write(outputStream);
+      outputStream.close();
+      outputStream = null;
+      if (!tempFile.renameTo(file)) {
+        Log.w(TAG, "Unable to rename " + tempFile);
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to write " + tempFile, e);
+    } finally {
+      close(outputStream);
+      if (tempFile.exists()) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  private static void close(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to close", e);
+      }
+    }
+  }
+
+  private static int getRecordingDistanceInterval(Context context) {
+    return PreferencesUtils.getInt(context, R.string.recording_distance_interval_key,
+        PreferencesUtils.RECORDING_DISTANCE_INTERVAL_DEFAULT);
+  }
+
+  private static File getDirectory(Context context) {
+    return new File(context.getDatabasePath(MyTracksProvider.DATABASE_NAME).getParentFile(),
+        DIRECTORY_NAME);
+  }
+
+  private static File getFile(Context context, long trackId) {
+    return new File(getDirectory(context), trackId + FILE_EXTENSION);
+  }
+}
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.content;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.google.android.lib.mytracks.content.TrackStatsColumns;
+import com.google.android.lib.mytracks.content.TracksColumns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the {@link TrackStatsColumns} rollup of the tracks table. A track
+ * is counted in the all time, year, month and week rows of its activity type
+ * and of all the activity types.
+ * <p>
+ * On a track change, the sums of the rows of the track are updated with the
+ * difference between the old and the new track statistics, and the min and
+ * max are merged with the new track statistics. A row is rescanned from the
+ * tracks table only when a track reaching one of its min or max is deleted or
+ * no longer reaches it. Must be called in the transaction of the track change.
+ * <p>
+ * The periods are in the local time zone and start on the first day of week of
+ * the locale. A track is looked up in the row containing its start time, not by
+ * the period start, so the rows stay consistent until {@link #rebuild()} is
+ * called for a new time zone or locale.
+ */
+class TrackStatsRollup {
+
+  // The summed columns
+  private static final String[] SUM_COLUMNS = { TracksColumns.TOTALDISTANCE,
+      TracksColumns.TOTALTIME, TracksColumns.MOVINGTIME, TracksColumns.ELEVATIONGAIN,
+      TracksColumns.CALORIE };
+
+  // The min columns, the start time first
+  private static final String[] MIN_COLUMNS = { TracksColumns.STARTTIME, TracksColumns.MINLAT,
+      TracksColumns.MINLON, TracksColumns.MINELEVATION, TracksColumns.MINGRADE };
+
+  // The max columns
+  private static final String[] MAX_COLUMNS = { TracksColumns.STOPTIME, TracksColumns.MAXLAT,
+      TracksColumns.MAXLON, TracksColumns.MAXSPEED, TracksColumns.MAXELEVATION,
+      TracksColumns.MAXGRADE };
+
+  // The id, the category, then the aggregated columns
+  private static final String[] TRACK_PROJECTION = concat(
+      new String[] { TracksColumns._ID, TracksColumns.CATEGORY });
+
+  // The id, the number of tracks, the aggregated columns, then the period bounds
+  private static final String[] ROW_PROJECTION = concat(
+      new String[] { TrackStatsColumns._ID, TrackStatsColumns.NUMTRACKS },
+      TrackStatsColumns.PERIODSTART, TrackStatsColumns.PERIODEND);
+
+  private static final int[] PERIODS = { TrackStatsColumns.PERIOD_ALL,
+      TrackStatsColumns.PERIOD_YEAR, TrackStatsColumns.PERIOD_MONTH,
+      TrackStatsColumns.PERIOD_WEEK };
+
+  /**
+   * The aggregated statistics of a track or of a row.
+   */
+  static class Stats {
+
+    // The track or row id, -1L if not in the database
+    long id = -1L;
+    int numTracks;
+    final double[] sums = new double[SUM_COLUMNS.length];
+    final double[] mins = new double[MIN_COLUMNS.length];
+    final double[] maxs = new double[MAX_COLUMNS.length];
+
+    Stats() {
+      Arrays.fill(mins, Double.POSITIVE_INFINITY);
+      Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+    }
+
+    void add(Stats other) {
+      numTracks += other.numTracks;
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] += other.sums[i];
+      }
+      for (int i = 0; i < mins.length; i++) {
+        mins[i] = Math.min(mins[i], other.mins[i]);
+      }
+      for (int i = 0; i < maxs.length; i++) {
+        maxs[i] = Math.max(maxs[i], other.maxs[i]);
+      }
+    }
+
+    /**
+     * Subtracts the number of tracks and the sums of other statistics. The min
+     * and max are left unchanged.
+     */
+    void subtract(Stats other) {
+      numTracks -= other.numTracks;
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] -= other.sums[i];
+      }
+    }
+
+    /**
+     * Returns true if these statistics reach at least one of the known min or
+     * max of other statistics.
+     */
+    boolean reachesAny(Stats other) {
+      for (int i = 0; i < mins.length; i++) {
+        if (mins[i] <= other.mins[i] && !Double.isInfinite(mins[i])) {
+          return true;
+        }
+      }
+      for (int i = 0; i < maxs.length; i++) {
+        if (maxs[i] >= other.maxs[i] && !Double.isInfinite(maxs[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns true if these statistics reach all the min and max of other
+     * statistics.
+     */
+    boolean reachesAll(Stats other) {
+      for (int i = 0; i < mins.length; i++) {
+        if (mins[i] > other.mins[i]) {
+          return false;
+        }
+      }
+      for (int i = 0; i < maxs.length; i++) {
+        if (maxs[i] < other.maxs[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * The aggregated statistics of a track.
+   */
+  static class TrackStats extends Stats {
+
+    // The category, empty if none
+    String category;
+
+    // The start time, -1L if not started
+    long startTime;
+  }
+
+  /**
+   * A row of the track stats table.
+   */
+  private static class Row {
+
+    // The category, null for all the activity types
+    final String category;
+    final int period;
+
+    // A time in the period, the start time of the track
+    final long time;
+    final String key;
+
+    // The period bounds, replaced by the bounds of the row once read
+    long periodStart;
+    long periodEnd;
+
+    Row(String category, int period, long time, long periodStart, long periodEnd) {
+      this.category = category;
+      this.period = period;
+      this.time = time;
+      this.periodStart = periodStart;
+      this.periodEnd = periodEnd;
+      this.key = period + ":" + periodStart + (category == null ? "*" : "=" + category);
+    }
+  }
+
+  private final SQLiteDatabase db;
+
+  /**
+   * Constructor.
+   *
+   * @param db the database
+   */
+  TrackStatsRollup(SQLiteDatabase db) {
+    this.db = db;
+  }
+
+  /**
+   * Returns true if track values change an aggregated column.
+   *
+   * @param values the track values
+   */
+  static boolean isAggregated(ContentValues values) {
+    return values.containsKey(TracksColumns.CATEGORY) || containsAny(values, SUM_COLUMNS)
+        || containsAny(values, MIN_COLUMNS) || containsAny(values, MAX_COLUMNS);
+  }
+
+  /**
+   * Gets the aggregated statistics of tracks, before they are updated or
+   * deleted.
+   *
+   * @param where the tracks where clause
+   * @param whereArgs the where clause arguments
+   */
+  List<TrackStats> getTrackStats(String where, String[] whereArgs) {
+    ArrayList<TrackStats> trackStats = new ArrayList<TrackStats>();
+    Cursor cursor = null;
+    try {
+      cursor = db.query(
+          TracksColumns.TABLE_NAME, TRACK_PROJECTION, where, whereArgs, null, null, null);
+      while (cursor.moveToNext()) {
+        trackStats.add(readTrackStats(cursor));
+      }
+    } finally {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
+    return trackStats;
+  }
+
+  /**
+   * Counts an inserted track.
+   *
+   * @param trackId the track id
+   */
+  void onInsert(long trackId) {
+    for (TrackStats newTrackStats : getTrackStats(trackId)) {
+      update(null, newTrackStats, null);
+    }
+  }
+
+  /**
+   * Recounts updated tracks.
+   *
+   * @param oldTrackStats the statistics of the tracks before the update
+   */
+  void onUpdate(List<TrackStats> oldTrackStats) {
+    LinkedHashMap<String, Row> rescanRows = new LinkedHashMap<String, Row>();
+    for (TrackStats trackStats : oldTrackStats) {
+      List<TrackStats> newTrackStats = getTrackStats(trackStats.id);
+      update(trackStats, newTrackStats.isEmpty() ? null : newTrackStats.get(0), rescanRows);
+    }
+    rescan(rescanRows);
+  }
+
+  /**
+   * Uncounts deleted tracks.
+   *
+   * @param oldTrackStats the statistics of the tracks before the delete
+   */
+  void onDelete(List<TrackStats> oldTrackStats) {
+    LinkedHashMap<String, Row> rescanRows = new LinkedHashMap<String, Row>();
+    for (TrackStats trackStats : oldTrackStats) {
+      update(trackStats, null, rescanRows);
+    }
+    rescan(rescanRows);
+  }
+
+  /**
+   * Clears the rollup, after all the tracks are deleted.
+   */
+  void clear() {
+    db.delete(TrackStatsColumns.TABLE_NAME, null, null);
+  }
+
+  /**
+   * Rebuilds the rollup from the tracks table. Returns the number of rows.
+   */
+  int rebuild() {
+    clear();
+    LinkedHashMap<String, Row> rows = new LinkedHashMap<String, Row>();
+    HashMap<String, Stats> rowStats = new HashMap<String, Stats>();
+    for (TrackStats trackStats : getTrackStats(null, null)) {
+      for (Row row : getRows(trackStats).values()) {
+        Stats stats = rowStats.get(row.key);
+        if (stats == null) {
+          stats = new Stats();
+          rows.put(row.key, row);
+          rowStats.put(row.key, stats);
+        }
+        stats.add(trackStats);
+      }
+    }
+    for (Row row : rows.values()) {
+      write(row, rowStats.get(row.key));
+    }
+    return rows.size();
+  }
+
+  /**
+   * Replaces a track in its rows. The rows with a min or max which may no
+   * longer be reached are added to the rows to rescan, once all the tracks of
+   * the change are replaced, since the tracks table is already changed.
+   *
+   * @param oldTrackStats the old track statistics, null if inserted
+   * @param newTrackStats the new track statistics, null if deleted
+   * @param rescanRows the rows to rescan, null if inserted
+   */
+  private void update(
+      TrackStats oldTrackStats, TrackStats newTrackStats, Map<String, Row> rescanRows) {
+    Map<String, Row> oldRows = getRows(oldTrackStats);
+    Map<String, Row> newRows = getRows(newTrackStats);
+    LinkedHashMap<String, Row> rows = new LinkedHashMap<String, Row>(oldRows);
+    rows.putAll(newRows);
+    for (Row row : rows.values()) {
+      Stats stats = readRow(row);
+      if (oldRows.containsKey(row.key)) {
+        stats.subtract(oldTrackStats);
+        boolean replaced = newRows.containsKey(row.key)
+            && newTrackStats.reachesAll(oldTrackStats);
+        if (!replaced && oldTrackStats.reachesAny(stats)) {
+          rescanRows.put(row.key, row);
+        }
+      }
+      if (newRows.containsKey(row.key)) {
+        stats.add(newTrackStats);
+      }
+      write(row, stats);
+    }
+  }
+
+  /**
+   * Rescans rows from the tracks table.
+   *
+   * @param rows the rows
+   */
+  private void rescan(Map<String, Row> rows) {
+    for (Row row : rows.values()) {
+      Stats stats = scan(row);
+      stats.id = readRow(row).id;
+      write(row, stats);
+    }
+  }
+
+  /**
+   * Gets the rows of a track by key.
+   *
+   * @param trackStats the track statistics, can be null
+   */
+  private static Map<String, Row> getRows(TrackStats trackStats) {
+    LinkedHashMap<String, Row> rows = new LinkedHashMap<String, Row>();
+    if (trackStats == null) {
+      return rows;
+    }
+    for (int period : PERIODS) {
+      if (period != TrackStatsColumns.PERIOD_ALL && trackStats.startTime < 0) {
+        continue;
+      }
+      long[] bounds = getPeriodBounds(period, trackStats.startTime);
+      Row all = new Row(null, period, trackStats.startTime, bounds[0], bounds[1]);
+      Row category = new Row(
+          trackStats.category, period, trackStats.startTime, bounds[0], bounds[1]);
+      rows.put(all.key, all);
+      rows.put(category.key, category);
+    }
+    return rows;
+  }
+
+  /**
+   * Gets the start, inclusive, and the end, exclusive, of the period of a type
+   * containing a time, in the local time zone.
+   *
+   * @param period the period type
+   * @param time the time
+   */
+  private static long[] getPeriodBounds(int period, long time) {
+    if (period == TrackStatsColumns.PERIOD_ALL) {
+      return new long[] { Long.MIN_VALUE, Long.MAX_VALUE };
+    }
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    calendar.set(Calendar.HOUR_OF_DAY, 0);
+    calendar.set(Calendar.MINUTE, 0);
+    calendar.set(Calendar.SECOND, 0);
+    calendar.set(Calendar.MILLISECOND, 0);
+    int field;
+    switch (period) {
+      case TrackStatsColumns.PERIOD_YEAR:
+        calendar.set(Calendar.DAY_OF_YEAR, 1);
+        field = Calendar.YEAR;
+        break;
+      case TrackStatsColumns.PERIOD_MONTH:
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        field = Calendar.MONTH;
+        break;
+      default:
+        int days = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+        calendar.add(Calendar.DAY_OF_MONTH, -days);
+        field = Calendar.WEEK_OF_YEAR;
+        break;
+    }
+    long start = calendar.getTimeInMillis();
+    calendar.add(field, 1);
+    return new long[] { start, calendar.getTimeInMillis() };
+  }
+
+  /**
+   * Reads the row containing the time of a row, and takes its period bounds.
+   * Returns empty statistics if the row doesn't exist.
+   *
+   * @param row the row
+   */
+  private Stats readRow(Row row) {
+    Stats stats = new Stats();
+    Cursor cursor = null;
+    try {
+      String time = Long.toString(row.time);
+      String selection = TrackStatsColumns.PERIOD + "=? AND " + TrackStatsColumns.PERIODSTART
+          + "<=? AND " + TrackStatsColumns.PERIODEND + ">? AND " + TrackStatsColumns.CATEGORY;
+      String[] selectionArgs;
+      if (row.category == null) {
+        selection += " IS NULL";
+        selectionArgs = new String[] { Integer.toString(row.period), time, time };
+      } else {
+        selection += "=?";
+        selectionArgs = new String[] { Integer.toString(row.period), time, time, row.category };
+      }
+      cursor = db.query(TrackStatsColumns.TABLE_NAME, ROW_PROJECTION, selection, selectionArgs,
+          null, null, TrackStatsColumns.PERIODSTART + " DESC", "1");
+      if (cursor.moveToFirst()) {
+        stats.id = cursor.getLong(0);
+        stats.numTracks = cursor.getInt(1);
+        readStats(cursor, stats);
+        row.periodStart = cursor.getLong(ROW_PROJECTION.length - 2);
+        row.periodEnd = cursor.getLong(ROW_PROJECTION.length - 1);
+      }
+    } finally {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Scans the tracks of a row.
+   *
+   * @param row the row
+   */
+  private Stats scan(Row row) {
+    ArrayList<String> selectionArgs = new ArrayList<String>(3);
+    String selection = null;
+    if (row.category != null) {
+      selection = "IFNULL(" + TracksColumns.CATEGORY + ", '')=?";
+      selectionArgs.add(row.category);
+    }
+    if (row.period != TrackStatsColumns.PERIOD_ALL) {
+      selection = (selection == null ? "" : selection + " AND ") + TracksColumns.STARTTIME
+          + ">=? AND " + TracksColumns.STARTTIME + "<?";
+      selectionArgs.add(Long.toString(row.periodStart));
+      selectionArgs.add(Long.toString(row.periodEnd));
+    }
+    Stats stats = new Stats();
+    for (TrackStats trackStats : getTrackStats(
+        selection, selectionArgs.toArray(new String[selectionArgs.size()]))) {
+      stats.add(trackStats);
+    }
+    return stats;
+  }
+
+  /**
+   * Writes a row. Deletes it if it has no track.
+   *
+   * @param row the row
+   * @param stats the row statistics
+   */
+  private void write(Row row, Stats stats) {
+    if (stats.numTracks <= 0) {
+      if (stats.id != -1L) {
+        db.delete(TrackStatsColumns.TABLE_NAME, TrackStatsColumns._ID + "=?",
+            new String[] { Long.toString(stats.id) });
+      }
+      return;
+    }
+    ContentValues values = new ContentValues();
+    values.put(TrackStatsColumns.CATEGORY, row.category);
+    values.put(TrackStatsColumns.PERIOD, row.period);
+    values.put(TrackStatsColumns.PERIODSTART, row.periodStart);
+    values.put(TrackStatsColumns.PERIODEND, row.periodEnd);
+    values.put(TrackStatsColumns.NUMTRACKS, stats.numTracks);
+    putAll(values, SUM_COLUMNS, stats.sums);
+    putAll(values, MIN_COLUMNS, stats.mins);
+    putAll(values, MAX_COLUMNS, stats.maxs);
+    if (stats.id == -1L) {
+      db.insert(TrackStatsColumns.TABLE_NAME, TrackStatsColumns._ID, values);
+    } else {
+      db.update(TrackStatsColumns.TABLE_NAME, values, TrackStatsColumns._ID + "=?",
+          new String[] { Long.toString(stats.id) });
+    }
+  }
+
+  private List<TrackStats> getTrackStats(long trackId) {
+    return getTrackStats(TracksColumns._ID + "=?", new String[] { Long.toString(trackId) });
+  }
+
+  /**
+   * Reads the track statistics at the cursor position.
+   *
+   * @param cursor the cursor, with the {@link #TRACK_PROJECTION}
+   */
+  private static TrackStats readTrackStats(Cursor cursor) {
+    TrackStats trackStats = new TrackStats();
+    trackStats.id = cursor.getLong(0);
+    trackStats.category = cursor.isNull(1) ? "" : cursor.getString(1);
+    trackStats.numTracks = 1;
+    readStats(cursor, trackStats);
+    if (trackStats.mins[0] < 0) {
+      // Not started
+      trackStats.mins[0] = Double.POSITIVE_INFINITY;
+      trackStats.startTime = -1L;
+    } else {
+      trackStats.startTime = (long) trackStats.mins[0];
+    }
+    return trackStats;
+  }
+
+  /**
+   * Reads the aggregated columns, following the id and another column.
+   *
+   * @param cursor the cursor
+   * @param stats the statistics to read into
+   */
+  private static void readStats(Cursor cursor, Stats stats) {
+    int index = 2;
+    for (int i = 0; i < SUM_COLUMNS.length; i++, index++) {
+      if (!cursor.isNull(index)) {
+        stats.sums[i] = cursor.getDouble(index);
+      }
+    }
+    for (int i = 0; i < MIN_COLUMNS.length; i++, index++) {
+      if (!cursor.isNull(index)) {
+        stats.mins[i] = cursor.getDouble(index);
+      }
+    }
+    for (int i = 0; i < MAX_COLUMNS.length; i++, index++) {
+      if (!cursor.isNull(index)) {
+        stats.maxs[i] = cursor.getDouble(index);
+      }
+    }
+  }
+
+  private static void putAll(ContentValues values, String[] columns, double[] columnValues) {
+    for (int i = 0; i < columns.length; i++) {
+      values.put(columns[i], columnValues[i]);
+    }
+  }
+
+  private static boolean containsAny(ContentValues values, String[] columns) {
+    for (String column : columns) {
+      if (values.containsKey(column)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Appends the aggregated columns, then the last columns, to the first
+   * columns of a projection.
+   *
+   * @param columns the first columns
+   * @param lastColumns the last columns
+   */
+  private static String[] concat(String[] columns, String... lastColumns) {
+    String[] projection = new String[columns.length + SUM_COLUMNS.length + MIN_COLUMNS.length
+        + MAX_COLUMNS.length + lastColumns.length];
+    int index = 0;
+    for (String[] array : new String[][] {
+        columns, SUM_COLUMNS, MIN_COLUMNS, MAX_COLUMNS, lastColumns }) {
+      System.arraycopy(array, 0, projection, index, array.length);
+      index += array.length;
+    }
+    return projection;
+  }
+}
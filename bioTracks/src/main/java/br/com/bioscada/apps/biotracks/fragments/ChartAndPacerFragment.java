@@ -16,7 +16,6 @@
 
 package br.com.bioscada.apps.biotracks.fragments;
 
-import android.location.Location;
 import android.net.http.SslError;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -31,24 +30,21 @@ import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.ZoomControls;
 
-import com.google.android.lib.mytracks.content.MyTracksLocation;
-import com.google.android.lib.mytracks.content.Sensor;
 import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.content.Waypoint;
-import com.google.android.lib.mytracks.stats.TripStatistics;
 import com.google.common.annotations.VisibleForTesting;
 
-import java.util.ArrayList;
 import java.util.EnumSet;
 
+import br.com.bioscada.apps.biotracks.ChartData;
 import br.com.bioscada.apps.biotracks.ChartView;
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.TrackDetailActivity;
+import br.com.bioscada.apps.biotracks.content.DerivedTrackPoint;
 import br.com.bioscada.apps.biotracks.content.TrackDataHub;
 import br.com.bioscada.apps.biotracks.content.TrackDataListener;
 import br.com.bioscada.apps.biotracks.content.TrackDataType;
-import br.com.bioscada.apps.biotracks.stats.TripStatisticsUpdater;
-import br.com.bioscada.apps.biotracks.util.CalorieUtils.ActivityType;
+import br.com.bioscada.apps.biotracks.content.TrackPointDecimator;
 import br.com.bioscada.apps.biotracks.util.LocationUtils;
 import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
 import br.com.bioscada.apps.biotracks.util.UnitConversions;
@@ -64,18 +60,14 @@ public class ChartAndPacerFragment extends Fragment implements TrackDataListener
 
   public static final String CHART_AND_PACER_FRAGMENT_TAG = "testecFragment";
 
-  private final ArrayList<double[]> pendingPoints = new ArrayList<double[]>();
+  private final ChartData pendingPoints = new ChartData();
+  private final double[] dataPoint = new double[ChartView.NUM_SERIES + 1];
 
   private TrackDataHub trackDataHub;
   private WebView bwebview;
-  
-  // Stats gathered from the received data
-  private TripStatisticsUpdater tripStatisticsUpdater;
-  private long startTime;
 
   private boolean metricUnits = true;
   private boolean reportSpeed = true;
-  private int recordingDistanceInterval = PreferencesUtils.RECORDING_DISTANCE_INTERVAL_DEFAULT;
 
   // Modes of operation
   private boolean chartByDistance = true;
@@ -198,19 +190,12 @@ public class ChartAndPacerFragment extends Fragment implements TrackDataListener
 
   @Override
   public void onTrackUpdated(Track track) {
-    if (isResumed()) {
-      if (track == null || track.getTripStatistics() == null) {
-        startTime = -1L;
-        return;
-      }
-      startTime = track.getTripStatistics().getStartTime();
-    }
+    // We don't care.
   }
 
   @Override
   public void clearTrackPoints() {
     if (isResumed()) {
-      tripStatisticsUpdater = startTime != -1L ? new TripStatisticsUpdater(startTime) : null;
       pendingPoints.clear();
       chartView.reset();
       runOnUiThread(new Runnable() {
@@ -225,26 +210,21 @@ public class ChartAndPacerFragment extends Fragment implements TrackDataListener
   }
 
   @Override
-  public void onSampledInTrackPoint(Location location) {
+  public void onSampledInTrackPoint(DerivedTrackPoint trackPoint) {
     if (isResumed()) {
-      double[] data = new double[ChartView.NUM_SERIES + 1];
-      fillDataPoint(location, data);
-      pendingPoints.add(data);
+      fillDataPoint(trackPoint, dataPoint);
+      pendingPoints.add(dataPoint);
     }
   }
 
   @Override
-  public void onSampledOutTrackPoint(Location location) {
-    if (isResumed()) {
-      fillDataPoint(location, null);
-    }
+  public void onSampledOutTrackPoint(DerivedTrackPoint trackPoint) {
+    // We don't care.
   }
 
   @Override
-  public void onSegmentSplit(Location location) {
-    if (isResumed()) {
-      fillDataPoint(location, null);
-    }
+  public void onSegmentSplit(DerivedTrackPoint trackPoint) {
+    // We don't care.
   }
 
   @Override
@@ -331,13 +311,7 @@ public class ChartAndPacerFragment extends Fragment implements TrackDataListener
   
   @Override
   public boolean onRecordingDistanceIntervalChanged(int value) {
-    if (isResumed()) {
-      if (recordingDistanceInterval == value) {
-        return false;
-      }
-      recordingDistanceInterval = value;
-      return true;
-    }
+    // We don't care.
     return false;
   }
   
@@ -421,7 +395,8 @@ public class ChartAndPacerFragment extends Fragment implements TrackDataListener
     trackDataHub = ((TrackDetailActivity) getActivity()).getTrackDataHub();
     trackDataHub.registerTrackDataListener(this, EnumSet.of(TrackDataType.TRACKS_TABLE,
         TrackDataType.WAYPOINTS_TABLE, TrackDataType.SAMPLED_IN_TRACK_POINTS_TABLE,
-        TrackDataType.SAMPLED_OUT_TRACK_POINTS_TABLE, TrackDataType.PREFERENCE));
+        TrackDataType.SAMPLED_OUT_TRACK_POINTS_TABLE, TrackDataType.PREFERENCE),
+        TrackDataHub.TARGET_DISPLAYED_TRACK_POINTS, TrackPointDecimator.Shape.PROFILE);
   }
 
   /**
@@ -482,7 +457,7 @@ public class ChartAndPacerFragment extends Fragment implements TrackDataListener
   }
 
   /**
-   * Given a location, fill in a data point, an array of double[]. <br>
+   * Given a track point, fill in a data point, an array of double[]. <br>
    * data[0] = time/distance <br>
    * data[1] = elevation <br>
    * data[2] = speed <br>
@@ -493,87 +468,48 @@ public class ChartAndPacerFragment extends Fragment implements TrackDataListener
    * data[7] = attention <br>
    * data[8] = meditation <br>
    * 
-   * @param location the location
-   * @param data the data point to fill in, can be null
+   * @param trackPoint the track point
+   * @param data the data point to fill in
    */
   @VisibleForTesting
-  void fillDataPoint(Location location, double data[]) {
+  void fillDataPoint(DerivedTrackPoint trackPoint, double data[]) {
     double timeOrDistance = Double.NaN;
     double elevation = Double.NaN;
     double speed = Double.NaN;
     double pace = Double.NaN;
-    double heartRate = Double.NaN;
-    double attention = Double.NaN;
-    double meditation = Double.NaN;
-    double cadence = Double.NaN;
-    double power = Double.NaN;
-
-    if (tripStatisticsUpdater != null) {
-      tripStatisticsUpdater.addLocation(
-          location, recordingDistanceInterval, false, ActivityType.INVALID, 0.0);
-      TripStatistics tripStatistics = tripStatisticsUpdater.getTripStatistics();
+
+    if (trackPoint.hasStatistics()) {
       if (chartByDistance) {
-        double distance = tripStatistics.getTotalDistance() * UnitConversions.M_TO_KM;
+        double distance = trackPoint.getTotalDistance() * UnitConversions.M_TO_KM;
         if (!metricUnits) {
           distance *= UnitConversions.KM_TO_MI;
         }
         timeOrDistance = distance;
       } else {
-        timeOrDistance = tripStatistics.getTotalTime();
+        timeOrDistance = trackPoint.getTotalTime();
       }
 
-      elevation = tripStatisticsUpdater.getSmoothedElevation();
+      elevation = trackPoint.getElevation();
       if (!metricUnits) {
         elevation *= UnitConversions.M_TO_FT;
       }
 
-      speed = tripStatisticsUpdater.getSmoothedSpeed() * UnitConversions.MS_TO_KMH;
+      speed = trackPoint.getSpeed() * UnitConversions.MS_TO_KMH;
       if (!metricUnits) {
         speed *= UnitConversions.KM_TO_MI;
       }
       pace = speed == 0 ? 0.0 : 60.0 / speed;
     }
-    if (location instanceof MyTracksLocation
-        && ((MyTracksLocation) location).getSensorDataSet() != null) {
-      Sensor.SensorDataSet sensorDataSet = ((MyTracksLocation) location).getSensorDataSet();
-      if (sensorDataSet.hasHeartRate()
-          && sensorDataSet.getHeartRate().getState() == Sensor.SensorState.SENDING
-          && sensorDataSet.getHeartRate().hasValue()) {
-        heartRate = sensorDataSet.getHeartRate().getValue();
-      }
-      if (sensorDataSet.hasAttention()
-          && sensorDataSet.getAttention().getState() == Sensor.SensorState.SENDING
-          && sensorDataSet.getAttention().hasValue()) {
-        attention = sensorDataSet.getAttention().getValue();
-      }
-      if (sensorDataSet.hasMeditation()
-          && sensorDataSet.getMeditation().getState() == Sensor.SensorState.SENDING
-          && sensorDataSet.getMeditation().hasValue()) {
-        meditation = sensorDataSet.getMeditation().getValue();
-      }
-      if (sensorDataSet.hasCadence()
-          && sensorDataSet.getCadence().getState() == Sensor.SensorState.SENDING
-          && sensorDataSet.getCadence().hasValue()) {
-        cadence = sensorDataSet.getCadence().getValue();
-      }
-      if (sensorDataSet.hasPower()
-          && sensorDataSet.getPower().getState() == Sensor.SensorState.SENDING
-          && sensorDataSet.getPower().hasValue()) {
-        power = sensorDataSet.getPower().getValue();
-      }
-    }
 
-    if (data != null) {
-      data[0] = timeOrDistance;
-      data[1] = elevation;
-      data[2] = speed;
-      data[3] = pace;
-      data[4] = heartRate;
-      data[5] = cadence;
-      data[6] = power;
-      data[7] = attention;
-      data[8] = meditation;
-    }
+    data[0] = timeOrDistance;
+    data[1] = elevation;
+    data[2] = speed;
+    data[3] = pace;
+    data[4] = trackPoint.getHeartRate();
+    data[5] = trackPoint.getCadence();
+    data[6] = trackPoint.getPower();
+    data[7] = trackPoint.getAttention();
+    data[8] = trackPoint.getMeditation();
   }
 
   @VisibleForTesting
@@ -581,11 +517,6 @@ public class ChartAndPacerFragment extends Fragment implements TrackDataListener
     return chartView;
   }
 
-  @VisibleForTesting
-  void setTripStatisticsUpdater(long time) {
-    tripStatisticsUpdater = new TripStatisticsUpdater(time);
-  }
-
   @VisibleForTesting
   void setChartView(ChartView view) {
     chartView = view;
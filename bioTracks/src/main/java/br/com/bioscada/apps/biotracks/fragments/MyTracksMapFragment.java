@@ -50,22 +50,22 @@ import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
-import com.google.android.gms.maps.model.Polyline;
 import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
 import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.content.Waypoint;
 import com.google.android.lib.mytracks.stats.TripStatistics;
 
-import java.util.ArrayList;
 import java.util.EnumSet;
 
 import br.com.bioscada.apps.biotracks.MapOverlay;
 import br.com.bioscada.apps.biotracks.MarkerDetailActivity;
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.TrackDetailActivity;
+import br.com.bioscada.apps.biotracks.content.DerivedTrackPoint;
 import br.com.bioscada.apps.biotracks.content.TrackDataHub;
 import br.com.bioscada.apps.biotracks.content.TrackDataListener;
 import br.com.bioscada.apps.biotracks.content.TrackDataType;
+import br.com.bioscada.apps.biotracks.maps.TrackPolylines;
 import br.com.bioscada.apps.biotracks.services.MyTracksLocationManager;
 import br.com.bioscada.apps.biotracks.util.ApiAdapterFactory;
 import br.com.bioscada.apps.biotracks.util.GoogleLocationUtils;
@@ -126,7 +126,7 @@ public class MyTracksMapFragment extends SupportMapFragment implements TrackData
   private Track currentTrack;
 
   // Current paths
-  private ArrayList<Polyline> paths = new ArrayList<Polyline>();
+  private TrackPolylines paths = new TrackPolylines();
   boolean reloadPaths = true;
 
   // UI elements
@@ -279,6 +279,10 @@ public class MyTracksMapFragment extends SupportMapFragment implements TrackData
               && !isLocationVisible(currentLocation)) {
             keepCurrentLocationVisible = false;
           }
+          if (isResumed() && currentTrack != null
+              && mapOverlay.isViewportOutdated(googleMap, cameraPosition)) {
+            mapOverlay.update(googleMap, paths, currentTrack.getTripStatistics(), true);
+          }
         }
       });
     }
@@ -386,20 +390,20 @@ public class MyTracksMapFragment extends SupportMapFragment implements TrackData
   }
 
   @Override
-  public void onSampledInTrackPoint(final Location location) {
-    lastTrackPoint = location;
+  public void onSampledInTrackPoint(DerivedTrackPoint trackPoint) {
+    lastTrackPoint = trackPoint.getLocation();
     if (isResumed()) {
-      mapOverlay.addLocation(location);
+      mapOverlay.addLocation(trackPoint.getLocation());
     }
   }
 
   @Override
-  public void onSampledOutTrackPoint(Location location) {
-    lastTrackPoint = location;
+  public void onSampledOutTrackPoint(DerivedTrackPoint trackPoint) {
+    lastTrackPoint = trackPoint.getLocation();
   }
 
   @Override
-  public void onSegmentSplit(Location location) {
+  public void onSegmentSplit(DerivedTrackPoint trackPoint) {
     if (isResumed()) {
       mapOverlay.addSegmentSplit();
     }
@@ -2,7 +2,6 @@
 package br.com.bioscada.apps.biotracks.fragments;
 
 import android.annotation.SuppressLint;
-import android.location.Location;
 import android.net.http.SslError;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -16,21 +15,17 @@ import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.ZoomControls;
 
-import com.google.android.lib.mytracks.content.MyTracksLocation;
-import com.google.android.lib.mytracks.content.Sensor;
 import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.content.Waypoint;
-import com.google.android.lib.mytracks.stats.TripStatistics;
 import com.google.common.annotations.VisibleForTesting;
 
-import java.util.ArrayList;
 
+import br.com.bioscada.apps.biotracks.ChartData;
 import br.com.bioscada.apps.biotracks.ChartView;
 import br.com.bioscada.apps.biotracks.R;
+import br.com.bioscada.apps.biotracks.content.DerivedTrackPoint;
 import br.com.bioscada.apps.biotracks.content.TrackDataHub;
 import br.com.bioscada.apps.biotracks.content.TrackDataListener;
-import br.com.bioscada.apps.biotracks.stats.TripStatisticsUpdater;
-import br.com.bioscada.apps.biotracks.util.CalorieUtils.ActivityType;
 import br.com.bioscada.apps.biotracks.util.LocationUtils;
 import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
 import br.com.bioscada.apps.biotracks.util.UnitConversions;
@@ -47,7 +42,8 @@ public class PacerFragment  extends Fragment implements TrackDataListener {
 
   private boolean chartByDistance = true;
   
-  private final ArrayList<double[]> pendingPoints = new ArrayList<double[]>();
+  private final ChartData pendingPoints = new ChartData();
+  private final double[] dataPoint = new double[ChartView.NUM_SERIES + 1];
  
   private void runOnUiThread(Runnable runnable) {
     FragmentActivity fragmentActivity = getActivity();
@@ -56,11 +52,8 @@ public class PacerFragment  extends Fragment implements TrackDataListener {
     }
   }
   
-  private long startTime;
-  private TripStatisticsUpdater tripStatisticsUpdater;
   private boolean metricUnits = true;
   private boolean reportSpeed = true;
-  private int recordingDistanceInterval = PreferencesUtils.RECORDING_DISTANCE_INTERVAL_DEFAULT;
 
   // UI elements
   private ChartView chartView;
@@ -134,19 +127,12 @@ public class PacerFragment  extends Fragment implements TrackDataListener {
   
   @Override
   public void onTrackUpdated(Track track) {
-    if (isResumed()) {
-      if (track == null || track.getTripStatistics() == null) {
-        startTime = -1L;
-        return;
-      }
-      startTime = track.getTripStatistics().getStartTime();
-    }
+    // We don't care.
   }
     
   @Override
   public void clearTrackPoints() {
     if (isResumed()) {
-      tripStatisticsUpdater = startTime != -1L ? new TripStatisticsUpdater(startTime) : null;
       pendingPoints.clear();
       chartView.reset();
       runOnUiThread(new Runnable() {
@@ -163,26 +149,21 @@ public class PacerFragment  extends Fragment implements TrackDataListener {
  
 
   @Override
-  public void onSampledInTrackPoint(Location location) { 
+  public void onSampledInTrackPoint(DerivedTrackPoint trackPoint) { 
     if (isResumed()) {
-      double[] data = new double[ChartView.NUM_SERIES + 1];
-      fillDataPoint(location, data);
-      pendingPoints.add(data);
+      fillDataPoint(trackPoint, dataPoint);
+      pendingPoints.add(dataPoint);
     } 
   }
 
   @Override
-  public void onSampledOutTrackPoint(Location location) { 
-    if (isResumed()) {
-      fillDataPoint(location, null);
-    } 
+  public void onSampledOutTrackPoint(DerivedTrackPoint trackPoint) {
+    // We don't care.
   }
 
   @Override
-  public void onSegmentSplit(Location location) { 
-    if (isResumed()) {
-      fillDataPoint(location, null);
-    } 
+  public void onSegmentSplit(DerivedTrackPoint trackPoint) {
+    // We don't care.
   }
 
   @Override
@@ -274,13 +255,7 @@ public class PacerFragment  extends Fragment implements TrackDataListener {
   
   @Override
   public boolean onRecordingDistanceIntervalChanged(int value) {
-    if (isResumed()) {
-      if (recordingDistanceInterval == value) {
-        return false;
-      }
-      recordingDistanceInterval = value;
-      return true;
-    }
+    // We don't care.
     return false;
   }
   
@@ -291,69 +266,42 @@ public class PacerFragment  extends Fragment implements TrackDataListener {
   }
 
   @VisibleForTesting
-  void fillDataPoint(Location location, double data[]) {
+  void fillDataPoint(DerivedTrackPoint trackPoint, double data[]) {
     double timeOrDistance = Double.NaN;
     double elevation = Double.NaN;
     double speed = Double.NaN;
     double pace = Double.NaN;
-    double heartRate = Double.NaN;
-    double cadence = Double.NaN;
-    double power = Double.NaN;
 
-    if (tripStatisticsUpdater != null) {
-      tripStatisticsUpdater.addLocation(
-          location, recordingDistanceInterval, false, ActivityType.INVALID, 0.0);
-      TripStatistics tripStatistics = tripStatisticsUpdater.getTripStatistics();
+    if (trackPoint.hasStatistics()) {
       if (chartByDistance) {
-        double distance = tripStatistics.getTotalDistance() * UnitConversions.M_TO_KM;
+        double distance = trackPoint.getTotalDistance() * UnitConversions.M_TO_KM;
         if (!metricUnits) {
           distance *= UnitConversions.KM_TO_MI;
         }
         timeOrDistance = distance;
       } else {
-        timeOrDistance = tripStatistics.getTotalTime();
+        timeOrDistance = trackPoint.getTotalTime();
       }
 
-      elevation = tripStatisticsUpdater.getSmoothedElevation();
+      elevation = trackPoint.getElevation();
       if (!metricUnits) {
         elevation *= UnitConversions.M_TO_FT;
       }
 
-      speed = tripStatisticsUpdater.getSmoothedSpeed() * UnitConversions.MS_TO_KMH;
+      speed = trackPoint.getSpeed() * UnitConversions.MS_TO_KMH;
       if (!metricUnits) {
         speed *= UnitConversions.KM_TO_MI;
       }
       pace = speed == 0 ? 0.0 : 60.0 / speed;
     }
-    if (location instanceof MyTracksLocation
-        && ((MyTracksLocation) location).getSensorDataSet() != null) {
-      Sensor.SensorDataSet sensorDataSet = ((MyTracksLocation) location).getSensorDataSet();
-      if (sensorDataSet.hasHeartRate()
-          && sensorDataSet.getHeartRate().getState() == Sensor.SensorState.SENDING
-          && sensorDataSet.getHeartRate().hasValue()) {
-        heartRate = sensorDataSet.getHeartRate().getValue();
-      }
-      if (sensorDataSet.hasCadence()
-          && sensorDataSet.getCadence().getState() == Sensor.SensorState.SENDING
-          && sensorDataSet.getCadence().hasValue()) {
-        cadence = sensorDataSet.getCadence().getValue();
-      }
-      if (sensorDataSet.hasPower()
-          && sensorDataSet.getPower().getState() == Sensor.SensorState.SENDING
-          && sensorDataSet.getPower().hasValue()) {
-        power = sensorDataSet.getPower().getValue();
-      }
-    }
 
-    if (data != null) {
-      data[0] = timeOrDistance;
-      data[1] = elevation;
-      data[2] = speed;
-      data[3] = pace;
-      data[4] = heartRate;
-      data[5] = cadence;
-      data[6] = power;
-    }
+    data[0] = timeOrDistance;
+    data[1] = elevation;
+    data[2] = speed;
+    data[3] = pace;
+    data[4] = trackPoint.getHeartRate();
+    data[5] = trackPoint.getCadence();
+    data[6] = trackPoint.getPower();
   }
 
   @VisibleForTesting
@@ -361,11 +309,6 @@ public class PacerFragment  extends Fragment implements TrackDataListener {
     return chartView;
   }
 
-  @VisibleForTesting
-  void setTripStatisticsUpdater(long time) {
-    tripStatisticsUpdater = new TripStatisticsUpdater(time);
-  }
-
   @VisibleForTesting
   void setChartView(ChartView view) {
     chartView = view;
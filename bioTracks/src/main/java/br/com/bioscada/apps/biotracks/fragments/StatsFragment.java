@@ -36,6 +36,7 @@ import java.util.EnumSet;
 
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.TrackDetailActivity;
+import br.com.bioscada.apps.biotracks.content.DerivedTrackPoint;
 import br.com.bioscada.apps.biotracks.content.TrackDataHub;
 import br.com.bioscada.apps.biotracks.content.TrackDataListener;
 import br.com.bioscada.apps.biotracks.content.TrackDataType;
@@ -153,17 +154,17 @@ public class StatsFragment extends Fragment implements TrackDataListener {
   }
 
   @Override
-  public void onSampledInTrackPoint(Location location) {
-    lastLocation = location;
+  public void onSampledInTrackPoint(DerivedTrackPoint trackPoint) {
+    lastLocation = trackPoint.getLocation();
   }
 
   @Override
-  public void onSampledOutTrackPoint(Location location) {
-    lastLocation = location;
+  public void onSampledOutTrackPoint(DerivedTrackPoint trackPoint) {
+    lastLocation = trackPoint.getLocation();
   }
 
   @Override
-  public void onSegmentSplit(Location location) {
+  public void onSegmentSplit(DerivedTrackPoint trackPoint) {
     // We don't care.
   }
 
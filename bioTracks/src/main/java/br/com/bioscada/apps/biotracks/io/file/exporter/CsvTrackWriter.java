@@ -24,7 +24,6 @@ import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.content.Waypoint;
 
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.text.NumberFormat;
 import java.util.Locale;
 
@@ -52,14 +51,13 @@ import br.com.bioscada.apps.biotracks.util.StringUtils;
  */
 public class CsvTrackWriter implements TrackWriter {
 
-    private static final NumberFormat SHORT_FORMAT = NumberFormat.getInstance(Locale.US);
-
-    static {
-        SHORT_FORMAT.setMaximumFractionDigits(4);
-    }
+    private static final int SHORT_FRACTION_DIGITS = 4;
 
     private final Context context;
-    private PrintWriter printWriter;
+
+    // Not static, NumberFormat is not thread safe
+    private final NumberFormat shortFormat = NumberFormat.getInstance(Locale.US);
+    private TrackPrintWriter printWriter;
     private int segmentIndex;
     private int pointIndex;
     private String l_heartRate = "";
@@ -70,6 +68,9 @@ public class CsvTrackWriter implements TrackWriter {
 
     public CsvTrackWriter(Context context) {
         this.context = context;
+        shortFormat.setMaximumFractionDigits(SHORT_FRACTION_DIGITS);
+        // Same as the track points, written by TrackPrintWriter.printFixed
+        shortFormat.setGroupingUsed(false);
     }
 
     @Override
@@ -79,7 +80,7 @@ public class CsvTrackWriter implements TrackWriter {
 
     @Override
     public void prepare(OutputStream outputStream) {
-        printWriter = new PrintWriter(outputStream);
+        printWriter = new TrackPrintWriter(outputStream);
         segmentIndex = 0;
         pointIndex = 0;
     }
@@ -280,22 +281,7 @@ public class CsvTrackWriter implements TrackWriter {
             }
         }
         pointIndex++;
-        writeCommaSeparatedLine(
-                Integer.toString(segmentIndex),
-                Integer.toString(pointIndex),
-                Double.toString(location.getLatitude()),
-                Double.toString(location.getLongitude()),
-                getAltitude(location),
-                getBearing(location),
-                getAccuracy(location),
-                getSpeed(location),
-                StringUtils.formatDateTimeIso8601(location.getTime()),
-                power,
-                cadence,
-                heartRate,
-                bpm,
-                rmssd,
-                attention,
+        writePointLine(location, power, cadence, heartRate, bpm, rmssd, attention,
                 meditation);
 
         //    Log.d("POLAR", "pointIndex "+ pointIndex + " heartRate " + heartRate+" heartRateRC1 " + heartRateRC1+" l_heartRateRC1 " + l_heartRateRC1+" heartRateRC2 " + heartRateRC2+" l_heartRateRC2 " + l_heartRateRC2);
@@ -303,48 +289,61 @@ public class CsvTrackWriter implements TrackWriter {
         if(!heartRateRC1.isEmpty()){
             //Log.d("POLAR", "pointIndex "+ pointIndex + " heartRate " + heartRate+" heartRateRC1 " + heartRateRC1+" l_heartRateRC1 " + l_heartRateRC1+" heartRateRC2 " + heartRateRC2+" l_heartRateRC2 " + l_heartRateRC2);
 
-            writeCommaSeparatedLine(
-                    Integer.toString(segmentIndex),
-                    Integer.toString(pointIndex),
-                    Double.toString(location.getLatitude()),
-                    Double.toString(location.getLongitude()),
-                    getAltitude(location),
-                    getBearing(location),
-                    getAccuracy(location),
-                    getSpeed(location),
-                    StringUtils.formatDateTimeIso8601(location.getTime()),
-                    power,
-                    cadence,
-                    heartRateRC1,
-                    bpm,
-                    rmssd,
-                    attention,
+            writePointLine(location, power, cadence, heartRateRC1, bpm, rmssd, attention,
                     meditation);
         }
         if(!heartRateRC2.isEmpty()){
             //Log.d("POLAR", "pointIndex "+ pointIndex + " heartRate " + heartRate+" heartRateRC1 " + heartRateRC1+" l_heartRateRC1 " + l_heartRateRC1+" heartRateRC2 " + heartRateRC2+" l_heartRateRC2 " + l_heartRateRC2);
 
-            writeCommaSeparatedLine(
-                    Integer.toString(segmentIndex),
-                    Integer.toString(pointIndex),
-                    Double.toString(location.getLatitude()),
-                    Double.toString(location.getLongitude()),
-                    getAltitude(location),
-                    getBearing(location),
-                    getAccuracy(location),
-                    getSpeed(location),
-                    StringUtils.formatDateTimeIso8601(location.getTime()),
-                    power,
-                    cadence,
-                    heartRateRC2,
-                    bpm,
-                    rmssd,
-                    attention,
+            writePointLine(location, power, cadence, heartRateRC2, bpm, rmssd, attention,
                     meditation);
         }
 
     }
 
+    /**
+     * Writes a line of the points table. The numbers and the time are printed
+     * directly, they don't need escaping.
+     *
+     * @param location the location
+     * @param values the power, cadence, heart rate, bpm, rmssd, attention and
+     *          meditation values
+     */
+    private void writePointLine(Location location, String... values) {
+        printWriter.print('"');
+        printWriter.printInteger(segmentIndex);
+        printWriter.print("\",\"");
+        printWriter.printInteger(pointIndex);
+        printWriter.print("\",\"");
+        printWriter.print(location.getLatitude());
+        printWriter.print("\",\"");
+        printWriter.print(location.getLongitude());
+        printWriter.print("\",\"");
+        if (location.hasAltitude()) {
+            printWriter.print(location.getAltitude());
+        }
+        printWriter.print("\",\"");
+        if (location.hasBearing()) {
+            printWriter.print((double) location.getBearing());
+        }
+        printWriter.print("\",\"");
+        if (location.hasAccuracy()) {
+            printWriter.printFixed(location.getAccuracy(), SHORT_FRACTION_DIGITS);
+        }
+        printWriter.print("\",\"");
+        if (location.hasSpeed()) {
+            printWriter.printFixed(location.getSpeed(), SHORT_FRACTION_DIGITS);
+        }
+        printWriter.print("\",\"");
+        printWriter.printIso8601(location.getTime());
+        printWriter.print('"');
+        for (String value : values) {
+            printWriter.print(',');
+            printQuoted(value);
+        }
+        printWriter.println();
+    }
+
     private String getAltitude(Location location) {
         return location.hasAltitude() ? Double.toString(location.getAltitude()) : null;
     }
@@ -354,11 +353,11 @@ public class CsvTrackWriter implements TrackWriter {
     }
 
     private String getAccuracy(Location location) {
-        return location.hasAccuracy() ? SHORT_FORMAT.format(location.getAccuracy()) : null;
+        return location.hasAccuracy() ? shortFormat.format(location.getAccuracy()) : null;
     }
 
     private String getSpeed(Location location) {
-        return location.hasSpeed() ? SHORT_FORMAT.format(location.getSpeed()) : null;
+        return location.hasSpeed() ? shortFormat.format(location.getSpeed()) : null;
     }
 
     /**
@@ -367,20 +366,33 @@ public class CsvTrackWriter implements TrackWriter {
      * @param values the values to be written as CSV
      */
     private void writeCommaSeparatedLine(String... values) {
-        StringBuilder builder = new StringBuilder();
         boolean isFirst = true;
         for (String value : values) {
             if (!isFirst) {
-                builder.append(',');
+                printWriter.print(',');
             }
             isFirst = false;
+            printQuoted(value);
+        }
+        printWriter.println();
+    }
 
-            builder.append('"');
-            if (value != null) {
-                builder.append(value.replaceAll("\"", "\"\""));
+    /**
+     * Writes a quoted CSV value, doubling the quotes.
+     *
+     * @param value the value, can be null
+     */
+    private void printQuoted(String value) {
+        printWriter.print('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    printWriter.print('"');
+                }
+                printWriter.print(c);
             }
-            builder.append('"');
         }
-        printWriter.println(builder.toString());
+        printWriter.print('"');
     }
 }
\ No newline at end of file
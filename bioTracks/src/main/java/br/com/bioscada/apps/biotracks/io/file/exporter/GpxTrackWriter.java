@@ -23,9 +23,6 @@ import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.content.Waypoint;
 
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.text.NumberFormat;
-import java.util.Locale;
 
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.io.file.TrackFileFormat;
@@ -38,23 +35,16 @@ import br.com.bioscada.apps.biotracks.util.StringUtils;
  */
 public class GpxTrackWriter implements TrackWriter {
 
-  private static final NumberFormat ELEVATION_FORMAT = NumberFormat.getInstance(Locale.US);
-  private static final NumberFormat COORDINATE_FORMAT = NumberFormat.getInstance(Locale.US);
-  static {
-    /*
-     * GPX readers expect to see fractional numbers with US-style punctuation.
-     * That is, they want periods for decimal points, rather than commas.
-     */
-    ELEVATION_FORMAT.setMaximumFractionDigits(1);
-    ELEVATION_FORMAT.setGroupingUsed(false);
-
-    COORDINATE_FORMAT.setMaximumFractionDigits(6);
-    COORDINATE_FORMAT.setMaximumIntegerDigits(3);
-    COORDINATE_FORMAT.setGroupingUsed(false);
-  }
+  /*
+   * GPX readers expect to see fractional numbers with US-style punctuation.
+   * That is, they want periods for decimal points, rather than commas.
+   * TrackPrintWriter always formats them so.
+   */
+  private static final int ELEVATION_FRACTION_DIGITS = 1;
+  private static final int COORDINATE_FRACTION_DIGITS = 6;
 
   private final Context context;
-  private PrintWriter printWriter;
+  private TrackPrintWriter printWriter;
 
   public GpxTrackWriter(Context context) {
     this.context = context;
@@ -67,7 +57,7 @@ public class GpxTrackWriter implements TrackWriter {
 
   @Override
   public void prepare(OutputStream outputStream) {
-    this.printWriter = new PrintWriter(outputStream);
+    this.printWriter = new TrackPrintWriter(outputStream);
   }
   
   @Override
@@ -124,12 +114,10 @@ public class GpxTrackWriter implements TrackWriter {
     if (printWriter != null) {
       Location location = waypoint.getLocation();
       if (location != null) {
-        printWriter.println("<wpt " + formatLocation(location) + ">");
-        if (location.hasAltitude()) {
-          printWriter.println("<ele>" + ELEVATION_FORMAT.format(location.getAltitude()) + "</ele>");
-        }
-        printWriter.println(
-            "<time>" + StringUtils.formatDateTimeIso8601(location.getTime()) + "</time>");
+        printWriter.print("<wpt ");
+        printLocation(location);
+        printWriter.println(">");
+        printElevationAndTime(location);
         printWriter.println("<name>" + StringUtils.formatCData(waypoint.getName()) + "</name>");
         printWriter.println("<cmt>" + StringUtils.formatCData(waypoint.getType().name()) + "</cmt>");
         printWriter.println(
@@ -181,23 +169,40 @@ public class GpxTrackWriter implements TrackWriter {
   @Override
   public void writeLocation(Location location) {
     if (printWriter != null) {
-      printWriter.println("<trkpt " + formatLocation(location) + ">");
-      if (location.hasAltitude()) {
-        printWriter.println("<ele>" + ELEVATION_FORMAT.format(location.getAltitude()) + "</ele>");
-      }
-      printWriter.println(
-          "<time>" + StringUtils.formatDateTimeIso8601(location.getTime()) + "</time>");
+      printWriter.print("<trkpt ");
+      printLocation(location);
+      printWriter.println(">");
+      printElevationAndTime(location);
       printWriter.println("</trkpt>");
     }
   }
 
   /**
-   * Formats a location with latitude and longitude coordinates.
+   * Prints a location with latitude and longitude coordinates.
    * 
    * @param location the location
    */
-  private String formatLocation(Location location) {
-    return "lat=\"" + COORDINATE_FORMAT.format(location.getLatitude()) + "\" lon=\""
-        + COORDINATE_FORMAT.format(location.getLongitude()) + "\"";
+  private void printLocation(Location location) {
+    printWriter.print("lat=\"");
+    printWriter.printFixed(location.getLatitude(), COORDINATE_FRACTION_DIGITS);
+    printWriter.print("\" lon=\"");
+    printWriter.printFixed(location.getLongitude(), COORDINATE_FRACTION_DIGITS);
+    printWriter.print("\"");
+  }
+
+  /**
+   * Prints the elevation, if any, and the time elements of a location.
+   * 
+   * @param location the location
+   */
+  private void printElevationAndTime(Location location) {
+    if (location.hasAltitude()) {
+      printWriter.print("<ele>");
+      printWriter.printFixed(location.getAltitude(), ELEVATION_FRACTION_DIGITS);
+      printWriter.println("</ele>");
+    }
+    printWriter.print("<time>");
+    printWriter.printIso8601(location.getTime());
+    printWriter.println("</time>");
   }
 }
@@ -19,6 +19,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.location.Location;
 import android.net.Uri;
+import android.util.Log;
 
 import com.google.android.lib.mytracks.content.DescriptionGenerator;
 import com.google.android.lib.mytracks.content.MyTracksLocation;
@@ -29,9 +30,8 @@ import com.google.android.lib.mytracks.content.Waypoint;
 import com.google.common.annotations.VisibleForTesting;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.ArrayList;
 
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.content.DescriptionGeneratorImpl;
@@ -46,6 +46,8 @@ import br.com.bioscada.apps.biotracks.util.StringUtils;
  */
 public class KmlTrackWriter implements TrackWriter {
 
+  private static final String TAG = KmlTrackWriter.class.getSimpleName();
+
   private static final String WAYPOINT_STYLE = "waypoint";
   private static final String STATISTICS_STYLE = "statistics";
   private static final String START_STYLE = "start";
@@ -73,10 +75,12 @@ public class KmlTrackWriter implements TrackWriter {
   private final DescriptionGenerator descriptionGenerator;
   private final MyTracksProviderUtils myTracksProviderUtils;
 
-  private PrintWriter printWriter;
-  private ArrayList<Integer> powerList = new ArrayList<Integer>();
-  private ArrayList<Integer> cadenceList = new ArrayList<Integer>();
-  private ArrayList<Integer> heartRateList = new ArrayList<Integer>();
+  private TrackPrintWriter printWriter;
+
+  // The sensor data of the segment, written when closing the segment
+  private final SpillableIntColumn powerColumn;
+  private final SpillableIntColumn cadenceColumn;
+  private final SpillableIntColumn heartRateColumn;
   private boolean hasPower;
   private boolean hasCadence;
   private boolean hasHeartRate;
@@ -93,6 +97,10 @@ public class KmlTrackWriter implements TrackWriter {
     this.playTrack = playTrack;
     this.descriptionGenerator = descriptionGenerator;
     this.myTracksProviderUtils = MyTracksProviderUtils.Factory.get(context);
+    File cacheDir = context.getCacheDir();
+    powerColumn = new SpillableIntColumn(cacheDir);
+    cadenceColumn = new SpillableIntColumn(cacheDir);
+    heartRateColumn = new SpillableIntColumn(cacheDir);
   }
 
   @Override
@@ -102,7 +110,7 @@ public class KmlTrackWriter implements TrackWriter {
 
   @Override
   public void prepare(OutputStream outputStream) {
-    this.printWriter = new PrintWriter(outputStream);
+    this.printWriter = new TrackPrintWriter(outputStream);
   }
 
   @Override
@@ -111,6 +119,9 @@ public class KmlTrackWriter implements TrackWriter {
       printWriter.flush();
       printWriter = null;
     }
+    powerColumn.clear();
+    cadenceColumn.clear();
+    heartRateColumn.clear();
   }
 
   @Override
@@ -239,9 +250,9 @@ public class KmlTrackWriter implements TrackWriter {
       hasPower = false;
       hasCadence = false;
       hasHeartRate = false;
-      powerList.clear();
-      cadenceList.clear();
-      heartRateList.clear();
+      powerColumn.clear();
+      cadenceColumn.clear();
+      heartRateColumn.clear();
     }
   }
 
@@ -251,13 +262,13 @@ public class KmlTrackWriter implements TrackWriter {
       printWriter.println("<ExtendedData>");
       printWriter.println("<SchemaData schemaUrl=\"#" + SCHEMA_ID + "\">");
       if (hasPower) {
-        writeSensorData(powerList, POWER);
+        writeSensorData(powerColumn, POWER);
       }
       if (hasCadence) {
-        writeSensorData(cadenceList, CADENCE);
+        writeSensorData(cadenceColumn, CADENCE);
       }
       if (hasHeartRate) {
-        writeSensorData(heartRateList, HEART_RATE);
+        writeSensorData(heartRateColumn, HEART_RATE);
       }
       printWriter.println("</SchemaData>");
       printWriter.println("</ExtendedData>");
@@ -268,9 +279,12 @@ public class KmlTrackWriter implements TrackWriter {
   @Override
   public void writeLocation(Location location) {
     if (printWriter != null) {
-      printWriter.println(
-          "<when>" + StringUtils.formatDateTimeIso8601(location.getTime()) + "</when>");
-      printWriter.println("<gx:coord>" + getCoordinates(location, " ") + "</gx:coord>");
+      printWriter.print("<when>");
+      printWriter.printIso8601(location.getTime());
+      printWriter.println("</when>");
+      printWriter.print("<gx:coord>");
+      printCoordinates(location, ' ');
+      printWriter.println("</gx:coord>");
       if (location instanceof MyTracksLocation) {
         Sensor.SensorDataSet sensorDataSet = ((MyTracksLocation) location).getSensorDataSet();
         int power = -1;
@@ -300,9 +314,9 @@ public class KmlTrackWriter implements TrackWriter {
             }
           }
         }
-        powerList.add(power);
-        cadenceList.add(cadence);
-        heartRateList.add(heartRate);
+        powerColumn.add(power);
+        cadenceColumn.add(cadence);
+        heartRateColumn.add(heartRate);
       }
     }
   }
@@ -310,13 +324,20 @@ public class KmlTrackWriter implements TrackWriter {
   /**
    * Writes the sensor data.
    * 
-   * @param list a list of sensor data
+   * @param column the column of sensor data
    * @param name the name of the sensor data
    */
-  private void writeSensorData(ArrayList<Integer> list, String name) {
+  private void writeSensorData(SpillableIntColumn column, String name) {
     printWriter.println("<gx:SimpleArrayData name=\"" + name + "\">");
-    for (int i = 0; i < list.size(); i++) {
-      printWriter.println("<gx:value>" + list.get(i) + "</gx:value>");
+    try {
+      column.startReading();
+      while (column.hasNext()) {
+        printWriter.print("<gx:value>");
+        printWriter.printInteger(column.next());
+        printWriter.println("</gx:value>");
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to read " + name + " data", e);
     }
     printWriter.println("</gx:SimpleArrayData>");
   }
@@ -337,12 +358,15 @@ public class KmlTrackWriter implements TrackWriter {
       printWriter.println("<name>" + StringUtils.formatCData(name) + "</name>");
       printWriter.println(
           "<description>" + StringUtils.formatCData(description) + "</description>");
-      printWriter.println("<TimeStamp><when>"
-          + StringUtils.formatDateTimeIso8601(location.getTime()) + "</when></TimeStamp>");
+      printWriter.print("<TimeStamp><when>");
+      printWriter.printIso8601(location.getTime());
+      printWriter.println("</when></TimeStamp>");
       printWriter.println("<styleUrl>#" + styleName + "</styleUrl>");
       writeCategory(category);
       printWriter.println("<Point>");
-      printWriter.println("<coordinates>" + getCoordinates(location, ",") + "</coordinates>");
+      printWriter.print("<coordinates>");
+      printCoordinates(location, ',');
+      printWriter.println("</coordinates>");
       printWriter.println("</Point>");
       printWriter.println("</Placemark>");
     }
@@ -373,8 +397,9 @@ public class KmlTrackWriter implements TrackWriter {
       printWriter.print("<heading>" + heading + "</heading>");
       printWriter.print("<tilt>90</tilt>");
       printWriter.println("</Camera>");
-      printWriter.println("<TimeStamp><when>"
-          + StringUtils.formatDateTimeIso8601(location.getTime()) + "</when></TimeStamp>");
+      printWriter.print("<TimeStamp><when>");
+      printWriter.printIso8601(location.getTime());
+      printWriter.println("</when></TimeStamp>");
       printWriter.println("<styleUrl>#" + styleName + "</styleUrl>");
       writeCategory(category);
       if (playTrack) {
@@ -393,7 +418,9 @@ public class KmlTrackWriter implements TrackWriter {
       printWriter.print("<topFov>45</topFov>");
       printWriter.println("</ViewVolume>");
       printWriter.println("<Point>");
-      printWriter.println("<coordinates>" + getCoordinates(location, ",") + "</coordinates>");
+      printWriter.print("<coordinates>");
+      printCoordinates(location, ',');
+      printWriter.println("</coordinates>");
       printWriter.println("</Point>");
       printWriter.println("</PhotoOverlay>");
     }
@@ -427,13 +454,14 @@ public class KmlTrackWriter implements TrackWriter {
     return viewLocation.bearingTo(location);
   }
   
-  private String getCoordinates(Location location, String separator) {
-    StringBuffer buffer = new StringBuffer();
-    buffer.append(location.getLongitude() + separator + location.getLatitude());
+  private void printCoordinates(Location location, char separator) {
+    printWriter.print(location.getLongitude());
+    printWriter.print(separator);
+    printWriter.print(location.getLatitude());
     if (location.hasAltitude()) {
-      buffer.append(separator + location.getAltitude());
+      printWriter.print(separator);
+      printWriter.print(location.getAltitude());
     }
-    return buffer.toString();    
   }
 
   /**
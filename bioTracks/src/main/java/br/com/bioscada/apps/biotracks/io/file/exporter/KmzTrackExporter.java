@@ -55,6 +55,7 @@ public class KmzTrackExporter implements TrackExporter {
   private final FileTrackExporter fileTrackExporter;
   private final Track[] tracks;
   private final long photoSize;
+  private final long entryTime;
 
   /**
    * Constructor.
@@ -71,6 +72,7 @@ public class KmzTrackExporter implements TrackExporter {
     this.tracks = tracks;
     this.photoSize = PreferencesUtils.getInt(
         context, R.string.photo_size_key, PreferencesUtils.PHOTO_SIZE_DEFAULT);
+    this.entryTime = getEntryTime(tracks);
   }
 
   @Override
@@ -81,6 +83,7 @@ public class KmzTrackExporter implements TrackExporter {
 
       // Add kml file
       ZipEntry zipEntry = new ZipEntry(KMZ_KML_FILE);
+      zipEntry.setTime(entryTime);
       zipOutputStream.putNextEntry(zipEntry);
 
       boolean success = fileTrackExporter.writeTrack(zipOutputStream);
@@ -110,6 +113,20 @@ public class KmzTrackExporter implements TrackExporter {
     }
   }
 
+  /**
+   * Gets the time of the zip entries, the latest stop time of the tracks. Not
+   * the current time, so exporting unchanged tracks writes the same bytes.
+   * 
+   * @param tracks the tracks
+   */
+  private static long getEntryTime(Track[] tracks) {
+    long time = 0L;
+    for (Track track : tracks) {
+      time = Math.max(time, track.getTripStatistics().getStopTime());
+    }
+    return time;
+  }
+
   private void addImages(ZipOutputStream zipOutputStream) throws InterruptedException, IOException {
     for (Track track : tracks) {
       Cursor cursor = null;
@@ -149,6 +166,7 @@ public class KmzTrackExporter implements TrackExporter {
 
     ZipEntry zipEntry = new ZipEntry(
         KMZ_IMAGES_DIR + File.separatorChar + uri.getLastPathSegment());
+    zipEntry.setTime(entryTime);
     zipOutputStream.putNextEntry(zipEntry);
 
     int sampleSize;
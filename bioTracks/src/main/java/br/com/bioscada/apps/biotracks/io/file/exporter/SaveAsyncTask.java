@@ -31,6 +31,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.io.file.TrackFileFormat;
@@ -46,6 +53,9 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
 
   private static final String TAG = SaveAsyncTask.class.getSimpleName();
 
+  // Max number of tracks saved in parallel by default
+  private static final int MAX_DEFAULT_PARALLELISM = 4;
+
   private SaveActivity saveActivity;
   private final long[] trackIds;
   private final TrackFileFormat trackFileFormat;
@@ -53,9 +63,12 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
   private final File directory;
   private final Context context;
   private final MyTracksProviderUtils myTracksProviderUtils;
+  private final int parallelism;
+
+  // Lock to pick a unique file name and create the file
+  private final Object fileLock = new Object();
 
   private WakeLock wakeLock;
-  private TrackExporter trackExporter;
 
   // true if the AsyncTask has completed
   private boolean completed;
@@ -66,8 +79,8 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
   // the number of tracks to save
   private int totalCount;
 
-  // the last successfully saved path
-  private String savedPath;
+  // the last successfully saved path, set by the saving threads
+  private volatile String savedPath;
 
   /**
    * Creates an AsyncTask.
@@ -81,6 +94,24 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
    */
   public SaveAsyncTask(SaveActivity saveActivity, long[] trackIds, TrackFileFormat trackFileFormat,
       boolean playTrack, File directory) {
+    this(saveActivity, trackIds, trackFileFormat, playTrack, directory,
+        Math.min(MAX_DEFAULT_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Creates an AsyncTask.
+   * 
+   * @param saveActivity the activity currently associated with this task
+   * @param trackIds the track ids to save. To save all, set to size 1 with
+   *          trackIds[0] == -1L
+   * @param trackFileFormat the track file format
+   * @param playTrack true to play track
+   * @param directory the directory to write the file
+   * @param parallelism the max number of tracks saved in parallel when saving
+   *          all the tracks
+   */
+  public SaveAsyncTask(SaveActivity saveActivity, long[] trackIds, TrackFileFormat trackFileFormat,
+      boolean playTrack, File directory, int parallelism) {
     this.saveActivity = saveActivity;
     this.trackIds = trackIds;
     this.trackFileFormat = trackFileFormat;
@@ -88,6 +119,7 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
     this.directory = directory;
     context = saveActivity.getApplicationContext();
     myTracksProviderUtils = MyTracksProviderUtils.Factory.get(context);
+    this.parallelism = Math.max(1, parallelism);
 
     completed = false;
     successCount = 0;
@@ -176,7 +208,8 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
   }
 
   /**
-   * Saves tracks to one file.
+   * Saves tracks to one file. Can be called from multiple threads at the same
+   * time.
    * 
    * @param tracks the tracks
    */
@@ -204,15 +237,18 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
           }
         });
 
-    trackExporter = useKmz ? new KmzTrackExporter(
+    TrackExporter trackExporter = useKmz ? new KmzTrackExporter(
         myTracksProviderUtils, fileTrackExporter, tracks, context)
         : fileTrackExporter;
 
-    String fileName = FileUtils.buildUniqueFileName(directory, track.getName(), extension);
-    File file = new File(directory, fileName);
+    File file;
     FileOutputStream fileOutputStream = null;
     try {
-      fileOutputStream = new FileOutputStream(file);
+      synchronized (fileLock) {
+        String fileName = FileUtils.buildUniqueFileName(directory, track.getName(), extension);
+        file = new File(directory, fileName);
+        fileOutputStream = new FileOutputStream(file);
+      }
       if (trackExporter.writeTrack(fileOutputStream)) {
         savedPath = file.getAbsolutePath();
         return true;
@@ -224,7 +260,7 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
         return false;
       }
     } catch (FileNotFoundException e) {
-      Log.e(TAG, "Unable to open file " + file.getName(), e);
+      Log.e(TAG, "Unable to open file", e);
       return false;
     } finally {
       if (fileOutputStream != null) {
@@ -238,9 +274,11 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
   }
 
   /**
-   * Saves all the tracks.
+   * Saves all the tracks, each to its own file. Up to parallelism tracks are
+   * saved at the same time. Cancelling the task interrupts the saving threads.
    */
   private Boolean saveAllTracks() {
+    ArrayList<Track> tracks = new ArrayList<Track>();
     Cursor cursor = null;
     try {
       cursor = myTracksProviderUtils.getTrackCursor(null, null, TracksColumns._ID);
@@ -253,17 +291,47 @@ public class SaveAsyncTask extends AsyncTask<Void, Integer, Boolean> {
           return false;
         }
         cursor.moveToPosition(i);
-        Track track = myTracksProviderUtils.createTrack(cursor);
-        if (track != null && saveTracks(new Track[] { track })) {
-          successCount++;
-        }
-        publishProgress(i + 1, totalCount);
+        tracks.add(myTracksProviderUtils.createTrack(cursor));
       }
-      return true;
     } finally {
       if (cursor != null) {
         cursor.close();
       }
     }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, totalCount)));
+    CompletionService<Boolean> completionService = new ExecutorCompletionService<Boolean>(
+        executorService);
+    try {
+      for (final Track track : tracks) {
+        completionService.submit(new Callable<Boolean>() {
+            @Override
+          public Boolean call() {
+            return track != null && saveTracks(new Track[] { track });
+          }
+        });
+      }
+      for (int i = 0; i < totalCount; i++) {
+        if (isCancelled()) {
+          return false;
+        }
+        try {
+          if (completionService.take().get()) {
+            successCount++;
+          }
+        } catch (ExecutionException e) {
+          Log.e(TAG, "Unable to save track", e.getCause());
+        }
+        publishProgress(i + 1, totalCount);
+      }
+      return true;
+    } catch (InterruptedException e) {
+      Log.d(TAG, "Interrupted while saving tracks", e);
+      return false;
+    } finally {
+      // Interrupts the saving threads if cancelled
+      executorService.shutdownNow();
+    }
   }
 }
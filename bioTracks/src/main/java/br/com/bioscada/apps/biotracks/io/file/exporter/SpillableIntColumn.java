@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.io.file.exporter;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A column of int values added one by one and read back once, in order. At
+ * most {@link #BUFFER_SIZE} values are kept in memory, the older ones are
+ * spilled to a temporary file. If the file can't be written, the values are
+ * kept in memory.
+ */
+class SpillableIntColumn {
+
+  private static final String TAG = SpillableIntColumn.class.getSimpleName();
+
+  static final int BUFFER_SIZE = 4096;
+
+  private final File directory;
+
+  private int[] buffer = new int[BUFFER_SIZE];
+  private int bufferSize;
+  private File file;
+  private DataOutputStream outputStream;
+  private int fileSize;
+  private boolean spillFailed;
+
+  // Reading state
+  private DataInputStream inputStream;
+  private int readIndex;
+
+  /**
+   * Constructor.
+   *
+   * @param directory the directory of the temporary file, null for the default
+   *          temporary directory
+   */
+  SpillableIntColumn(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Gets the number of values.
+   */
+  int size() {
+    return fileSize + bufferSize;
+  }
+
+  /**
+   * Adds a value.
+   *
+   * @param value the value
+   */
+  void add(int value) {
+    if (bufferSize == buffer.length) {
+      if (spillFailed) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      } else {
+        spill();
+      }
+    }
+    buffer[bufferSize++] = value;
+  }
+
+  /**
+   * Starts reading the values from the first one.
+   */
+  void startReading() throws IOException {
+    closeStreams();
+    readIndex = 0;
+    if (fileSize != 0) {
+      inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+  }
+
+  /**
+   * Returns true if there are more values to read.
+   */
+  boolean hasNext() {
+    return readIndex < size();
+  }
+
+  /**
+   * Reads the next value.
+   */
+  int next() throws IOException {
+    int index = readIndex++;
+    if (index < fileSize) {
+      return inputStream.readInt();
+    }
+    return buffer[index - fileSize];
+  }
+
+  /**
+   * Removes all the values and deletes the temporary file.
+   */
+  void clear() {
+    closeStreams();
+    if (file != null) {
+      if (!file.delete()) {
+        Log.d(TAG, "Unable to delete " + file);
+      }
+      file = null;
+    }
+    if (buffer.length != BUFFER_SIZE) {
+      buffer = new int[BUFFER_SIZE];
+    }
+    bufferSize = 0;
+    fileSize = 0;
+    spillFailed = false;
+    readIndex = 0;
+  }
+
+  /**
+   * Moves the buffered values to the temporary file.
+   */
+  private void spill() {
+    try {
+      if (outputStream == null) {
+        if (file == null) {
+          file = File.createTempFile("column", null, directory);
+        }
+        outputStream = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file, true)));
+      }
+      for (int i = 0; i < bufferSize; i++) {
+        outputStream.writeInt(buffer[i]);
+      }
+      outputStream.flush();
+      fileSize += bufferSize;
+      bufferSize = 0;
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to spill values, keeping them in memory", e);
+      spillFailed = true;
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+  }
+
+  private void closeStreams() {
+    try {
+      if (outputStream != null) {
+        outputStream.close();
+      }
+      if (inputStream != null) {
+        inputStream.close();
+      }
+    } catch (IOException e) {
+      Log.d(TAG, "Unable to close streams", e);
+    }
+    outputStream = null;
+    inputStream = null;
+  }
+}
@@ -24,7 +24,6 @@ import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.content.Waypoint;
 
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.util.Locale;
 
 import br.com.bioscada.apps.biotracks.R;
@@ -86,7 +85,7 @@ public class TcxTrackWriter implements TrackWriter {
       R.string.activity_type_walking };
 
   private final Context context;
-  private PrintWriter printWriter;
+  private TrackPrintWriter printWriter;
   private SportType sportType;
 
   public TcxTrackWriter(Context context) {
@@ -95,7 +94,7 @@ public class TcxTrackWriter implements TrackWriter {
 
   @Override
   public void prepare(OutputStream outputStream) {
-    this.printWriter = new PrintWriter(outputStream);
+    this.printWriter = new TrackPrintWriter(outputStream);
   }
   
   @Override
@@ -227,13 +226,21 @@ public class TcxTrackWriter implements TrackWriter {
   public void writeLocation(Location location) {
     if (printWriter != null) {
       printWriter.println("<Trackpoint>");
-      printWriter.println("<Time>" + StringUtils.formatDateTimeIso8601(location.getTime()) + "</Time>");
+      printWriter.print("<Time>");
+      printWriter.printIso8601(location.getTime());
+      printWriter.println("</Time>");
       printWriter.println("<Position>");
-      printWriter.println("<LatitudeDegrees>" + location.getLatitude() + "</LatitudeDegrees>");
-      printWriter.println("<LongitudeDegrees>" + location.getLongitude() + "</LongitudeDegrees>");
+      printWriter.print("<LatitudeDegrees>");
+      printWriter.print(location.getLatitude());
+      printWriter.println("</LatitudeDegrees>");
+      printWriter.print("<LongitudeDegrees>");
+      printWriter.print(location.getLongitude());
+      printWriter.println("</LongitudeDegrees>");
       printWriter.println("</Position>");
       if (location.hasAltitude()) {
-        printWriter.println("<AltitudeMeters>" + location.getAltitude() + "</AltitudeMeters>");
+        printWriter.print("<AltitudeMeters>");
+        printWriter.print(location.getAltitude());
+        printWriter.println("</AltitudeMeters>");
       }
 
       if (location instanceof MyTracksLocation) {
@@ -251,7 +258,9 @@ public class TcxTrackWriter implements TrackWriter {
           
           if (heartRateAvailable) {
             printWriter.println("<HeartRateBpm>");
-            printWriter.println("<Value>" + sensorDataSet.getHeartRate().getValue() + "</Value>");
+            printWriter.print("<Value>");
+            printWriter.printInteger(sensorDataSet.getHeartRate().getValue());
+            printWriter.println("</Value>");
             printWriter.println("</HeartRateBpm>");
           }
 
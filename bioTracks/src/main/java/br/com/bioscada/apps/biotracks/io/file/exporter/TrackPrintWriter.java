@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.io.file.exporter;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.text.NumberFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import br.com.bioscada.apps.biotracks.util.StringUtils;
+
+/**
+ * A {@link PrintWriter} for the track writers, writing UTF-8 through a large
+ * buffer and formatting the numbers and the times of the track points without
+ * creating objects.
+ * <p>
+ * Fixed point numbers are formatted as a {@link NumberFormat} without grouping
+ * and with a max number of fraction digits would, rounding the exact value half
+ * even. Times are formatted as {@link StringUtils#formatDateTimeIso8601(long)}
+ * would, the date and the minute being computed only when the minute changes.
+ */
+class TrackPrintWriter extends PrintWriter {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int MAX_FRACTION_DIGITS = 9;
+  private static final long[] POWERS_OF_TEN = new long[MAX_FRACTION_DIGITS + 1];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  // Max scaled value formatted without the fallback format, exact in a double
+  private static final double MAX_SCALED_VALUE = 1e15;
+
+  private static final long MINUTE = 60 * 1000;
+
+  // The "yyyy-MM-ddTHH:mm:" prefix of the times
+  private static final int MINUTE_PREFIX_LENGTH = 17;
+
+  private final char[] chars = new char[32];
+  private final char[] minutePrefix = new char[MINUTE_PREFIX_LENGTH];
+  private final Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"), Locale.US);
+  private long cachedMinute = Long.MIN_VALUE;
+  private NumberFormat fallbackFormat;
+
+  /**
+   * Constructor.
+   *
+   * @param outputStream the output stream
+   */
+  TrackPrintWriter(OutputStream outputStream) {
+    super(new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8), BUFFER_SIZE));
+  }
+
+  /**
+   * Prints a number with at most a number of fraction digits, without trailing
+   * zeros.
+   *
+   * @param value the value
+   * @param maxFractionDigits the max number of fraction digits, from 0 to 9
+   */
+  void printFixed(double value, int maxFractionDigits) {
+    long power = POWERS_OF_TEN[maxFractionDigits];
+    double product = Math.abs(value) * power;
+    if (!(product < MAX_SCALED_VALUE)) {
+      // NaN, infinite or too large
+      printFallback(value, maxFractionDigits);
+      return;
+    }
+    long digits = (long) Math.rint(product);
+    if (product - Math.floor(product) == 0.5) {
+      // The product may have been rounded to a tie, round the exact value
+      digits = new BigDecimal(Math.abs(value)).setScale(maxFractionDigits, RoundingMode.HALF_EVEN)
+          .unscaledValue().longValue();
+    }
+    long integerPart = digits / power;
+    long fractionPart = digits % power;
+    int fractionDigits = maxFractionDigits;
+    while (fractionDigits > 0 && fractionPart % 10 == 0) {
+      fractionPart /= 10;
+      fractionDigits--;
+    }
+
+    int end = chars.length;
+    int index = end;
+    for (int i = 0; i < fractionDigits; i++) {
+      chars[--index] = (char) ('0' + fractionPart % 10);
+      fractionPart /= 10;
+    }
+    if (fractionDigits > 0) {
+      chars[--index] = '.';
+    }
+    index = fillDigits(integerPart, index);
+    if (Double.doubleToRawLongBits(value) < 0) {
+      chars[--index] = '-';
+    }
+    write(chars, index, end - index);
+  }
+
+  /**
+   * Prints an integer.
+   *
+   * @param value the value
+   */
+  void printInteger(long value) {
+    if (value == Long.MIN_VALUE) {
+      print(value);
+      return;
+    }
+    int end = chars.length;
+    int index = fillDigits(Math.abs(value), end);
+    if (value < 0) {
+      chars[--index] = '-';
+    }
+    write(chars, index, end - index);
+  }
+
+  /**
+   * Prints a time in the ISO 8601 format, yyyy-MM-dd'T'HH:mm:ss.SSS'Z'.
+   *
+   * @param time the time in milliseconds since the epoch
+   */
+  void printIso8601(long time) {
+    long minute = time >= 0 ? time / MINUTE : (time + 1) / MINUTE - 1;
+    if (minute != cachedMinute && !setMinutePrefix(minute)) {
+      print(StringUtils.formatDateTimeIso8601(time));
+      return;
+    }
+    write(minutePrefix, 0, MINUTE_PREFIX_LENGTH);
+    int milliseconds = (int) (time - minute * MINUTE);
+    fillTwoDigits(milliseconds / 1000, 0);
+    chars[2] = '.';
+    int fraction = milliseconds % 1000;
+    chars[3] = (char) ('0' + fraction / 100);
+    fillTwoDigits(fraction % 100, 4);
+    chars[6] = 'Z';
+    write(chars, 0, 7);
+  }
+
+  /**
+   * Sets the minute prefix. Returns false for a year not written in 4 digits.
+   *
+   * @param minute the minutes since the epoch
+   */
+  private boolean setMinutePrefix(long minute) {
+    calendar.setTimeInMillis(minute * MINUTE);
+    int year = calendar.get(Calendar.YEAR);
+    if (calendar.get(Calendar.ERA) != GregorianCalendar.AD || year > 9999) {
+      return false;
+    }
+    fillTwoDigits(year / 100, 0);
+    fillTwoDigits(year % 100, 2);
+    chars[4] = '-';
+    fillTwoDigits(calendar.get(Calendar.MONTH) + 1, 5);
+    chars[7] = '-';
+    fillTwoDigits(calendar.get(Calendar.DAY_OF_MONTH), 8);
+    chars[10] = 'T';
+    fillTwoDigits(calendar.get(Calendar.HOUR_OF_DAY), 11);
+    chars[13] = ':';
+    fillTwoDigits(calendar.get(Calendar.MINUTE), 14);
+    chars[16] = ':';
+    System.arraycopy(chars, 0, minutePrefix, 0, MINUTE_PREFIX_LENGTH);
+    cachedMinute = minute;
+    return true;
+  }
+
+  /**
+   * Fills the digits of a non negative value, right aligned.
+   *
+   * @param value the value
+   * @param end the end index, exclusive
+   * @return the index of the first digit.
+   */
+  private int fillDigits(long value, int end) {
+    int index = end;
+    do {
+      chars[--index] = (char) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    return index;
+  }
+
+  private void fillTwoDigits(int value, int index) {
+    chars[index] = (char) ('0' + value / 10);
+    chars[index + 1] = (char) ('0' + value % 10);
+  }
+
+  private void printFallback(double value, int maxFractionDigits) {
+    if (fallbackFormat == null) {
+      fallbackFormat = NumberFormat.getInstance(Locale.US);
+      fallbackFormat.setGroupingUsed(false);
+    }
+    fallbackFormat.setMaximumFractionDigits(maxFractionDigits);
+    print(fallbackFormat.format(value));
+  }
+}
@@ -45,10 +45,12 @@ import javax.xml.parsers.SAXParserFactory;
 
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.content.DescriptionGeneratorImpl;
+import br.com.bioscada.apps.biotracks.content.TrackProfileCache;
 import br.com.bioscada.apps.biotracks.services.TrackRecordingService;
 import br.com.bioscada.apps.biotracks.stats.TripStatisticsUpdater;
 import br.com.bioscada.apps.biotracks.util.CalorieUtils;
 import br.com.bioscada.apps.biotracks.util.CalorieUtils.ActivityType;
+import br.com.bioscada.apps.biotracks.util.GeodesyUtils;
 import br.com.bioscada.apps.biotracks.util.LocationUtils;
 import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
 import br.com.bioscada.apps.biotracks.util.StringUtils;
@@ -101,7 +103,10 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
   private static final String TAG = AbstractFileTrackImporter.class.getSimpleName();
   
   // The maximum number of buffered locations for bulk-insertion
-  private static final int MAX_BUFFERED_LOCATIONS = 512;
+  private static final int MAX_BUFFERED_LOCATIONS = 2048;
+
+  // The maximum number of buffered location batches waiting to be inserted
+  private static final int MAX_QUEUED_BATCHES = 4;
 
   private final Context context;
   private final long importTrackId;
@@ -114,6 +119,9 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
   // The current track data
   private TrackData trackData;
 
+  // The writer inserting the track points while parsing
+  private TrackPointWriter trackPointWriter;
+
   // The SAX locator to get the current line information
   private Locator locator;
 
@@ -177,6 +185,8 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
       SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
       long start = System.currentTimeMillis();
 
+      trackPointWriter = new TrackPointWriter(
+          context.getContentResolver(), myTracksProviderUtils, MAX_QUEUED_BATCHES);
       saxParser.parse(inputStream, this);
       Log.d(TAG, "Total import time: " + (System.currentTimeMillis() - start) + "ms");
       if (trackIds.size() != 1) {
@@ -197,6 +207,10 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
       Log.e(TAG, "Unable to import file", e);
       cleanImport();
       return -1L;
+    } finally {
+      if (trackPointWriter != null) {
+        trackPointWriter.close();
+      }
     }
   }
 
@@ -328,8 +342,18 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
   /**
    * On track end.
    */
-  protected void onTrackEnd() {
+  protected void onTrackEnd() throws SAXException {
     flushLocations(trackData);
+    try {
+      trackPointWriter.flush();
+    } catch (InterruptedException e) {
+      throw new SAXException(createErrorMessage("Interrupted while inserting track points"), e);
+    }
+    if (trackData.numberOfLocations > 0) {
+      long trackId = trackData.track.getId();
+      trackData.track.setStartId(myTracksProviderUtils.getFirstTrackPointId(trackId));
+      trackData.track.setStopId(myTracksProviderUtils.getLastTrackPointId(trackId));
+    }
     if (name != null) {
       trackData.track.setName(name);
     }
@@ -348,12 +372,13 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
     trackData.track.setNumberOfPoints(trackData.numberOfLocations);
     myTracksProviderUtils.updateTrack(trackData.track);
     insertFirstWaypoint(trackData.track);
+    TrackProfileCache.build(context, myTracksProviderUtils, trackData.track);
   }
 
   /**
    * On track segment start.
    */
-  protected void onTrackSegmentStart() {
+  protected void onTrackSegmentStart() throws SAXException {
     trackData.numberOfSegments++;
 
     /*
@@ -426,7 +451,8 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
          * like max speed will also be off.
          */        
         double duration = timeDifference * UnitConversions.MS_TO_S;
-        double speed = trackData.lastLocationInCurrentSegment.distanceTo(location) / duration;
+        double speed = GeodesyUtils.distance(trackData.lastLocationInCurrentSegment, location)
+            / duration;
         location.setSpeed((float) speed);
       }
       location.setBearing(trackData.lastLocationInCurrentSegment.bearingTo(location));
@@ -453,13 +479,8 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
    * 
    * @param location the location
    */
-  protected void insertTrackPoint(Location location) {
+  protected void insertTrackPoint(Location location) throws SAXException {
     insertLocation(location);
-
-    if (trackData.track.getStartId() == -1L) {
-      // Flush the location to set the track start id and the track end id
-      flushLocations(trackData);
-    }
   }
 
   /**
@@ -557,7 +578,7 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
    * 
    * @param location the location
    */
-  private void insertLocation(Location location) {
+  private void insertLocation(Location location) throws SAXException {
     if (trackData.tripStatisticsUpdater == null) {
       trackData.tripStatisticsUpdater = new TripStatisticsUpdater(
           location.getTime() != -1L ? location.getTime() : trackData.importTime);
@@ -576,21 +597,24 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
   }
 
   /**
-   * Flushes the locations to the database.
+   * Flushes the locations to the track point writer. The track start id and
+   * stop id are set on track end, once the locations are inserted.
    * 
    * @param data the track data
    */
-  private void flushLocations(TrackData data) {
+  private void flushLocations(TrackData data) throws SAXException {
     if (data.numBufferedLocations <= 0) {
       return;
     }
-    myTracksProviderUtils.bulkInsertTrackPoint(
-        data.bufferedLocations, data.numBufferedLocations, data.track.getId());
-    data.numBufferedLocations = 0;
-    if (data.track.getStartId() == -1L) {
-      data.track.setStartId(myTracksProviderUtils.getFirstTrackPointId(data.track.getId()));
+    try {
+      trackPointWriter.insert(
+          data.bufferedLocations, data.numBufferedLocations, data.track.getId());
+    } catch (InterruptedException e) {
+      throw new SAXException(createErrorMessage("Interrupted while inserting track points"), e);
     }
-    data.track.setStopId(myTracksProviderUtils.getLastTrackPointId(data.track.getId()));
+    // The writer owns the flushed buffer
+    data.bufferedLocations = new Location[MAX_BUFFERED_LOCATIONS];
+    data.numBufferedLocations = 0;
   }
 
   /**
@@ -622,6 +646,10 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
    * Cleans up import.
    */
   private void cleanImport() {
+    // Stop inserting track points before deleting the tracks
+    if (trackPointWriter != null) {
+      trackPointWriter.close();
+    }
     for (long trackId : trackIds) {
       myTracksProviderUtils.deleteTrack(context, trackId);
     }
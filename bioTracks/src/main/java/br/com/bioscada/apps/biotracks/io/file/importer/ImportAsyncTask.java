@@ -32,6 +32,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.io.file.TrackFileFormat;
@@ -48,11 +54,15 @@ public class ImportAsyncTask extends AsyncTask<Void, Integer, Boolean> {
 
   private static final String TAG = ImportAsyncTask.class.getSimpleName();
 
+  // Max number of files imported in parallel by default
+  private static final int MAX_DEFAULT_PARALLELISM = 4;
+
   private ImportActivity importActivity;
   private final boolean importAll;
   private final TrackFileFormat trackFileFormat;
   private final String path;
   private final Context context;
+  private final int parallelism;
   private WakeLock wakeLock;
 
   // true if the AsyncTask has completed
@@ -77,11 +87,27 @@ public class ImportAsyncTask extends AsyncTask<Void, Integer, Boolean> {
    */
   public ImportAsyncTask(ImportActivity importActivity, boolean importAll,
       TrackFileFormat trackFileFormat, String path) {
+    this(importActivity, importAll, trackFileFormat, path,
+        Math.min(MAX_DEFAULT_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Creates an AsyncTask.
+   * 
+   * @param importActivity the activity currently associated with this AsyncTask
+   * @param importAll true to import all GPX files
+   * @param trackFileFormat the track file format
+   * @param path path to import GPX files
+   * @param parallelism the max number of files imported in parallel
+   */
+  public ImportAsyncTask(ImportActivity importActivity, boolean importAll,
+      TrackFileFormat trackFileFormat, String path, int parallelism) {
     this.importActivity = importActivity;
     this.importAll = importAll;
     this.trackFileFormat = trackFileFormat;
     this.path = path;
     context = importActivity.getApplicationContext();
+    this.parallelism = Math.max(1, parallelism);
 
     completed = false;
     successCount = 0;
@@ -128,17 +154,7 @@ public class ImportAsyncTask extends AsyncTask<Void, Integer, Boolean> {
         return true;
       }
 
-      for (int i = 0; i < totalCount; i++) {
-        if (isCancelled()) {
-          // If cancelled, return true to show the number of files imported
-          return true;
-        }
-        if (importFile(files.get(i))) {
-          successCount++;
-        }
-        publishProgress(i + 1, totalCount);
-      }
-      return true;
+      return importFiles(files);
     } finally {
       if (wakeLock != null && wakeLock.isHeld()) {
         wakeLock.release();
@@ -170,11 +186,58 @@ public class ImportAsyncTask extends AsyncTask<Void, Integer, Boolean> {
   }
   
   /**
-   * Imports a file.
+   * Imports files, up to parallelism files at the same time. Cancelling the
+   * task interrupts the importing threads.
+   * 
+   * @param files the files
+   */
+  private boolean importFiles(List<File> files) {
+    ExecutorService executorService = Executors.newFixedThreadPool(
+        Math.min(parallelism, files.size()));
+    CompletionService<Long> completionService = new ExecutorCompletionService<Long>(
+        executorService);
+    try {
+      for (final File file : files) {
+        completionService.submit(new Callable<Long>() {
+            @Override
+          public Long call() {
+            return importFile(file);
+          }
+        });
+      }
+      for (int i = 0; i < totalCount; i++) {
+        if (isCancelled()) {
+          // If cancelled, return true to show the number of files imported
+          return true;
+        }
+        try {
+          long id = completionService.take().get();
+          if (id != -1L) {
+            trackId = id;
+            successCount++;
+          }
+        } catch (ExecutionException e) {
+          Log.e(TAG, "Unable to import file", e.getCause());
+        }
+        publishProgress(i + 1, totalCount);
+      }
+      return true;
+    } catch (InterruptedException e) {
+      Log.d(TAG, "Interrupted while importing files", e);
+      return true;
+    } finally {
+      // Interrupts the importing threads if cancelled
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Imports a file. Can be called from multiple threads at the same time.
    * 
    * @param file the file
+   * @return the imported track id or -1L.
    */
-  private boolean importFile(final File file) {
+  private long importFile(final File file) {
     FileInputStream fileInputStream = null;
     try {
       TrackImporter trackImporter;
@@ -193,11 +256,10 @@ public class ImportAsyncTask extends AsyncTask<Void, Integer, Boolean> {
         trackImporter = new GpxFileTrackImporter(context);
       }
       fileInputStream = new FileInputStream(file);
-      trackId = trackImporter.importFile(fileInputStream);
-      return trackId != -1L;
+      return trackImporter.importFile(fileInputStream);
     } catch (FileNotFoundException e) {
       Log.e(TAG, "Unable to import file", e);
-      return false;
+      return -1L;
     } finally {
       if (fileInputStream != null) {
         try {
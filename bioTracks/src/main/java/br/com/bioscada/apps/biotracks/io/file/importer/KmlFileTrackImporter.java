@@ -213,7 +213,7 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
   }
 
   @Override
-  protected void onTrackSegmentStart() {
+  protected void onTrackSegmentStart() throws SAXException {
     super.onTrackSegmentStart();
     locationList = new ArrayList<Location>();
     powerList = new ArrayList<Integer>();
@@ -224,7 +224,7 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
   /**
    * On track segment end.
    */
-  private void onTrackSegmentEnd() {
+  private void onTrackSegmentEnd() throws SAXException {
     // Close a track segment by inserting the segment locations
     boolean hasPower = powerList.size() == locationList.size();
     boolean hasCadence = cadenceList.size() == locationList.size();
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.io.file.importer;
+
+import android.content.ContentResolver;
+import android.location.Location;
+import android.util.Log;
+
+import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
+import com.google.android.lib.mytracks.content.TrackPointsColumns;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts batches of track points on a background thread, so that parsing a
+ * file overlaps with inserting its track points.
+ * <p>
+ * At most a max number of batches wait to be inserted. Adding a batch blocks
+ * while the queue is full, so that a fast parser doesn't hold the whole file in
+ * memory. The observers of the track points are notified once, on close,
+ * instead of after each batch.
+ */
+class TrackPointWriter {
+
+  private static final String TAG = TrackPointWriter.class.getSimpleName();
+
+  private final ContentResolver contentResolver;
+  private final MyTracksProviderUtils myTracksProviderUtils;
+  private final int maxQueuedBatches;
+  private final Semaphore queuedBatches;
+  private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+  // The first insert failure, rethrown to the parser
+  private volatile RuntimeException failure;
+
+  private volatile boolean inserted;
+  private boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param contentResolver the content resolver
+   * @param myTracksProviderUtils the my tracks provider utils
+   * @param maxQueuedBatches the max number of batches waiting to be inserted
+   */
+  TrackPointWriter(ContentResolver contentResolver, MyTracksProviderUtils myTracksProviderUtils,
+      int maxQueuedBatches) {
+    this.contentResolver = contentResolver;
+    this.myTracksProviderUtils = myTracksProviderUtils;
+    this.maxQueuedBatches = maxQueuedBatches;
+    queuedBatches = new Semaphore(maxQueuedBatches);
+  }
+
+  /**
+   * Adds a batch of track points to insert. Blocks while the queue is full.
+   *
+   * @param locations the locations, owned by the writer from now on
+   * @param length the number of locations to insert
+   * @param trackId the track id
+   */
+  void insert(final Location[] locations, final int length, final long trackId)
+      throws InterruptedException {
+    checkFailure();
+    queuedBatches.acquire();
+    executorService.execute(new Runnable() {
+        @Override
+      public void run() {
+        try {
+          if (failure == null) {
+            myTracksProviderUtils.bulkInsertTrackPoint(locations, length, trackId, false);
+            inserted = true;
+          }
+        } catch (RuntimeException e) {
+          failure = e;
+        } finally {
+          queuedBatches.release();
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits until all the added track points are inserted.
+   */
+  void flush() throws InterruptedException {
+    queuedBatches.acquire(maxQueuedBatches);
+    queuedBatches.release(maxQueuedBatches);
+    checkFailure();
+  }
+
+  /**
+   * Drops the track points not inserted yet, waits for the batch being
+   * inserted, and notifies the observers if any track point was inserted.
+   */
+  void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    executorService.shutdownNow();
+    try {
+      while (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+        Log.d(TAG, "Waiting for the track points insertion");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (inserted) {
+      contentResolver.notifyChange(TrackPointsColumns.CONTENT_URI, null, false);
+    }
+  }
+
+  private void checkFailure() {
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
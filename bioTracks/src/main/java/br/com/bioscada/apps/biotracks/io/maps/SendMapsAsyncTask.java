@@ -44,6 +44,8 @@ import java.util.Vector;
 import br.com.bioscada.apps.biotracks.Constants;
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.content.DescriptionGeneratorImpl;
+import br.com.bioscada.apps.biotracks.content.TrackProfile;
+import br.com.bioscada.apps.biotracks.content.TrackProfileCache;
 import br.com.bioscada.apps.biotracks.io.gdata.GDataClientFactory;
 import br.com.bioscada.apps.biotracks.io.gdata.maps.MapsClient;
 import br.com.bioscada.apps.biotracks.io.gdata.maps.MapsConstants;
@@ -51,8 +53,6 @@ import br.com.bioscada.apps.biotracks.io.gdata.maps.MapsGDataConverter;
 import br.com.bioscada.apps.biotracks.io.gdata.maps.XmlMapsGDataParserFactory;
 import br.com.bioscada.apps.biotracks.io.sendtogoogle.AbstractSendAsyncTask;
 import br.com.bioscada.apps.biotracks.io.sendtogoogle.SendToGoogleUtils;
-import br.com.bioscada.apps.biotracks.stats.TripStatisticsUpdater;
-import br.com.bioscada.apps.biotracks.util.CalorieUtils.ActivityType;
 import br.com.bioscada.apps.biotracks.util.LocationUtils;
 import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
 
@@ -72,6 +72,7 @@ public class SendMapsAsyncTask extends AbstractSendAsyncTask {
   private static final String
       END_ICON_URL = "http://maps.google.com/mapfiles/ms/micons/red-dot.png";
   private static final int MAX_POINTS_PER_UPLOAD = 500;
+  private static final int CHART_RESOLUTION = 250;
 
   private static final int PROGRESS_FETCH_MAP_ID = 5;
   @VisibleForTesting
@@ -240,16 +241,6 @@ public class SendMapsAsyncTask extends AbstractSendAsyncTask {
     List<Location> locations = new ArrayList<Location>(MAX_POINTS_PER_UPLOAD);
     Location lastValidLocation = null;
     boolean sentStartMarker = false;
-
-    // For chart server, limit the number of elevation readings to 250.
-    int elevationSamplingFrequency = Math.max(1, (int) (numberOfPoints / 250.0));
-    Vector<Double> distances = new Vector<Double>();
-    Vector<Double> elevations = new Vector<Double>();
-    TripStatisticsUpdater tripStatisticsUpdater = new TripStatisticsUpdater(
-        track.getTripStatistics().getStartTime());
-    int recordingDistanceInterval = PreferencesUtils.getInt(context,
-        R.string.recording_distance_interval_key,
-        PreferencesUtils.RECORDING_DISTANCE_INTERVAL_DEFAULT);
     int readCount = 0;
     MyTracksProviderUtils.LocationIterator locationIterator = null;
 
@@ -275,13 +266,6 @@ public class SendMapsAsyncTask extends AbstractSendAsyncTask {
           sentStartMarker = true;
         }
 
-        tripStatisticsUpdater.addLocation(
-            location, recordingDistanceInterval, false, ActivityType.INVALID, 0.0);
-        if (readCount % elevationSamplingFrequency == 0) {
-          distances.add(tripStatisticsUpdater.getTripStatistics().getTotalDistance());
-          elevations.add(tripStatisticsUpdater.getSmoothedElevation());
-        }
-
         // Upload periodically
         readCount++;
         if (readCount % MAX_POINTS_PER_UPLOAD == 0) {
@@ -302,8 +286,15 @@ public class SendMapsAsyncTask extends AbstractSendAsyncTask {
 
       // Create an end marker
       if (lastValidLocation != null) {
-        distances.add(tripStatisticsUpdater.getTripStatistics().getTotalDistance());
-        elevations.add(tripStatisticsUpdater.getSmoothedElevation());
+        // For chart server, limit the number of elevation readings to 250.
+        TrackProfile.Series series = TrackProfileCache.get(
+            context, myTracksProviderUtils, track).getSeries(CHART_RESOLUTION);
+        Vector<Double> distances = new Vector<Double>(series.size());
+        Vector<Double> elevations = new Vector<Double>(series.size());
+        for (int i = 0; i < series.size(); i++) {
+          distances.add((double) series.distances[i]);
+          elevations.add((double) series.elevations[i]);
+        }
         DescriptionGenerator descriptionGenerator = new DescriptionGeneratorImpl(context);
         track.setDescription(
             descriptionGenerator.generateTrackDescription(track, distances, elevations, true));
@@ -32,10 +32,16 @@ import com.google.android.gms.auth.UserRecoverableAuthException;
 import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
 import com.google.android.lib.mytracks.content.Track;
 import com.google.android.lib.mytracks.util.FileUtils;
+import com.google.api.client.googleapis.GoogleHeaders;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
 import com.google.api.client.googleapis.extensions.android.gms.auth.GoogleAccountCredential;
 import com.google.api.client.googleapis.extensions.android.gms.auth.UserRecoverableAuthIOException;
+import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.Drive.Changes;
 import com.google.api.services.drive.Drive.Files;
@@ -44,16 +50,25 @@ import com.google.api.services.drive.model.Change;
 import com.google.api.services.drive.model.ChangeList;
 import com.google.api.services.drive.model.File;
 import com.google.api.services.drive.model.FileList;
+import com.google.common.annotations.VisibleForTesting;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.io.file.exporter.KmzTrackExporter;
@@ -75,15 +90,56 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
   // drive.about.get fields. Contains one field, largestChangeId
   private static final String ABOUT_GET_FIELDS = "largestChangeId";
 
+  // Maximum number of drive files requested in one batch
+  private static final int BATCH_SIZE = 100;
+
+  // Maximum number of concurrent uploads
+  private static final int UPLOAD_THREADS = 3;
+
+  /**
+   * An upload of a track file, running on the upload executor.
+   */
+  private static class Upload {
+    final Track track;
+    final long modifiedTime; // the track modified time when exported
+    final File driveFile; // the drive file to update, null to insert one
+    final java.io.File file;
+    final Future<File> future;
+
+    Upload(Track track, File driveFile, java.io.File file, Future<File> future) {
+      this.track = track;
+      this.modifiedTime = track.getModifiedTime();
+      this.driveFile = driveFile;
+      this.file = file;
+      this.future = future;
+    }
+  }
+
   private final Context context;
+  private final String rootUrl;
   private final MyTracksProviderUtils myTracksProviderUtils;
+  private final SyncCounters syncCounters = new SyncCounters();
+  private final List<Upload> uploads = new ArrayList<Upload>();
   private Drive drive;
   private String driveAccountName; // the account name associated with the drive
   private String folderId;
+  private ExecutorService uploadExecutorService;
 
   public SyncAdapter(Context context) {
+    this(context, Drive.DEFAULT_ROOT_URL);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param context the context
+   * @param rootUrl the drive server root url, such as a local server in tests
+   */
+  @VisibleForTesting
+  SyncAdapter(Context context, String rootUrl) {
     super(context, true);
     this.context = context;
+    this.rootUrl = rootUrl;
     this.myTracksProviderUtils = MyTracksProviderUtils.Factory.get(context);
   }
 
@@ -109,6 +165,9 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
       return;
     }
 
+    syncCounters.reset();
+    SyncUtils.clearSyncFiles(context);
+    uploadExecutorService = Executors.newFixedThreadPool(UPLOAD_THREADS);
     try {
       GoogleAccountCredential credential = SendToGoogleUtils.getGoogleAccountCredential(
           context, account.name, SendToGoogleUtils.DRIVE_SCOPE);
@@ -117,7 +176,9 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
       }
 
       if (drive == null || !driveAccountName.equals(account.name)) {
-        drive = SyncUtils.getDriveService(credential);
+        // Same as AndroidHttp.newCompatibleTransport() from Gingerbread on
+        drive = SyncUtils.getDriveService(
+            syncCounters.wrap(new NetHttpTransport()), rootUrl, credential);
         driveAccountName = account.name;
       }
       folderId = getFolderId();
@@ -140,6 +201,10 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
           context, account.name, e.getIntent(), SendToGoogleUtils.DRIVE_NOTIFICATION_ID);
     } catch (IOException e) {
       Log.e(TAG, "IOException", e);
+    } finally {
+      cancelUploads();
+      uploadExecutorService.shutdownNow();
+      Log.d(TAG, "Drive sync " + syncCounters);
     }
   }
 
@@ -216,7 +281,8 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
    * @return drive ids of the synced tracks
    */
   private Set<String> updateSyncedTracks() throws IOException {
-    Set<String> result = new HashSet<String>();
+    List<Track> tracks = new ArrayList<Track>();
+    Set<String> driveIds = new HashSet<String>();
     Cursor cursor = null;
     try {
       cursor = myTracksProviderUtils.getTrackCursor(SyncUtils.DRIVE_ID_TRACKS_QUERY, null, null);
@@ -224,21 +290,9 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
         do {
           Track track = myTracksProviderUtils.createTrack(cursor);
           String driveId = track.getDriveId();
-          if (driveId != null && !driveId.equals("")) {
-            if (!track.isSharedWithMe()) {
-              File driveFile = drive.files().get(driveId).execute();
-              if (SyncUtils.isInMyTracksAndValid(driveFile, folderId)) {
-                merge(track, driveFile);
-                result.add(driveId);
-              } else {
-                /*
-                 * Track has a drive id, but the drive id is no longer valid.
-                 * E.g., the file is moved to another folder. Clear the drive
-                 * id.
-                 */
-                SyncUtils.updateTrack(myTracksProviderUtils, track, null);
-              }
-            }
+          if (driveId != null && !driveId.equals("") && !track.isSharedWithMe()) {
+            tracks.add(track);
+            driveIds.add(driveId);
           }
         } while (cursor.moveToNext());
       }
@@ -247,6 +301,23 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
         cursor.close();
       }
     }
+
+    Set<String> result = new HashSet<String>();
+    Map<String, File> driveFiles = getDriveFiles(driveIds);
+    for (Track track : tracks) {
+      File driveFile = driveFiles.get(track.getDriveId());
+      if (SyncUtils.isInMyTracksAndValid(driveFile, folderId)) {
+        merge(track, driveFile);
+        result.add(track.getDriveId());
+      } else {
+        /*
+         * Track has a drive id, but the drive id is no longer valid. E.g., the
+         * file is moved to another folder. Clear the drive id.
+         */
+        SyncUtils.updateTrack(myTracksProviderUtils, track, null);
+      }
+    }
+    finishUploads();
     return result;
   }
 
@@ -274,6 +345,8 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
         context, R.string.drive_edited_list_key, PreferencesUtils.DRIVE_EDITED_LIST_DEFAULT);
     if (!PreferencesUtils.DRIVE_EDITED_LIST_DEFAULT.equals(driveEditedList)) {
       String editedIds[] = TextUtils.split(driveEditedList, ";");
+      List<Track> tracks = new ArrayList<Track>();
+      Set<String> driveIds = new HashSet<String>();
       for (String id : editedIds) {
         Track track = myTracksProviderUtils.getTrack(Long.valueOf(id));
         if (track == null) {
@@ -286,11 +359,17 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
         if (driveId == null || driveId.equals("")) {
           continue;
         }
-        File driveFile = drive.files().get(driveId).execute();
+        tracks.add(track);
+        driveIds.add(driveId);
+      }
+      Map<String, File> driveFiles = getDriveFiles(driveIds);
+      for (Track track : tracks) {
+        File driveFile = driveFiles.get(track.getDriveId());
         if (SyncUtils.isInMyTracksAndValid(driveFile, folderId)) {
           merge(track, driveFile);
         }
       }
+      finishUploads();
       PreferencesUtils.setString(
           context, R.string.drive_edited_list_key, PreferencesUtils.DRIVE_EDITED_LIST_DEFAULT);
     }
@@ -327,6 +406,7 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
             }
           } while (cursor.moveToNext());
         }
+        finishUploads();
 
         // Insert valid new drive file changes as new tracks
         Iterator<String> iterator = changes.keySet().iterator();
@@ -366,8 +446,9 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
             continue;
           }
           // If not successful, the next sync will retry again
-          SyncUtils.insertDriveFile(
-              drive, folderId, context, myTracksProviderUtils, track, true, true);
+          if (!queueUpload(track, null)) {
+            Log.e(TAG, "Unable to add Drive file. File is null for track " + track.getName());
+          }
         } while (cursor.moveToNext());
       }
     } finally {
@@ -375,6 +456,123 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
         cursor.close();
       }
     }
+    finishUploads();
+  }
+
+  /**
+   * Uploads a track file on the upload executor, unless the drive file already
+   * has the same content. Call {@link #finishUploads()} to update the track.
+   * Returns false if unable to get the track file.
+   * 
+   * @param track the track
+   * @param driveFile the drive file to update, null to insert a new one
+   */
+  private boolean queueUpload(final Track track, final File driveFile) throws IOException {
+    final java.io.File file = SyncUtils.getSyncFile(context, myTracksProviderUtils, track);
+    if (file == null) {
+      return false;
+    }
+    final String title = track.getName() + "." + KmzTrackExporter.KMZ_EXTENSION;
+    if (driveFile != null && title.equals(driveFile.getTitle())
+        && SyncUtils.getMd5Checksum(file).equals(SyncUtils.getMd5Checksum(driveFile))) {
+      Log.d(TAG, "Drive file unchanged for track " + track.getName());
+      file.delete();
+      syncCounters.onUploadSkipped();
+      SyncUtils.updateTrack(myTracksProviderUtils, track, driveFile);
+      return true;
+    }
+
+    final Drive uploadDrive = drive;
+    final String uploadFolderId = folderId;
+    Future<File> future = uploadExecutorService.submit(new Callable<File>() {
+        @Override
+      public File call() throws IOException {
+        if (driveFile == null) {
+          Log.d(TAG, "Add Drive file for track " + track.getName());
+          return SyncUtils.insertDriveFile(
+              uploadDrive, uploadFolderId, track.getName(), file, true);
+        }
+        return SyncUtils.updateDriveFile(uploadDrive, driveFile, title, file, true);
+      }
+    });
+    uploads.add(new Upload(track, driveFile, file, future));
+    return true;
+  }
+
+  /**
+   * Waits for the queued uploads and updates their tracks. Throws the first
+   * upload exception after all the uploads are done.
+   */
+  private void finishUploads() throws IOException {
+    IOException exception = null;
+    Iterator<Upload> iterator = uploads.iterator();
+    while (iterator.hasNext()) {
+      Upload upload = iterator.next();
+      File uploadedFile;
+      try {
+        uploadedFile = upload.future.get();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while uploading");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (!(cause instanceof IOException)) {
+          throw new RuntimeException(cause);
+        }
+        if (exception == null) {
+          exception = (IOException) cause;
+        }
+        continue;
+      } finally {
+        if (upload.future.isDone()) {
+          upload.file.delete();
+          iterator.remove();
+        }
+      }
+
+      // The track could have been edited or deleted during the upload
+      Track track = myTracksProviderUtils.getTrack(upload.track.getId());
+      if (track == null) {
+        continue;
+      }
+      boolean edited = track.getModifiedTime() != upload.modifiedTime;
+      if (uploadedFile != null) {
+        if (edited) {
+          /*
+           * Keep the edit newer than the uploaded drive file, so that the next
+           * sync uploads it.
+           */
+          track.setDriveId(uploadedFile.getId());
+          track.setDriveMd5(SyncUtils.getMd5Checksum(uploadedFile));
+          track.setModifiedTime(Math.max(
+              track.getModifiedTime(), uploadedFile.getModifiedDate().getValue() + 1L));
+          myTracksProviderUtils.updateTrack(track);
+        } else {
+          SyncUtils.updateTrack(myTracksProviderUtils, track, uploadedFile);
+        }
+      } else if (upload.driveFile == null) {
+        Log.e(TAG, "Unable to add Drive file. Uploaded file is null for track " + track.getName());
+      } else {
+        Log.e(TAG, "Unable to update drive file");
+        if (!edited) {
+          track.setModifiedTime(upload.driveFile.getModifiedDate().getValue());
+          myTracksProviderUtils.updateTrack(track);
+        }
+      }
+    }
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  /**
+   * Cancels the queued uploads.
+   */
+  private void cancelUploads() {
+    for (Upload upload : uploads) {
+      upload.future.cancel(true);
+      upload.file.delete();
+    }
+    uploads.clear();
   }
 
   /**
@@ -415,6 +613,42 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
     return idToFileMap;
   }
 
+  /**
+   * Gets drive files by id, in batches of {@link #BATCH_SIZE} requests. Files
+   * not found are left out.
+   * 
+   * @param driveIds the drive ids
+   * @return a map of drive id to file
+   */
+  private Map<String, File> getDriveFiles(Collection<String> driveIds) throws IOException {
+    final Map<String, File> idToFileMap = new HashMap<String, File>();
+    BatchRequest batchRequest = drive.batch();
+    for (final String driveId : driveIds) {
+      drive.files().get(driveId).queue(batchRequest, new JsonBatchCallback<File>() {
+          @Override
+        public void onSuccess(File file, GoogleHeaders responseHeaders) {
+          idToFileMap.put(driveId, file);
+        }
+
+          @Override
+        public void onFailure(GoogleJsonError error, GoogleHeaders responseHeaders)
+            throws IOException {
+          if (error.getCode() != HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+            throw new IOException("Unable to get drive file " + driveId + ": "
+                + error.getMessage());
+          }
+        }
+      });
+      if (batchRequest.size() == BATCH_SIZE) {
+        batchRequest.execute();
+      }
+    }
+    if (batchRequest.size() > 0) {
+      batchRequest.execute();
+    }
+    return idToFileMap;
+  }
+
   /**
    * Gets the drive changes info in the My Tracks folder, including deleted
    * files.
@@ -462,8 +696,7 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
     if (modifiedTime > driveModifiedTime) {
       Log.d(TAG, "Updating track change for track " + track.getName() + " and drive file "
           + driveFile.getTitle());
-      if (!SyncUtils.updateDriveFile(
-          drive, driveFile, context, myTracksProviderUtils, track, true)) {
+      if (!queueUpload(track, driveFile)) {
         Log.e(TAG, "Unable to update drive file");
         track.setModifiedTime(driveModifiedTime);
         myTracksProviderUtils.updateTrack(track);
@@ -471,7 +704,14 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
     } else if (modifiedTime < driveModifiedTime) {
       Log.d(TAG, "Updating drive change for track " + track.getName() + " and drive file "
           + driveFile.getTitle());
-      if (!updateTrack(track.getId(), driveFile)) {
+      String md5 = SyncUtils.getMd5Checksum(driveFile);
+      if (md5.length() != 0 && md5.equals(track.getDriveMd5())
+          && track.getName().equals(FileUtils.getName(driveFile.getTitle()))) {
+
+        // Only the drive file metadata changed, the track already has the content
+        syncCounters.onDownloadSkipped();
+        SyncUtils.updateTrack(myTracksProviderUtils, track, driveFile);
+      } else if (!updateTrack(track.getId(), driveFile)) {
         Log.e(TAG, "Unable to update drive change");
         // The track could have been deleted in the unsuccessful update
         track = myTracksProviderUtils.getTrack(track.getId());
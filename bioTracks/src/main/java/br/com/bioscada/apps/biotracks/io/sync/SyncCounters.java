@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.io.sync;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.http.javanet.NetHttpTransport;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the Google Drive requests of a sync and their bytes, as sent on the
+ * wire: a batch counts once, a retry counts again. Thread safe, the uploads
+ * run concurrently.
+ */
+class SyncCounters {
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger skippedUploads = new AtomicInteger();
+  private final AtomicInteger skippedDownloads = new AtomicInteger();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+
+  /**
+   * Resets the counters, at the start of a sync.
+   */
+  void reset() {
+    requests.set(0);
+    skippedUploads.set(0);
+    skippedDownloads.set(0);
+    bytesSent.set(0L);
+    bytesReceived.set(0L);
+  }
+
+  /**
+   * Counts an upload skipped because the drive file already has the content.
+   */
+  void onUploadSkipped() {
+    skippedUploads.incrementAndGet();
+  }
+
+  /**
+   * Counts a download skipped because the track already has the content.
+   */
+  void onDownloadSkipped() {
+    skippedDownloads.incrementAndGet();
+  }
+
+  /**
+   * Wraps a transport to count its requests, the request content bytes and
+   * the response content bytes.
+   *
+   * @param transport the transport
+   */
+  HttpTransport wrap(NetHttpTransport transport) {
+    return new CountingTransport(transport);
+  }
+
+  @Override
+  public String toString() {
+    return "requests: " + requests.get() + ", bytes sent: " + bytesSent.get()
+        + ", bytes received: " + bytesReceived.get() + ", uploads skipped: "
+        + skippedUploads.get() + ", downloads skipped: " + skippedDownloads.get();
+  }
+
+  /**
+   * A transport counting the requests of a {@link NetHttpTransport}, which
+   * exposes its request builders.
+   */
+  private class CountingTransport extends HttpTransport {
+
+    private final NetHttpTransport transport;
+
+    CountingTransport(NetHttpTransport transport) {
+      this.transport = transport;
+    }
+
+    @Override
+    public boolean supportsMethod(String method) {
+      return transport.supportsMethod(method);
+    }
+
+    @Override
+    public boolean supportsHead() {
+      return transport.supportsHead();
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildDeleteRequest(String url) throws IOException {
+      return new CountingRequest(transport.buildDeleteRequest(url));
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildGetRequest(String url) throws IOException {
+      return new CountingRequest(transport.buildGetRequest(url));
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildHeadRequest(String url) throws IOException {
+      return new CountingRequest(transport.buildHeadRequest(url));
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildPostRequest(String url) throws IOException {
+      return new CountingRequest(transport.buildPostRequest(url));
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildPutRequest(String url) throws IOException {
+      return new CountingRequest(transport.buildPutRequest(url));
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+      transport.shutdown();
+    }
+  }
+
+  /**
+   * A request counting itself when executed, and the bytes of its content.
+   */
+  private class CountingRequest extends LowLevelHttpRequest {
+
+    private final LowLevelHttpRequest request;
+
+    CountingRequest(LowLevelHttpRequest request) {
+      this.request = request;
+    }
+
+    @Override
+    public void addHeader(String name, String value) throws IOException {
+      request.addHeader(name, value);
+    }
+
+    @Override
+    public void setContent(final HttpContent content) throws IOException {
+      request.setContent(content == null ? null : new HttpContent() {
+          @Override
+        public long getLength() throws IOException {
+          return content.getLength();
+        }
+
+          @Override
+        public String getEncoding() {
+          return content.getEncoding();
+        }
+
+          @Override
+        public String getType() {
+          return content.getType();
+        }
+
+          @Override
+        public boolean retrySupported() {
+          return content.retrySupported();
+        }
+
+          @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          content.writeTo(new FilterOutputStream(outputStream) {
+              @Override
+            public void write(int value) throws IOException {
+              out.write(value);
+              bytesSent.incrementAndGet();
+            }
+
+              @Override
+            public void write(byte[] buffer, int offset, int count) throws IOException {
+              out.write(buffer, offset, count);
+              bytesSent.addAndGet(count);
+            }
+          });
+        }
+      });
+    }
+
+    @Override
+    public void setTimeout(int connectTimeout, int readTimeout) throws IOException {
+      request.setTimeout(connectTimeout, readTimeout);
+    }
+
+    @Override
+    public LowLevelHttpResponse execute() throws IOException {
+      requests.incrementAndGet();
+      return new CountingResponse(request.execute());
+    }
+  }
+
+  /**
+   * A response counting the bytes of its content.
+   */
+  private class CountingResponse extends LowLevelHttpResponse {
+
+    private final LowLevelHttpResponse response;
+
+    CountingResponse(LowLevelHttpResponse response) {
+      this.response = response;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      InputStream inputStream = response.getContent();
+      if (inputStream == null) {
+        return null;
+      }
+      return new FilterInputStream(inputStream) {
+          @Override
+        public int read() throws IOException {
+          int value = super.read();
+          if (value != -1) {
+            bytesReceived.incrementAndGet();
+          }
+          return value;
+        }
+
+          @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+          int read = super.read(buffer, offset, count);
+          if (read > 0) {
+            bytesReceived.addAndGet(read);
+          }
+          return read;
+        }
+      };
+    }
+
+    @Override
+    public String getContentEncoding() throws IOException {
+      return response.getContentEncoding();
+    }
+
+    @Override
+    public long getContentLength() throws IOException {
+      return response.getContentLength();
+    }
+
+    @Override
+    public String getContentType() throws IOException {
+      return response.getContentType();
+    }
+
+    @Override
+    public String getStatusLine() throws IOException {
+      return response.getStatusLine();
+    }
+
+    @Override
+    public int getStatusCode() throws IOException {
+      return response.getStatusCode();
+    }
+
+    @Override
+    public String getReasonPhrase() throws IOException {
+      return response.getReasonPhrase();
+    }
+
+    @Override
+    public int getHeaderCount() throws IOException {
+      return response.getHeaderCount();
+    }
+
+    @Override
+    public String getHeaderName(int index) throws IOException {
+      return response.getHeaderName(index);
+    }
+
+    @Override
+    public String getHeaderValue(int index) throws IOException {
+      return response.getHeaderValue(index);
+    }
+
+    @Override
+    public void disconnect() throws IOException {
+      response.disconnect();
+    }
+  }
+}
@@ -32,6 +32,8 @@ import com.google.api.client.extensions.android.http.AndroidHttp;
 import com.google.api.client.googleapis.extensions.android.gms.auth.GoogleAccountCredential;
 import com.google.api.client.googleapis.extensions.android.gms.auth.UserRecoverableAuthIOException;
 import com.google.api.client.http.FileContent;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.Drive.Files.List;
@@ -40,9 +42,13 @@ import com.google.api.services.drive.model.FileList;
 import com.google.api.services.drive.model.ParentReference;
 import com.google.common.annotations.VisibleForTesting;
 
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Locale;
 
@@ -99,6 +105,10 @@ public class SyncUtils {
   private static final String TAG = SyncUtils.class.getSimpleName();
   private static final String SYNC_AUTHORITY = "br.com.bioscada.apps.biotracks";
 
+  // Directory of the track files waiting to be uploaded by a sync
+  private static final String SYNC_FILES_DIR = "sync_files";
+  private static final int BUFFER_SIZE = 4096;
+
   private SyncUtils() {}
 
   /**
@@ -243,6 +253,20 @@ public class SyncUtils {
         .build();
   }
 
+  /**
+   * Gets the drive service of a server.
+   * 
+   * @param transport the transport
+   * @param rootUrl the server root url, {@link Drive#DEFAULT_ROOT_URL} for
+   *          Google Drive
+   * @param initializer the request initializer, such as the credential
+   */
+  static Drive getDriveService(
+      HttpTransport transport, String rootUrl, HttpRequestInitializer initializer) {
+    return new Drive.Builder(transport, new GsonFactory(), initializer).setRootUrl(rootUrl)
+        .build();
+  }
+
   /**
    * Gets the My Tracks folder. Creates one if necessary.
    * 
@@ -379,7 +403,7 @@ public class SyncUtils {
    * @param file the track file
    * @param canRetry true if can retry
    */
-  private static File insertDriveFile(
+  static File insertDriveFile(
       Drive drive, String folderId, String trackName, java.io.File file, boolean canRetry)
       throws IOException {
     try {
@@ -439,8 +463,10 @@ public class SyncUtils {
         return false;
       }
       long modifiedTime = updatedFile.getModifiedDate().getValue();
-      if (track.getModifiedTime() != modifiedTime) {
+      String md5 = getMd5Checksum(updatedFile);
+      if (track.getModifiedTime() != modifiedTime || !md5.equals(track.getDriveMd5())) {
         track.setModifiedTime(modifiedTime);
+        track.setDriveMd5(md5);
         myTracksProviderUtils.updateTrack(track);
       }
       return true;
@@ -504,7 +530,57 @@ public class SyncUtils {
     for (java.io.File file : directory.listFiles()) {
       file.delete();
     }
+    return writeTrackFile(context, myTracksProviderUtils, track, useKmz, directory);
+  }
 
+  /**
+   * Gets a KMZ file for a track, to be uploaded by a sync. Unlike
+   * {@link #getTempFile(Context, MyTracksProviderUtils, Track, boolean)}, keeps
+   * the other files waiting to be uploaded. The caller deletes the file.
+   * 
+   * @param context the context
+   * @param myTracksProviderUtils the myMyTracksProviderUtils
+   * @param track the track
+   */
+  static java.io.File getSyncFile(
+      Context context, MyTracksProviderUtils myTracksProviderUtils, Track track)
+      throws FileNotFoundException {
+    java.io.File directory = new java.io.File(context.getCacheDir(), SYNC_FILES_DIR);
+
+    if (!FileUtils.ensureDirectoryExists(directory)) {
+      Log.d(TAG, "Unable to create " + directory.getAbsolutePath());
+      return null;
+    }
+    return writeTrackFile(context, myTracksProviderUtils, track, true, directory);
+  }
+
+  /**
+   * Deletes the files left by an interrupted sync.
+   * 
+   * @param context the context
+   */
+  static void clearSyncFiles(Context context) {
+    java.io.File[] files = new java.io.File(context.getCacheDir(), SYNC_FILES_DIR).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (java.io.File file : files) {
+      file.delete();
+    }
+  }
+
+  /**
+   * Writes a track to a new file in a directory.
+   * 
+   * @param context the context
+   * @param myTracksProviderUtils the myMyTracksProviderUtils
+   * @param track the track
+   * @param useKmz true to output kmz
+   * @param directory the directory
+   */
+  private static java.io.File writeTrackFile(Context context,
+      MyTracksProviderUtils myTracksProviderUtils, Track track, boolean useKmz,
+      java.io.File directory) throws FileNotFoundException {
     Track[] tracks = new Track[] { track };
     String extension = useKmz ? KmzTrackExporter.KMZ_EXTENSION : TrackFileFormat.KML.getExtension();
     java.io.File file = new java.io.File(
@@ -538,6 +614,49 @@ public class SyncUtils {
     } 
   }
   
+  /**
+   * Gets the MD5 checksum of a file, in the lower case hex format of the drive
+   * files md5Checksum.
+   * 
+   * @param file the file
+   */
+  static String getMd5Checksum(java.io.File file) throws IOException {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException("MD5 not available");
+    }
+    InputStream inputStream = null;
+    try {
+      inputStream = new FileInputStream(file);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int count;
+      while ((count = inputStream.read(buffer)) != -1) {
+        messageDigest.update(buffer, 0, count);
+      }
+    } finally {
+      if (inputStream != null) {
+        inputStream.close();
+      }
+    }
+    StringBuilder builder = new StringBuilder();
+    for (byte b : messageDigest.digest()) {
+      builder.append(String.format(Locale.US, "%02x", b & 0xff));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Gets the MD5 checksum of a drive file, empty if unknown.
+   * 
+   * @param driveFile the drive file
+   */
+  static String getMd5Checksum(File driveFile) {
+    String md5 = driveFile.getMd5Checksum();
+    return md5 != null ? md5 : "";
+  }
+
   /**
    * Updates a track with info from a drive file.
    * 
@@ -553,6 +672,7 @@ public class SyncUtils {
     track.setSharedOwner(driveFile != null && driveFile.getSharedWithMeDate() != null
         && driveFile.getOwnerNames().size() > 0 ? driveFile.getOwnerNames().get(0)
         : "");
+    track.setDriveMd5(driveFile != null ? getMd5Checksum(driveFile) : "");
     myTracksProviderUtils.updateTrack(track);
   }
 }
@@ -19,7 +19,6 @@ import android.content.Context;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.Polyline;
 import com.google.android.lib.mytracks.stats.TripStatistics;
 import com.google.common.annotations.VisibleForTesting;
 
@@ -54,7 +53,7 @@ public class MultiColorTrackPath implements TrackPath {
   }
 
   @Override
-  public void updatePath(GoogleMap googleMap, ArrayList<Polyline> paths, int startIndex,
+  public void updatePath(GoogleMap googleMap, TrackPolylines paths, int startIndex,
       List<CachedLocation> locations) {
     if (googleMap == null) {
       return;
@@ -63,18 +62,19 @@ public class MultiColorTrackPath implements TrackPath {
       return;
     }
     
-    boolean newSegment = startIndex == 0 || !locations.get(startIndex - 1).isValid();
-    LatLng lastLatLng = startIndex != 0 ? locations.get(startIndex -1).getLatLng() : null;
+    boolean newSegment = TrackPathUtils.isNewSegment(paths, locations, startIndex);
+    LatLng lastLatLng = newSegment ? null : paths.getTailPoint();
     
     ArrayList<LatLng> lastSegmentPoints = new ArrayList<LatLng>();
-    int lastSegmentColor = paths.size() != 0  ? paths.get(paths.size() - 1).getColor() : slowColor;
+    int lastSegmentColor = paths.size() != 0  ? paths.getTailColor() : slowColor;
     boolean useLastPolyline = true;
+    int lastIndex = locations.size() - 1;
 
     for (int i = startIndex; i < locations.size(); ++i) {
       CachedLocation cachedLocation = locations.get(i);
 
-      // If not valid, start a new segment
-      if (!cachedLocation.isValid()) {
+      // If not valid or not visible, start a new segment
+      if (!cachedLocation.isValid() || TrackPathUtils.isOutOfViewport(paths, locations, i)) {
         newSegment = true;
         lastLatLng = null;
         continue;
@@ -90,6 +90,9 @@ public class MultiColorTrackPath implements TrackPath {
         newSegment = false;
       }
       if (lastSegmentColor == color) {
+        if (i != lastIndex && paths.isWithinPixel(latLng, lastLatLng)) {
+          continue;
+        }
         lastSegmentPoints.add(latLng);
       } else {
         TrackPathUtils.addPath(googleMap, paths, lastSegmentPoints, lastSegmentColor, useLastPolyline);
@@ -19,7 +19,6 @@ import android.content.Context;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.Polyline;
 import com.google.android.lib.mytracks.stats.TripStatistics;
 
 import java.util.ArrayList;
@@ -47,7 +46,7 @@ public class SingleColorTrackPath implements TrackPath {
   }
 
   @Override
-  public void updatePath(GoogleMap googleMap, ArrayList<Polyline> paths, int startIndex,
+  public void updatePath(GoogleMap googleMap, TrackPolylines paths, int startIndex,
       List<CachedLocation> locations) {
     if (googleMap == null) {
       return;
@@ -56,14 +55,16 @@ public class SingleColorTrackPath implements TrackPath {
       return;
     }
 
-    boolean newSegment = startIndex == 0 || !locations.get(startIndex - 1).isValid();
+    boolean newSegment = TrackPathUtils.isNewSegment(paths, locations, startIndex);
+    LatLng lastLatLng = newSegment ? null : paths.getTailPoint();
     ArrayList<LatLng> lastSegmentPoints = new ArrayList<LatLng>();
     boolean useLastPolyline = true;
+    int lastIndex = locations.size() - 1;
     for (int i = startIndex; i < locations.size(); i++) {
       CachedLocation cachedLocation = locations.get(i);
 
-      // If not valid, start a new segment
-      if (!cachedLocation.isValid()) {
+      // If not valid or not visible, start a new segment
+      if (!cachedLocation.isValid() || TrackPathUtils.isOutOfViewport(paths, locations, i)) {
         newSegment = true;
         continue;
       }
@@ -72,9 +73,12 @@ public class SingleColorTrackPath implements TrackPath {
         TrackPathUtils.addPath(googleMap, paths, lastSegmentPoints, color, useLastPolyline);
         useLastPolyline = false;
         newSegment = false;
+      } else if (i != lastIndex && paths.isWithinPixel(latLng, lastLatLng)) {
+        continue;
       }
       lastSegmentPoints.add(latLng);
+      lastLatLng = latLng;
     }
     TrackPathUtils.addPath(googleMap, paths, lastSegmentPoints, color, useLastPolyline);
   }
-}
\ No newline at end of file
+}
@@ -17,10 +17,8 @@
 package br.com.bioscada.apps.biotracks.maps;
 
 import com.google.android.gms.maps.GoogleMap;
-import com.google.android.gms.maps.model.Polyline;
 import com.google.android.lib.mytracks.stats.TripStatistics;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import br.com.bioscada.apps.biotracks.MapOverlay;
@@ -41,11 +39,14 @@ public interface TrackPath {
   public boolean updateState(TripStatistics tripStatistics);
 
   /**
-   * Updates the path.
+   * Updates the path. Points out of the viewport of the paths or within a
+   * pixel of the previous point are skipped.
    * 
+   * @param googleMap the google map
+   * @param paths the paths
    * @param startIndex the start index
    * @param points the points
    */
-  public void updatePath(GoogleMap googleMap, ArrayList<Polyline> paths, int startIndex,
+  public void updatePath(GoogleMap googleMap, TrackPolylines paths, int startIndex,
       List<MapOverlay.CachedLocation> points);
 }
@@ -18,10 +18,11 @@ package br.com.bioscada.apps.biotracks.maps;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.Polyline;
-import com.google.android.gms.maps.model.PolylineOptions;
 
 import java.util.ArrayList;
+import java.util.List;
+
+import br.com.bioscada.apps.biotracks.MapOverlay.CachedLocation;
 
 /**
  * Various utility functions for track path painting.
@@ -41,22 +42,48 @@ public class TrackPathUtils {
    * @param color the path color
    * @param append true to append to the last path
    */
-  public static void addPath(GoogleMap googleMap, ArrayList<Polyline> paths,
+  public static void addPath(GoogleMap googleMap, TrackPolylines paths,
       ArrayList<LatLng> points, int color, boolean append) {
     if (points.size() == 0) {
       return;
     }
-    if (append && paths.size() != 0) {
-      Polyline lastPolyline = paths.get(paths.size() - 1);
-      ArrayList<LatLng> pathPoints = new ArrayList<LatLng>();
-      pathPoints.addAll(lastPolyline.getPoints());
-      pathPoints.addAll(points);
-      lastPolyline.setPoints(pathPoints);
-    } else {
-      PolylineOptions polylineOptions = new PolylineOptions().addAll(points).width(5).color(color);
-      Polyline polyline = googleMap.addPolyline(polylineOptions);
-      paths.add(polyline);
-    }
+    paths.addPoints(googleMap, points, color, append);
     points.clear();
   }
-}
\ No newline at end of file
+
+  /**
+   * Returns true if a new path segment starts at a location, i.e., the
+   * previous location is invalid or not the last point of the paths.
+   * 
+   * @param paths the existing paths
+   * @param locations the locations
+   * @param index the location index
+   */
+  public static boolean isNewSegment(
+      TrackPolylines paths, List<CachedLocation> locations, int index) {
+    if (index == 0) {
+      return true;
+    }
+    CachedLocation previous = locations.get(index - 1);
+    return !previous.isValid() || paths.getTailPoint() != previous.getLatLng();
+  }
+
+  /**
+   * Returns true if a valid location and its neighbors are out of the
+   * viewport. Such a location is not drawn and splits the path.
+   * 
+   * @param paths the existing paths
+   * @param locations the locations
+   * @param index the location index
+   */
+  public static boolean isOutOfViewport(
+      TrackPolylines paths, List<CachedLocation> locations, int index) {
+    for (int i = Math.max(0, index - 1); i <= Math.min(locations.size() - 1, index + 1); i++) {
+      CachedLocation cachedLocation = locations.get(i);
+      if (cachedLocation.isValid() && paths.isInViewport(cachedLocation.getLatLng())) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
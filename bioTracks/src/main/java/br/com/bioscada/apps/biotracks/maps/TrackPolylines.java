@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.maps;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The polylines of a track path.
+ * <p>
+ * The polylines are chunks of at most {@link #MAX_POLYLINE_POINTS} points. A
+ * copy of the points of the last polyline, the tail, is kept so that
+ * appending only rewrites the tail and never reads the points back from the
+ * map.
+ * <p>
+ * Also holds the viewport the path is drawn for, so that the points far off
+ * screen and the points within a pixel of the previous one are not sent to
+ * the map.
+ */
+public class TrackPolylines {
+
+  /**
+   * Maximum number of points of a polyline.
+   */
+  public static final int MAX_POLYLINE_POINTS = 256;
+
+  private static final int WIDTH = 5;
+
+  private final ArrayList<Polyline> polylines = new ArrayList<Polyline>();
+  private final ArrayList<LatLng> tailPoints = new ArrayList<LatLng>(MAX_POLYLINE_POINTS);
+  private int tailColor;
+
+  // The viewport, null for no culling
+  private LatLngBounds bounds;
+
+  // The size of a pixel in degrees of longitude, 0 for no simplification
+  private double tolerance;
+
+  /**
+   * Removes all the polylines. The polylines must be removed from the map by
+   * the caller.
+   */
+  public void clear() {
+    polylines.clear();
+    tailPoints.clear();
+  }
+
+  /**
+   * Returns true if there is no polyline.
+   */
+  public boolean isEmpty() {
+    return polylines.isEmpty();
+  }
+
+  /**
+   * Gets the number of polylines.
+   */
+  public int size() {
+    return polylines.size();
+  }
+
+  /**
+   * Gets the color of the last polyline.
+   */
+  public int getTailColor() {
+    return tailColor;
+  }
+
+  /**
+   * Gets the last point of the last polyline, or null.
+   */
+  public LatLng getTailPoint() {
+    return tailPoints.isEmpty() ? null : tailPoints.get(tailPoints.size() - 1);
+  }
+
+  /**
+   * Sets the viewport.
+   *
+   * @param viewportBounds the bounds of the points to draw, null to draw all
+   * @param pixelSize the size of a pixel in degrees of longitude, 0 to draw
+   *          all the points
+   */
+  public void setViewport(LatLngBounds viewportBounds, double pixelSize) {
+    bounds = viewportBounds;
+    tolerance = pixelSize;
+  }
+
+  /**
+   * Returns true if a point is in the viewport.
+   *
+   * @param latLng the point
+   */
+  public boolean isInViewport(LatLng latLng) {
+    return bounds == null || bounds.contains(latLng);
+  }
+
+  /**
+   * Returns true if two points are within a pixel.
+   *
+   * @param latLng the point
+   * @param previous the previous point, can be null
+   */
+  public boolean isWithinPixel(LatLng latLng, LatLng previous) {
+    if (previous == null || tolerance == 0) {
+      return false;
+    }
+    return Math.abs(latLng.longitude - previous.longitude) < tolerance
+        && Math.abs(latLng.latitude - previous.latitude)
+            < tolerance * Math.cos(Math.toRadians(latLng.latitude));
+  }
+
+  /**
+   * Adds points.
+   *
+   * @param googleMap the google map
+   * @param points the points
+   * @param color the color
+   * @param append true to continue the last polyline
+   */
+  public void addPoints(GoogleMap googleMap, List<LatLng> points, int color, boolean append) {
+    int index = 0;
+    if (!append || polylines.isEmpty()) {
+      tailPoints.clear();
+    }
+    while (index < points.size()) {
+      if (tailPoints.isEmpty() || tailPoints.size() >= MAX_POLYLINE_POINTS) {
+        LatLng last = getTailPoint();
+        tailPoints.clear();
+        if (last != null) {
+          // Continue from the end of the full polyline
+          tailPoints.add(last);
+        }
+        int end = Math.min(points.size(), index + MAX_POLYLINE_POINTS - tailPoints.size());
+        tailPoints.addAll(points.subList(index, end));
+        index = end;
+        polylines.add(googleMap.addPolyline(
+            new PolylineOptions().addAll(tailPoints).width(WIDTH).color(color)));
+        tailColor = color;
+      } else {
+        int end = Math.min(points.size(), index + MAX_POLYLINE_POINTS - tailPoints.size());
+        tailPoints.addAll(points.subList(index, end));
+        index = end;
+        polylines.get(polylines.size() - 1).setPoints(tailPoints);
+      }
+    }
+  }
+}
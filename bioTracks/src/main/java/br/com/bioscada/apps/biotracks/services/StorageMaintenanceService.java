@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.services;
+
+import android.app.IntentService;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.lib.mytracks.content.StorageStatsColumns;
+
+import br.com.bioscada.apps.biotracks.R;
+import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
+
+/**
+ * Service that reclaims the free pages of the database in small steps, while
+ * the device is charging and no track is being recorded.
+ */
+public class StorageMaintenanceService extends IntentService {
+
+  private static final String TAG = StorageMaintenanceService.class.getSimpleName();
+
+  // Free pages reclaimed per step, 1MB with the default 1KB pages
+  private static final int STEP_PAGES = 1024;
+
+  // Maximum number of steps per run
+  private static final int MAX_STEPS = 64;
+
+  // Pause between steps, letting other database writers in
+  private static final long STEP_INTERVAL = 500L;
+
+  public StorageMaintenanceService() {
+    super(StorageMaintenanceService.class.getSimpleName());
+  }
+
+  @Override
+  protected void onHandleIntent(Intent intent) {
+    for (int step = 0; step < MAX_STEPS; step++) {
+      if (!isIdle()) {
+        return;
+      }
+      int autoVacuum;
+      long freePages;
+      Cursor cursor = null;
+      try {
+        cursor = getContentResolver().query(
+            StorageStatsColumns.CONTENT_URI, null, null, null, null);
+        if (cursor == null || !cursor.moveToFirst()) {
+          return;
+        }
+        long pageCount = cursor.getLong(
+            cursor.getColumnIndexOrThrow(StorageStatsColumns.PAGECOUNT));
+        freePages = cursor.getLong(cursor.getColumnIndexOrThrow(StorageStatsColumns.FREEPAGES));
+        autoVacuum = cursor.getInt(cursor.getColumnIndexOrThrow(StorageStatsColumns.AUTOVACUUM));
+        Log.i(TAG, "Database pages: " + pageCount + ", free pages: " + freePages
+            + ", fragmentation: " + (pageCount == 0 ? 0 : freePages * 100 / pageCount) + "%");
+      } finally {
+        if (cursor != null) {
+          cursor.close();
+        }
+      }
+      if (autoVacuum == StorageStatsColumns.AUTOVACUUM_INCREMENTAL && freePages == 0) {
+        return;
+      }
+      ContentValues values = new ContentValues();
+      values.put(StorageStatsColumns.RECLAIMPAGES, STEP_PAGES);
+      getContentResolver().update(StorageStatsColumns.CONTENT_URI, values, null, null);
+      SystemClock.sleep(STEP_INTERVAL);
+    }
+  }
+
+  /**
+   * Returns true if the device is charging and no track is being recorded.
+   */
+  private boolean isIdle() {
+    long recordingTrackId = PreferencesUtils.getLong(this, R.string.recording_track_id_key);
+    if (recordingTrackId != PreferencesUtils.RECORDING_TRACK_ID_DEFAULT) {
+      return false;
+    }
+    Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+    return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+  }
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.services;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.lib.mytracks.content.MyTracksLocation;
+import com.google.android.lib.mytracks.content.MyTracksProviderUtils;
+import com.google.android.lib.mytracks.content.Sensor;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import br.com.bioscada.apps.biotracks.util.LocationUtils;
+
+/**
+ * A write-behind journal for the track points of the recording track. Track
+ * points are buffered in memory and written to the {@link MyTracksProvider}
+ * with a single bulk insert once the buffer holds {@link #maxPoints} track
+ * points or its oldest track point is {@link #maxDelay} milliseconds old.
+ * <p>
+ * Each buffered track point is also appended to a journal file. The journal
+ * file is truncated after each successful bulk insert, so the track points
+ * which were buffered but not flushed can be replayed with
+ * {@link #recover(long)} if the service is killed.
+ */
+class TrackPointJournal {
+
+  private static final String TAG = TrackPointJournal.class.getSimpleName();
+
+  @VisibleForTesting
+  static final String JOURNAL_FILE_NAME = "trackpoints.journal";
+
+  // Flags of the optional location fields
+  private static final int HAS_ALTITUDE = 1;
+  private static final int HAS_ACCURACY = 1 << 1;
+  private static final int HAS_SPEED = 1 << 2;
+  private static final int HAS_BEARING = 1 << 3;
+  private static final int HAS_SENSOR = 1 << 4;
+
+  private final File journalFile;
+  private final MyTracksProviderUtils myTracksProviderUtils;
+  private final int maxPoints;
+  private final long maxDelay;
+  private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+  private final DataOutputStream recordOutputStream = new DataOutputStream(recordBytes);
+
+  private Location[] buffer;
+  private long trackId = -1L;
+  private int size;
+  private int numberOfValidPoints;
+  private long firstBufferedTime;
+  private FileOutputStream journalOutputStream;
+
+  /**
+   * Constructor.
+   *
+   * @param context the context
+   * @param myTracksProviderUtils the my tracks provider utils
+   * @param maxPoints the maximum number of buffered track points
+   * @param maxDelay the maximum time in milliseconds a track point stays buffered
+   */
+  TrackPointJournal(Context context, MyTracksProviderUtils myTracksProviderUtils, int maxPoints,
+      long maxDelay) {
+    this.journalFile = new File(context.getFilesDir(), JOURNAL_FILE_NAME);
+    this.myTracksProviderUtils = myTracksProviderUtils;
+    this.maxPoints = maxPoints;
+    this.maxDelay = maxDelay;
+    this.buffer = new Location[maxPoints];
+  }
+
+  /**
+   * Opens the journal for a track. Any unflushed track point of a previous
+   * track is discarded, call {@link #recover(long)} first to keep them.
+   *
+   * @param id the track id
+   */
+  synchronized void open(long id) {
+    if (trackId == id && journalOutputStream != null) {
+      return;
+    }
+    close();
+    trackId = id;
+    try {
+      journalOutputStream = new FileOutputStream(journalFile, false);
+      DataOutputStream header = new DataOutputStream(journalOutputStream);
+      header.writeLong(trackId);
+      header.flush();
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to open the track point journal.", e);
+      closeJournalOutputStream();
+    }
+  }
+
+  /**
+   * Closes the journal. The buffered track points must be flushed first.
+   */
+  synchronized void close() {
+    if (size != 0) {
+      Log.w(TAG, "Closing the track point journal with " + size + " unflushed track points.");
+      clearBuffer();
+    }
+    closeJournalOutputStream();
+    trackId = -1L;
+    if (journalFile.exists() && !journalFile.delete()) {
+      Log.w(TAG, "Unable to delete the track point journal.");
+    }
+  }
+
+  /**
+   * Returns true if there is no buffered track point.
+   */
+  synchronized boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns true if the buffered track points should be flushed.
+   */
+  synchronized boolean isFlushDue() {
+    return size >= maxPoints
+        || (size != 0 && SystemClock.elapsedRealtime() - firstBufferedTime >= maxDelay);
+  }
+
+  /**
+   * Gets the id of the track being journaled, -1L if the journal is closed.
+   */
+  synchronized long getTrackId() {
+    return trackId;
+  }
+
+  /**
+   * Adds a track point to the journal. The buffer grows past the maximum
+   * number of track points until the next {@link #flush()}.
+   *
+   * @param location the location
+   */
+  synchronized void add(Location location) {
+    if (size == buffer.length) {
+      Location[] newBuffer = new Location[buffer.length * 2];
+      System.arraycopy(buffer, 0, newBuffer, 0, size);
+      buffer = newBuffer;
+    }
+    if (size == 0) {
+      firstBufferedTime = SystemClock.elapsedRealtime();
+    }
+    buffer[size++] = location;
+    if (LocationUtils.isValidLocation(location)) {
+      numberOfValidPoints++;
+    }
+    if (journalOutputStream != null) {
+      try {
+        recordBytes.reset();
+        writeLocation(recordOutputStream, location);
+        recordOutputStream.flush();
+        journalOutputStream.write(recordBytes.toByteArray());
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to append to the track point journal.", e);
+        closeJournalOutputStream();
+      }
+    }
+  }
+
+  /**
+   * Writes the buffered track points to the database in a single bulk insert.
+   *
+   * @return the number of valid track points written.
+   */
+  synchronized int flush() {
+    if (size == 0) {
+      return 0;
+    }
+    myTracksProviderUtils.bulkInsertTrackPoint(buffer, size, trackId);
+    int count = numberOfValidPoints;
+    clearBuffer();
+    truncate();
+    return count;
+  }
+
+  /**
+   * Replays the track points journaled but not flushed before the service was
+   * killed. Journaled track points not newer than the last track point in the
+   * database are skipped since they were flushed before the journal could be
+   * truncated.
+   *
+   * @param id the track id
+   * @return the number of valid track points replayed.
+   */
+  synchronized int recover(long id) {
+    if (!journalFile.exists()) {
+      return 0;
+    }
+    ArrayList<Location> locations = new ArrayList<Location>();
+    DataInputStream dataInputStream = null;
+    try {
+      dataInputStream = new DataInputStream(new FileInputStream(journalFile));
+      if (dataInputStream.readLong() != id) {
+        Log.d(TAG, "Track point journal is for another track.");
+        return 0;
+      }
+      while (true) {
+        locations.add(readLocation(dataInputStream));
+      }
+    } catch (EOFException e) {
+      // A partially written last record is expected if the service was killed
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to read the track point journal.", e);
+    } finally {
+      closeQuietly(dataInputStream);
+    }
+
+    long lastTime = -1L;
+    MyTracksProviderUtils.LocationIterator locationIterator = null;
+    try {
+      long lastTrackPointId = myTracksProviderUtils.getLastTrackPointId(id);
+      if (lastTrackPointId != -1L) {
+        locationIterator = myTracksProviderUtils.getTrackPointLocationIterator(id,
+            lastTrackPointId, false, MyTracksProviderUtils.DEFAULT_LOCATION_FACTORY);
+        if (locationIterator.hasNext()) {
+          lastTime = locationIterator.next().getTime();
+        }
+      }
+    } finally {
+      if (locationIterator != null) {
+        locationIterator.close();
+      }
+    }
+
+    int count = 0;
+    int numberOfValid = 0;
+    Location[] replay = new Location[locations.size()];
+    for (Location location : locations) {
+      if (location.getTime() > lastTime) {
+        replay[count++] = location;
+        if (LocationUtils.isValidLocation(location)) {
+          numberOfValid++;
+        }
+      }
+    }
+    if (count != 0) {
+      Log.i(TAG, "Replaying " + count + " journaled track points.");
+      myTracksProviderUtils.bulkInsertTrackPoint(replay, count, id);
+    }
+    if (!journalFile.delete()) {
+      Log.w(TAG, "Unable to delete the track point journal.");
+    }
+    return numberOfValid;
+  }
+
+  /**
+   * Clears the in-memory buffer.
+   */
+  private void clearBuffer() {
+    for (int i = 0; i < size; i++) {
+      buffer[i] = null;
+    }
+    size = 0;
+    numberOfValidPoints = 0;
+  }
+
+  /**
+   * Truncates the journal file to its header.
+   */
+  private void truncate() {
+    if (journalOutputStream == null) {
+      return;
+    }
+    try {
+      journalOutputStream.getChannel().truncate(Long.SIZE / Byte.SIZE);
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to truncate the track point journal.", e);
+      closeJournalOutputStream();
+    }
+  }
+
+  private void closeJournalOutputStream() {
+    closeQuietly(journalOutputStream);
+    journalOutputStream = null;
+  }
+
+  private static void closeQuietly(java.io.Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to close the track point journal.", e);
+    }
+  }
+
+  /**
+   * Writes a location record.
+   *
+   * @param dataOutputStream the data output stream
+   * @param location the location
+   */
+  private static void writeLocation(DataOutputStream dataOutputStream, Location location)
+      throws IOException {
+    Sensor.SensorDataSet sensorDataSet = location instanceof MyTracksLocation
+        ? ((MyTracksLocation) location).getSensorDataSet()
+        : null;
+    int flags = (location.hasAltitude() ? HAS_ALTITUDE : 0)
+        | (location.hasAccuracy() ? HAS_ACCURACY : 0) | (location.hasSpeed() ? HAS_SPEED : 0)
+        | (location.hasBearing() ? HAS_BEARING : 0) | (sensorDataSet != null ? HAS_SENSOR : 0);
+    dataOutputStream.writeByte(flags);
+    dataOutputStream.writeLong(location.getTime());
+    dataOutputStream.writeDouble(location.getLatitude());
+    dataOutputStream.writeDouble(location.getLongitude());
+    if (location.hasAltitude()) {
+      dataOutputStream.writeDouble(location.getAltitude());
+    }
+    if (location.hasAccuracy()) {
+      dataOutputStream.writeFloat(location.getAccuracy());
+    }
+    if (location.hasSpeed()) {
+      dataOutputStream.writeFloat(location.getSpeed());
+    }
+    if (location.hasBearing()) {
+      dataOutputStream.writeFloat(location.getBearing());
+    }
+    if (sensorDataSet != null) {
+      byte[] bytes = sensorDataSet.toByteArray();
+      dataOutputStream.writeInt(bytes.length);
+      dataOutputStream.write(bytes);
+    }
+  }
+
+  /**
+   * Reads a location record.
+   *
+   * @param dataInputStream the data input stream
+   */
+  private static Location readLocation(DataInputStream dataInputStream) throws IOException {
+    MyTracksLocation location = new MyTracksLocation(LocationManager.GPS_PROVIDER);
+    int flags = dataInputStream.readUnsignedByte();
+    location.setTime(dataInputStream.readLong());
+    location.setLatitude(dataInputStream.readDouble());
+    location.setLongitude(dataInputStream.readDouble());
+    if ((flags & HAS_ALTITUDE) != 0) {
+      location.setAltitude(dataInputStream.readDouble());
+    }
+    if ((flags & HAS_ACCURACY) != 0) {
+      location.setAccuracy(dataInputStream.readFloat());
+    }
+    if ((flags & HAS_SPEED) != 0) {
+      location.setSpeed(dataInputStream.readFloat());
+    }
+    if ((flags & HAS_BEARING) != 0) {
+      location.setBearing(dataInputStream.readFloat());
+    }
+    if ((flags & HAS_SENSOR) != 0) {
+      byte[] bytes = new byte[dataInputStream.readInt()];
+      dataInputStream.readFully(bytes);
+      try {
+        location.setSensorDataSet(Sensor.SensorDataSet.parseFrom(bytes));
+      } catch (InvalidProtocolBufferException e) {
+        Log.w(TAG, "Failed to parse journaled sensor data.", e);
+      }
+    }
+    return location;
+  }
+}
@@ -60,14 +60,18 @@ import br.com.bioscada.apps.biotracks.R;
 import br.com.bioscada.apps.biotracks.TrackDetailActivity;
 import br.com.bioscada.apps.biotracks.TrackListActivity;
 import br.com.bioscada.apps.biotracks.content.DescriptionGeneratorImpl;
+import br.com.bioscada.apps.biotracks.content.TrackProfileCache;
 import br.com.bioscada.apps.biotracks.services.sensors.SensorManager;
 import br.com.bioscada.apps.biotracks.services.sensors.SensorManagerFactory;
+import br.com.bioscada.apps.biotracks.services.sensors.SensorSampleBuffer;
 import br.com.bioscada.apps.biotracks.services.tasks.AnnouncementPeriodicTaskFactory;
 import br.com.bioscada.apps.biotracks.services.tasks.PeriodicTaskExecutor;
+import br.com.bioscada.apps.biotracks.services.tasks.RecordingTaskScheduler;
 import br.com.bioscada.apps.biotracks.services.tasks.SplitPeriodicTaskFactory;
 import br.com.bioscada.apps.biotracks.stats.TripStatisticsUpdater;
 import br.com.bioscada.apps.biotracks.util.CalorieUtils;
 import br.com.bioscada.apps.biotracks.util.CalorieUtils.ActivityType;
+import br.com.bioscada.apps.biotracks.util.GeodesyUtils;
 import br.com.bioscada.apps.biotracks.util.IntentUtils;
 import br.com.bioscada.apps.biotracks.util.LocationUtils;
 import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
@@ -111,6 +115,16 @@ public class TrackRecordingService extends Service {
     @VisibleForTesting
     static final int MAX_AUTO_RESUME_TRACK_RETRY_ATTEMPTS = 3;
 
+    // Flush the buffered track points every 10 points or 10 seconds
+    @VisibleForTesting
+    static final int TRACK_POINT_FLUSH_MAX_POINTS = 10;
+    @VisibleForTesting
+    static final long TRACK_POINT_FLUSH_MAX_DELAY = 10 * ONE_SECOND;
+
+    // The number of sensor samples inserted per bulk insert
+    @VisibleForTesting
+    static final int SENSOR_SAMPLE_BATCH_SIZE = 256;
+
     // The following variables are set in onCreate:
     private ExecutorService executorService;
     private Context context;
@@ -119,10 +133,15 @@ public class TrackRecordingService extends Service {
     private MyTracksLocationManager myTracksLocationManager;
     private PendingIntent activityRecognitionPendingIntent;
     private ActivityRecognitionClient activityRecognitionClient;
+    private RecordingTaskScheduler recordingTaskScheduler;
     private PeriodicTaskExecutor splitExecutor;
     private PeriodicTaskExecutor voiceSplitExecutor;
     private PeriodicTaskExecutor voice1Executor;
     private PeriodicTaskExecutor voice2Executor;
+    private TrackPointJournal trackPointJournal;
+    private final long[] sensorSampleTimes = new long[SENSOR_SAMPLE_BATCH_SIZE];
+    private final int[] sensorSampleTypes = new int[SENSOR_SAMPLE_BATCH_SIZE];
+    private final float[] sensorSampleValues = new float[SENSOR_SAMPLE_BATCH_SIZE];
     private SharedPreferences sharedPreferences;
     private long recordingTrackId;
     private boolean recordingTrackPaused;
@@ -135,6 +154,8 @@ public class TrackRecordingService extends Service {
     private double weight;
 
     // The following variables are set when recording:
+    private Track recordingTrack;
+    private Location lastValidTrackPoint;
     private TripStatisticsUpdater trackTripStatisticsUpdater;
     private TripStatisticsUpdater markerTripStatisticsUpdater;
     private Waypoint lastSplitWaypoint;
@@ -300,6 +321,27 @@ public class TrackRecordingService extends Service {
         }
     };
 
+    private final Runnable flushTrackPointsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!isRecording() || isPaused() || executorService == null
+                    || executorService.isShutdown() || executorService.isTerminated()) {
+                return;
+            }
+            executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (trackPointJournal.isFlushDue()) {
+                        flushRecordingTrackPoints();
+                    } else {
+                        flushSensorSamples(recordingTrackId);
+                    }
+                }
+            });
+            handler.postDelayed(this, TRACK_POINT_FLUSH_MAX_DELAY);
+        }
+    };
+
     private final Runnable registerLocationRunnable = new Runnable() {
         @Override
         public void run() {
@@ -336,10 +378,18 @@ public class TrackRecordingService extends Service {
             Log.d("BIOTRACKS", e.getMessage());
         }
 
-        splitExecutor = new PeriodicTaskExecutor(this, new SplitPeriodicTaskFactory());
-        voiceSplitExecutor = new PeriodicTaskExecutor(this, new AnnouncementPeriodicTaskFactory());
-        voice1Executor = new PeriodicTaskExecutor(this, new AnnouncementPeriodicTaskFactory());
-        voice2Executor = new PeriodicTaskExecutor(this, new AnnouncementPeriodicTaskFactory());
+        // One scheduler, with a single thread, for all the periodic tasks
+        recordingTaskScheduler = new RecordingTaskScheduler(this);
+        splitExecutor = new PeriodicTaskExecutor(
+                this, new SplitPeriodicTaskFactory(), recordingTaskScheduler);
+        voiceSplitExecutor = new PeriodicTaskExecutor(
+                this, new AnnouncementPeriodicTaskFactory(), recordingTaskScheduler);
+        voice1Executor = new PeriodicTaskExecutor(
+                this, new AnnouncementPeriodicTaskFactory(), recordingTaskScheduler);
+        voice2Executor = new PeriodicTaskExecutor(
+                this, new AnnouncementPeriodicTaskFactory(), recordingTaskScheduler);
+        trackPointJournal = new TrackPointJournal(this, myTracksProviderUtils,
+                TRACK_POINT_FLUSH_MAX_POINTS, TRACK_POINT_FLUSH_MAX_DELAY);
         sharedPreferences = getSharedPreferences(Constants.SETTINGS_NAME, Context.MODE_PRIVATE);
         sharedPreferences.registerOnSharedPreferenceChangeListener(sharedPreferenceChangeListener);
 
@@ -363,6 +413,7 @@ public class TrackRecordingService extends Service {
                 Log.w(TAG, "track is null, but recordingTrackId not -1L. " + recordingTrackId);
                 updateRecordingState(PreferencesUtils.RECORDING_TRACK_ID_DEFAULT, true);
             }
+            trackPointJournal.close();
             showNotification(false);
         }
     }
@@ -399,17 +450,27 @@ public class TrackRecordingService extends Service {
 
     @Override
     public void onDestroy() {
-        if (sensorManager != null) {
-            SensorManagerFactory.releaseSystemSensorManager();
-            sensorManager = null;
-        }
-
         // Reverse order from onCreate
         showNotification(false);
 
         handler.removeCallbacks(registerLocationRunnable);
+        handler.removeCallbacks(flushTrackPointsRunnable);
         unregisterLocationListener();
 
+        /*
+         * The journal file is kept so that a restarted service can replay it.
+         * Flush before releasing the sensor manager, which holds the buffered
+         * sensor samples.
+         */
+        if (isRecording() && !isPaused()) {
+            flushRecordingTrackPoints();
+            flushSensorSamples(recordingTrackId);
+        }
+        if (sensorManager != null) {
+            SensorManagerFactory.releaseSystemSensorManager();
+            sensorManager = null;
+        }
+
         // unregister sharedPreferences before shutting down splitExecutor and voiceExecutor
         sharedPreferences.unregisterOnSharedPreferenceChangeListener(sharedPreferenceChangeListener);
 
@@ -437,6 +498,12 @@ public class TrackRecordingService extends Service {
             voice2Executor = null;
         }
 
+        try {
+            recordingTaskScheduler.shutdown();
+        } finally {
+            recordingTaskScheduler = null;
+        }
+
         if (activityRecognitionClient.isConnected()) {
             activityRecognitionClient.removeActivityUpdates(activityRecognitionPendingIntent);
         }
@@ -472,6 +539,20 @@ public class TrackRecordingService extends Service {
         super.onDestroy();
     }
 
+    @Override
+    public void onLowMemory() {
+        if (executorService != null && !executorService.isShutdown()
+                && !executorService.isTerminated()) {
+            executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    flushRecordingTrackPoints();
+                }
+            });
+        }
+        super.onLowMemory();
+    }
+
     /**
      * Returns true if the service is recording.
      */
@@ -699,6 +780,7 @@ public class TrackRecordingService extends Service {
         track.setIcon(TrackIconUtils.getIconValue(this, category));
         track.setTripStatistics(trackTripStatisticsUpdater.getTripStatistics());
         myTracksProviderUtils.updateTrack(track);
+        recordingTrack = track;
         insertWaypoint(WaypointCreationRequest.DEFAULT_START_TRACK);
 
         startRecording(true);
@@ -713,6 +795,14 @@ public class TrackRecordingService extends Service {
     private void restartTrack(Track track) {
         Log.d(TAG, "Restarting track: " + track.getId());
 
+        // Replay the track points buffered but not flushed before the restart
+        int numberOfRecoveredPoints = 0;
+        try {
+            numberOfRecoveredPoints = trackPointJournal.recover(track.getId());
+        } catch (SQLiteException e) {
+            Log.w(TAG, "SQLiteException", e);
+        }
+
         TripStatistics tripStatistics = track.getTripStatistics();
         trackTripStatisticsUpdater = new TripStatisticsUpdater(tripStatistics.getStartTime());
 
@@ -749,6 +839,11 @@ public class TrackRecordingService extends Service {
                 locationIterator.close();
             }
         }
+        if (numberOfRecoveredPoints != 0) {
+            updateRecordingTrack(track, myTracksProviderUtils.getLastTrackPointId(track.getId()),
+                    numberOfRecoveredPoints);
+        }
+        recordingTrack = track;
         startRecording(true);
     }
 
@@ -768,12 +863,15 @@ public class TrackRecordingService extends Service {
         // Update database
         Track track = myTracksProviderUtils.getTrack(recordingTrackId);
         if (track != null) {
+            trackPointJournal.open(recordingTrackId);
             Location resume = new Location(LocationManager.GPS_PROVIDER);
             resume.setLongitude(0);
             resume.setLatitude(RESUME_LATITUDE);
             resume.setTime(System.currentTimeMillis());
             insertLocation(track, resume, null);
+            flushTrackPoints(track);
         }
+        recordingTrack = track;
 
         startRecording(false);
     }
@@ -788,9 +886,17 @@ public class TrackRecordingService extends Service {
 
         // Update instance variables
         sensorManager = SensorManagerFactory.getSystemSensorManager(this);
+        if (sensorManager != null) {
+            // Drop the samples received while not recording
+            sensorManager.getSensorSampleBuffer().clear();
+        }
         lastLocation = null;
+        lastValidTrackPoint = null;
         currentSegmentHasLocation = false;
         isIdle = false;
+        trackPointJournal.open(recordingTrackId);
+        handler.removeCallbacks(flushTrackPointsRunnable);
+        handler.postDelayed(flushTrackPointsRunnable, TRACK_POINT_FLUSH_MAX_DELAY);
 
         startGps();
         sendTrackBroadcast(trackStarted ? R.string.track_started_broadcast_action
@@ -835,9 +941,10 @@ public class TrackRecordingService extends Service {
             // If not paused, add the last location
             if (!paused) {
                 insertLocation(track, lastLocation, getLastValidTrackPointInCurrentSegment(trackId));
+                flushTrackPoints(track);
 
                 // Update the recording track time
-                updateRecordingTrack(track, myTracksProviderUtils.getLastTrackPointId(trackId), false);
+                updateRecordingTrack(track, myTracksProviderUtils.getLastTrackPointId(trackId), 0);
             }
 
             String trackName = TrackNameUtils.getTrackName(this, trackId,
@@ -877,6 +984,30 @@ public class TrackRecordingService extends Service {
             }
         }
         endRecording(true, trackId);
+        buildTrackProfile(trackId);
+    }
+
+    /**
+     * Builds the profile of a finished track, in the background.
+     *
+     * @param trackId the track id
+     */
+    private void buildTrackProfile(final long trackId) {
+        if (executorService == null || executorService.isShutdown() || executorService.isTerminated()) {
+            return;
+        }
+        // onDestroy releases the fields before the queued tasks run
+        final Context localContext = context;
+        final MyTracksProviderUtils localMyTracksProviderUtils = myTracksProviderUtils;
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                Track track = localMyTracksProviderUtils.getTrack(trackId);
+                if (track != null) {
+                    TrackProfileCache.build(localContext, localMyTracksProviderUtils, track);
+                }
+            }
+        });
     }
 
     /**
@@ -902,6 +1033,7 @@ public class TrackRecordingService extends Service {
             pause.setLatitude(PAUSE_LATITUDE);
             pause.setTime(System.currentTimeMillis());
             insertLocation(track, pause, null);
+            flushTrackPoints(track);
         }
 
         endRecording(false, recordingTrackId);
@@ -927,6 +1059,10 @@ public class TrackRecordingService extends Service {
             sensorManager = null;
         }
         lastLocation = null;
+        lastValidTrackPoint = null;
+        recordingTrack = null;
+        handler.removeCallbacks(flushTrackPointsRunnable);
+        trackPointJournal.close();
 
         sendTrackBroadcast(trackStopped ? R.string.track_stopped_broadcast_action
                 : R.string.track_paused_broadcast_action, trackId);
@@ -949,15 +1085,15 @@ public class TrackRecordingService extends Service {
 
     /**
      * Gets the last valid track point in the current segment. Returns null if not
-     * available.
+     * available. The track point may still be buffered in the journal.
      *
      * @param trackId the track id
      */
     private Location getLastValidTrackPointInCurrentSegment(long trackId) {
-        if (!currentSegmentHasLocation) {
+        if (!currentSegmentHasLocation || trackPointJournal.getTrackId() != trackId) {
             return null;
         }
-        return myTracksProviderUtils.getLastValidTrackPoint(trackId);
+        return lastValidTrackPoint;
     }
 
     /**
@@ -985,8 +1121,8 @@ public class TrackRecordingService extends Service {
                 return;
             }
 
-            Track track = myTracksProviderUtils.getTrack(recordingTrackId);
-            if (track == null) {
+            Track track = recordingTrack;
+            if (track == null || track.getId() != recordingTrackId) {
                 Log.w(TAG, "Ignore onLocationChangedAsync. No track.");
                 return;
             }
@@ -1039,7 +1175,8 @@ public class TrackRecordingService extends Service {
                 return;
             }
 
-            double distanceToLastTrackLocation = location.distanceTo(lastValidTrackPoint);
+            double distanceToLastTrackLocation = GeodesyUtils.distance(
+                    location, lastValidTrackPoint);
             if (distanceToLastTrackLocation > maxRecordingDistance) {
                 insertLocation(track, lastLocation, lastValidTrackPoint);
 
@@ -1068,6 +1205,10 @@ public class TrackRecordingService extends Service {
                 Log.d(TAG, "Not recording location, idle");
             }
             lastLocation = location;
+
+            if (trackPointJournal.isFlushDue()) {
+                flushRecordingTrackPoints();
+            }
         } catch (Error e) {
             Log.e(TAG, "Error in onLocationChangedAsync", e);
             throw e;
@@ -1078,7 +1219,8 @@ public class TrackRecordingService extends Service {
     }
 
     /**
-     * Inserts a location.
+     * Inserts a location. The location is buffered in the track point journal
+     * until the next {@link #flushTrackPoints(Track)}.
      *
      * @param track               the track
      * @param location            the location
@@ -1095,30 +1237,88 @@ public class TrackRecordingService extends Service {
             return;
         }
 
+        trackPointJournal.add(location);
+        if (LocationUtils.isValidLocation(location)) {
+            this.lastValidTrackPoint = location;
+        }
+        ActivityType activityType = CalorieUtils.getActivityType(context, track.getCategory());
+        trackTripStatisticsUpdater.addLocation(
+                location, recordingDistanceInterval, true, activityType, weight);
+        markerTripStatisticsUpdater.addLocation(
+                location, recordingDistanceInterval, true, activityType, weight);
+        // Runs the distance periodic tasks reached by the new distance
+        recordingTaskScheduler.update(trackTripStatisticsUpdater.getTotalDistance());
+    }
+
+    /**
+     * Flushes the buffered track points of the recording track. Reads the
+     * recording track from the database once per flush so that concurrent edits
+     * of the track are kept.
+     */
+    private void flushRecordingTrackPoints() {
+        if (trackPointJournal.isEmpty()) {
+            return;
+        }
+        Track track = myTracksProviderUtils.getTrack(trackPointJournal.getTrackId());
+        if (track == null) {
+            Log.w(TAG, "Ignore flushRecordingTrackPoints. No track.");
+            return;
+        }
+        flushTrackPoints(track);
+        if (track.getId() == recordingTrackId) {
+            recordingTrack = track;
+        }
+    }
+
+    /**
+     * Flushes the buffered track points to the database in one transaction and
+     * updates the track.
+     *
+     * @param track the track
+     */
+    private void flushTrackPoints(Track track) {
+        flushSensorSamples(track.getId());
+        if (trackPointJournal.isEmpty()) {
+            return;
+        }
         try {
-            Uri uri = myTracksProviderUtils.insertTrackPoint(location, track.getId());
-            long trackPointId = Long.parseLong(uri.getLastPathSegment());
-            ActivityType activityType = CalorieUtils.getActivityType(context, track.getCategory());
-            trackTripStatisticsUpdater.addLocation(
-                    location, recordingDistanceInterval, true, activityType, weight);
-            markerTripStatisticsUpdater.addLocation(
-                    location, recordingDistanceInterval, true, activityType, weight);
-            updateRecordingTrack(track, trackPointId, LocationUtils.isValidLocation(location));
+            int numberOfValidPoints = trackPointJournal.flush();
+            updateRecordingTrack(track, myTracksProviderUtils.getLastTrackPointId(track.getId()),
+                    numberOfValidPoints);
         } catch (SQLiteException e) {
       /*
        * Insert failed, most likely because of SqlLite error code 5
-       * (SQLite_BUSY). This is expected to happen extremely rarely (if our
-       * listener gets invoked twice at about the same time).
+       * (SQLite_BUSY). The track points stay in the journal and are written
+       * with the next flush.
        */
             Log.w(TAG, "SQLiteException", e);
         }
-        splitExecutor.update();
-        voiceSplitExecutor.update();
-        voice1Executor.update();
-        voice2Executor.update();
         sendTrackBroadcast(R.string.track_update_broadcast_action, track.getId());
     }
 
+    /**
+     * Flushes the buffered sensor samples to the database.
+     *
+     * @param trackId the track id
+     */
+    private synchronized void flushSensorSamples(long trackId) {
+        SensorManager currentSensorManager = sensorManager;
+        if (trackId == -1L || currentSensorManager == null) {
+            return;
+        }
+        SensorSampleBuffer sensorSampleBuffer = currentSensorManager.getSensorSampleBuffer();
+        try {
+            int count;
+            while ((count = sensorSampleBuffer.drainTo(
+                    sensorSampleTimes, sensorSampleTypes, sensorSampleValues)) > 0) {
+                myTracksProviderUtils.bulkInsertSensorSamples(
+                        trackId, sensorSampleTimes, sensorSampleTypes, sensorSampleValues, count);
+            }
+        } catch (SQLiteException e) {
+            Log.w(TAG, "SQLiteException", e);
+        }
+    }
+
     /**
      * Return the last location seen
      *
@@ -1130,23 +1330,21 @@ public class TrackRecordingService extends Service {
 
     /**
      * Updates the recording track time. Also updates the startId and the stopId.
-     * Increase the number of points if it is a new and valid track point.
+     * Increases the number of points by the number of new and valid track points.
      *
      * @param track                  the track
      * @param lastTrackPointId       the last track point id
-     * @param increaseNumberOfPoints true to increase the number of points
+     * @param numberOfNewValidPoints the number of new and valid track points
      */
     private void updateRecordingTrack(
-            Track track, long lastTrackPointId, boolean increaseNumberOfPoints) {
+            Track track, long lastTrackPointId, int numberOfNewValidPoints) {
         if (lastTrackPointId >= 0) {
             if (track.getStartId() < 0) {
-                track.setStartId(lastTrackPointId);
+                track.setStartId(myTracksProviderUtils.getFirstTrackPointId(track.getId()));
             }
             track.setStopId(lastTrackPointId);
         }
-        if (increaseNumberOfPoints) {
-            track.setNumberOfPoints(track.getNumberOfPoints() + 1);
-        }
+        track.setNumberOfPoints(track.getNumberOfPoints() + numberOfNewValidPoints);
 
         trackTripStatisticsUpdater.updateTime(System.currentTimeMillis());
         track.setTripStatistics(trackTripStatisticsUpdater.getTripStatistics());
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.services;
+
+import android.app.IntentService;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.util.Log;
+
+import com.google.android.lib.mytracks.content.TrackStatsColumns;
+
+/**
+ * Service that rebuilds the track stats rows, whose periods depend on the time
+ * zone and the locale.
+ */
+public class TrackStatsService extends IntentService {
+
+  private static final String TAG = TrackStatsService.class.getSimpleName();
+
+  public TrackStatsService() {
+    super(TrackStatsService.class.getSimpleName());
+  }
+
+  @Override
+  protected void onHandleIntent(Intent intent) {
+    ContentValues values = new ContentValues();
+    values.put(TrackStatsColumns.REBUILD, true);
+    int count = getContentResolver().update(TrackStatsColumns.CONTENT_URI, values, null, null);
+    Log.i(TAG, "Rebuilt track stats: " + count + " rows");
+  }
+}
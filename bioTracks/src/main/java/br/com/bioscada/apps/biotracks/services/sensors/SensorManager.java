@@ -35,6 +35,7 @@ public abstract class SensorManager {
   private static final long MAX_SENSOR_DATE_SET_AGE = 5000;
   private static final long MAX_SENSOR_STATE_AGE = 20000;
   private static final int RETRY_PERIOD = 20000;
+  private static final int SENSOR_SAMPLE_BUFFER_CAPACITY = 1024;
 
   private Sensor.SensorState sensorState = Sensor.SensorState.NONE;
   private long sensorStateTimestamp = System.currentTimeMillis();
@@ -42,6 +43,9 @@ public abstract class SensorManager {
   private TimerTask timerTask;
   private Timer timer;
 
+  private final SensorSampleBuffer sensorSampleBuffer = new SensorSampleBuffer(
+      SENSOR_SAMPLE_BUFFER_CAPACITY);
+
   /**
    * Returns true if the sensor is enabled.
    */
@@ -62,6 +66,13 @@ public abstract class SensorManager {
    */
   public abstract Sensor.SensorDataSet getSensorDataSet();
 
+  /**
+   * Gets the buffer of the samples received from the sensor.
+   */
+  public SensorSampleBuffer getSensorSampleBuffer() {
+    return sensorSampleBuffer;
+  }
+
   /**
    * Starts the sensor.
    */
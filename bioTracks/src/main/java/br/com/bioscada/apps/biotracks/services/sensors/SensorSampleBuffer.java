@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.services.sensors;
+
+import android.util.Log;
+
+import com.google.android.lib.mytracks.content.SensorSamplesColumns;
+
+/**
+ * A bounded ring buffer of sensor samples. Sensors add every sample they
+ * receive on their own thread, and the recording service drains the buffer in
+ * batches into the {@link SensorSamplesColumns} table. When the buffer is full
+ * the oldest samples are overwritten.
+ */
+public class SensorSampleBuffer {
+
+  private static final String TAG = SensorSampleBuffer.class.getSimpleName();
+
+  private final long[] times;
+  private final int[] types;
+  private final float[] values;
+
+  // Index of the oldest sample
+  private int head;
+  private int size;
+  private long lastTime;
+  private int numberOfDropped;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity the maximum number of buffered samples
+   */
+  public SensorSampleBuffer(int capacity) {
+    times = new long[capacity];
+    types = new int[capacity];
+    values = new float[capacity];
+  }
+
+  /**
+   * Adds a sample. Times are kept monotonic, a sample older than the previous
+   * one gets the previous sample time.
+   *
+   * @param type the sample type, see {@link SensorSamplesColumns}
+   * @param time the sample time
+   * @param value the sample value
+   */
+  public synchronized void add(int type, long time, float value) {
+    if (time < lastTime) {
+      time = lastTime;
+    }
+    lastTime = time;
+    int index = (head + size) % times.length;
+    if (size == times.length) {
+      head = (head + 1) % times.length;
+      numberOfDropped++;
+    } else {
+      size++;
+    }
+    times[index] = time;
+    types[index] = type;
+    values[index] = value;
+  }
+
+  /**
+   * Moves the oldest samples into the given arrays.
+   *
+   * @param sampleTimes the sample times
+   * @param sampleTypes the sample types
+   * @param sampleValues the sample values
+   * @return the number of samples moved, at most the length of the arrays.
+   */
+  public synchronized int drainTo(long[] sampleTimes, int[] sampleTypes, float[] sampleValues) {
+    if (numberOfDropped != 0) {
+      Log.w(TAG, "Dropped " + numberOfDropped + " sensor samples.");
+      numberOfDropped = 0;
+    }
+    int count = Math.min(size, sampleTimes.length);
+    for (int i = 0; i < count; i++) {
+      int index = (head + i) % times.length;
+      sampleTimes[i] = times[index];
+      sampleTypes[i] = types[index];
+      sampleValues[i] = values[index];
+    }
+    head = (head + count) % times.length;
+    size -= count;
+    return count;
+  }
+
+  /**
+   * Removes all the samples.
+   */
+  public synchronized void clear() {
+    head = 0;
+    size = 0;
+    numberOfDropped = 0;
+  }
+
+  /**
+   * Returns true if there is no sample.
+   */
+  public synchronized boolean isEmpty() {
+    return size == 0;
+  }
+}
@@ -31,6 +31,7 @@ import com.dsi.ant.AntMesg;
 import com.dsi.ant.exception.AntInterfaceException;
 import com.dsi.ant.exception.AntServiceNotConnectedException;
 import com.google.android.lib.mytracks.content.Sensor;
+import com.google.android.lib.mytracks.content.SensorSamplesColumns;
 
 import java.lang.reflect.Field;
 import java.util.Locale;
@@ -507,11 +508,13 @@ public class AntSensorManager extends SensorManager {
     if (heartRate != -1) {
       builder.setHeartRate(Sensor.SensorData.newBuilder()
           .setValue(heartRate).setState(Sensor.SensorState.SENDING));
+      getSensorSampleBuffer().add(SensorSamplesColumns.TYPE_HEART_RATE, now, heartRate);
     }
     int cadence = antSensorValue.getCadence();
     if (cadence != -1) {
       builder.setCadence(Sensor.SensorData.newBuilder()
           .setValue(cadence).setState(Sensor.SensorState.SENDING));
+      getSensorSampleBuffer().add(SensorSamplesColumns.TYPE_CADENCE, now, cadence);
     }
     sensorDataSet = builder.setCreationTime(now).build();
     setSensorState(Sensor.SensorState.SENDING);
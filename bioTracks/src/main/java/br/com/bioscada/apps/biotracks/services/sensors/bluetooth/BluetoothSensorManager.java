@@ -133,6 +133,7 @@ public class BluetoothSensorManager extends SensorManager {
   public BluetoothSensorManager(Context context, MessageParser messageParser) {
     this.context = context;
     this.messageParser = messageParser;
+    this.messageParser.setSensorSampleBuffer(getSensorSampleBuffer());
     bluetoothConnectionManager = new BluetoothConnectionManager(
         bluetoothAdapter, messageHandler, messageParser);
   }
@@ -19,6 +19,8 @@ package br.com.bioscada.apps.biotracks.services.sensors.bluetooth;
 
 import com.google.android.lib.mytracks.content.Sensor;
 
+import br.com.bioscada.apps.biotracks.services.sensors.SensorSampleBuffer;
+
 /**
  * An interface for parsing a byte array to a SensorData object.
  *
@@ -33,4 +35,11 @@ public interface MessageParser {
   public boolean isValid(byte[] buffer);
 
   public int findNextAlignment(byte[] buffer);
+
+  /**
+   * Sets the buffer receiving every sample parsed.
+   *
+   * @param sensorSampleBuffer the sensor sample buffer
+   */
+  public void setSensorSampleBuffer(SensorSampleBuffer sensorSampleBuffer);
 }
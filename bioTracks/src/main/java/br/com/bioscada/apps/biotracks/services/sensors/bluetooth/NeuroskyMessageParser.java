@@ -17,6 +17,7 @@ package br.com.bioscada.apps.biotracks.services.sensors.bluetooth;
 
 import com.google.android.lib.mytracks.content.Sensor;
 
+import br.com.bioscada.apps.biotracks.services.sensors.SensorSampleBuffer;
 import br.com.bioscada.apps.biotracks.services.sensors.SensorUtils;
 
 
@@ -142,5 +143,8 @@ public class NeuroskyMessageParser implements MessageParser {
     return -1; 
   }
 
-
-}
\ No newline at end of file
+  @Override
+  public void setSensorSampleBuffer(SensorSampleBuffer sensorSampleBuffer) {
+    // Attention and meditation values are not recorded as sensor samples
+  }
+}
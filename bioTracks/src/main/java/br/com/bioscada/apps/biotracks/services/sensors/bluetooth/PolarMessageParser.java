@@ -18,11 +18,12 @@ package br.com.bioscada.apps.biotracks.services.sensors.bluetooth;
 import android.util.Log;
 
 import com.google.android.lib.mytracks.content.Sensor;
+import com.google.android.lib.mytracks.content.SensorSamplesColumns;
 
-import java.util.Vector;
-
+import br.com.bioscada.apps.biotracks.services.sensors.SensorSampleBuffer;
 import br.com.bioscada.apps.biotracks.services.sensors.SensorUtils;
-import br.com.bioscada.apps.biotracks.util.StdStats;
+import br.com.bioscada.apps.biotracks.stats.HrvSpectrumUpdater;
+import br.com.bioscada.apps.biotracks.stats.HrvStatisticsUpdater;
 
 /**
  * An implementation of a Sensor MessageParser for Polar Wearlink Bluetooth HRM.
@@ -38,7 +39,10 @@ import br.com.bioscada.apps.biotracks.util.StdStats;
 public class PolarMessageParser implements MessageParser {
 
     private int lastHeartRate = 0;
-    private Vector<Float> rrVector = new Vector<Float>();
+    private final HrvStatisticsUpdater hrvStatisticsUpdater = new HrvStatisticsUpdater();
+    private final HrvSpectrumUpdater hrvSpectrumUpdater = new HrvSpectrumUpdater();
+    private SensorSampleBuffer sensorSampleBuffer;
+
     /**
      * Applies Polar packet validation rules to buffer. Polar packets are checked
      * for following; offset 0 = header byte, 254 (0xFE). offset 1 = packet length
@@ -73,6 +77,7 @@ public class PolarMessageParser implements MessageParser {
         int heartRateBPM = 0;
         int heartRateRMSSD = 0;
 
+        long now = System.currentTimeMillis();
         int iSize = SensorUtils.readUnsignedByte(buffer[1]);
         int iBat = SensorUtils.readUnsignedByte(buffer[5]);
 
@@ -106,18 +111,22 @@ public class PolarMessageParser implements MessageParser {
                 heartRateRC2 = crr;
             }
             
-            rrVector.add((float)crr);
+            hrvStatisticsUpdater.addRrInterval(crr);
+            hrvSpectrumUpdater.addRrInterval(crr);
             lastHeartRate = crr; // Remember good value for next time.
+            if (sensorSampleBuffer != null) {
+                sensorSampleBuffer.add(SensorSamplesColumns.TYPE_RR_INTERVAL, now, crr);
+            }
 
-            Log.d("POLAR", System.currentTimeMillis() + " l " +rrVector.size()+  " i = " + i + " RR = " + crr+ " iBat = " + iBat+ " iSize = " + iSize);
+            Log.d("POLAR", System.currentTimeMillis() + " l " +hrvStatisticsUpdater.getCount()+  " i = " + i + " RR = " + crr+ " iBat = " + iBat+ " iSize = " + iSize);
 
         }
 
-        heartRateRMSSD = Math.round(StdStats.calculeRMSSD(rrVector));
+        heartRateRMSSD = (int) Math.round(hrvStatisticsUpdater.getRmssd());
 
         // Log.d("POLAR", " RR " + heartRate +" BPM " + heartRateBPM+" RMSSD " + heartRateRMSSD);
         // Heart Rate
-        Sensor.SensorDataSet.Builder sds = Sensor.SensorDataSet.newBuilder().setCreationTime( System.currentTimeMillis());
+        Sensor.SensorDataSet.Builder sds = Sensor.SensorDataSet.newBuilder().setCreationTime(now);
 
         if(heartRate > 0){
             Sensor.SensorData.Builder rr = Sensor.SensorData.newBuilder().setValue(heartRate).setState(Sensor.SensorState.SENDING);
@@ -140,12 +149,21 @@ public class PolarMessageParser implements MessageParser {
             Sensor.SensorData.Builder rrrmssd = Sensor.SensorData.newBuilder().setValue(heartRateRMSSD).setState(Sensor.SensorState.SENDING);
             sds.setRmssd(rrrmssd);
         }
+        if(hrvSpectrumUpdater.hasSpectrum()){
+            Sensor.SensorData.Builder lfHf = Sensor.SensorData.newBuilder().setValue(Math.round(hrvSpectrumUpdater.getLfHf() * 100)).setState(Sensor.SensorState.SENDING);
+            sds.setLfHf(lfHf);
+        }
         Sensor.SensorData.Builder batteryLevel = Sensor.SensorData.newBuilder().setValue(iBat).setState(Sensor.SensorState.SENDING);
         sds.setBatteryLevel(batteryLevel);
 
         return sds.build();
     }
 
+    @Override
+    public void setSensorSampleBuffer(SensorSampleBuffer sensorSampleBuffer) {
+        this.sensorSampleBuffer = sensorSampleBuffer;
+    }
+
     /**
      * Applies packet validation rules to buffer
      *
@@ -16,13 +16,15 @@
 package br.com.bioscada.apps.biotracks.services.sensors.bluetooth;
 
 import com.google.android.lib.mytracks.content.Sensor;
+import com.google.android.lib.mytracks.content.SensorSamplesColumns;
 
 import java.util.Arrays;
-import java.util.Vector;
 
+import br.com.bioscada.apps.biotracks.services.sensors.SensorSampleBuffer;
 import br.com.bioscada.apps.biotracks.services.sensors.SensorUtils;
+import br.com.bioscada.apps.biotracks.stats.HrvSpectrumUpdater;
+import br.com.bioscada.apps.biotracks.stats.HrvStatisticsUpdater;
 import br.com.bioscada.apps.biotracks.util.ApiAdapterFactory;
-import br.com.bioscada.apps.biotracks.util.StdStats;
 
 /**
  * An implementation of a Sensor MessageParser for Zephyr.
@@ -37,11 +39,18 @@ public class ZephyrMessageParser implements MessageParser {
   public static final int ZEPHYR_HXM_BYTE_ETX = 59;
   
   private static final byte[] CADENCE_BUG_FW_ID = {0x1A, 0x00, 0x31, 0x65, 0x50, 0x00, 0x31, 0x62};
+
+  // Heart beat number and the 15 most recent heart beat timestamps (newest first)
+  private static final int ZEPHYR_HXM_BYTE_HEART_BEAT_NUMBER = 13;
+  private static final int ZEPHYR_HXM_BYTE_HEART_BEAT_TIMESTAMPS = 14;
+  private static final int ZEPHYR_HXM_HEART_BEAT_TIMESTAMPS = 15;
   
   private StrideReadings strideReadings;
 
-    private int lastHeartRate = 0;
-    private Vector<Float> rrVector = new Vector<Float>();
+    private final HrvStatisticsUpdater hrvStatisticsUpdater = new HrvStatisticsUpdater();
+    private final HrvSpectrumUpdater hrvSpectrumUpdater = new HrvSpectrumUpdater();
+    private int lastHeartBeatNumber = -1;
+    private SensorSampleBuffer sensorSampleBuffer;
 
     @Override
   public Sensor.SensorDataSet parseBuffer(byte[] buffer) {
@@ -50,10 +59,12 @@ public class ZephyrMessageParser implements MessageParser {
       int heartRateRMSSD = 0;
 
         heartRate =  buffer[12] & 0xFF;
+      long now = System.currentTimeMillis();
+      addHeartBeats(buffer, now);
 
     Sensor.SensorDataSet.Builder sds =
       Sensor.SensorDataSet.newBuilder()
-      .setCreationTime(System.currentTimeMillis());
+      .setCreationTime(now);
 
     Sensor.SensorData.Builder rr = Sensor.SensorData.newBuilder()
       .setValue(buffer[12] & 0xFF)
@@ -61,18 +72,20 @@ public class ZephyrMessageParser implements MessageParser {
     sds.setHeartRate(rr);
 
       heartRateBPM = Math.round(60000/heartRate);
-      rrVector.add((float)lastHeartRate);
-      try{
-          heartRateRMSSD = Math.round(StdStats.calculeRMSSD(rrVector));
-      }catch (Exception e){
-          heartRateRMSSD = 0;
-      }
+      heartRateRMSSD = (int) Math.round(hrvStatisticsUpdater.getRmssd());
       Sensor.SensorData.Builder rrbpm = Sensor.SensorData.newBuilder().setValue(heartRateBPM).setState(Sensor.SensorState.SENDING);
       sds.setBpm(rrbpm);
 
       Sensor.SensorData.Builder rrrmssd = Sensor.SensorData.newBuilder().setValue(heartRateRMSSD).setState(Sensor.SensorState.SENDING);
       sds.setRmssd(rrrmssd);
 
+      if (hrvSpectrumUpdater.hasSpectrum()) {
+        Sensor.SensorData.Builder lfHf = Sensor.SensorData.newBuilder()
+            .setValue(Math.round(hrvSpectrumUpdater.getLfHf() * 100))
+            .setState(Sensor.SensorState.SENDING);
+        sds.setLfHf(lfHf);
+      }
+
       Sensor.SensorData.Builder batteryLevel = Sensor.SensorData.newBuilder()
       .setValue(buffer[11])
       .setState(Sensor.SensorState.SENDING);
@@ -83,6 +96,39 @@ public class ZephyrMessageParser implements MessageParser {
     return sds.build();
   }
 
+  /**
+   * Adds the beat-to-beat intervals of the heart beats received since the
+   * previous packet to the HRV statistics. Also adds the heart rate and the
+   * beat-to-beat intervals to the sensor sample buffer.
+   *
+   * @param buffer the packet
+   * @param now the packet time
+   */
+  private void addHeartBeats(byte[] buffer, long now) {
+    int heartBeatNumber = buffer[ZEPHYR_HXM_BYTE_HEART_BEAT_NUMBER] & 0xFF;
+    if (sensorSampleBuffer != null) {
+      sensorSampleBuffer.add(SensorSamplesColumns.TYPE_HEART_RATE, now, buffer[12] & 0xFF);
+    }
+    if (lastHeartBeatNumber != -1) {
+      int newHeartBeats = Math.min((heartBeatNumber - lastHeartBeatNumber) & 0xFF,
+          ZEPHYR_HXM_HEART_BEAT_TIMESTAMPS - 1);
+      // Oldest first
+      for (int i = newHeartBeats - 1; i >= 0; i--) {
+        int timestamp = SensorUtils.unsignedShortToIntLittleEndian(
+            buffer, ZEPHYR_HXM_BYTE_HEART_BEAT_TIMESTAMPS + 2 * i);
+        int previousTimestamp = SensorUtils.unsignedShortToIntLittleEndian(
+            buffer, ZEPHYR_HXM_BYTE_HEART_BEAT_TIMESTAMPS + 2 * (i + 1));
+        int rrInterval = (timestamp - previousTimestamp) & 0xFFFF;
+        hrvStatisticsUpdater.addRrInterval(rrInterval);
+        hrvSpectrumUpdater.addRrInterval(rrInterval);
+        if (sensorSampleBuffer != null) {
+          sensorSampleBuffer.add(SensorSamplesColumns.TYPE_RR_INTERVAL, now, rrInterval);
+        }
+      }
+    }
+    lastHeartBeatNumber = heartBeatNumber;
+  }
+
   private void setCadence(Sensor.SensorDataSet.Builder sds, byte[] buffer) {
     // Device Firmware ID, Firmware Version, Hardware ID, Hardware Version
     // 0x1A00316550003162 produces erroneous values for Cadence and needs
@@ -106,6 +152,15 @@ public class ZephyrMessageParser implements MessageParser {
         .setState(Sensor.SensorState.SENDING);
     }
     sds.setCadence(cadence);
+    if (sensorSampleBuffer != null && cadence.hasValue()) {
+      sensorSampleBuffer.add(
+          SensorSamplesColumns.TYPE_CADENCE, System.currentTimeMillis(), cadence.getValue());
+    }
+  }
+
+  @Override
+  public void setSensorSampleBuffer(SensorSampleBuffer sensorSampleBuffer) {
+    this.sensorSampleBuffer = sensorSampleBuffer;
   }
 
   @Override
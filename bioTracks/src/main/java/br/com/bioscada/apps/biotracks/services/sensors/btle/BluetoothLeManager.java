@@ -199,6 +199,7 @@ public class BluetoothLeManager extends SensorManager {
     mContext = context;
     mDeviceAddr = address;
     mSensor = sensor;
+    mSensor.setSensorSampleBuffer(getSensorSampleBuffer());
   }
 
 
@@ -27,6 +27,8 @@ import com.google.android.lib.mytracks.content.Sensor;
 
 import java.util.UUID;
 
+import br.com.bioscada.apps.biotracks.services.sensors.SensorSampleBuffer;
+
 /**
  * BluetoothLeSensor represents a Bluetooth Smart sensor that 
  * supports reading data from a Bluetooth GATT server using notifications.
@@ -39,6 +41,7 @@ public abstract class BluetoothLeSensor {
   private static final String TAG = BluetoothLeSensor.class.getSimpleName();
   
   private int mState = STATE_UNCONFIGURED;
+  private SensorSampleBuffer mSensorSampleBuffer;
   
   /**
    *  UUID for descriptor to enable notifications when a characteristic's
@@ -77,6 +80,27 @@ public abstract class BluetoothLeSensor {
    */
   public abstract Sensor.SensorDataSet parseBuffer(BluetoothGatt gatt, BluetoothGattCharacteristic ch);
   
+  /**
+   * Sets the buffer receiving every sample parsed.
+   */
+  public void setSensorSampleBuffer(SensorSampleBuffer sensorSampleBuffer) {
+    mSensorSampleBuffer = sensorSampleBuffer;
+  }
+
+  /**
+   * Adds a sample to the sensor sample buffer, if any.
+   *
+   * @param type the sample type
+   * @param time the sample time
+   * @param value the sample value
+   */
+  protected void addSensorSample(int type, long time, float value) {
+    SensorSampleBuffer sensorSampleBuffer = mSensorSampleBuffer;
+    if (sensorSampleBuffer != null) {
+      sensorSampleBuffer.add(type, time, value);
+    }
+  }
+
   public int getState(){
     return mState;
   }
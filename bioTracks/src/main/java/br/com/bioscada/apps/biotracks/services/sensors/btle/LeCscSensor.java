@@ -23,6 +23,7 @@ import android.os.Build;
 import android.util.Log;
 
 import com.google.android.lib.mytracks.content.Sensor;
+import com.google.android.lib.mytracks.content.SensorSamplesColumns;
 
 import br.com.bioscada.apps.biotracks.services.sensors.CadenceCounter;
 
@@ -90,6 +91,8 @@ public class LeCscSensor extends BluetoothLeSensor {
     c2EventTime = ch.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, 9);
     
     int crank = crankRevolutionCounter.getEventsPerMinute(c2, c2EventTime);
+    long now = System.currentTimeMillis();
+    addSensorSample(SensorSamplesColumns.TYPE_CADENCE, now, crank);
     
     if (Log.isLoggable(TAG, Log.DEBUG)) {
       
@@ -106,7 +109,7 @@ public class LeCscSensor extends BluetoothLeSensor {
         .setState(Sensor.SensorState.SENDING)
         .setValue(crank);
     Sensor.SensorDataSet dataset = Sensor.SensorDataSet.newBuilder()
-          .setCreationTime(System.currentTimeMillis())
+          .setCreationTime(now)
           .setCadence(datum)
           .build();
     
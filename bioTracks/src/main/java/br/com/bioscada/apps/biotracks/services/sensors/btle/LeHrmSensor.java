@@ -23,10 +23,10 @@ import android.os.Build;
 import android.util.Log;
 
 import com.google.android.lib.mytracks.content.Sensor;
+import com.google.android.lib.mytracks.content.SensorSamplesColumns;
 
-import java.util.Vector;
-
-import br.com.bioscada.apps.biotracks.util.StdStats;
+import br.com.bioscada.apps.biotracks.stats.HrvSpectrumUpdater;
+import br.com.bioscada.apps.biotracks.stats.HrvStatisticsUpdater;
 
 
 /**
@@ -47,7 +47,8 @@ public class LeHrmSensor extends BluetoothLeSensor {
   private static final int HR_FMT_BITMASK = 0x01;
 
     private int lastHeartRate = 0;
-    private Vector<Float> rrVector = new Vector<Float>();
+    private final HrvStatisticsUpdater hrvStatisticsUpdater = new HrvStatisticsUpdater();
+    private final HrvSpectrumUpdater hrvSpectrumUpdater = new HrvSpectrumUpdater();
     public static final LeHrmSensor INSTANCE = new LeHrmSensor();
 
   private LeHrmSensor() {
@@ -179,7 +180,9 @@ public class LeHrmSensor extends BluetoothLeSensor {
       double heartRateRC2 = 0;
       double heartRateBPM = 0;
       double heartRateRMSSD = 0;
+      long now = System.currentTimeMillis();
       heartRateBPM = extractHeartRate(ch);
+      addSensorSample(SensorSamplesColumns.TYPE_HEART_RATE, now, (float) heartRateBPM);
       double contact = extractContact(ch);
       double energy = extractEnergyExpended(ch);
       Integer[] interval = extractBeatToBeatInterval(ch);
@@ -207,18 +210,20 @@ public class LeHrmSensor extends BluetoothLeSensor {
                   heartRateRC2 = crr;
               }
 
-              rrVector.add((float)crr);
+              hrvStatisticsUpdater.addRrInterval(crr);
+              hrvSpectrumUpdater.addRrInterval(crr);
               lastHeartRate = crr; // Remember good value for next time.
-              Log.d("POLAR", System.currentTimeMillis() + " l " +rrVector.size()+  " i = " + i + " RR = " + crr+ " contact = " + contact+ " energy = " + energy);
+              addSensorSample(SensorSamplesColumns.TYPE_RR_INTERVAL, now, crr);
+              Log.d("POLAR", System.currentTimeMillis() + " l " +hrvStatisticsUpdater.getCount()+  " i = " + i + " RR = " + crr+ " contact = " + contact+ " energy = " + energy);
 
           }
       }
 
-      heartRateRMSSD = Math.round(StdStats.calculeRMSSD(rrVector));
+      heartRateRMSSD = Math.round(hrvStatisticsUpdater.getRmssd());
 
       // Log.d("POLAR", " RR " + heartRate +" BPM " + heartRateBPM+" RMSSD " + heartRateRMSSD);
       // Heart Rate
-      Sensor.SensorDataSet.Builder sds = Sensor.SensorDataSet.newBuilder().setCreationTime( System.currentTimeMillis());
+      Sensor.SensorDataSet.Builder sds = Sensor.SensorDataSet.newBuilder().setCreationTime(now);
 
       if(heartRate > 0){
           Sensor.SensorData.Builder rr = Sensor.SensorData.newBuilder().setValue((int)heartRate).setState(Sensor.SensorState.SENDING);
@@ -241,6 +246,10 @@ public class LeHrmSensor extends BluetoothLeSensor {
           Sensor.SensorData.Builder rrrmssd = Sensor.SensorData.newBuilder().setValue((int)heartRateRMSSD).setState(Sensor.SensorState.SENDING);
           sds.setRmssd(rrrmssd);
       }
+      if(hrvSpectrumUpdater.hasSpectrum()){
+          Sensor.SensorData.Builder lfHf = Sensor.SensorData.newBuilder().setValue(Math.round(hrvSpectrumUpdater.getLfHf() * 100)).setState(Sensor.SensorState.SENDING);
+          sds.setLfHf(lfHf);
+      }
 
 
     return sds.build();
@@ -24,7 +24,8 @@ import br.com.bioscada.apps.biotracks.util.PreferencesUtils;
 import br.com.bioscada.apps.biotracks.util.UnitConversions;
 
 /**
- * Execute a periodic task on a time or distance schedule.
+ * Execute a periodic task on a time or distance schedule. The task is run by a
+ * {@link RecordingTaskScheduler} shared by all the executors of the recording.
  * 
  * @author Sandor Dornbush
  */
@@ -35,11 +36,12 @@ public class PeriodicTaskExecutor {
 
   private final TrackRecordingService trackRecordingService;
   private final PeriodicTaskFactory periodicTaskFactory;
+  private final RecordingTaskScheduler recordingTaskScheduler;
 
   /**
-   * The task frequency. A positive value is a time frequency (minutes). A
-   * negative value is a distance frequency (km or mi). A zero value is to turn
-   * off periodic task.
+   * The task frequency. A positive value is a time frequency (seconds). A
+   * negative value is a distance frequency (meters or thousandths of a mile). A
+   * zero value is to turn off periodic task.
    */
   private int taskFrequency = PreferencesUtils.FREQUENCY_OFF;
 
@@ -47,18 +49,16 @@ public class PeriodicTaskExecutor {
   
   private String[] params = null;
 
-  // Time periodic task executor
-  private TimerTaskExecutor timerTaskExecutor = null;
+  // The scheduled periodic task
+  private RecordingTaskScheduler.ScheduledTask scheduledTask = null;
 
   private boolean metricUnits;
 
-  // The next distance for the distance periodic task
-  private double nextTaskDistance = Double.MAX_VALUE;
-
-  public PeriodicTaskExecutor(
-      TrackRecordingService trackRecordingService, PeriodicTaskFactory periodicTaskFactory) {
+  public PeriodicTaskExecutor(TrackRecordingService trackRecordingService,
+      PeriodicTaskFactory periodicTaskFactory, RecordingTaskScheduler recordingTaskScheduler) {
     this.trackRecordingService = trackRecordingService;
     this.periodicTaskFactory = periodicTaskFactory;
+    this.recordingTaskScheduler = recordingTaskScheduler;
   }
 
   /**
@@ -70,12 +70,7 @@ public class PeriodicTaskExecutor {
       return;
     }
 
-    if (!isTimeFrequency()) {
-      if (timerTaskExecutor != null) {
-        timerTaskExecutor.shutdown();
-        timerTaskExecutor = null;
-      }
-    }
+    shutdown();
     if (taskFrequency == PreferencesUtils.FREQUENCY_OFF) {
       Log.d(TAG, "Task frequency is off.");
       return;
@@ -93,52 +88,21 @@ public class PeriodicTaskExecutor {
       periodicTask.setParams(params);
 
     periodicTask.start();
-
-    if (isTimeFrequency()) {
-      if (timerTaskExecutor == null) {
-        timerTaskExecutor = new TimerTaskExecutor(periodicTask, trackRecordingService);
-      }
-      timerTaskExecutor.scheduleTask(taskFrequency * SECOND_TO_MILLISECONDS);
-    } else {
-      // For distance periodic task
-      calculateNextTaskDistance();
-    }
+    schedule();
   }
 
   /**
    * Shuts down the executor.
    */
   public void shutdown() {
+    if (scheduledTask != null) {
+      scheduledTask.cancel();
+      scheduledTask = null;
+    }
     if (periodicTask != null) {
       periodicTask.shutdown();
       periodicTask = null;
     }
-    if (timerTaskExecutor != null) {
-      timerTaskExecutor.shutdown();
-      timerTaskExecutor = null;
-    }
-  }
-
-  /**
-   * Updates the executor.
-   */
-  public void update() {
-    if (!isDistanceFrequency() || periodicTask == null) {
-      return;
-    }
-    TripStatistics tripStatistics = trackRecordingService.getTripStatistics();
-    if (tripStatistics == null) {
-      return;
-    }
-    double distance = tripStatistics.getTotalDistance();
-    if (!metricUnits) {
-      distance *= UnitConversions.KM_TO_MI;
-    }
-
-    if (distance > nextTaskDistance) {
-      periodicTask.run(trackRecordingService);
-      calculateNextTaskDistance();
-    }
   }
 
   /**
@@ -169,13 +133,19 @@ public class PeriodicTaskExecutor {
    */
   public void setMetricUnits(boolean metricUnits) {
     this.metricUnits = metricUnits;
-    calculateNextTaskDistance();
+    if (isDistanceFrequency()) {
+      schedule();
+    }
   }
 
   /**
-   * Calculates the next distance for the distance periodic task.
+   * Schedules the periodic task, aligned on the track time or distance.
    */
-  private void calculateNextTaskDistance() {
+  private void schedule() {
+    if (scheduledTask != null) {
+      scheduledTask.cancel();
+      scheduledTask = null;
+    }
     if (!trackRecordingService.isRecording() || trackRecordingService.isPaused()
         || periodicTask == null) {
       return;
@@ -185,21 +155,21 @@ public class PeriodicTaskExecutor {
     if (tripStatistics == null) {
       return;
     }
-    
-    if (!isDistanceFrequency()) {
-      nextTaskDistance = Double.MAX_VALUE;
-      Log.d(TAG, "SplitManager: Distance splits disabled.");
-      return;
-    }
 
-    double distance = tripStatistics.getTotalDistance();
-    if (!metricUnits) {
-      distance *= UnitConversions.KM_TO_MI;
+    if (isTimeFrequency()) {
+      long interval = taskFrequency * SECOND_TO_MILLISECONDS;
+      long next = System.currentTimeMillis() + interval
+          - (tripStatistics.getTotalTime() % interval);
+      scheduledTask = recordingTaskScheduler.scheduleAtFixedRate(periodicTask, next, interval);
+    } else if (isDistanceFrequency()) {
+      // The frequency is in thousandths of a mile for imperial units
+      double interval = -taskFrequency;
+      if (!metricUnits) {
+        interval /= UnitConversions.KM_TO_MI;
+      }
+      scheduledTask = recordingTaskScheduler.scheduleAtDistance(
+          periodicTask, tripStatistics.getTotalDistance(), interval);
     }
-    // The index will be negative since the frequency is negative.
-    int index = (int) (distance / taskFrequency);
-    index -= 1;
-    nextTaskDistance = taskFrequency * index;
   }
 
   /**
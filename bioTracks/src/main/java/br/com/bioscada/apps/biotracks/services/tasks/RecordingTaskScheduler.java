@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.services.tasks;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import br.com.bioscada.apps.biotracks.services.TrackRecordingService;
+
+/**
+ * Schedules the {@link PeriodicTask} of a recording, on a time or a distance
+ * schedule.
+ * <p>
+ * The time tasks are kept in a queue ordered by deadline and run on a single
+ * thread, which only wakes up for the earliest deadline. The tasks due within
+ * {@link #COALESCING_WINDOW} of the earliest deadline run in the same wakeup.
+ * Deadlines missed, for example while the device sleeps, are skipped rather
+ * than run in a burst.
+ * <p>
+ * The distance tasks are kept in a queue ordered by distance threshold and run
+ * on the thread calling {@link #update(double)} once per statistics update.
+ */
+public class RecordingTaskScheduler {
+
+  private static final String TAG = RecordingTaskScheduler.class.getSimpleName();
+
+  /**
+   * Max time in milliseconds a time task is run ahead of its deadline, to
+   * share the wakeup of an earlier task.
+   */
+  public static final long COALESCING_WINDOW = 1000L;
+
+  /**
+   * A task scheduled on a time or a distance schedule.
+   */
+  public class ScheduledTask {
+
+    private final PeriodicTask periodicTask;
+    private final boolean timeSchedule;
+
+    // The interval in milliseconds or meters
+    private final double interval;
+
+    // The next time in milliseconds or the next distance in meters
+    private double next;
+    private boolean cancelled;
+
+    private ScheduledTask(
+        PeriodicTask periodicTask, boolean timeSchedule, double interval, double next) {
+      this.periodicTask = periodicTask;
+      this.timeSchedule = timeSchedule;
+      this.interval = interval;
+      this.next = next;
+    }
+
+    /**
+     * Cancels the task. The task may still be running when this returns.
+     */
+    public void cancel() {
+      synchronized (RecordingTaskScheduler.this) {
+        cancelled = true;
+        if (timeSchedule) {
+          timeTasks.remove(this);
+        } else {
+          distanceTasks.remove(this);
+        }
+      }
+    }
+  }
+
+  private static final Comparator<ScheduledTask> NEXT_COMPARATOR =
+      new Comparator<ScheduledTask>() {
+      @Override
+    public int compare(ScheduledTask task1, ScheduledTask task2) {
+      return Double.compare(task1.next, task2.next);
+    }
+  };
+
+  private final TrackRecordingService trackRecordingService;
+  private final PriorityQueue<ScheduledTask> timeTasks = new PriorityQueue<ScheduledTask>(
+      4, NEXT_COMPARATOR);
+  private final PriorityQueue<ScheduledTask> distanceTasks = new PriorityQueue<ScheduledTask>(
+      4, NEXT_COMPARATOR);
+
+  // The time tasks thread, started with the first time task
+  private Thread thread;
+  private boolean shutdown;
+
+  /**
+   * Constructor.
+   *
+   * @param trackRecordingService the track recording service
+   */
+  public RecordingTaskScheduler(TrackRecordingService trackRecordingService) {
+    this.trackRecordingService = trackRecordingService;
+  }
+
+  /**
+   * Schedules a task at a fixed rate.
+   *
+   * @param periodicTask the periodic task
+   * @param firstTime the time of the first run in milliseconds since the epoch
+   * @param interval the interval in milliseconds
+   * @return the scheduled task, null if the scheduler is shut down
+   */
+  public synchronized ScheduledTask scheduleAtFixedRate(
+      PeriodicTask periodicTask, long firstTime, long interval) {
+    if (shutdown) {
+      return null;
+    }
+    ScheduledTask scheduledTask = new ScheduledTask(periodicTask, true, interval, firstTime);
+    timeTasks.add(scheduledTask);
+    if (thread == null) {
+      thread = new Thread(new Runnable() {
+          @Override
+        public void run() {
+          runTimeTasks();
+        }
+      }, TAG);
+      thread.setDaemon(true);
+      thread.start();
+    } else {
+      notifyAll();
+    }
+    return scheduledTask;
+  }
+
+  /**
+   * Schedules a task each time the track distance reaches a multiple of an
+   * interval.
+   *
+   * @param periodicTask the periodic task
+   * @param distance the current track distance in meters
+   * @param interval the interval in meters
+   * @return the scheduled task, null if the scheduler is shut down
+   */
+  public synchronized ScheduledTask scheduleAtDistance(
+      PeriodicTask periodicTask, double distance, double interval) {
+    if (shutdown) {
+      return null;
+    }
+    ScheduledTask scheduledTask = new ScheduledTask(
+        periodicTask, false, interval, getNextDistance(distance, interval));
+    distanceTasks.add(scheduledTask);
+    return scheduledTask;
+  }
+
+  /**
+   * Runs the distance tasks reached by the track distance. To be called once
+   * per statistics update.
+   *
+   * @param distance the track distance in meters
+   */
+  public void update(double distance) {
+    ArrayList<ScheduledTask> dueTasks;
+    synchronized (this) {
+      ScheduledTask first = distanceTasks.peek();
+      if (first == null || !(distance > first.next)) {
+        return;
+      }
+      dueTasks = new ArrayList<ScheduledTask>();
+      while (!distanceTasks.isEmpty() && distance > distanceTasks.peek().next) {
+        dueTasks.add(distanceTasks.poll());
+      }
+    }
+    for (ScheduledTask scheduledTask : dueTasks) {
+      runTask(scheduledTask);
+    }
+    synchronized (this) {
+      for (ScheduledTask scheduledTask : dueTasks) {
+        if (!scheduledTask.cancelled) {
+          scheduledTask.next = getNextDistance(distance, scheduledTask.interval);
+          distanceTasks.add(scheduledTask);
+        }
+      }
+    }
+  }
+
+  /**
+   * Shuts down. Cancels all the tasks and stops the thread.
+   */
+  public synchronized void shutdown() {
+    shutdown = true;
+    timeTasks.clear();
+    distanceTasks.clear();
+    thread = null;
+    notifyAll();
+  }
+
+  /**
+   * Runs the time tasks until shut down. Runs in {@link #thread}.
+   */
+  private void runTimeTasks() {
+    ArrayList<ScheduledTask> dueTasks = new ArrayList<ScheduledTask>();
+    while (true) {
+      synchronized (this) {
+        try {
+          while (!shutdown) {
+            ScheduledTask first = timeTasks.peek();
+            if (first == null) {
+              wait();
+              continue;
+            }
+            long delay = (long) first.next - System.currentTimeMillis();
+            if (delay <= 0) {
+              break;
+            }
+            wait(delay);
+          }
+        } catch (InterruptedException e) {
+          Log.d(TAG, "Interrupted", e);
+          return;
+        }
+        if (shutdown) {
+          return;
+        }
+        double dueTime = timeTasks.peek().next + COALESCING_WINDOW;
+        while (!timeTasks.isEmpty() && timeTasks.peek().next <= dueTime) {
+          dueTasks.add(timeTasks.poll());
+        }
+      }
+
+      for (ScheduledTask scheduledTask : dueTasks) {
+        runTask(scheduledTask);
+      }
+
+      synchronized (this) {
+        long now = System.currentTimeMillis();
+        for (ScheduledTask scheduledTask : dueTasks) {
+          if (scheduledTask.cancelled || shutdown) {
+            continue;
+          }
+          scheduledTask.next += scheduledTask.interval;
+          if (scheduledTask.next <= now) {
+            // Skip the missed runs, keeping the rate
+            scheduledTask.next = now + scheduledTask.interval
+                - (now - scheduledTask.next) % scheduledTask.interval;
+          }
+          timeTasks.add(scheduledTask);
+        }
+      }
+      dueTasks.clear();
+    }
+  }
+
+  private void runTask(ScheduledTask scheduledTask) {
+    try {
+      scheduledTask.periodicTask.run(trackRecordingService);
+    } catch (RuntimeException e) {
+      Log.e(TAG, "Unable to run periodic task", e);
+    }
+  }
+
+  /**
+   * Gets the next multiple of an interval past a distance.
+   *
+   * @param distance the distance
+   * @param interval the interval
+   */
+  private static double getNextDistance(double distance, double interval) {
+    return interval * (Math.floor(distance / interval) + 1);
+  }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.stats;
+
+import br.com.bioscada.apps.biotracks.util.StdStats;
+
+/**
+ * Updates the heart rate variability power spectrum over a sliding window of
+ * RR intervals.
+ * <p>
+ * The RR series is resampled at 4 Hz with a cubic Hermite spline as the beats
+ * arrive. Every 128 samples (32 seconds), the last 256 samples are linearly
+ * detrended, Hann windowed and transformed with a radix-2 FFT. The power
+ * spectral density is the Welch average of the segments in the window, kept as
+ * a running sum so that each segment costs a single FFT. All the buffers are
+ * allocated once.
+ * <p>
+ * The frequencies and the powers feed {@link StdStats#calculeLF(float[], float[])},
+ * {@link StdStats#calculeHF(float[], float[])}, etc.
+ */
+public class HrvSpectrumUpdater {
+
+  // Resampling frequency in Hz
+  public static final int SAMPLING_FREQUENCY = 4;
+
+  // Segment length and step in samples, 64 and 32 seconds
+  public static final int SEGMENT_LENGTH = 256;
+  public static final int SEGMENT_STEP = SEGMENT_LENGTH / 2;
+
+  // The default window, 5 minutes
+  public static final long DEFAULT_WINDOW_DURATION = 5 * 60 * 1000L;
+
+  private static final double SAMPLING_INTERVAL = 1000.0 / SAMPLING_FREQUENCY;
+
+  // The number of frequencies, from 0 to the Nyquist frequency
+  private static final int NUMBER_OF_FREQUENCIES = SEGMENT_LENGTH / 2 + 1;
+
+  // The FFT tables
+  private final double[] cosTable = new double[SEGMENT_LENGTH / 2];
+  private final double[] sinTable = new double[SEGMENT_LENGTH / 2];
+  private final int[] bitReversal = new int[SEGMENT_LENGTH];
+  private final double[] hannWindow = new double[SEGMENT_LENGTH];
+  private final double psdScale;
+
+  // The FFT buffers
+  private final double[] real = new double[SEGMENT_LENGTH];
+  private final double[] imaginary = new double[SEGMENT_LENGTH];
+
+  // The last 4 beats, times and RR intervals, oldest first
+  private final double[] beatTimes = new double[4];
+  private final float[] beatRrIntervals = new float[4];
+  private int numberOfBeats;
+  private double nextSampleTime;
+
+  // The last SEGMENT_LENGTH samples
+  private final float[] samples = new float[SEGMENT_LENGTH];
+  private int sampleIndex;
+  private int numberOfSamples;
+  private int samplesSinceLastSegment;
+
+  // The power spectral densities of the segments in the window
+  private final double[][] segmentPsds;
+  private final double[] psdSum = new double[NUMBER_OF_FREQUENCIES];
+  private int segmentIndex;
+  private int numberOfSegments;
+
+  private final float[] frequencies = new float[NUMBER_OF_FREQUENCIES];
+  private final float[] powers = new float[NUMBER_OF_FREQUENCIES];
+  private float lfHf;
+
+  /**
+   * Creates an updater with the default window.
+   */
+  public HrvSpectrumUpdater() {
+    this(DEFAULT_WINDOW_DURATION);
+  }
+
+  /**
+   * Creates an updater.
+   *
+   * @param windowDuration the window duration in milliseconds, at least one
+   *          segment
+   */
+  public HrvSpectrumUpdater(long windowDuration) {
+    int windowLength = (int) (windowDuration / SAMPLING_INTERVAL);
+    if (windowLength < SEGMENT_LENGTH) {
+      throw new IllegalArgumentException("The window must hold at least one segment.");
+    }
+    segmentPsds = new double[(windowLength - SEGMENT_LENGTH) / SEGMENT_STEP + 1]
+        [NUMBER_OF_FREQUENCIES];
+
+    for (int i = 0; i < SEGMENT_LENGTH / 2; i++) {
+      double angle = -2 * Math.PI * i / SEGMENT_LENGTH;
+      cosTable[i] = Math.cos(angle);
+      sinTable[i] = Math.sin(angle);
+    }
+    int bits = Integer.numberOfTrailingZeros(SEGMENT_LENGTH);
+    for (int i = 0; i < SEGMENT_LENGTH; i++) {
+      bitReversal[i] = Integer.reverse(i) >>> (32 - bits);
+    }
+    double windowSumOfSquares = 0;
+    for (int i = 0; i < SEGMENT_LENGTH; i++) {
+      hannWindow[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (SEGMENT_LENGTH - 1));
+      windowSumOfSquares += hannWindow[i] * hannWindow[i];
+    }
+    psdScale = 1.0 / (SAMPLING_FREQUENCY * windowSumOfSquares);
+    for (int i = 0; i < NUMBER_OF_FREQUENCIES; i++) {
+      frequencies[i] = (float) i * SAMPLING_FREQUENCY / SEGMENT_LENGTH;
+    }
+  }
+
+  /**
+   * Removes all the RR intervals.
+   */
+  public void reset() {
+    numberOfBeats = 0;
+    sampleIndex = 0;
+    numberOfSamples = 0;
+    samplesSinceLastSegment = 0;
+    segmentIndex = 0;
+    numberOfSegments = 0;
+    for (int i = 0; i < NUMBER_OF_FREQUENCIES; i++) {
+      psdSum[i] = 0;
+      powers[i] = 0;
+    }
+    lfHf = 0;
+  }
+
+  /**
+   * Adds a RR interval.
+   *
+   * @param rrInterval the RR interval in milliseconds
+   * @return true if the spectrum is updated.
+   */
+  public boolean addRrInterval(float rrInterval) {
+    double time = numberOfBeats == 0 ? 0 : beatTimes[Math.min(numberOfBeats, 4) - 1];
+    time += rrInterval;
+    if (numberOfBeats < 4) {
+      beatTimes[numberOfBeats] = time;
+      beatRrIntervals[numberOfBeats] = rrInterval;
+    } else {
+      System.arraycopy(beatTimes, 1, beatTimes, 0, 3);
+      System.arraycopy(beatRrIntervals, 1, beatRrIntervals, 0, 3);
+      beatTimes[3] = time;
+      beatRrIntervals[3] = rrInterval;
+    }
+    numberOfBeats++;
+    if (numberOfBeats < 4) {
+      nextSampleTime = beatTimes[1];
+      return false;
+    }
+
+    // Resample between the second and the third beats
+    boolean updated = false;
+    double t1 = beatTimes[1];
+    double t2 = beatTimes[2];
+    double y1 = beatRrIntervals[1];
+    double y2 = beatRrIntervals[2];
+    double m1 = (y2 - beatRrIntervals[0]) / (t2 - beatTimes[0]) * (t2 - t1);
+    double m2 = (beatRrIntervals[3] - y1) / (beatTimes[3] - t1) * (t2 - t1);
+    while (nextSampleTime < t2) {
+      double s = (nextSampleTime - t1) / (t2 - t1);
+      double s2 = s * s;
+      double s3 = s2 * s;
+      double value = (2 * s3 - 3 * s2 + 1) * y1 + (s3 - 2 * s2 + s) * m1
+          + (-2 * s3 + 3 * s2) * y2 + (s3 - s2) * m2;
+      updated |= addSample((float) value);
+      nextSampleTime += SAMPLING_INTERVAL;
+    }
+    return updated;
+  }
+
+  /**
+   * Gets the frequencies in Hz, from 0 to the Nyquist frequency. Not a copy.
+   */
+  public float[] getFrequencies() {
+    return frequencies;
+  }
+
+  /**
+   * Gets the power of each frequency bin in ms^2, i.e., the averaged power
+   * spectral density times the frequency resolution. Not a copy.
+   */
+  public float[] getPowers() {
+    return powers;
+  }
+
+  /**
+   * Returns true if at least one segment is in the window.
+   */
+  public boolean hasSpectrum() {
+    return numberOfSegments > 0;
+  }
+
+  /**
+   * Gets the LF/HF ratio. Returns 0 if there is no spectrum.
+   */
+  public float getLfHf() {
+    return lfHf;
+  }
+
+  /**
+   * Adds a resampled value.
+   *
+   * @return true if a segment is added.
+   */
+  private boolean addSample(float value) {
+    samples[sampleIndex] = value;
+    sampleIndex = (sampleIndex + 1) % SEGMENT_LENGTH;
+    if (numberOfSamples < SEGMENT_LENGTH) {
+      numberOfSamples++;
+    }
+    samplesSinceLastSegment++;
+    if (numberOfSamples < SEGMENT_LENGTH
+        || (numberOfSegments > 0 && samplesSinceLastSegment < SEGMENT_STEP)) {
+      return false;
+    }
+    samplesSinceLastSegment = 0;
+    addSegment();
+    return true;
+  }
+
+  /**
+   * Adds the power spectral density of the last SEGMENT_LENGTH samples.
+   */
+  private void addSegment() {
+    // Oldest first, linearly detrended
+    double sumY = 0;
+    double sumXY = 0;
+    for (int i = 0; i < SEGMENT_LENGTH; i++) {
+      double y = samples[(sampleIndex + i) % SEGMENT_LENGTH];
+      real[i] = y;
+      sumY += y;
+      sumXY += i * y;
+    }
+    double n = SEGMENT_LENGTH;
+    double sumX = n * (n - 1) / 2;
+    double sumX2 = (n - 1) * n * (2 * n - 1) / 6;
+    double slope = (n * sumXY - sumX * sumY) / (n * sumX2 - sumX * sumX);
+    double intercept = (sumY - slope * sumX) / n;
+    for (int i = 0; i < SEGMENT_LENGTH; i++) {
+      real[i] = (real[i] - intercept - slope * i) * hannWindow[i];
+      imaginary[i] = 0;
+    }
+    fft();
+
+    double[] psd = segmentPsds[segmentIndex];
+    if (numberOfSegments == segmentPsds.length) {
+      for (int i = 0; i < NUMBER_OF_FREQUENCIES; i++) {
+        psdSum[i] -= psd[i];
+      }
+    } else {
+      numberOfSegments++;
+    }
+    for (int i = 0; i < NUMBER_OF_FREQUENCIES; i++) {
+      double value = (real[i] * real[i] + imaginary[i] * imaginary[i]) * psdScale;
+      if (i != 0 && i != NUMBER_OF_FREQUENCIES - 1) {
+        // One-sided
+        value *= 2;
+      }
+      psd[i] = value;
+      psdSum[i] += value;
+    }
+    segmentIndex = (segmentIndex + 1) % segmentPsds.length;
+
+    double resolution = (double) SAMPLING_FREQUENCY / SEGMENT_LENGTH;
+    for (int i = 0; i < NUMBER_OF_FREQUENCIES; i++) {
+      powers[i] = (float) (Math.max(0, psdSum[i]) / numberOfSegments * resolution);
+    }
+    lfHf = StdStats.calculeLFHF(frequencies, powers);
+  }
+
+  /**
+   * In place iterative radix-2 FFT of the real and imaginary buffers.
+   */
+  private void fft() {
+    for (int i = 0; i < SEGMENT_LENGTH; i++) {
+      int j = bitReversal[i];
+      if (j > i) {
+        double temp = real[i];
+        real[i] = real[j];
+        real[j] = temp;
+        temp = imaginary[i];
+        imaginary[i] = imaginary[j];
+        imaginary[j] = temp;
+      }
+    }
+    for (int size = 2; size <= SEGMENT_LENGTH; size <<= 1) {
+      int half = size >> 1;
+      int tableStep = SEGMENT_LENGTH / size;
+      for (int start = 0; start < SEGMENT_LENGTH; start += size) {
+        for (int k = 0; k < half; k++) {
+          double cos = cosTable[k * tableStep];
+          double sin = sinTable[k * tableStep];
+          int even = start + k;
+          int odd = even + half;
+          double oddReal = real[odd] * cos - imaginary[odd] * sin;
+          double oddImaginary = real[odd] * sin + imaginary[odd] * cos;
+          real[odd] = real[even] - oddReal;
+          imaginary[odd] = imaginary[even] - oddImaginary;
+          real[even] += oddReal;
+          imaginary[even] += oddImaginary;
+        }
+      }
+    }
+  }
+}
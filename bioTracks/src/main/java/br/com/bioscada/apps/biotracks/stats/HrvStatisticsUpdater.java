@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.stats;
+
+/**
+ * Updates the time-domain heart rate variability statistics over a sliding
+ * window of RR intervals. Each RR interval is added in constant time by keeping
+ * running sums of the intervals and of their successive differences. The
+ * statistics match the ones computed by
+ * {@link br.com.bioscada.apps.biotracks.util.StdStats} over the same window.
+ * <p>
+ * The window holds at most a number of intervals and, optionally, at most a
+ * duration, i.e., the oldest intervals are dropped while the sum of the
+ * intervals exceeds the duration.
+ */
+public class HrvStatisticsUpdater {
+
+  // The default window, 300 beats or 5 minutes
+  public static final int DEFAULT_WINDOW_SIZE = 300;
+  public static final long DEFAULT_WINDOW_DURATION = 5 * 60 * 1000L;
+
+  /*
+   * The running sums are recomputed from the window after this many
+   * additions so that rounding errors don't accumulate.
+   */
+  private static final int RESUM_INTERVAL = 4096;
+
+  // The sliding window of RR intervals
+  private final float[] window;
+  private final long windowDuration;
+
+  // Index of the oldest RR interval
+  private int head;
+  private int count;
+  private int numberOfAdds;
+
+  // Running sums of the RR intervals
+  private double sum;
+  private double sumOfSquares;
+
+  // Running sums of the successive differences
+  private double diffSum;
+  private double diffSumOfSquares;
+
+  /**
+   * Creates an updater with the default window.
+   */
+  public HrvStatisticsUpdater() {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_WINDOW_DURATION);
+  }
+
+  /**
+   * Creates an updater.
+   *
+   * @param windowSize the maximum number of RR intervals in the window
+   * @param windowDuration the maximum sum of the RR intervals in the window in
+   *          milliseconds. 0 for no limit
+   */
+  public HrvStatisticsUpdater(int windowSize, long windowDuration) {
+    if (windowSize < 2) {
+      throw new IllegalArgumentException("The window size must be at least 2.");
+    }
+    window = new float[windowSize];
+    this.windowDuration = windowDuration;
+  }
+
+  /**
+   * Removes all the RR intervals.
+   */
+  public void reset() {
+    head = 0;
+    count = 0;
+    numberOfAdds = 0;
+    sum = 0;
+    sumOfSquares = 0;
+    diffSum = 0;
+    diffSumOfSquares = 0;
+  }
+
+  /**
+   * Adds a RR interval.
+   *
+   * @param rrInterval the RR interval in milliseconds
+   */
+  public void addRrInterval(float rrInterval) {
+    if (count == window.length) {
+      removeOldest();
+    }
+    if (count > 0) {
+      double diff = getRrInterval(count - 1) - rrInterval;
+      diffSum += diff;
+      diffSumOfSquares += diff * diff;
+    }
+    window[(head + count) % window.length] = rrInterval;
+    count++;
+    sum += rrInterval;
+    sumOfSquares += (double) rrInterval * rrInterval;
+
+    while (windowDuration > 0 && count > 2 && sum > windowDuration) {
+      removeOldest();
+    }
+
+    numberOfAdds++;
+    if (numberOfAdds == RESUM_INTERVAL) {
+      numberOfAdds = 0;
+      resum();
+    }
+  }
+
+  /**
+   * Gets the number of RR intervals in the window.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Gets a RR interval in the window.
+   *
+   * @param index the index, 0 for the oldest RR interval
+   */
+  public float getRrInterval(int index) {
+    return window[(head + index) % window.length];
+  }
+
+  /**
+   * Copies the RR intervals in the window, oldest first, into an array.
+   *
+   * @param rrIntervals the array, at least {@link #getCount()} long
+   * @return the number of RR intervals copied.
+   */
+  public int copyTo(float[] rrIntervals) {
+    int first = Math.min(count, window.length - head);
+    System.arraycopy(window, head, rrIntervals, 0, first);
+    System.arraycopy(window, 0, rrIntervals, first, count - first);
+    return count;
+  }
+
+  /**
+   * Gets the mean of the RR intervals.
+   */
+  public double getMean() {
+    return count == 0 ? 0 : sum / count;
+  }
+
+  /**
+   * Gets the standard deviation of the RR intervals (SDNN).
+   */
+  public double getSdnn() {
+    return Math.sqrt(getVariance(sum, sumOfSquares, count));
+  }
+
+  /**
+   * Gets the root mean square of the successive differences (RMSSD). Returns 0
+   * for less than 3 RR intervals.
+   */
+  public double getRmssd() {
+    return count > 2 ? Math.sqrt(diffSumOfSquares / (count - 1)) : 0;
+  }
+
+  /**
+   * Gets the standard deviation of the successive differences (SDSD).
+   */
+  public double getSdsd() {
+    return Math.sqrt(getVariance(diffSum, diffSumOfSquares, count - 1));
+  }
+
+  /**
+   * Gets the Poincaré plot standard deviation perpendicular to the line of
+   * identity (SD1).
+   */
+  public double getSd1() {
+    return Math.sqrt(0.5) * getSdsd();
+  }
+
+  /**
+   * Gets the Poincaré plot standard deviation along the line of identity (SD2).
+   */
+  public double getSd2() {
+    double sdnn = getSdnn();
+    double sdsd = getSdsd();
+    return Math.sqrt(Math.max(0, 2 * sdnn * sdnn - 0.5 * sdsd * sdsd));
+  }
+
+  /**
+   * Gets the sample variance from the sum and the sum of squares. Returns 0 for
+   * less than 2 values.
+   */
+  private static double getVariance(double sum, double sumOfSquares, int n) {
+    if (n < 2) {
+      return 0;
+    }
+    return Math.max(0, (sumOfSquares - sum * sum / n) / (n - 1));
+  }
+
+  /**
+   * Removes the oldest RR interval.
+   */
+  private void removeOldest() {
+    float oldest = window[head];
+    if (count > 1) {
+      double diff = oldest - getRrInterval(1);
+      diffSum -= diff;
+      diffSumOfSquares -= diff * diff;
+    }
+    sum -= oldest;
+    sumOfSquares -= (double) oldest * oldest;
+    head = (head + 1) % window.length;
+    count--;
+  }
+
+  /**
+   * Recomputes the running sums from the window.
+   */
+  private void resum() {
+    sum = 0;
+    sumOfSquares = 0;
+    diffSum = 0;
+    diffSumOfSquares = 0;
+    for (int i = 0; i < count; i++) {
+      double rrInterval = getRrInterval(i);
+      sum += rrInterval;
+      sumOfSquares += rrInterval * rrInterval;
+      if (i > 0) {
+        double diff = getRrInterval(i - 1) - rrInterval;
+        diffSum += diff;
+        diffSumOfSquares += diff * diff;
+      }
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Nonlinear heart rate variability kernels: approximate entropy, sample
+ * entropy and the correlation integrals used for the correlation dimension.
+ * <p>
+ * The templates of length m are read in place from the RR series, each pair of
+ * templates is compared once, and the comparison stops at the first component
+ * beyond the radius. The m + 1 comparison reuses the m comparison. All the
+ * radii of the correlation integrals are counted in the same pass with a
+ * histogram over the sorted radii.
+ * <p>
+ * If an executor is given, the pairs are split into one interleaved set of
+ * rows per available processor.
+ */
+public final class NonlinearHrv {
+
+  private NonlinearHrv() {}
+
+  /**
+   * Gets the approximate entropy (ApEn). Each template is compared to itself.
+   * Returns 0 if there are less than m + 2 RR intervals.
+   *
+   * @param m the template length
+   * @param r the tolerance
+   * @param rr the RR intervals
+   * @param length the number of RR intervals
+   * @param executor the executor to split the work. Can be null
+   */
+  public static float approximateEntropy(
+      final int m, final float r, final float[] rr, int length, ExecutorService executor) {
+    if (m < 1 || length < m + 2) {
+      return 0f;
+    }
+    final int numberOfTemplates = length - m + 1;
+    final int numberOfStripes = getNumberOfStripes(executor, numberOfTemplates);
+    final int[][] counts = new int[numberOfStripes][numberOfTemplates];
+    final int[][] nextCounts = new int[numberOfStripes][numberOfTemplates - 1];
+
+    runStripes(numberOfStripes, executor, new Stripe() {
+      @Override
+      public void run(int stripe) {
+        int[] count = counts[stripe];
+        int[] nextCount = nextCounts[stripe];
+        for (int i = stripe; i < numberOfTemplates; i += numberOfStripes) {
+          count[i]++;
+          if (i < numberOfTemplates - 1) {
+            nextCount[i]++;
+          }
+          for (int k = i + 1; k < numberOfTemplates; k++) {
+            if (!isWithin(rr, i, k, m, r)) {
+              continue;
+            }
+            count[i]++;
+            count[k]++;
+            if (k < numberOfTemplates - 1 && Math.abs(rr[i + m] - rr[k + m]) <= r) {
+              nextCount[i]++;
+              nextCount[k]++;
+            }
+          }
+        }
+      }
+    });
+    return (float) (getPhi(counts, numberOfTemplates) - getPhi(nextCounts, numberOfTemplates - 1));
+  }
+
+  /**
+   * Gets the natural logarithm of the ratio of the template matches of length
+   * m to the ones of length m + 1, each averaged over its templates. Templates
+   * are not compared to themselves. Returns 0 if there are less than m + 3 RR
+   * intervals or no match of length m + 1.
+   *
+   * @param m the template length
+   * @param r the tolerance
+   * @param rr the RR intervals
+   * @param length the number of RR intervals
+   * @param executor the executor to split the work. Can be null
+   */
+  public static float lnSampleEntropy(
+      final int m, final float r, final float[] rr, int length, ExecutorService executor) {
+    if (m < 1 || length < m + 3) {
+      return 0f;
+    }
+    final int numberOfTemplates = length - m + 1;
+    final int numberOfStripes = getNumberOfStripes(executor, numberOfTemplates);
+    final long[] matches = new long[numberOfStripes];
+    final long[] nextMatches = new long[numberOfStripes];
+
+    runStripes(numberOfStripes, executor, new Stripe() {
+      @Override
+      public void run(int stripe) {
+        long match = 0;
+        long nextMatch = 0;
+        for (int i = stripe; i < numberOfTemplates; i += numberOfStripes) {
+          for (int k = i + 1; k < numberOfTemplates; k++) {
+            if (!isWithin(rr, i, k, m, r)) {
+              continue;
+            }
+            match++;
+            if (k < numberOfTemplates - 1 && Math.abs(rr[i + m] - rr[k + m]) <= r) {
+              nextMatch++;
+            }
+          }
+        }
+        matches[stripe] = match;
+        nextMatches[stripe] = nextMatch;
+      }
+    });
+    double b = getCorrelationIntegral(sum(matches), numberOfTemplates);
+    double a = getCorrelationIntegral(sum(nextMatches), numberOfTemplates - 1);
+    return a > 0 ? (float) Math.log(b / a) : 0f;
+  }
+
+  /**
+   * Gets the natural logarithms of the correlation integrals, with Euclidean
+   * distances, for a set of radii. Templates are not compared to themselves.
+   * The logarithm is negative infinity for a radius without any match.
+   *
+   * @param m the template length
+   * @param radii the radii in ascending order
+   * @param rr the RR intervals
+   * @param length the number of RR intervals
+   * @param lnCorrelationIntegrals the array receiving one value per radius
+   * @param executor the executor to split the work. Can be null
+   */
+  public static void lnCorrelationIntegrals(final int m, float[] radii, final float[] rr,
+      int length, float[] lnCorrelationIntegrals, ExecutorService executor) {
+    final int numberOfRadii = radii.length;
+    final int numberOfTemplates = length - m + 1;
+    if (m < 1 || numberOfTemplates < 2 || numberOfRadii == 0) {
+      for (int i = 0; i < numberOfRadii; i++) {
+        lnCorrelationIntegrals[i] = Float.NEGATIVE_INFINITY;
+      }
+      return;
+    }
+    final double[] squaredRadii = new double[numberOfRadii];
+    for (int i = 0; i < numberOfRadii; i++) {
+      squaredRadii[i] = (double) radii[i] * radii[i];
+    }
+    final double maxSquaredRadius = squaredRadii[numberOfRadii - 1];
+    final int numberOfStripes = getNumberOfStripes(executor, numberOfTemplates);
+    final long[][] histograms = new long[numberOfStripes][numberOfRadii];
+
+    runStripes(numberOfStripes, executor, new Stripe() {
+      @Override
+      public void run(int stripe) {
+        long[] histogram = histograms[stripe];
+        for (int i = stripe; i < numberOfTemplates; i += numberOfStripes) {
+          for (int k = i + 1; k < numberOfTemplates; k++) {
+            double squaredDistance = 0;
+            for (int j = 0; j < m && squaredDistance <= maxSquaredRadius; j++) {
+              double diff = rr[i + j] - rr[k + j];
+              squaredDistance += diff * diff;
+            }
+            if (squaredDistance <= maxSquaredRadius) {
+              histogram[getFirstRadiusIndex(squaredRadii, squaredDistance)]++;
+            }
+          }
+        }
+      }
+    });
+
+    long matches = 0;
+    for (int i = 0; i < numberOfRadii; i++) {
+      for (int stripe = 0; stripe < numberOfStripes; stripe++) {
+        matches += histograms[stripe][i];
+      }
+      lnCorrelationIntegrals[i] = (float) Math.log(
+          getCorrelationIntegral(matches, numberOfTemplates));
+    }
+  }
+
+  /**
+   * Returns true if the Chebyshev distance between two templates is at most r.
+   */
+  private static boolean isWithin(float[] rr, int i, int k, int m, float r) {
+    for (int j = 0; j < m; j++) {
+      if (Math.abs(rr[i + j] - rr[k + j]) > r) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the average of the logarithms of the match rates of the templates,
+   * for approximate entropy.
+   */
+  private static double getPhi(int[][] counts, int numberOfTemplates) {
+    double phi = 0;
+    for (int i = 0; i < numberOfTemplates; i++) {
+      int count = 0;
+      for (int[] stripeCounts : counts) {
+        count += stripeCounts[i];
+      }
+      phi += Math.log((double) count / numberOfTemplates);
+    }
+    return phi / numberOfTemplates;
+  }
+
+  /**
+   * Gets the correlation integral from the number of matching template pairs.
+   */
+  private static double getCorrelationIntegral(long matches, int numberOfTemplates) {
+    return 2.0 * matches / ((double) numberOfTemplates * (numberOfTemplates - 1));
+  }
+
+  /**
+   * Gets the index of the first squared radius not less than a squared
+   * distance.
+   */
+  private static int getFirstRadiusIndex(double[] squaredRadii, double squaredDistance) {
+    int low = 0;
+    int high = squaredRadii.length - 1;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (squaredRadii[middle] < squaredDistance) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static long sum(long[] values) {
+    long sum = 0;
+    for (long value : values) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  /**
+   * A set of interleaved rows, i.e., rows stripe, stripe + numberOfStripes,
+   * etc.
+   */
+  private interface Stripe {
+    void run(int stripe);
+  }
+
+  private static int getNumberOfStripes(ExecutorService executor, int numberOfTemplates) {
+    if (executor == null) {
+      return 1;
+    }
+    return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), numberOfTemplates));
+  }
+
+  /**
+   * Runs the stripes, on the executor if there are more than one.
+   */
+  private static void runStripes(
+      int numberOfStripes, ExecutorService executor, final Stripe stripe) {
+    if (numberOfStripes == 1) {
+      stripe.run(0);
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<Future<?>>(numberOfStripes);
+    for (int i = 0; i < numberOfStripes; i++) {
+      final int index = i;
+      futures.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          stripe.run(index);
+        }
+      }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
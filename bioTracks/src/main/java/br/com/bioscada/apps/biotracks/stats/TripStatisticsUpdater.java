@@ -24,6 +24,7 @@ import com.google.common.annotations.VisibleForTesting;
 
 import br.com.bioscada.apps.biotracks.util.CalorieUtils;
 import br.com.bioscada.apps.biotracks.util.CalorieUtils.ActivityType;
+import br.com.bioscada.apps.biotracks.util.GeodesyUtils;
 import br.com.bioscada.apps.biotracks.util.LocationUtils;
 
 import static br.com.bioscada.apps.biotracks.services.TrackRecordingService.MAX_NO_MOVEMENT_SPEED;
@@ -120,6 +121,22 @@ public class TripStatisticsUpdater {
     stats.merge(currentSegment);
     return stats;
   }
+
+  /**
+   * Gets the track's total distance, without taking a snapshot of the trip
+   * statistics.
+   */
+  public double getTotalDistance() {
+    return tripStatistics.getTotalDistance() + currentSegment.getTotalDistance();
+  }
+
+  /**
+   * Gets the track's total time, without taking a snapshot of the trip
+   * statistics.
+   */
+  public long getTotalTime() {
+    return tripStatistics.getTotalTime() + currentSegment.getTotalTime();
+  }
   
   /**
    * Adds a location. TODO: This assume location has a valid time.
@@ -141,7 +158,7 @@ public class TripStatisticsUpdater {
       if (location.getLatitude() == PAUSE_LATITUDE) {
         if (lastLocation != null && lastMovingLocation != null
             && lastLocation != lastMovingLocation) {
-          currentSegment.addTotalDistance(lastMovingLocation.distanceTo(lastLocation));
+          currentSegment.addTotalDistance(GeodesyUtils.distance(lastMovingLocation, lastLocation));
         }
         tripStatistics.merge(currentSegment);
       }
@@ -166,7 +183,7 @@ public class TripStatisticsUpdater {
       return;
     }
 
-    double movingDistance = lastMovingLocation.distanceTo(location);
+    double movingDistance = GeodesyUtils.distance(lastMovingLocation, location);
     if (movingDistance < minRecordingDistance
         && (!location.hasSpeed() || location.getSpeed() < MAX_NO_MOVEMENT_SPEED)) {
       speedBuffer.reset();
@@ -186,7 +203,7 @@ public class TripStatisticsUpdater {
     currentSegment.addMovingTime(movingTime);
 
     // Update grade
-    double run = lastLocation.distanceTo(location);
+    double run = GeodesyUtils.distance(lastLocation, location);
     updateGrade(run, elevationDifference);
 
     // Update max speed
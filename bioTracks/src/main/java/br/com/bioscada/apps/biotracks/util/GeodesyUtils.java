@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package br.com.bioscada.apps.biotracks.util;
+
+import android.location.Location;
+
+/**
+ * Utilities for computing distances on the WGS84 ellipsoid without allocating,
+ * unlike {@link Location#distanceTo(Location)}.
+ */
+public class GeodesyUtils {
+
+  /**
+   * The accuracy of a distance.
+   */
+  public enum Accuracy {
+
+    /**
+     * Flat earth approximation, with the ellipsoid radii of curvature at the
+     * mean latitude, for points less than {@link #MAX_FAST_DEGREES} apart.
+     * Falls back to {@link #EXACT} for points farther apart. Within 0.01% of
+     * {@link #EXACT} for the distances between fixes.
+     */
+    FAST,
+
+    /**
+     * Haversine formula on a sphere of the mean earth radius. Within 0.6% of
+     * {@link #EXACT}.
+     */
+    HAVERSINE,
+
+    /**
+     * Vincenty's inverse formula on the ellipsoid, as
+     * {@link Location#distanceTo(Location)}.
+     */
+    EXACT
+  }
+
+  /**
+   * Max difference of latitude or longitude, in degrees, for the
+   * {@link Accuracy#FAST} approximation.
+   */
+  public static final double MAX_FAST_DEGREES = 0.1;
+
+  // WGS84 ellipsoid
+  private static final double SEMI_MAJOR_AXIS = 6378137.0;
+  private static final double FLATTENING = 1 / 298.257223563;
+  private static final double SEMI_MINOR_AXIS = SEMI_MAJOR_AXIS * (1 - FLATTENING);
+  private static final double ECCENTRICITY_SQUARED = FLATTENING * (2 - FLATTENING);
+
+  // The mean earth radius, (2 * a + b) / 3
+  private static final double MEAN_RADIUS = 6371008.8;
+
+  private static final double MAX_FAST_RADIANS = Math.toRadians(MAX_FAST_DEGREES);
+
+  private static final int MAX_ITERATIONS = 20;
+  private static final double CONVERGENCE_THRESHOLD = 1.0e-12;
+
+  private GeodesyUtils() {}
+
+  /**
+   * Gets the distance in meters between two locations with the
+   * {@link Accuracy#FAST} accuracy.
+   *
+   * @param location1 the first location
+   * @param location2 the second location
+   */
+  public static double distance(Location location1, Location location2) {
+    return distance(location1.getLatitude(), location1.getLongitude(), location2.getLatitude(),
+        location2.getLongitude(), Accuracy.FAST);
+  }
+
+  /**
+   * Gets the distance in meters between two locations.
+   *
+   * @param location1 the first location
+   * @param location2 the second location
+   * @param accuracy the accuracy
+   */
+  public static double distance(Location location1, Location location2, Accuracy accuracy) {
+    return distance(location1.getLatitude(), location1.getLongitude(), location2.getLatitude(),
+        location2.getLongitude(), accuracy);
+  }
+
+  /**
+   * Gets the distance in meters between two points.
+   *
+   * @param latitude1 the latitude of the first point in degrees
+   * @param longitude1 the longitude of the first point in degrees
+   * @param latitude2 the latitude of the second point in degrees
+   * @param longitude2 the longitude of the second point in degrees
+   * @param accuracy the accuracy
+   */
+  public static double distance(double latitude1, double longitude1, double latitude2,
+      double longitude2, Accuracy accuracy) {
+    double phi1 = latitude1 * UnitConversions.DEG_TO_RAD;
+    double phi2 = latitude2 * UnitConversions.DEG_TO_RAD;
+    double deltaLambda = normalizeLongitude(
+        (longitude2 - longitude1) * UnitConversions.DEG_TO_RAD);
+    switch (accuracy) {
+      case FAST:
+        if (Math.abs(phi2 - phi1) < MAX_FAST_RADIANS
+            && Math.abs(deltaLambda) < MAX_FAST_RADIANS) {
+          return flatEarthDistance(phi1, phi2, deltaLambda);
+        }
+        return vincentyDistance(phi1, phi2, deltaLambda);
+      case HAVERSINE:
+        return haversineDistance(phi1, phi2, deltaLambda);
+      default:
+        return vincentyDistance(phi1, phi2, deltaLambda);
+    }
+  }
+
+  /**
+   * Gets the distance on the plane tangent to the ellipsoid at the mean
+   * latitude.
+   */
+  private static double flatEarthDistance(double phi1, double phi2, double deltaLambda) {
+    double meanPhi = (phi1 + phi2) / 2;
+    double sinPhi = Math.sin(meanPhi);
+    double w = Math.sqrt(1 - ECCENTRICITY_SQUARED * sinPhi * sinPhi);
+    // The radii of curvature in the meridian and in the prime vertical
+    double meridianRadius = SEMI_MAJOR_AXIS * (1 - ECCENTRICITY_SQUARED) / (w * w * w);
+    double primeVerticalRadius = SEMI_MAJOR_AXIS / w;
+    double north = (phi2 - phi1) * meridianRadius;
+    double east = deltaLambda * primeVerticalRadius * Math.cos(meanPhi);
+    return Math.sqrt(north * north + east * east);
+  }
+
+  private static double haversineDistance(double phi1, double phi2, double deltaLambda) {
+    double sinHalfDeltaPhi = Math.sin((phi2 - phi1) / 2);
+    double sinHalfDeltaLambda = Math.sin(deltaLambda / 2);
+    double h = sinHalfDeltaPhi * sinHalfDeltaPhi
+        + Math.cos(phi1) * Math.cos(phi2) * sinHalfDeltaLambda * sinHalfDeltaLambda;
+    return 2 * MEAN_RADIUS * Math.asin(Math.min(1, Math.sqrt(h)));
+  }
+
+  /**
+   * Gets the distance with Vincenty's inverse formula. For nearly antipodal
+   * points, where the formula doesn't converge, returns the last iteration as
+   * {@link Location#distanceTo(Location)} does.
+   */
+  private static double vincentyDistance(double phi1, double phi2, double deltaLambda) {
+    double u1 = Math.atan((1 - FLATTENING) * Math.tan(phi1));
+    double u2 = Math.atan((1 - FLATTENING) * Math.tan(phi2));
+    double sinU1 = Math.sin(u1);
+    double cosU1 = Math.cos(u1);
+    double sinU2 = Math.sin(u2);
+    double cosU2 = Math.cos(u2);
+
+    double lambda = deltaLambda;
+    double sinSigma = 0;
+    double cosSigma = 0;
+    double sigma = 0;
+    double cosSqAlpha = 0;
+    double cos2SigmaM = 0;
+    for (int i = 0; i < MAX_ITERATIONS; i++) {
+      double sinLambda = Math.sin(lambda);
+      double cosLambda = Math.cos(lambda);
+      double t1 = cosU2 * sinLambda;
+      double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+      sinSigma = Math.sqrt(t1 * t1 + t2 * t2);
+      if (sinSigma == 0) {
+        // Coincident points
+        return 0;
+      }
+      cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+      sigma = Math.atan2(sinSigma, cosSigma);
+      double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+      cosSqAlpha = 1 - sinAlpha * sinAlpha;
+      // On the equator, cosSqAlpha is 0
+      cos2SigmaM = cosSqAlpha == 0 ? 0 : cosSigma - 2 * sinU1 * sinU2 / cosSqAlpha;
+      double c = FLATTENING / 16 * cosSqAlpha * (4 + FLATTENING * (4 - 3 * cosSqAlpha));
+      double previousLambda = lambda;
+      lambda = deltaLambda + (1 - c) * FLATTENING * sinAlpha * (sigma + c * sinSigma
+          * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+      if (Math.abs(lambda - previousLambda) < CONVERGENCE_THRESHOLD) {
+        break;
+      }
+    }
+
+    double uSq = cosSqAlpha * (SEMI_MAJOR_AXIS * SEMI_MAJOR_AXIS
+        - SEMI_MINOR_AXIS * SEMI_MINOR_AXIS) / (SEMI_MINOR_AXIS * SEMI_MINOR_AXIS);
+    double a = 1 + uSq / 16384 * (4096 + uSq * (-768 + uSq * (320 - 175 * uSq)));
+    double b = uSq / 1024 * (256 + uSq * (-128 + uSq * (74 - 47 * uSq)));
+    double deltaSigma = b * sinSigma * (cos2SigmaM + b / 4 * (cosSigma
+        * (-1 + 2 * cos2SigmaM * cos2SigmaM) - b / 6 * cos2SigmaM
+        * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+    return SEMI_MINOR_AXIS * a * (sigma - deltaSigma);
+  }
+
+  /**
+   * Normalizes a longitude difference to [-pi, pi].
+   */
+  private static double normalizeLongitude(double lambda) {
+    if (lambda > Math.PI) {
+      return lambda - 2 * Math.PI;
+    }
+    if (lambda < -Math.PI) {
+      return lambda + 2 * Math.PI;
+    }
+    return lambda;
+  }
+}
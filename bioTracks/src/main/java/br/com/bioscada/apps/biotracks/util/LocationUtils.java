@@ -51,7 +51,7 @@ public class LocationUtils {
    */
   private static double distance(final Location c0, final Location c1, final Location c2) {
     if (c1.equals(c2)) {
-      return c2.distanceTo(c0);
+      return GeodesyUtils.distance(c2, c0);
     }
 
     final double s0lat = c0.getLatitude() * UnitConversions.DEG_TO_RAD;
@@ -66,18 +66,14 @@ public class LocationUtils {
     final double u = ((s0lat - s1lat) * s2s1lat + (s0lng - s1lng) * s2s1lng)
         / (s2s1lat * s2s1lat + s2s1lng * s2s1lng);
     if (u <= 0) {
-      return c0.distanceTo(c1);
+      return GeodesyUtils.distance(c0, c1);
     }
     if (u >= 1) {
-      return c0.distanceTo(c2);
+      return GeodesyUtils.distance(c0, c2);
     }
-    Location sa = new Location("");
-    sa.setLatitude(c0.getLatitude() - c1.getLatitude());
-    sa.setLongitude(c0.getLongitude() - c1.getLongitude());
-    Location sb = new Location("");
-    sb.setLatitude(u * (c2.getLatitude() - c1.getLatitude()));
-    sb.setLongitude(u * (c2.getLongitude() - c1.getLongitude()));
-    return sa.distanceTo(sb);
+    return GeodesyUtils.distance(c0.getLatitude() - c1.getLatitude(),
+        c0.getLongitude() - c1.getLongitude(), u * (c2.getLatitude() - c1.getLatitude()),
+        u * (c2.getLongitude() - c1.getLongitude()), GeodesyUtils.Accuracy.FAST);
   }
 
   /**
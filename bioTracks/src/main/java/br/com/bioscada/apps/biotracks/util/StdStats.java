@@ -40,6 +40,8 @@ package br.com.bioscada.apps.biotracks.util;
 
 import java.util.Vector;
 
+import br.com.bioscada.apps.biotracks.stats.NonlinearHrv;
+
 /**
  *
  * @author Diego Schmaedech Martins (schmaedech@gmail.com)
@@ -328,81 +330,31 @@ public class StdStats {
     * called by chart engine
     */
     public static float calculeApEn(int m, float r, Vector<Float> rr){
-        float result = 0;
-        result = calculePhy(m,r, rr) - calculePhy(m+1,r, rr);
-        return result;
-    }
-
-    //variavel para o calculo da entropia aproximada //somatorio do Cm
-    private static float calculePhy(int m, float r, Vector<Float> rr){
-        float result = 0;
-        int N = rr.size();
-        int jNm = N - m + 1;
-        float[][] Uuj = new float[jNm][m];
-        for(int k = 0; k < jNm; k++){
-            for(int i = 0; i < m; i++){
-                Uuj[k][i] = rr.get(i+k);
-            }
-        }
-        for(int i = 0; i < jNm; i++){
-            result += Math.log(calculeCmj(i,Uuj,r,jNm,true));
-        }
-        result = result/(float)jNm;
-        return result;
+        return NonlinearHrv.approximateEntropy(m, r, getFloatArray(rr), rr.size(), null);
     }
 
     /*
      * called by chart engine
      */
     public static float calculeLnSampEn(int m, float r, Vector<Float> rr){
-        float result = 0;
-        try{
-            result = (float) Math.log( ( calculeSampEn(m, r, rr) / calculeSampEn(m+1, r, rr) ) );
-        }catch(Exception ex){
-
-        }
-        return result;
-    }
-
-    //calculo somatorio do Cm
-    private static float calculeSampEn(int m, float r, Vector<Float> rr){
-        float result = 0;
-        int N = rr.size();
-        int jNm = N - m + 1;
-        float[][] Uuj = new float[jNm][m];
-        for(int k = 0; k < jNm; k++){
-            for(int i = 0; i < m; i++){
-                Uuj[k][i] = rr.get(i+k);
-            }
-        }
-        for(int i = 0; i < jNm; i++){
-            result += calculeCmj(i,Uuj,r,jNm,false);
-        }
-        result = result/(float)jNm;
-        return result;
+        return NonlinearHrv.lnSampleEntropy(m, r, getFloatArray(rr), rr.size(), null);
     }
 
     /*
-     *
-     *
+     * All the radii are counted in a single pass
      */
     public static float calculeD2(int m, int rBin, float[] rr){
         if(rr.length > m){
             float[] x = new float[rBin];
             float[] y = new float[rBin];
+            float[] radii = new float[rBin];
             float r = -3f;
-            float lnD2 = 0f;
             for(int i = 0; i < rBin; i++){
                 r += 0.03f;
                 x[i] = r;
-
-                try{
-                    lnD2 = calculeLnD2(m, (float)Math.exp(r), rr);
-                }catch(Exception ex){
-
-                }
-                y[i] = lnD2;
+                radii[i] = (float)Math.exp(r);
             }
+            calculeLnD2(m, radii, rr, y);
 
             int indexTempY = indexMax(absDistance(y));
             if(indexTempY > 0){
@@ -435,86 +387,24 @@ public class StdStats {
      *   }
      */
     public static float calculeLnD2(int m, float r, float[] rr){
-        float result = 0;
-
-        int jNm = rr.length - m + 1;
-        float[][] Uuj = new float[jNm][m];
-        for(int k = 0; k < jNm; k++){
-            for(int i = 0; i < m; i++){
-                Uuj[k][i] = rr[i+k];
-            }
-        }
-        for(int i = 0; i < jNm; i++){
-            result += calculeD2Cmj(i,Uuj,r,jNm, false);
-        }
-
-        return (float) Math.log(result/(float)jNm);
-    }
-
-    private static double calculeD2Cmj(int j, float[][] Uj, float r, int jNm, boolean itself){
-        float result = 0;
-        int nbrofu = 0;
-        for( int k = 0; k < jNm; k++ ){
-            if(itself){
-                result = dCoUjUk( Uj[j], Uj[k] );
-            }else{
-                if(j!=k){
-                    result = dCoUjUk( Uj[j], Uj[k] );
-                }
-            }
-            if( result <= r ){
-                nbrofu++;
-            }
-        }
-        if(itself){
-            result = (float)nbrofu/jNm;
-        }else{
-            result = (float)nbrofu/(jNm-1);
-        }
-        return result;
+        float[] result = new float[1];
+        calculeLnD2(m, new float[]{r}, rr, result);
+        return result[0];
     }
 
-    private static float calculeCmj(int j, float[][] Uj, float r, int jNm, boolean itself){
-        float result = 0;
-        int nbrofu = 0;
-        for( int k = 0; k < jNm; k++ ){
-            if(itself){
-                result = dEnUjUk( Uj[j], Uj[k] );
-            }else{
-                if(j!=k){
-                    result = dEnUjUk( Uj[j], Uj[k] );
-                }
-            }
-
-            if( result <= r ){
-                nbrofu++;
-            }
-        }
-        if(itself){
-            result = (float)nbrofu/jNm;
-        }else{
-            result = (float)nbrofu/(jNm-1);
-        }
-
-        return result;
-    }
-
-    //definido para ApEn e SamplEn
-    private static float dEnUjUk(float[] uj, float[] uk){
-        float[] result = new float[uj.length];
+    /*
+     * radii in ascending order. A radius without any match gets the value of
+     * a single template matching itself so that the slope stays finite.
+     */
+    private static void calculeLnD2(int m, float[] radii, float[] rr, float[] result){
+        NonlinearHrv.lnCorrelationIntegrals(m, radii, rr, rr.length, result, null);
+        int jNm = rr.length - m + 1;
+        float floor = (float) Math.log(1.0/((double)jNm*(jNm-1)));
         for(int i = 0; i < result.length; i++){
-            result[i] = Math.abs(uk[i]-uj[i]);
-        }
-        return max(result);
-    }
-
-    //definido para dimension correlation
-    private static float dCoUjUk(float[] uj, float[] uk){
-        float result = 0f;
-        for(int i = 0; i < uj.length; i++){
-            result += Math.pow(uk[i]-uj[i],2);
+            if(Float.isInfinite(result[i])){
+                result[i] = floor;
+            }
         }
-        return (float) Math.sqrt(result);
     }
 
 
@@ -41,6 +41,8 @@ import br.com.bioscada.apps.biotracks.R;
 public class StringUtils {
 
   private static final String COORDINATE_DEGREE = "\u00B0";
+
+  // SimpleDateFormat is not thread safe, synchronize on the format to use it
   private static final SimpleDateFormat ISO_8601_DATE_TIME_FORMAT = new SimpleDateFormat(
       "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
   private static final SimpleDateFormat ISO_8601_BASE = new SimpleDateFormat(
@@ -52,6 +54,23 @@ public class StringUtils {
     ISO_8601_BASE.setTimeZone(TimeZone.getTimeZone("UTC"));
   }
 
+  // Returned by parseTime when the fast path doesn't handle a value
+  private static final long NOT_PARSED = Long.MIN_VALUE;
+
+  // Max length handled by the fast path, "yyyy-MM-ddTHH:mm:ss.SSSSSSSSS+hh:mm"
+  private static final int MAX_PARSED_LENGTH = 35;
+
+  private static final ThreadLocal<char[]> TIME_CHARS = new ThreadLocal<char[]>() {
+      @Override
+    protected char[] initialValue() {
+      return new char[MAX_PARSED_LENGTH];
+    }
+  };
+
+  private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+  private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L,
+      10000000L, 100000000L, 1000000000L };
+
   private StringUtils() {}
 
   /**
@@ -73,7 +92,9 @@ public class StringUtils {
    * @param time the time in milliseconds
    */
   public static String formatDateTimeIso8601(long time) {
-    return ISO_8601_DATE_TIME_FORMAT.format(time);
+    synchronized (ISO_8601_DATE_TIME_FORMAT) {
+      return ISO_8601_DATE_TIME_FORMAT.format(time);
+    }
   }
 
   /**
@@ -298,13 +319,145 @@ public class StringUtils {
   /**
    * Gets the time, in milliseconds, from an XML date time string as defined at
    * http://www.w3.org/TR/xmlschema-2/#dateTime
+   * <p>
+   * Thread safe. The usual "yyyy-MM-ddTHH:mm:ss[.S+][Z|+hh:mm|-hh:mm]" values
+   * are parsed without creating objects.
    * 
    * @param xmlDateTime the XML date time string
    */
   public static long getTime(String xmlDateTime) {
+    int length = xmlDateTime.length();
+    if (length <= MAX_PARSED_LENGTH) {
+      char[] chars = TIME_CHARS.get();
+      xmlDateTime.getChars(0, length, chars, 0);
+      long time = parseTime(chars, 0, length);
+      if (time != NOT_PARSED) {
+        return time;
+      }
+    }
+    return parseXmlDateTime(xmlDateTime);
+  }
+
+  /**
+   * Parses the usual XML date time values, Gregorian dates in 4 digit years
+   * with in range fields. Returns {@link #NOT_PARSED} for the other values,
+   * including the invalid ones, left to {@link #parseXmlDateTime(String)}.
+   * 
+   * @param chars the characters
+   * @param offset the offset of the XML date time
+   * @param length the length of the XML date time
+   */
+  private static long parseTime(char[] chars, int offset, int length) {
+    if (length < 19 || chars[offset + 4] != '-' || chars[offset + 7] != '-'
+        || chars[offset + 10] != 'T' || chars[offset + 13] != ':' || chars[offset + 16] != ':') {
+      return NOT_PARSED;
+    }
+    int year = parseDigits(chars, offset, 4);
+    int month = parseDigits(chars, offset + 5, 2);
+    int day = parseDigits(chars, offset + 8, 2);
+    int hour = parseDigits(chars, offset + 11, 2);
+    int minute = parseDigits(chars, offset + 14, 2);
+    int second = parseDigits(chars, offset + 17, 2);
+    // Before 1583, SimpleDateFormat uses the Julian calendar
+    if (year < 1583 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23 || minute < 0
+        || minute > 59 || second < 0 || second > 59) {
+      return NOT_PARSED;
+    }
+    boolean isLeapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    if (day > DAYS_IN_MONTH[month - 1] + (month == 2 && isLeapYear ? 1 : 0)) {
+      return NOT_PARSED;
+    }
+    long time = getDaysSinceEpoch(year, month, day) * DateUtils.DAY_IN_MILLIS
+        + hour * DateUtils.HOUR_IN_MILLIS + minute * DateUtils.MINUTE_IN_MILLIS
+        + second * DateUtils.SECOND_IN_MILLIS;
+
+    int index = offset + 19;
+    int end = offset + length;
+    if (index < end && chars[index] == '.') {
+      index++;
+      int start = index;
+      while (index < end && chars[index] >= '0' && chars[index] <= '9') {
+        index++;
+      }
+      int numDigits = index - start;
+      if (numDigits == 0 || numDigits >= POWERS_OF_TEN.length) {
+        return NOT_PARSED;
+      }
+      // Rounded as the float parsed by parseXmlDateTime
+      float fractionalSeconds = (float) ((double) parseDigits(chars, start, numDigits)
+          / POWERS_OF_TEN[numDigits]);
+      time += Math.round(fractionalSeconds * UnitConversions.S_TO_MS);
+    }
+
+    if (index == end || (chars[index] == 'Z' && index + 1 == end)) {
+      return time;
+    }
+    char sign = chars[index];
+    if ((sign != '+' && sign != '-') || index + 6 != end || chars[index + 3] != ':') {
+      return NOT_PARSED;
+    }
+    int offsetHours = parseDigits(chars, index + 1, 2);
+    int offsetMinutes = parseDigits(chars, index + 4, 2);
+    if (offsetHours < 0 || offsetHours > 14 || offsetMinutes < 0 || offsetMinutes > 59) {
+      return NOT_PARSED;
+    }
+    long totalOffset = offsetHours * DateUtils.HOUR_IN_MILLIS
+        + offsetMinutes * DateUtils.MINUTE_IN_MILLIS;
+    // Convert to UTC
+    return sign == '+' ? time - totalOffset : time + totalOffset;
+  }
+
+  /**
+   * Parses decimal digits. Returns -1 if a character is not a digit.
+   * 
+   * @param chars the characters
+   * @param offset the offset of the digits
+   * @param count the number of digits, at most 9
+   */
+  private static int parseDigits(char[] chars, int offset, int count) {
+    int value = 0;
+    for (int i = offset; i < offset + count; i++) {
+      char c = chars[i];
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + c - '0';
+    }
+    return value;
+  }
+
+  /**
+   * Gets the number of days from 1970-01-01 to a date of the proleptic
+   * Gregorian calendar.
+   * 
+   * @param year the year, not negative
+   * @param month the month, from 1 to 12
+   * @param day the day of the month
+   */
+  private static long getDaysSinceEpoch(int year, int month, int day) {
+    // Count the years from March so that the leap day ends the year
+    int marchYear = month <= 2 ? year - 1 : year;
+    int era = marchYear / 400;
+    int yearOfEra = marchYear - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    // 719468 days from 0000-03-01 to 1970-01-01
+    return era * 146097L + dayOfEra - 719468;
+  }
+
+  /**
+   * Gets the time, in milliseconds, from an XML date time string with
+   * {@link SimpleDateFormat}, leniently.
+   * 
+   * @param xmlDateTime the XML date time string
+   */
+  private static long parseXmlDateTime(String xmlDateTime) {
     // Parse the date time base
     ParsePosition position = new ParsePosition(0);
-    Date date = ISO_8601_BASE.parse(xmlDateTime, position);
+    Date date;
+    synchronized (ISO_8601_BASE) {
+      date = ISO_8601_BASE.parse(xmlDateTime, position);
+    }
     if (date == null) {
       throw new IllegalArgumentException("Invalid XML dateTime value: " + xmlDateTime
           + " (at position " + position.getErrorIndex() + ")");
@@ -23,6 +23,7 @@ import android.location.LocationManager;
 import android.net.Uri;
 
 import com.google.android.lib.mytracks.content.Waypoint.WaypointType;
+import com.google.android.lib.mytracks.stats.TripStatistics;
 
 import java.util.Iterator;
 import java.util.List;
@@ -40,6 +41,12 @@ public interface MyTracksProviderUtils {
    */
   public static final String AUTHORITY = "br.com.bioscada.apps.biotracks";
 
+  /**
+   * The query parameter of a content url to control the change notification.
+   * Set to "false" to not notify the observers of the change.
+   */
+  public static final String NOTIFY_PARAMETER = "notify";
+
   /**
    * Clears a track. Removes waypoints and trackpoints. Only keeps the track id.
    * 
@@ -66,6 +73,13 @@ public interface MyTracksProviderUtils {
    */
   public void deleteTrack(Context context, long trackId);
 
+  /**
+   * Deletes tracks, in a single transaction.
+   * 
+   * @param trackIds the track ids
+   */
+  public void deleteTracks(Context context, long... trackIds);
+
   /**
    * Gets all the tracks. If no track exists, an empty list is returned.
    * <p>
@@ -116,6 +130,18 @@ public interface MyTracksProviderUtils {
    */
   public void updateTrack(Track track);
 
+  /**
+   * Gets the aggregated statistics of the tracks of an activity type started
+   * in a period. Reads one row of the {@link TrackStatsColumns} rollup instead
+   * of the tracks. Returns null if no such track exists.
+   * 
+   * @param category the activity type. Null for all the activity types
+   * @param period the period type, see {@link TrackStatsColumns}
+   * @param time a time in the period. Ignored for
+   *          {@link TrackStatsColumns#PERIOD_ALL}
+   */
+  public TripStatistics getAggregatedTripStatistics(String category, int period, long time);
+
   /**
    * Creates a waypoint from a cursor.
    * 
@@ -223,6 +249,21 @@ public interface MyTracksProviderUtils {
    */
   public int bulkInsertTrackPoint(Location[] locations, int length, long trackId);
 
+  /**
+   * Inserts multiple track points.
+   * 
+   * @param locations an array of locations
+   * @param length the number of locations (from the beginning of the array) to
+   *          insert, or -1 for all of them
+   * @param trackId the track id
+   * @param notifyChange false to not notify the observers of
+   *          {@link TrackPointsColumns#CONTENT_URI}. The caller is then
+   *          responsible for notifying them once done
+   * @return the number of points inserted
+   */
+  public int bulkInsertTrackPoint(
+      Location[] locations, int length, long trackId, boolean notifyChange);
+
   /**
    * Creates a location object from a cursor.
    * 
@@ -287,6 +328,31 @@ public interface MyTracksProviderUtils {
   public Cursor getTrackPointCursor(
       long trackId, long startTrackPointId, int maxLocations, boolean descending);
 
+  /**
+   * Inserts multiple sensor samples.
+   * 
+   * @param trackId the track id
+   * @param times the sample times
+   * @param types the sample types, see {@link SensorSamplesColumns}
+   * @param values the sample values
+   * @param length the number of samples (from the beginning of the arrays) to
+   *          insert
+   * @return the number of samples inserted
+   */
+  public int bulkInsertSensorSamples(
+      long trackId, long[] times, int[] types, float[] values, int length);
+
+  /**
+   * Creates a sensor sample cursor over a time range. The caller owns the
+   * returned cursor and is responsible for closing it.
+   * 
+   * @param trackId the track id
+   * @param type the sample type, see {@link SensorSamplesColumns}
+   * @param minTime the minimum sample time, inclusive. -1L to ignore
+   * @param maxTime the maximum sample time, inclusive. -1L to ignore
+   */
+  public Cursor getSensorSampleCursor(long trackId, int type, long minTime, long maxTime);
+
   /**
    * Creates a new read-only iterator over a given track's points. It provides a
    * lightweight way of iterating over long tracks without failing due to the
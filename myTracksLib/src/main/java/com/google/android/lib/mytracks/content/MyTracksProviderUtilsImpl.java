@@ -16,12 +16,15 @@
 
 package com.google.android.lib.mytracks.content;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.location.Location;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.util.Log;
 
 import com.google.android.lib.mytracks.content.Sensor.SensorDataSet;
@@ -90,6 +93,7 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
     int modifiedTimeIndex = cursor.getColumnIndexOrThrow(TracksColumns.MODIFIEDTIME);
     int sharedWithMeIndex = cursor.getColumnIndexOrThrow(TracksColumns.SHAREDWITHME);
     int sharedOwnerIndex = cursor.getColumnIndexOrThrow(TracksColumns.SHAREDOWNER);
+    int driveMd5Index = cursor.getColumnIndexOrThrow(TracksColumns.DRIVEMD5);
     int caloriesIndex = cursor.getColumnIndexOrThrow(TracksColumns.CALORIE);
     
     Track track = new Track();
@@ -174,14 +178,17 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
     if (!cursor.isNull(sharedOwnerIndex)) {
       track.setSharedOwner(cursor.getString(sharedOwnerIndex));
     }
+    if (!cursor.isNull(driveMd5Index)) {
+      track.setDriveMd5(cursor.getString(driveMd5Index));
+    }
     return track;
   }
 
   @Override
   public void deleteAllTracks(Context context) {
     contentResolver.delete(TrackPointsColumns.CONTENT_URI, null, null);
+    contentResolver.delete(SensorSamplesColumns.CONTENT_URI, null, null);
     contentResolver.delete(WaypointsColumns.CONTENT_URI, null, null);
-    // Delete tracks last since it triggers a database vaccum call
     contentResolver.delete(TracksColumns.CONTENT_URI, null, null);
 
     File dir = FileUtils.getPhotoDir();
@@ -190,15 +197,45 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
 
   @Override
   public void deleteTrack(Context context, long trackId) {
-    deleteTrackPointsAndWaypoints(context, trackId);
+    deleteTracks(context, trackId);
+  }
 
-    // Delete track last since it triggers a database vaccum call
-    contentResolver.delete(TracksColumns.CONTENT_URI, TracksColumns._ID + "=?",
-        new String[] { Long.toString(trackId) });
+  @Override
+  public void deleteTracks(Context context, long... trackIds) {
+    ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+    for (long trackId : trackIds) {
+      String[] trackIdArgs = new String[] { Long.toString(trackId) };
+      Track track = getTrack(trackId);
+      if (track != null) {
+        String where = TrackPointsColumns._ID + ">=? AND " + TrackPointsColumns._ID + "<=?";
+        String[] selectionArgs = new String[] {
+            Long.toString(track.getStartId()), Long.toString(track.getStopId()) };
+        operations.add(ContentProviderOperation.newDelete(TrackPointsColumns.CONTENT_URI)
+            .withSelection(where, selectionArgs).build());
+      }
+      operations.add(ContentProviderOperation.newDelete(WaypointsColumns.CONTENT_URI)
+          .withSelection(WaypointsColumns.TRACKID + "=?", trackIdArgs).build());
+      operations.add(ContentProviderOperation.newDelete(SensorSamplesColumns.CONTENT_URI)
+          .withSelection(SensorSamplesColumns.TRACKID + "=?", trackIdArgs).build());
+      operations.add(ContentProviderOperation.newDelete(TracksColumns.CONTENT_URI)
+          .withSelection(TracksColumns._ID + "=?", trackIdArgs).build());
+    }
+    try {
+      contentResolver.applyBatch(AUTHORITY, operations);
+    } catch (RemoteException e) {
+      Log.e(TAG, "Unable to delete tracks.", e);
+      return;
+    } catch (OperationApplicationException e) {
+      Log.e(TAG, "Unable to delete tracks.", e);
+      return;
+    }
+    for (long trackId : trackIds) {
+      deleteDirectoryRecurse(context, FileUtils.getPhotoDir(trackId));
+    }
   }
 
   /**
-   * Deletes track points and waypoints of a track. Assumes
+   * Deletes track points, sensor samples and waypoints of a track. Assumes
    * {@link TracksColumns#STARTID}, {@link TracksColumns#STOPID}, and
    * {@link TracksColumns#NUMPOINTS} will be updated by the caller.
    * 
@@ -214,6 +251,8 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
     }
     contentResolver.delete(WaypointsColumns.CONTENT_URI, WaypointsColumns.TRACKID + "=?",
         new String[] { Long.toString(trackId) });    
+    contentResolver.delete(SensorSamplesColumns.CONTENT_URI, SensorSamplesColumns.TRACKID + "=?",
+        new String[] { Long.toString(trackId) });
     deleteDirectoryRecurse(context, FileUtils.getPhotoDir(trackId));  
   }
 
@@ -308,6 +347,89 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
         TracksColumns._ID + "=?", new String[] { Long.toString(track.getId()) });
   }
 
+  @Override
+  public TripStatistics getAggregatedTripStatistics(String category, int period, long time) {
+    ArrayList<String> selectionArgs = new ArrayList<String>(4);
+    String selection = TrackStatsColumns.PERIOD + "=?";
+    selectionArgs.add(Integer.toString(period));
+    if (period != TrackStatsColumns.PERIOD_ALL) {
+      selection += " AND " + TrackStatsColumns.PERIODSTART + "<=? AND "
+          + TrackStatsColumns.PERIODEND + ">?";
+      selectionArgs.add(Long.toString(time));
+      selectionArgs.add(Long.toString(time));
+    }
+    if (category == null) {
+      selection += " AND " + TrackStatsColumns.CATEGORY + " IS NULL";
+    } else {
+      selection += " AND " + TrackStatsColumns.CATEGORY + "=?";
+      selectionArgs.add(category);
+    }
+    Cursor cursor = null;
+    try {
+      cursor = contentResolver.query(TrackStatsColumns.CONTENT_URI, null, selection,
+          selectionArgs.toArray(new String[selectionArgs.size()]), null);
+      if (cursor != null && cursor.moveToFirst()) {
+        return createTripStatistics(cursor);
+      }
+    } finally {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Creates a {@link TripStatistics} from a track stats cursor.
+   * 
+   * @param cursor the cursor pointing to the track stats
+   */
+  private TripStatistics createTripStatistics(Cursor cursor) {
+    TripStatistics tripStatistics = new TripStatistics();
+    double startTime = cursor.getDouble(
+        cursor.getColumnIndexOrThrow(TrackStatsColumns.STARTTIME));
+    double stopTime = cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.STOPTIME));
+
+    // Infinite if no track is started
+    if (!Double.isInfinite(startTime)) {
+      tripStatistics.setStartTime((long) startTime);
+    }
+    if (!Double.isInfinite(stopTime)) {
+      tripStatistics.setStopTime((long) stopTime);
+    }
+    tripStatistics.setTotalDistance(
+        cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.TOTALDISTANCE)));
+    tripStatistics.setTotalTime(
+        cursor.getLong(cursor.getColumnIndexOrThrow(TrackStatsColumns.TOTALTIME)));
+    tripStatistics.setMovingTime(
+        cursor.getLong(cursor.getColumnIndexOrThrow(TrackStatsColumns.MOVINGTIME)));
+    double left = cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MINLON));
+    double top = cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MAXLAT));
+    double right = cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MAXLON));
+    double bottom = cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MINLAT));
+
+    // Infinite if no track has bounds
+    if (!Double.isInfinite(left) && !Double.isInfinite(top) && !Double.isInfinite(right)
+        && !Double.isInfinite(bottom)) {
+      tripStatistics.setBounds((int) left, (int) top, (int) right, (int) bottom);
+    }
+    tripStatistics.setMaxSpeed(
+        cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MAXSPEED)));
+    tripStatistics.setMinElevation(
+        cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MINELEVATION)));
+    tripStatistics.setMaxElevation(
+        cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MAXELEVATION)));
+    tripStatistics.setTotalElevationGain(
+        cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.ELEVATIONGAIN)));
+    tripStatistics.setMinGrade(
+        cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MINGRADE)));
+    tripStatistics.setMaxGrade(
+        cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.MAXGRADE)));
+    tripStatistics.setCalorie(
+        cursor.getDouble(cursor.getColumnIndexOrThrow(TrackStatsColumns.CALORIE)));
+    return tripStatistics;
+  }
+
   private ContentValues createContentValues(Track track) {
     ContentValues values = new ContentValues();
     TripStatistics tripStatistics = track.getTripStatistics();
@@ -344,6 +466,7 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
     values.put(TracksColumns.MODIFIEDTIME, track.getModifiedTime());
     values.put(TracksColumns.SHAREDWITHME, track.isSharedWithMe());
     values.put(TracksColumns.SHAREDOWNER, track.getSharedOwner());
+    values.put(TracksColumns.DRIVEMD5, track.getDriveMd5());
     values.put(TracksColumns.CALORIE, tripStatistics.getCalorie());
     
     return values;
@@ -667,14 +790,19 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
       return 0;
     }
 
-    String[] projection = new String[] { "count(*) AS count" };
-    String selection = WaypointsColumns.TRACKID + "=?";
-    String[] selectionArgs = new String[] { Long.toString(trackId) };
-    Cursor cursor = contentResolver.query(
-        WaypointsColumns.CONTENT_URI, projection, selection, selectionArgs, WaypointsColumns._ID);
-
-    cursor.moveToFirst();
-    int count = cursor.getInt(0);
+    int count = 0;
+    Cursor cursor = null;
+    try {
+      cursor = getTrackCursor(new String[] { TracksColumns.NUMWAYPOINTS },
+          TracksColumns._ID + "=?", new String[] { Long.toString(trackId) }, null);
+      if (cursor != null && cursor.moveToFirst()) {
+        count = cursor.getInt(0);
+      }
+    } finally {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
     // not count the first waypoint
     return count > 0 ? count - 1 : 0;
   }
@@ -792,6 +920,12 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
 
   @Override
   public int bulkInsertTrackPoint(Location[] locations, int length, long trackId) {
+    return bulkInsertTrackPoint(locations, length, trackId, true);
+  }
+
+  @Override
+  public int bulkInsertTrackPoint(
+      Location[] locations, int length, long trackId, boolean notifyChange) {
     if (length == -1) {
       length = locations.length;
     }
@@ -799,7 +933,12 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
     for (int i = 0; i < length; i++) {
       values[i] = createContentValues(locations[i], trackId);
     }
-    return contentResolver.bulkInsert(TrackPointsColumns.CONTENT_URI, values);
+    Uri uri = TrackPointsColumns.CONTENT_URI;
+    if (!notifyChange) {
+      uri = uri.buildUpon()
+          .appendQueryParameter(MyTracksProviderUtils.NOTIFY_PARAMETER, "false").build();
+    }
+    return contentResolver.bulkInsert(uri, values);
   }
 
   @Override
@@ -943,6 +1082,44 @@ public class MyTracksProviderUtilsImpl implements MyTracksProviderUtils {
     return getTrackPointCursor(null, selection, selectionArgs, sortOrder);
   }
 
+  @Override
+  public int bulkInsertSensorSamples(
+      long trackId, long[] times, int[] types, float[] values, int length) {
+    ContentValues[] valuesBulk = new ContentValues[length];
+    for (int i = 0; i < length; i++) {
+      ContentValues contentValues = new ContentValues();
+      contentValues.put(SensorSamplesColumns.TRACKID, trackId);
+      contentValues.put(SensorSamplesColumns.TIME, times[i]);
+      contentValues.put(SensorSamplesColumns.TYPE, types[i]);
+      contentValues.put(SensorSamplesColumns.VALUE, values[i]);
+      valuesBulk[i] = contentValues;
+    }
+    return contentResolver.bulkInsert(SensorSamplesColumns.CONTENT_URI, valuesBulk);
+  }
+
+  @Override
+  public Cursor getSensorSampleCursor(long trackId, int type, long minTime, long maxTime) {
+    if (trackId < 0) {
+      return null;
+    }
+    ArrayList<String> selectionArgs = new ArrayList<String>(4);
+    String selection = SensorSamplesColumns.TRACKID + "=? AND " + SensorSamplesColumns.TYPE
+        + "=?";
+    selectionArgs.add(Long.toString(trackId));
+    selectionArgs.add(Integer.toString(type));
+    if (minTime >= 0) {
+      selection += " AND " + SensorSamplesColumns.TIME + ">=?";
+      selectionArgs.add(Long.toString(minTime));
+    }
+    if (maxTime >= 0) {
+      selection += " AND " + SensorSamplesColumns.TIME + "<=?";
+      selectionArgs.add(Long.toString(maxTime));
+    }
+    return contentResolver.query(SensorSamplesColumns.CONTENT_URI, null, selection,
+        selectionArgs.toArray(new String[selectionArgs.size()]),
+        SensorSamplesColumns.DEFAULT_SORT_ORDER);
+  }
+
   @Override
   public LocationIterator getTrackPointLocationIterator(final long trackId,
       final long startTrackPointId, final boolean descending,
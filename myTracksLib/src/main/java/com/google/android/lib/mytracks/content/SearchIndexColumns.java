@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.lib.mytracks.content;
+
+/**
+ * Constants for the full-text search index tables of the tracks and of the
+ * waypoints. The index tables are FTS3 virtual tables, maintained by the
+ * content provider, with the docid of a row being the id of the track or of
+ * the waypoint. The indexed text is lowercased, without accents and with the
+ * punctuation replaced by spaces.
+ */
+public interface SearchIndexColumns {
+
+  public static final String TRACKS_TABLE_NAME = "tracksearch";
+  public static final String WAYPOINTS_TABLE_NAME = "waypointsearch";
+
+  // Columns
+  public static final String DOCID = "docid"; // track or waypoint id
+  public static final String NAME = "name"; // name
+  public static final String DESCRIPTION = "description"; // description
+  public static final String CATEGORY = "category"; // category
+
+  public static final String CREATE_TRACKS_TABLE = "CREATE VIRTUAL TABLE " + TRACKS_TABLE_NAME
+      + " USING fts3(" + NAME + ", " + DESCRIPTION + ", " + CATEGORY + ");";
+
+  public static final String CREATE_WAYPOINTS_TABLE = "CREATE VIRTUAL TABLE "
+      + WAYPOINTS_TABLE_NAME + " USING fts3(" + NAME + ", " + DESCRIPTION + ", " + CATEGORY
+      + ");";
+}
@@ -724,6 +724,16 @@ public final class Sensor {
      * <code>optional .com.google.android.lib.mytracks.content.SensorData heart_rate_rc2 = 11;</code>
      */
     com.google.android.lib.mytracks.content.Sensor.SensorData getHeartRateRc2();
+
+    // optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;
+    /**
+     * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+     */
+    boolean hasLfHf();
+    /**
+     * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+     */
+    com.google.android.lib.mytracks.content.Sensor.SensorData getLfHf();
   }
   /**
    * Protobuf type {@code com.google.android.lib.mytracks.content.SensorDataSet}
@@ -907,6 +917,19 @@ public final class Sensor {
               bitField0_ |= 0x00000400;
               break;
             }
+            case 98: {
+              com.google.android.lib.mytracks.content.Sensor.SensorData.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000800) == 0x00000800)) {
+                subBuilder = lfHf_.toBuilder();
+              }
+              lfHf_ = input.readMessage(com.google.android.lib.mytracks.content.Sensor.SensorData.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(lfHf_);
+                lfHf_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000800;
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -1118,6 +1141,22 @@ public final class Sensor {
       return heartRateRc2_;
     }
 
+    // optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;
+    public static final int LF_HF_FIELD_NUMBER = 12;
+    private com.google.android.lib.mytracks.content.Sensor.SensorData lfHf_;
+    /**
+     * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+     */
+    public boolean hasLfHf() {
+      return ((bitField0_ & 0x00000800) == 0x00000800);
+    }
+    /**
+     * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+     */
+    public com.google.android.lib.mytracks.content.Sensor.SensorData getLfHf() {
+      return lfHf_;
+    }
+
     private void initFields() {
       creationTime_ = 0L;
       heartRate_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
@@ -1130,6 +1169,7 @@ public final class Sensor {
       rmssd_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
       heartRateRc1_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
       heartRateRc2_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
+      lfHf_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -1196,6 +1236,12 @@ public final class Sensor {
           return false;
         }
       }
+      if (hasLfHf()) {
+        if (!getLfHf().isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
       memoizedIsInitialized = 1;
       return true;
     }
@@ -1236,6 +1282,9 @@ public final class Sensor {
       if (((bitField0_ & 0x00000400) == 0x00000400)) {
         output.writeMessage(11, heartRateRc2_);
       }
+      if (((bitField0_ & 0x00000800) == 0x00000800)) {
+        output.writeMessage(12, lfHf_);
+      }
     }
 
     private int memoizedSerializedSize = -1;
@@ -1288,6 +1337,10 @@ public final class Sensor {
         size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(11, heartRateRc2_);
       }
+      if (((bitField0_ & 0x00000800) == 0x00000800)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(12, lfHf_);
+      }
       memoizedSerializedSize = size;
       return size;
     }
@@ -1405,6 +1458,8 @@ public final class Sensor {
         bitField0_ = (bitField0_ & ~0x00000200);
         heartRateRc2_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
         bitField0_ = (bitField0_ & ~0x00000400);
+        lfHf_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
+        bitField0_ = (bitField0_ & ~0x00000800);
         return this;
       }
 
@@ -1472,6 +1527,10 @@ public final class Sensor {
           to_bitField0_ |= 0x00000400;
         }
         result.heartRateRc2_ = heartRateRc2_;
+        if (((from_bitField0_ & 0x00000800) == 0x00000800)) {
+          to_bitField0_ |= 0x00000800;
+        }
+        result.lfHf_ = lfHf_;
         result.bitField0_ = to_bitField0_;
         return result;
       }
@@ -1511,6 +1570,9 @@ public final class Sensor {
         if (other.hasHeartRateRc2()) {
           mergeHeartRateRc2(other.getHeartRateRc2());
         }
+        if (other.hasLfHf()) {
+          mergeLfHf(other.getLfHf());
+        }
         return this;
       }
 
@@ -1575,6 +1637,12 @@ public final class Sensor {
             return false;
           }
         }
+        if (hasLfHf()) {
+          if (!getLfHf().isInitialized()) {
+            
+            return false;
+          }
+        }
         return true;
       }
 
@@ -2256,6 +2324,67 @@ public final class Sensor {
         return this;
       }
 
+      // optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;
+      private com.google.android.lib.mytracks.content.Sensor.SensorData lfHf_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
+      /**
+       * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+       */
+      public boolean hasLfHf() {
+        return ((bitField0_ & 0x00000800) == 0x00000800);
+      }
+      /**
+       * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+       */
+      public com.google.android.lib.mytracks.content.Sensor.SensorData getLfHf() {
+        return lfHf_;
+      }
+      /**
+       * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+       */
+      public Builder setLfHf(com.google.android.lib.mytracks.content.Sensor.SensorData value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        lfHf_ = value;
+
+        bitField0_ |= 0x00000800;
+        return this;
+      }
+      /**
+       * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+       */
+      public Builder setLfHf(
+          com.google.android.lib.mytracks.content.Sensor.SensorData.Builder builderForValue) {
+        lfHf_ = builderForValue.build();
+
+        bitField0_ |= 0x00000800;
+        return this;
+      }
+      /**
+       * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+       */
+      public Builder mergeLfHf(com.google.android.lib.mytracks.content.Sensor.SensorData value) {
+        if (((bitField0_ & 0x00000800) == 0x00000800) &&
+            lfHf_ != com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance()) {
+          lfHf_ =
+            com.google.android.lib.mytracks.content.Sensor.SensorData.newBuilder(lfHf_).mergeFrom(value).buildPartial();
+        } else {
+          lfHf_ = value;
+        }
+
+        bitField0_ |= 0x00000800;
+        return this;
+      }
+      /**
+       * <code>optional .com.google.android.lib.mytracks.content.SensorData lf_hf = 12;</code>
+       */
+      public Builder clearLfHf() {
+        lfHf_ = com.google.android.lib.mytracks.content.Sensor.SensorData.getDefaultInstance();
+
+        bitField0_ = (bitField0_ & ~0x00000800);
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:com.google.android.lib.mytracks.content.SensorDataSet)
     }
 
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.lib.mytracks.content;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import static com.google.android.lib.mytracks.content.ContentTypeIds.FLOAT_TYPE_ID;
+import static com.google.android.lib.mytracks.content.ContentTypeIds.INT_TYPE_ID;
+import static com.google.android.lib.mytracks.content.ContentTypeIds.LONG_TYPE_ID;
+
+/**
+ * Constants for the sensor samples table. Unlike the sensor data set stored
+ * with each track point, a sensor sample is recorded for every value a sensor
+ * sends, e.g., every beat-to-beat interval.
+ */
+public interface SensorSamplesColumns extends BaseColumns {
+
+  public static final String TABLE_NAME = "sensorsamples";
+  public static final Uri CONTENT_URI = Uri.parse(
+      "content://br.com.bioscada.apps.biotracks/sensorsamples");
+  public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.google.sensorsample";
+  public static final String CONTENT_ITEMTYPE =
+      "vnd.android.cursor.item/vnd.google.sensorsample";
+  public static final String DEFAULT_SORT_ORDER = "time, _id";
+
+  // Columns
+  public static final String TRACKID = "trackid"; // track id
+  public static final String TIME = "time"; // time
+  public static final String TYPE = "type"; // sample type
+  public static final String VALUE = "value"; // sample value
+
+  // Sample types
+  public static final int TYPE_RR_INTERVAL = 0; // beat-to-beat interval in ms
+  public static final int TYPE_HEART_RATE = 1; // heart rate in bpm
+  public static final int TYPE_CADENCE = 2; // cadence in rpm
+  public static final int TYPE_POWER = 3; // power in W
+
+  public static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+      + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+      + TRACKID + " INTEGER, "
+      + TIME + " INTEGER, "
+      + TYPE + " INTEGER, "
+      + VALUE + " FLOAT"
+      + ");";
+
+  public static final String TRACKID_TYPE_TIME_INDEX = TABLE_NAME + "_" + TRACKID + "_" + TYPE
+      + "_" + TIME + "_index";
+
+  public static final String CREATE_TRACKID_TYPE_TIME_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + TRACKID_TYPE_TIME_INDEX + " ON " + TABLE_NAME + " (" + TRACKID + ", " + TYPE + ", "
+      + TIME + ");";
+
+  public static final String[] COLUMNS = {
+      _ID,
+      TRACKID,
+      TIME,
+      TYPE,
+      VALUE
+  };
+
+  public static final byte[] COLUMN_TYPES = {
+      LONG_TYPE_ID, // id
+      LONG_TYPE_ID, // track id
+      LONG_TYPE_ID, // time
+      INT_TYPE_ID, // type
+      FLOAT_TYPE_ID // value
+  };
+}
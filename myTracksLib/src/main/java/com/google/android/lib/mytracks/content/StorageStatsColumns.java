@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.lib.mytracks.content;
+
+import android.net.Uri;
+
+/**
+ * Constants for the storage stats of the database. Querying the content uri
+ * returns a single row with the page counts of the database file, the free
+ * pages being the space left by deleted data. Updating the content uri with
+ * {@link #RECLAIMPAGES} returns up to that many free pages to the file system
+ * and returns the number of pages reclaimed.
+ */
+public interface StorageStatsColumns {
+
+  public static final Uri CONTENT_URI = Uri.parse(
+      "content://br.com.bioscada.apps.biotracks/storagestats");
+  public static final String CONTENT_ITEMTYPE = "vnd.android.cursor.item/vnd.google.storagestats";
+
+  // Columns
+  public static final String PAGESIZE = "pagesize"; // page size in bytes
+  public static final String PAGECOUNT = "pagecount"; // number of pages, including free ones
+  public static final String FREEPAGES = "freepages"; // number of free pages
+  public static final String AUTOVACUUM = "autovacuum"; // auto vacuum mode
+
+  // Update values
+  public static final String RECLAIMPAGES = "reclaimpages"; // maximum free pages to reclaim
+
+  // Auto vacuum modes
+  public static final int AUTOVACUUM_NONE = 0; // free pages are only reclaimed by a full vacuum
+  public static final int AUTOVACUUM_FULL = 1; // free pages are reclaimed on every commit
+  public static final int AUTOVACUUM_INCREMENTAL = 2; // free pages are reclaimed on request
+
+  public static final String[] COLUMNS = { PAGESIZE, PAGECOUNT, FREEPAGES, AUTOVACUUM };
+}
@@ -49,6 +49,7 @@ public class Track implements Parcelable {
   private long modifiedTime = -1L;
   private boolean sharedWithMe = false;
   private String sharedOwner = "";
+  private String driveMd5 = "";
 
   private TripStatistics tripStatistics = new TripStatistics();
 
@@ -70,6 +71,7 @@ public class Track implements Parcelable {
     modifiedTime = in.readLong();
     sharedWithMe = in.readByte() == 1;
     sharedOwner = in.readString();
+    driveMd5 = in.readString();
 
     ClassLoader classLoader = getClass().getClassLoader();
     tripStatistics = in.readParcelable(classLoader);
@@ -99,6 +101,7 @@ public class Track implements Parcelable {
     dest.writeLong(modifiedTime);
     dest.writeByte((byte) (sharedWithMe ? 1 : 0));
     dest.writeString(sharedOwner);
+    dest.writeString(driveMd5);
 
     dest.writeParcelable(tripStatistics, 0);
     for (int i = 0; i < numberOfPoints; ++i) {
@@ -213,6 +216,14 @@ public class Track implements Parcelable {
   public void setSharedOwner(String sharedOwner) {
     this.sharedOwner = sharedOwner;
   }
+
+  public String getDriveMd5() {
+    return driveMd5;
+  }
+
+  public void setDriveMd5(String driveMd5) {
+    this.driveMd5 = driveMd5;
+  }
   
   public TripStatistics getTripStatistics() {
     return tripStatistics;
@@ -62,6 +62,17 @@ public interface TrackPointsColumns extends BaseColumns {
       + SENSOR + " BLOB" 
       + ");";
 
+  // Indexes. The track id lookups (first/last point id, batched point cursors)
+  // and the track id and time lookup would otherwise scan the whole table.
+  public static final String TRACKID_INDEX = TABLE_NAME + "_" + TRACKID + "_index";
+  public static final String TRACKID_TIME_INDEX = TABLE_NAME + "_" + TRACKID + "_" + TIME
+      + "_index";
+
+  public static final String CREATE_TRACKID_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + TRACKID_INDEX + " ON " + TABLE_NAME + " (" + TRACKID + ", " + _ID + ");";
+  public static final String CREATE_TRACKID_TIME_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + TRACKID_TIME_INDEX + " ON " + TABLE_NAME + " (" + TRACKID + ", " + TIME + ");";
+
   public static final String[] COLUMNS = {
       _ID,
       TRACKID,
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 BioSCADA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.lib.mytracks.content;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import static com.google.android.lib.mytracks.content.ContentTypeIds.FLOAT_TYPE_ID;
+import static com.google.android.lib.mytracks.content.ContentTypeIds.INT_TYPE_ID;
+import static com.google.android.lib.mytracks.content.ContentTypeIds.LONG_TYPE_ID;
+import static com.google.android.lib.mytracks.content.ContentTypeIds.STRING_TYPE_ID;
+
+/**
+ * Constants for the track stats table, the statistics of the tracks aggregated
+ * by activity type and by period. Maintained by the content provider when the
+ * tracks are inserted, updated or deleted, read only otherwise.
+ * <p>
+ * A row aggregates the tracks of an activity type, or of all the activity
+ * types if the category is null, started in a period. The periods are in the
+ * local time zone, rebuilt when the time zone or the locale changes. The
+ * statistics columns have the same names and units as in the tracks table.
+ */
+public interface TrackStatsColumns extends BaseColumns {
+
+  public static final String TABLE_NAME = "trackstats";
+  public static final Uri CONTENT_URI = Uri.parse(
+      "content://br.com.bioscada.apps.biotracks/trackstats");
+  public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.google.trackstats";
+  public static final String DEFAULT_SORT_ORDER = "period, periodstart";
+
+  // Columns
+  public static final String CATEGORY = "category"; // activity type, null for all
+  public static final String PERIOD = "period"; // period type
+  public static final String PERIODSTART = "periodstart"; // period start time, inclusive
+  public static final String PERIODEND = "periodend"; // period end time, exclusive
+  public static final String NUMTRACKS = "numtracks"; // number of tracks
+  public static final String STARTTIME = TracksColumns.STARTTIME; // first start time
+  public static final String STOPTIME = TracksColumns.STOPTIME; // last stop time
+  public static final String TOTALDISTANCE = TracksColumns.TOTALDISTANCE; // total distance
+  public static final String TOTALTIME = TracksColumns.TOTALTIME; // total time
+  public static final String MOVINGTIME = TracksColumns.MOVINGTIME; // moving time
+  public static final String MINLAT = TracksColumns.MINLAT; // minimum latitude
+  public static final String MAXLAT = TracksColumns.MAXLAT; // maximum latitude
+  public static final String MINLON = TracksColumns.MINLON; // minimum longitude
+  public static final String MAXLON = TracksColumns.MAXLON; // maximum longitude
+  public static final String MAXSPEED = TracksColumns.MAXSPEED; // maximum speed
+  public static final String MINELEVATION = TracksColumns.MINELEVATION; // minimum elevation
+  public static final String MAXELEVATION = TracksColumns.MAXELEVATION; // maximum elevation
+  public static final String ELEVATIONGAIN = TracksColumns.ELEVATIONGAIN; // elevation gain
+  public static final String MINGRADE = TracksColumns.MINGRADE; // minimum grade
+  public static final String MAXGRADE = TracksColumns.MAXGRADE; // maximum grade
+  public static final String CALORIE = TracksColumns.CALORIE; // calorie
+
+  // Update value to rebuild the rows from the tracks table
+  public static final String REBUILD = "rebuild";
+
+  // Period types
+  public static final int PERIOD_ALL = 0; // all time
+  public static final int PERIOD_YEAR = 1; // calendar year
+  public static final int PERIOD_MONTH = 2; // calendar month
+  public static final int PERIOD_WEEK = 3; // calendar week, from the first day of week
+
+  public static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+      + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+      + CATEGORY + " STRING, "
+      + PERIOD + " INTEGER, "
+      + PERIODSTART + " INTEGER, "
+      + PERIODEND + " INTEGER, "
+      + NUMTRACKS + " INTEGER, "
+      + STARTTIME + " INTEGER, "
+      + STOPTIME + " INTEGER, "
+      + TOTALDISTANCE + " FLOAT, "
+      + TOTALTIME + " INTEGER, "
+      + MOVINGTIME + " INTEGER, "
+      + MINLAT + " INTEGER, "
+      + MAXLAT + " INTEGER, "
+      + MINLON + " INTEGER, "
+      + MAXLON + " INTEGER, "
+      + MAXSPEED + " FLOAT, "
+      + MINELEVATION + " FLOAT, "
+      + MAXELEVATION + " FLOAT, "
+      + ELEVATIONGAIN + " FLOAT, "
+      + MINGRADE + " FLOAT, "
+      + MAXGRADE + " FLOAT, "
+      + CALORIE + " FLOAT"
+      + ");";
+
+  public static final String PERIOD_INDEX = TABLE_NAME + "_" + PERIOD + "_" + PERIODSTART + "_"
+      + CATEGORY + "_index";
+
+  public static final String CREATE_PERIOD_INDEX = "CREATE INDEX IF NOT EXISTS " + PERIOD_INDEX
+      + " ON " + TABLE_NAME + " (" + PERIOD + ", " + PERIODSTART + ", " + CATEGORY + ");";
+
+  public static final String[] COLUMNS = {
+      _ID,
+      CATEGORY,
+      PERIOD,
+      PERIODSTART,
+      PERIODEND,
+      NUMTRACKS,
+      STARTTIME,
+      STOPTIME,
+      TOTALDISTANCE,
+      TOTALTIME,
+      MOVINGTIME,
+      MINLAT,
+      MAXLAT,
+      MINLON,
+      MAXLON,
+      MAXSPEED,
+      MINELEVATION,
+      MAXELEVATION,
+      ELEVATIONGAIN,
+      MINGRADE,
+      MAXGRADE,
+      CALORIE
+  };
+
+  public static final byte[] COLUMN_TYPES = {
+      LONG_TYPE_ID, // id
+      STRING_TYPE_ID, // category
+      INT_TYPE_ID, // period
+      LONG_TYPE_ID, // period start
+      LONG_TYPE_ID, // period end
+      INT_TYPE_ID, // num tracks
+      LONG_TYPE_ID, // start time
+      LONG_TYPE_ID, // stop time
+      FLOAT_TYPE_ID, // total distance
+      LONG_TYPE_ID, // total time
+      LONG_TYPE_ID, // moving time
+      INT_TYPE_ID, // min latitude
+      INT_TYPE_ID, // max latitude
+      INT_TYPE_ID, // min longitude
+      INT_TYPE_ID, // max longitude
+      FLOAT_TYPE_ID, // max speed
+      FLOAT_TYPE_ID, // min elevation
+      FLOAT_TYPE_ID, // max elevation
+      FLOAT_TYPE_ID, // elevation gain
+      FLOAT_TYPE_ID, // min grade
+      FLOAT_TYPE_ID, // max grade
+      FLOAT_TYPE_ID // calorie
+  };
+}
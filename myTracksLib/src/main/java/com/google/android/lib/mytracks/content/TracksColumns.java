@@ -92,6 +92,12 @@ public interface TracksColumns extends BaseColumns {
   // Calorie burned of the track
   public static final String CALORIE = "calorie";
 
+  // Number of waypoints, including the statistics one. Maintained by the provider
+  public static final String NUMWAYPOINTS = "numwaypoints";
+
+  // MD5 checksum of the Google Drive file content last synced with the track
+  public static final String DRIVEMD5 = "drivemd5";
+
   public static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" // table
       + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " // id
       + NAME + " STRING, " // name
@@ -124,7 +130,9 @@ public interface TracksColumns extends BaseColumns {
       + MODIFIEDTIME + " INTEGER, " // modified time
       + SHAREDWITHME + " INTEGER, " // shared with me
       + SHAREDOWNER + " STRING, " // shared owner
-      + CALORIE + " FLOAT);"; // calorie
+      + CALORIE + " FLOAT, " // calorie
+      + NUMWAYPOINTS + " INTEGER DEFAULT 0, " // num waypoints
+      + DRIVEMD5 + " STRING);"; // drive md5
 
   public static final String[] COLUMNS = { _ID, // id
       NAME, // name
@@ -157,7 +165,9 @@ public interface TracksColumns extends BaseColumns {
       MODIFIEDTIME, // modified time
       SHAREDWITHME, // shared with me
       SHAREDOWNER,// shared owner
-      CALORIE }; // calorie
+      CALORIE, // calorie
+      NUMWAYPOINTS, // num waypoints
+      DRIVEMD5 }; // drive md5
 
   public static final byte[] COLUMN_TYPES = { ContentTypeIds.LONG_TYPE_ID, // id
       ContentTypeIds.STRING_TYPE_ID, // name
@@ -190,6 +200,8 @@ public interface TracksColumns extends BaseColumns {
       ContentTypeIds.LONG_TYPE_ID, // modified time
       ContentTypeIds.BOOLEAN_TYPE_ID, // shared with me
       ContentTypeIds.STRING_TYPE_ID, // shared owner
-      ContentTypeIds.FLOAT_TYPE_ID // calorie
+      ContentTypeIds.FLOAT_TYPE_ID, // calorie
+      ContentTypeIds.INT_TYPE_ID, // num waypoints
+      ContentTypeIds.STRING_TYPE_ID // drive md5
   };
 }